@@ -0,0 +1,49 @@
+package cz.vutbr.web.css;
+
+import java.io.InputStream;
+import java.net.URL;
+import java.util.concurrent.Future;
+
+/**
+ * A network processor that obtains the resources asynchronously. The fetching is started
+ * when the resource is requested and the caller obtains the stream later from the returned future.
+ *
+ * @see NetworkProcessor
+ */
+public interface AsyncNetworkProcessor
+{
+
+    /**
+     * Starts fetching the resource with the given URL.
+     *
+     * @param url Resource URL.
+     * @return the future input stream that reads the resource contents. When the stream cannot
+     * be obtained, the future fails with the corresponding {@link java.io.IOException} as the cause.
+     */
+    public Future<InputStream> fetchAsync(URL url);
+
+    /**
+     * Starts fetching the resource with the given URL and notifies the callback when the fetch
+     * is finished, so that the caller does not have to wait for the future.
+     *
+     * @param url Resource URL.
+     * @param callback the callback invoked once when the returned future is done (including a failure
+     * or cancellation). It may be invoked by the thread that finishes the fetch, so it should only
+     * schedule the further processing.
+     * @return the future input stream, the same as the one passed to the callback
+     */
+    public Future<InputStream> fetchAsync(URL url, Callback callback);
+
+    /**
+     * A notification of a finished fetch.
+     */
+    public interface Callback
+    {
+        /**
+         * Called when a fetch is finished.
+         * @param fetched the finished future input stream
+         */
+        public void fetched(Future<InputStream> fetched);
+    }
+
+}
@@ -6,6 +6,7 @@ import java.io.IOException;
 import java.lang.reflect.Method;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.fit.net.DataURLHandler;
@@ -549,14 +550,46 @@ public final class CSSFactory {
      */
     public static final StyleSheet getUsedStyles(Document doc, String encoding, URL base, MediaSpec media, NetworkProcessor network)
     {
-        SourceData pair = new SourceData(base, network, media);
+        StyleSheet style = (StyleSheet) getRuleFactory().createStyleSheet().unlock();
+        for (StyleSource src : getStyleSources(doc, base, media))
+        {
+            try {
+                style = src.appendTo(style, network, encoding);
+                log.debug("Matched {}", src);
+            } catch (CSSException ce) {
+                log.error("THROWN:", ce);
+            } catch (IOException ioe) {
+                log.error("THROWN:", ioe);
+            }
+        }
+        return style;
+    }
+    
+    /**
+     * Finds all the style specifications used in the specified DOM tree in the document order:
+     * the style sheets included using the <code>link</code> and <code>style</code> tags, the inline
+     * styles and the default styles (see {@link #getUsedStyles(Document, String, URL, MediaSpec, NetworkProcessor)}).
+     * The style sheets are not fetched nor parsed; the sources may be parsed later (possibly in parallel)
+     * and their rules must be combined in the order of the list.
+     * 
+     * @param doc
+     *            DOM tree
+     * @param base
+     *            Base URL against which all files are searched
+     * @param media
+     *            Selected media for style sheet
+     * @return the list of style sources in the document order
+     */
+    public static final List<StyleSource> getStyleSources(Document doc, URL base, MediaSpec media)
+    {
+        SourceData pair = new SourceData(base, media);
 
-        Traversal<StyleSheet> traversal = new CSSAssignTraversal(doc, encoding,
+        Traversal<List<StyleSource>> traversal = new CSSSourceTraversal(doc,
                 pair, NodeFilter.SHOW_ELEMENT);
 
-        StyleSheet style = (StyleSheet) getRuleFactory().createStyleSheet().unlock();
-        traversal.listTraversal(style);
-        return style;
+        List<StyleSource> sources = new ArrayList<StyleSource>();
+        traversal.listTraversal(sources);
+        return sources;
     }
     
     /**
@@ -712,14 +745,7 @@ public final class CSSFactory {
     public static final StyleMap assignDOM(Document doc, String encoding, NetworkProcessor network,
             URL base, MediaSpec media, boolean useInheritance, final MatchCondition matchCond) {
 
-        SourceData pair = new SourceData(base, network, media);
-
-        Traversal<StyleSheet> traversal = new CSSAssignTraversal(doc, encoding,
-                pair, NodeFilter.SHOW_ELEMENT);
-
-        StyleSheet style = (StyleSheet) getRuleFactory().createStyleSheet()
-                .unlock();
-        traversal.listTraversal(style);
+        StyleSheet style = getUsedStyles(doc, encoding, base, media, network);
 
         Analyzer analyzer = new Analyzer(style);
         if (matchCond != null) {
@@ -762,71 +788,52 @@ public final class CSSFactory {
 	// ========================================================================
 
 	/**
-	 * Walks (X)HTML document and collects style information
+	 * Walks (X)HTML document and collects the style sources
 	 * 
 	 * @author kapy
 	 * 
 	 */
-	private static final class CSSAssignTraversal extends Traversal<StyleSheet> {
+	private static final class CSSSourceTraversal extends Traversal<List<StyleSource>> {
 
 		private static CSSParserFactory pf = getCSSParserFactory();
-	    private String encoding;
 	    private final ElementMatcher matcher;
 	    
-		public CSSAssignTraversal(Document doc, String encoding, Object source, int whatToShow) {
+		public CSSSourceTraversal(Document doc, Object source, int whatToShow) {
 			super(doc, source, whatToShow);
-			this.encoding = encoding;
 			this.matcher = getElementMatcher();
 		}
 
 		@Override
-		protected void processNode(StyleSheet result, Node current,	Object source) 
+		protected void processNode(List<StyleSource> result, Node current, Object source) 
 		{
 			// base uri
 			URL base = ((SourceData) source).base;
 			// allowed media
 			MediaSpec media = ((SourceData) source).media;
-			// network processor
-			NetworkProcessor network = ((SourceData) source).network;
 			Element elem = (Element) current;
 
-			try {
-				// embedded style-sheet
-				if (isEmbeddedStyleSheet(elem, media)) {
-					result = pf.append(extractElementText(elem), network, null,
-							SourceType.EMBEDDED, result, base);
-					log.debug("Matched embedded CSS style");
-				}
-				// linked style-sheet
-				else if (isLinkedStyleSheet(elem, media)) {
-				    URL uri = DataURLHandler.createURL(base, matcher.getAttribute(elem, "href"));
-					result = pf.append(uri, network, encoding, SourceType.URL,
-							result, uri);
-					log.debug("Matched linked CSS style");
-				}
-				// in-line style and default style
-				else {
-    				    if (elem.getAttribute("style") != null && elem.getAttribute("style").length() > 0) {
-        					result = pf.append(
-        							elem.getAttribute("style"), network,
-        							null, SourceType.INLINE,
-        							elem, true, result, base);
-        					log.debug("Matched inline CSS style");
-    				    }
-                        if (elem.getAttribute("XDefaultStyle") != null && elem.getAttribute("XDefaultStyle").length() > 0) {
-                            result = pf.append(
-                                    elem.getAttribute("XDefaultStyle"), network,
-                                    null, SourceType.INLINE,
-                                    elem, false, result, base);
-                            log.debug("Matched default CSS style");
-                        }
-				}
-			} catch (CSSException ce) {
-				log.error("THROWN:", ce);
-			} catch (IOException ioe) {
-				log.error("THROWN:", ioe);
+			// embedded style-sheet
+			if (isEmbeddedStyleSheet(elem, media)) {
+				result.add(StyleSource.embedded(extractElementText(elem), base));
+			}
+			// linked style-sheet
+			else if (isLinkedStyleSheet(elem, media)) {
+			    try {
+			        URL uri = DataURLHandler.createURL(base, matcher.getAttribute(elem, "href"));
+			        result.add(StyleSource.linked(uri));
+			    } catch (MalformedURLException e) {
+			        log.error("THROWN:", e);
+			    }
+			}
+			// in-line style and default style
+			else {
+			    if (elem.getAttribute("style") != null && elem.getAttribute("style").length() > 0) {
+			        result.add(StyleSource.inline(elem.getAttribute("style"), elem, true, base));
+			    }
+			    if (elem.getAttribute("XDefaultStyle") != null && elem.getAttribute("XDefaultStyle").length() > 0) {
+			        result.add(StyleSource.inline(elem.getAttribute("XDefaultStyle"), elem, false, base));
+			    }
 			}
-
 		}
 
 		private boolean isEmbeddedStyleSheet(Element e, MediaSpec media) {
@@ -893,15 +900,13 @@ public final class CSSFactory {
 		}
 	}
 
-	// holds source description containing the URL base, network processor and the required media
+	// holds source description containing the URL base and the required media
 	private static final class SourceData {
 		public URL base;
-		public NetworkProcessor network;
 		public MediaSpec media;
 
-		public SourceData(URL base, NetworkProcessor network, MediaSpec media) {
+		public SourceData(URL base, MediaSpec media) {
 			this.base = base;
-			this.network = network;
 			this.media = media;
 		}
 	}
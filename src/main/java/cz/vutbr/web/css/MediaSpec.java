@@ -600,7 +600,7 @@ public class MediaSpec
             Term<?> term2 = e.get(1);
             if (term1 instanceof TermInteger && term2 instanceof TermInteger
                     && (((TermInteger) term2).getOperator() == Operator.SLASH))
-                return ((TermInteger) term1).getValue() / ((TermInteger) term2).getValue();
+                return ((TermInteger) term1).floatValue() / ((TermInteger) term2).floatValue();
             else
                 return null;
         }
@@ -653,7 +653,7 @@ public class MediaSpec
      */
     protected Float pxLength(TermLength spec)
     {
-        float nval = spec.getValue();
+        float nval = spec.floatValue();
         TermLength.Unit unit = spec.getUnit();
         
         switch (unit)
@@ -688,7 +688,7 @@ public class MediaSpec
      */
     protected Float dpiResolution(TermResolution spec)
     {
-        float nval = spec.getValue();
+        float nval = spec.floatValue();
         TermLength.Unit unit = spec.getUnit();
         
         switch (unit)
@@ -151,4 +151,20 @@ public interface NodeData {
      */
     public Declaration getSourceDeclaration(String name, boolean includeInherited);
     
+    /**
+     * Makes the data immutable so that it may be shared by several elements. Any subsequent
+     * {@link #push(Declaration)}, {@link #inheritFrom(NodeData)} or {@link #concretize()} call
+     * throws an {@link UnsupportedOperationException}.
+     * 
+     * @return this instance
+     */
+    public NodeData freeze();
+    
+    /**
+     * Checks whether the data has been frozen using {@link #freeze()}.
+     * 
+     * @return {@code true} when the data may not be modified anymore
+     */
+    public boolean isFrozen();
+    
 }
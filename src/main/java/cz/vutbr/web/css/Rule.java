@@ -6,7 +6,8 @@ import java.util.List;
  * Base class for elements of CSS definition.
  * All rules can be created as immutable objects, but
  * this immutability can be changed by functions
- * {@code unlock()} or {@code replaceAll()} 
+ * {@code unlock()} or {@code replaceAll()} unless the rule
+ * has been frozen using {@code freeze()}.
  * Rule is generally collection of other, finer grained object.
  * 
  * @author kapy
@@ -35,5 +36,26 @@ public interface Rule<T> extends List<T> {
 	 * @return Underlying collection
 	 */
 	List<T> asList();
+	
+	/**
+	 * Makes the rule and all the nested rules, selectors and term lists immutable.
+	 * The contents are converted to compact array-backed lists and any subsequent
+	 * modification attempt throws an {@link UnsupportedOperationException}.
+	 * A frozen rule may be shared among threads without any locking once it has been
+	 * safely published to them (e.g. using a final or volatile field, a concurrent collection
+	 * or by submitting a task to an executor after the rule has been frozen); the frozen state
+	 * itself is not published by this method.
+	 * Freezing an already frozen rule has no effect.
+	 * 
+	 * @return The frozen rule (this instance)
+	 */
+	Rule<T> freeze();
+	
+	/**
+	 * Checks whether the rule has been frozen using {@link #freeze()}.
+	 * 
+	 * @return {@code true} when the rule cannot be modified anymore
+	 */
+	boolean isFrozen();
     
 }
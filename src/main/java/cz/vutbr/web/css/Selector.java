@@ -179,6 +179,19 @@ public interface Selector extends Rule<Selector.SelectorPart> {
     public interface SelectorPart { 	
     	public boolean matches(Element e, ElementMatcher matcher, MatchCondition cond);
     	public void computeSpecificity(CombinedSelector.Specificity spec);
+    	
+    	/**
+    	 * Makes the part immutable. Any subsequent modification attempt throws
+    	 * an {@link UnsupportedOperationException}.
+    	 * @return The frozen part (this instance)
+    	 */
+    	public SelectorPart freeze();
+    	
+    	/**
+    	 * Checks whether the part has been frozen using {@link #freeze()}.
+    	 * @return {@code true} when the part cannot be modified anymore
+    	 */
+    	public boolean isFrozen();
     }
     
     /**
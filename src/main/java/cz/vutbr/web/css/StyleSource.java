@@ -0,0 +1,145 @@
+package cz.vutbr.web.css;
+
+import java.io.IOException;
+import java.net.URL;
+
+import org.w3c.dom.Element;
+
+import cz.vutbr.web.csskit.antlr.CSSParserFactory;
+import cz.vutbr.web.csskit.antlr.CSSParserFactory.SourceType;
+
+/**
+ * A style specification used in a document: an embedded style sheet, a linked style sheet
+ * or an inline style of an element. The sources are obtained in the document order using
+ * {@link CSSFactory#getStyleSources(org.w3c.dom.Document, URL, MediaSpec)} and they may be parsed
+ * independently; the cascade order is given by the order of the sources.
+ */
+public final class StyleSource
+{
+    private final SourceType type;
+    private final Object source;
+    private final Element inline;
+    private final boolean inlinePriority;
+    private final URL base;
+
+    /**
+     * Creates an embedded style sheet source.
+     * @param css the style sheet text
+     * @param base the base URL used for the relative URLs in the style sheet
+     * @return the new source
+     */
+    public static StyleSource embedded(String css, URL base)
+    {
+        return new StyleSource(SourceType.EMBEDDED, css, null, false, base);
+    }
+
+    /**
+     * Creates a linked style sheet source.
+     * @param url the style sheet URL
+     * @return the new source
+     */
+    public static StyleSource linked(URL url)
+    {
+        return new StyleSource(SourceType.URL, url, null, false, url);
+    }
+
+    /**
+     * Creates an inline style source.
+     * @param css the declarations
+     * @param elem the element the style belongs to
+     * @param inlinePriority {@code true} for the inline styles, {@code false} for the default styles
+     * that have the lowest priority
+     * @param base the base URL used for the relative URLs in the declarations
+     * @return the new source
+     */
+    public static StyleSource inline(String css, Element elem, boolean inlinePriority, URL base)
+    {
+        return new StyleSource(SourceType.INLINE, css, elem, inlinePriority, base);
+    }
+
+    private StyleSource(SourceType type, Object source, Element inline, boolean inlinePriority, URL base)
+    {
+        this.type = type;
+        this.source = source;
+        this.inline = inline;
+        this.inlinePriority = inlinePriority;
+        this.base = base;
+    }
+
+    /**
+     * Obtains the source type.
+     * @return the source type
+     */
+    public SourceType getType()
+    {
+        return type;
+    }
+
+    /**
+     * Checks whether the style sheet must be fetched using a network processor.
+     * @return {@code true} for the linked style sheets
+     */
+    public boolean isLinked()
+    {
+        return type == SourceType.URL;
+    }
+
+    /**
+     * Obtains the URL of a linked style sheet.
+     * @return the style sheet URL or {@code null} for the other sources
+     */
+    public URL getURL()
+    {
+        return isLinked() ? (URL) source : null;
+    }
+
+    /**
+     * Obtains the element of an inline style.
+     * @return the element or {@code null} for the other sources
+     */
+    public Element getElement()
+    {
+        return inline;
+    }
+
+    /**
+     * Parses the source to a new style sheet.
+     * @param network the network processor used for the linked and imported style sheets
+     * @param encoding the default encoding of the linked style sheets
+     * @return the new style sheet
+     * @throws IOException when the style sheet cannot be read
+     * @throws CSSException when unrecoverable exception during parsing occurs
+     */
+    public StyleSheet parse(NetworkProcessor network, String encoding) throws IOException, CSSException
+    {
+        return CSSParserFactory.getInstance().parse(source, network, getEncoding(encoding), type,
+                inline, inlinePriority, base);
+    }
+
+    /**
+     * Parses the source and appends the rules to an existing style sheet.
+     * @param sheet the style sheet to be modified
+     * @param network the network processor used for the linked and imported style sheets
+     * @param encoding the default encoding of the linked style sheets
+     * @return the modified style sheet
+     * @throws IOException when the style sheet cannot be read
+     * @throws CSSException when unrecoverable exception during parsing occurs
+     */
+    public StyleSheet appendTo(StyleSheet sheet, NetworkProcessor network, String encoding) throws IOException, CSSException
+    {
+        return CSSParserFactory.getInstance().append(source, network, getEncoding(encoding), type,
+                inline, inlinePriority, sheet, base);
+    }
+
+    @Override
+    public String toString()
+    {
+        return type + " " + (type == SourceType.URL ? source : "style");
+    }
+
+    private String getEncoding(String encoding)
+    {
+        return (type == SourceType.URL) ? encoding : null;
+    }
+
+}
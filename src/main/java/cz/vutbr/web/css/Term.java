@@ -66,5 +66,21 @@ public interface Term<T> extends Cloneable {
      */
     public Term<T> setOperator(Operator operator);
 
+    /**
+     * Makes the term immutable. Any subsequent modification attempt throws
+     * an {@link UnsupportedOperationException}. The {@link #shallowClone()}
+     * of a frozen term may be modified.
+     * 
+     * @return The frozen term (this instance)
+     */
+    public Term<T> freeze();
+    
+    /**
+     * Checks whether the term has been frozen using {@link #freeze()}.
+     * 
+     * @return {@code true} when the term cannot be modified anymore
+     */
+    public boolean isFrozen();
+
     public Term<T> shallowClone();
 }
@@ -28,6 +28,7 @@ public interface TermFactory {
 	
 	TermLength createLength(Float value);
     TermLength createLength(Float value, Unit unit);
+    TermLength createLength(float value, Unit unit);
 	TermLength createLength(String value, Unit unit, int unary);
 	
 	TermList createList();
@@ -43,6 +44,7 @@ public interface TermFactory {
 	<K,V> TermPair<K,V> createPair(K key, V value);
 	
 	TermPercent createPercent(Float value);
+	TermPercent createPercent(float value);
 	TermPercent createPercent(String value, int unary);
 	
     TermResolution createResolution(Float value);
@@ -11,4 +11,17 @@ package cz.vutbr.web.css;
 public interface TermFloatValue extends TermNumeric<Float>
 {
 
+    /**
+     * Obtains the value without boxing.
+     * @return the value or {@code 0} when no value is set
+     */
+    public float floatValue();
+    
+    /**
+     * Sets the value without boxing.
+     * @param value the new value
+     * @return the modified term
+     */
+    public TermFloatValue setValue(float value);
+    
 }
@@ -9,4 +9,12 @@ import java.util.List;
  */
 public interface TermList extends Term<List<Term<?>>>, List<Term<?>> {
 
+	/**
+	 * Makes the list and all the contained terms immutable. Any subsequent
+	 * modification attempt throws an {@link UnsupportedOperationException}.
+	 * 
+	 * @return The frozen list (this instance)
+	 */
+	public TermList freeze();
+
 }
@@ -7,28 +7,65 @@ import java.util.Iterator;
 import java.util.List;
 
 import cz.vutbr.web.css.Rule;
+import cz.vutbr.web.css.Selector;
+import cz.vutbr.web.css.Term;
 
 public class AbstractRule<T> extends AbstractList<T> implements Rule<T> {
 	
 	protected List<T> list = Collections.emptyList();
 	protected int hash = 0;
+	/** Not volatile: a frozen rule must be safely published to the other threads, see {@link Rule#freeze()} */
+	protected boolean frozen = false;
 	
 	public List<T> asList() {
 		return this.list;
 	}
 	
 	public Rule<T> replaceAll(List<T> replacement) {
+	    checkModifiable();
         hash = 0;
 		this.list = replacement;
 		return this;
 	}
 	
 	public Rule<T> unlock() {
+	    checkModifiable();
         hash = 0;
 		this.list = new ArrayList<T>();
 		return this;
 	}
 	
+	public Rule<T> freeze() {
+	    if (!frozen) {
+	        for (T item : list) {
+	            if (item instanceof Rule<?>)
+	                ((Rule<?>) item).freeze();
+	            else if (item instanceof Term<?>)
+	                ((Term<?>) item).freeze();
+	            else if (item instanceof Selector.SelectorPart)
+	                ((Selector.SelectorPart) item).freeze();
+	        }
+	        this.list = new FrozenList<T>(list);
+	        this.frozen = true;
+	        this.hash = 0;
+	        hashCode(); //compute the hash in advance so that it is never written concurrently
+	    }
+	    return this;
+	}
+	
+	public boolean isFrozen() {
+	    return frozen;
+	}
+	
+	/**
+	 * Checks whether the rule may be modified.
+	 * @throws UnsupportedOperationException when the rule has been frozen
+	 */
+	protected void checkModifiable() {
+	    if (frozen)
+	        throw new UnsupportedOperationException("The rule is frozen: " + getClass().getSimpleName());
+	}
+	
 	@Override
 	public int size() {
 		return list.size();
@@ -41,18 +78,21 @@ public class AbstractRule<T> extends AbstractList<T> implements Rule<T> {
 	
 	@Override
 	public T set(int index, T element) {
+	    checkModifiable();
         hash = 0;
 		return list.set(index, element);
 	}
 	
 	@Override
 	public void add(int index, T element) {
+	    checkModifiable();
         hash = 0;
 		list.add(index, element);
 	}
 	
 	@Override
 	public T remove(int index) {
+	    checkModifiable();
         hash = 0;
 		return list.remove(index);
 	}
@@ -64,6 +104,7 @@ public class AbstractRule<T> extends AbstractList<T> implements Rule<T> {
 
 	@Override
 	public boolean add(T o) {
+	    checkModifiable();
 	    hash = 0;
 		return list.add(o);
 	}
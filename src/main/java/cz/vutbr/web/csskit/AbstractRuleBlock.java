@@ -14,6 +14,8 @@ public class AbstractRuleBlock<T> extends AbstractRule<T> implements RuleBlock<T
 
 	public void setStyleSheet(StyleSheet stylesheet)
 	{
+		if (stylesheet != this.stylesheet)
+			checkModifiable();
 		this.stylesheet = stylesheet;
 	}
 
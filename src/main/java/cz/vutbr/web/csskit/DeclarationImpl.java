@@ -71,6 +71,7 @@ public class DeclarationImpl extends AbstractRule<Term<?>> implements Declaratio
 	 * @param property the property to set
 	 */
 	public void setProperty(String property) {
+		checkModifiable();
 		this.property = property;
 	}
 
@@ -86,6 +87,7 @@ public class DeclarationImpl extends AbstractRule<Term<?>> implements Declaratio
 	 * @param important the important to set
 	 */
 	public void setImportant(boolean important) {
+		checkModifiable();
 		this.important = important;
 	}	
 
@@ -98,6 +100,7 @@ public class DeclarationImpl extends AbstractRule<Term<?>> implements Declaratio
     @Override
     public void setSource(Source src)
     {
+        checkModifiable();
         this.source = src;
     }
 
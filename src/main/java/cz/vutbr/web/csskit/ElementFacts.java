@@ -0,0 +1,313 @@
+package cz.vutbr.web.csskit;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The facts about a single element that are required for matching the element names,
+ * IDs and classes. The facts are obtained once and they are shared by all the selectors
+ * matched against the element.
+ *
+ * The element name, ID and classes are resolved against the {@link SymbolTable}s of the names
+ * used in the selectors. The values found in the tables are kept as the table symbols and
+ * they are compared with the selector symbols by reference. The remaining values resolve to
+ * {@link SymbolTable#UNKNOWN}; the original values are compared only when such a value is
+ * matched against a selector that is not contained in the tables. The document values are
+ * never interned.
+ */
+public final class ElementFacts
+{
+    private static final String[] NO_SYMBOLS = new String[0];
+    private static final SymbolTable[] NO_TABLES = new SymbolTable[0];
+
+    private final boolean caseSensitiveNames;
+    private final boolean caseSensitiveValues;
+    private final String name;
+    private final String nameSymbol;
+    private final String id;
+    private final String idSymbol;
+    private final String classes;
+    private final String[] classSymbols;
+    private final boolean unknownClasses;
+    private String convertedName;
+    private String convertedId;
+    private List<String> classList;
+
+    /**
+     * Creates the element facts.
+     * @param name the element name or {@code null}
+     * @param id the element ID or {@code null}
+     * @param classes the value of the class attribute (white space separated class names) or {@code null}
+     * @param caseSensitiveNames {@code true} when the element names are matched case-sensitively
+     * @param caseSensitiveValues {@code true} when the IDs and class names are matched case-sensitively
+     * @param symbols the tables the values are resolved against or {@code null} when no tables are available
+     */
+    public ElementFacts(String name, String id, String classes,
+            boolean caseSensitiveNames, boolean caseSensitiveValues, SymbolTable[] symbols)
+    {
+        if (symbols == null)
+            symbols = NO_TABLES;
+        this.caseSensitiveNames = caseSensitiveNames;
+        this.caseSensitiveValues = caseSensitiveValues;
+        this.name = (name == null) ? "" : name;
+        this.nameSymbol = resolve(symbols, this.name, 0, this.name.length(), !caseSensitiveNames);
+        this.id = (id == null) ? "" : id;
+        this.idSymbol = (this.id.length() == 0) ? SymbolTable.UNKNOWN
+                : resolve(symbols, this.id, 0, this.id.length(), !caseSensitiveValues);
+        this.classes = (classes == null) ? "" : classes;
+
+        // resolve the class names; the array is only allocated when some of them are known
+        final int total = countClasses(this.classes);
+        String[] known = NO_SYMBOLS;
+        int cnt = 0;
+        boolean unknown = false;
+        final int len = this.classes.length();
+        int start = -1;
+        for (int i = 0; i <= len && total > 0; i++)
+        {
+            if (i == len || Character.isWhitespace(this.classes.charAt(i)))
+            {
+                if (start != -1)
+                {
+                    final String symbol = resolve(symbols, this.classes, start, i, !caseSensitiveValues);
+                    if (symbol == SymbolTable.UNKNOWN)
+                        unknown = true;
+                    else
+                    {
+                        if (known == NO_SYMBOLS)
+                            known = new String[total];
+                        known[cnt++] = symbol;
+                    }
+                    start = -1;
+                }
+            }
+            else if (start == -1)
+                start = i;
+        }
+        if (cnt < known.length)
+        {
+            final String[] trimmed = new String[cnt];
+            System.arraycopy(known, 0, trimmed, 0, cnt);
+            known = trimmed;
+        }
+        this.classSymbols = known;
+        this.unknownClasses = unknown;
+    }
+
+    /**
+     * Obtains the element name converted according to the case sensitivity of the names.
+     * The converted name is created when it is requested for the first time.
+     * @return the element name or an empty string when not available
+     */
+    public String getName()
+    {
+        if (convertedName == null)
+            convertedName = caseSensitiveNames ? name : ElementMatcherCached.fold(name);
+        return convertedName;
+    }
+
+    /**
+     * Obtains the element ID converted according to the case sensitivity of the values.
+     * The converted ID is created when it is requested for the first time.
+     * @return the element ID or an empty string when not specified
+     */
+    public String getId()
+    {
+        if (convertedId == null)
+            convertedId = caseSensitiveValues ? id : ElementMatcherCached.fold(id);
+        return convertedId;
+    }
+
+    /**
+     * Obtains the class names assigned to the element converted according to the case sensitivity
+     * of the values. The list is created when it is requested for the first time.
+     * @return the unmodifiable list of the class names (possibly empty)
+     */
+    public List<String> getClassList()
+    {
+        if (classList == null)
+        {
+            final List<String> list = splitClasses(classes, !caseSensitiveValues);
+            classList = list.isEmpty() ? Collections.<String>emptyList() : Collections.unmodifiableList(list);
+        }
+        return classList;
+    }
+
+    /**
+     * Obtains the symbol of the element name.
+     * @return the symbol or {@link SymbolTable#UNKNOWN} when the name is not contained in the tables
+     */
+    public String getNameSymbol()
+    {
+        return nameSymbol;
+    }
+
+    /**
+     * Obtains the symbol of the element ID.
+     * @return the symbol or {@link SymbolTable#UNKNOWN} when the ID is not specified or it is not
+     * contained in the tables
+     */
+    public String getIdSymbol()
+    {
+        return idSymbol;
+    }
+
+    /**
+     * Obtains the symbols of the element classes that are contained in the tables. The returned
+     * array must not be modified.
+     * @return the class symbols (possibly empty)
+     */
+    public String[] getClassSymbols()
+    {
+        return classSymbols;
+    }
+
+    /**
+     * Checks whether the element has the given name.
+     * @param symbol the interned name; converted by {@link ElementMatcherCached#fold(String)}
+     * when the names are case-insensitive
+     * @return {@code true} when the element has the given name
+     */
+    public boolean hasName(String symbol)
+    {
+        if (nameSymbol != SymbolTable.UNKNOWN)
+            return nameSymbol == symbol;
+        else
+            return caseSensitiveNames ? name.equals(symbol) : name.equalsIgnoreCase(symbol);
+    }
+
+    /**
+     * Checks whether the element has the given ID.
+     * @param symbol the interned ID; converted by {@link ElementMatcherCached#fold(String)}
+     * when the values are case-insensitive
+     * @return {@code true} when the element has the given ID
+     */
+    public boolean hasId(String symbol)
+    {
+        if (idSymbol != SymbolTable.UNKNOWN)
+            return idSymbol == symbol;
+        else if (id.length() == 0)
+            return false;
+        else
+            return caseSensitiveValues ? id.equals(symbol) : id.equalsIgnoreCase(symbol);
+    }
+
+    /**
+     * Checks whether the element has the given class assigned.
+     * @param symbol the interned class name; converted by {@link ElementMatcherCached#fold(String)}
+     * when the values are case-insensitive
+     * @return {@code true} when any of the element classes matches the given class
+     */
+    public boolean hasClass(String symbol)
+    {
+        for (String cname : classSymbols)
+        {
+            if (cname == symbol)
+                return true;
+        }
+        if (!unknownClasses)
+            return false;
+
+        // some of the classes are not known, compare the original values
+        final int slen = symbol.length();
+        final int len = classes.length();
+        int start = -1;
+        for (int i = 0; i <= len; i++)
+        {
+            if (i == len || Character.isWhitespace(classes.charAt(i)))
+            {
+                if (start != -1)
+                {
+                    if (i - start == slen && regionEquals(classes, start, symbol, !caseSensitiveValues))
+                        return true;
+                    start = -1;
+                }
+            }
+            else if (start == -1)
+                start = i;
+        }
+        return false;
+    }
+
+    /**
+     * Splits the value of the class attribute to the individual class names. The names
+     * are separated by any white space characters (see {@link Character#isWhitespace(char)}).
+     * @param classes the value of the class attribute
+     * @param fold when {@code true}, the names are converted by {@link ElementMatcherCached#fold(String)}
+     * @return the list of the class names (possibly empty)
+     */
+    public static List<String> splitClasses(String classes, boolean fold)
+    {
+        final List<String> list = new ArrayList<String>();
+        final int len = classes.length();
+        int start = -1;
+        for (int i = 0; i <= len; i++)
+        {
+            if (i == len || Character.isWhitespace(classes.charAt(i)))
+            {
+                if (start != -1)
+                {
+                    final String cname = classes.substring(start, i);
+                    list.add(fold ? ElementMatcherCached.fold(cname) : cname);
+                    start = -1;
+                }
+            }
+            else if (start == -1)
+                start = i;
+        }
+        return list;
+    }
+
+    @Override
+    public String toString()
+    {
+        return getName() + (id.length() == 0 ? "" : "#" + getId()) + getClassList();
+    }
+
+    //=========================================================================================
+
+    private static String resolve(SymbolTable[] symbols, String value, int start, int end, boolean fold)
+    {
+        for (SymbolTable table : symbols)
+        {
+            final String ret = table.get(value, start, end, fold);
+            if (ret != null)
+                return ret;
+        }
+        return SymbolTable.UNKNOWN;
+    }
+
+    /**
+     * Compares a part of a value with a symbol. When folding, the value characters are converted
+     * to lower case in the same way as {@link ElementMatcherCached#fold(String)} does.
+     */
+    private static boolean regionEquals(String value, int start, String symbol, boolean fold)
+    {
+        for (int i = 0; i < symbol.length(); i++)
+        {
+            final char c = value.charAt(start + i);
+            if (symbol.charAt(i) != (fold ? Character.toLowerCase(c) : c))
+                return false;
+        }
+        return true;
+    }
+
+    private static int countClasses(String value)
+    {
+        int ret = 0;
+        boolean inside = false;
+        for (int i = 0; i < value.length(); i++)
+        {
+            if (Character.isWhitespace(value.charAt(i)))
+                inside = false;
+            else if (!inside)
+            {
+                inside = true;
+                ret++;
+            }
+        }
+        return ret;
+    }
+
+}
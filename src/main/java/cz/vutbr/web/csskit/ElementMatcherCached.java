@@ -0,0 +1,316 @@
+package cz.vutbr.web.csskit;
+
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.w3c.dom.Element;
+
+import cz.vutbr.web.css.ElementMatcher;
+import cz.vutbr.web.css.Selector;
+
+/**
+ * An element matcher that obtains the name, ID and classes of each element only once
+ * and keeps them as {@link ElementFacts} for all the subsequent matching. The facts are
+ * obtained from another matcher and they are converted to lower case when the corresponding
+ * matching is case-insensitive. The attributes are matched by the original matcher.
+ * The element values are resolved against the {@link SymbolTable}s of the selector names
+ * given to the matcher so that they are never interned.
+ * 
+ * The facts are kept until {@link #clear()} is called. Therefore, this matcher may be only used
+ * for a DOM that is not modified, usually during a single traversal of the DOM.
+ */
+public class ElementMatcherCached implements ElementMatcher
+{
+    private final ElementMatcher matcher;
+    private final boolean caseSensitiveNames;
+    private final boolean caseSensitiveValues;
+    private final SymbolTable[] symbols;
+    private final Map<Element, ElementFacts> facts;
+
+    /**
+     * Creates a new matcher.
+     * @param matcher the matcher used for obtaining the facts and for matching the attributes
+     * @param caseSensitiveNames {@code true} when the element names should be matched case-sensitively
+     * @param caseSensitiveValues {@code true} when the IDs and class names should be matched case-sensitively
+     */
+    public ElementMatcherCached(ElementMatcher matcher, boolean caseSensitiveNames, boolean caseSensitiveValues)
+    {
+        this(matcher, caseSensitiveNames, caseSensitiveValues, null);
+    }
+
+    /**
+     * Creates a new matcher that resolves the element values against the given symbol tables.
+     * @param matcher the matcher used for obtaining the facts and for matching the attributes
+     * @param caseSensitiveNames {@code true} when the element names should be matched case-sensitively
+     * @param caseSensitiveValues {@code true} when the IDs and class names should be matched case-sensitively
+     * @param symbols the symbol tables of the selectors that will be matched or {@code null} when not available
+     */
+    public ElementMatcherCached(ElementMatcher matcher, boolean caseSensitiveNames, boolean caseSensitiveValues,
+            SymbolTable[] symbols)
+    {
+        this.matcher = matcher;
+        this.caseSensitiveNames = caseSensitiveNames;
+        this.caseSensitiveValues = caseSensitiveValues;
+        this.symbols = (symbols == null) ? new SymbolTable[0] : symbols;
+        this.facts = new IdentityHashMap<Element, ElementFacts>();
+    }
+
+    /**
+     * Creates a caching matcher that is equivalent to one of the standard matchers.
+     * @param matcher the matcher to be used for obtaining the facts
+     * @return the new caching matcher or {@code null} when the case sensitivity of the given matcher is not known
+     */
+    public static ElementMatcherCached create(ElementMatcher matcher)
+    {
+        return create(matcher, null);
+    }
+
+    /**
+     * Creates a caching matcher that is equivalent to one of the standard matchers and that resolves
+     * the element values against the given symbol tables.
+     * @param matcher the matcher to be used for obtaining the facts
+     * @param symbols the symbol tables of the selectors that will be matched or {@code null} when not available
+     * @return the new caching matcher or {@code null} when the case sensitivity of the given matcher is not known
+     */
+    public static ElementMatcherCached create(ElementMatcher matcher, SymbolTable[] symbols)
+    {
+        final Class<?> clazz = (matcher == null) ? null : matcher.getClass();
+        if (clazz == ElementMatcherSafeCS.class || clazz == ElementMatcherSimpleCS.class)
+            return new ElementMatcherCached(matcher, true, true, symbols);
+        else if (clazz == ElementMatcherSafeStd.class || clazz == ElementMatcherSimpleStd.class)
+            return new ElementMatcherCached(matcher, false, true, symbols);
+        else if (clazz == ElementMatcherSafeCI.class || clazz == ElementMatcherSimpleCI.class)
+            return new ElementMatcherCached(matcher, false, false, symbols);
+        else
+            return null;
+    }
+
+    /**
+     * Checks whether the element names are compared case-sensitively.
+     * @return {@code true} for case sensitive names
+     */
+    public boolean isCaseSensitiveNames()
+    {
+        return caseSensitiveNames;
+    }
+
+    /**
+     * Checks whether the IDs and class names are compared case-sensitively.
+     * @return {@code true} for case sensitive values
+     */
+    public boolean isCaseSensitiveValues()
+    {
+        return caseSensitiveValues;
+    }
+
+    /**
+     * Checks whether the element values are resolved against the given symbol table. When they are,
+     * the values that are not contained in any of the tables are known not to be used by any selector
+     * registered in the given table.
+     * @param table the symbol table
+     * @return {@code true} when the table is one of the tables of this matcher
+     */
+    public boolean resolves(SymbolTable table)
+    {
+        for (SymbolTable t : symbols)
+        {
+            if (t == table)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Obtains the key used for a symbol by the classified rules.
+     * @param symbol the symbol obtained from the element facts
+     * @return the lower-case form of the symbol or {@code null} when the symbol is not known
+     * @see SymbolTable#getKey(String)
+     */
+    public String getKey(String symbol)
+    {
+        for (SymbolTable t : symbols)
+        {
+            final String ret = t.getKey(symbol);
+            if (ret != null)
+                return ret;
+        }
+        return null;
+    }
+
+    /**
+     * Obtains the facts about the given element. The facts are created when the element
+     * is used for the first time.
+     * @param e the DOM element
+     * @return the element facts
+     */
+    public ElementFacts getFacts(Element e)
+    {
+        ElementFacts ret = facts.get(e);
+        if (ret == null)
+        {
+            ret = createFacts(e);
+            facts.put(e, ret);
+        }
+        return ret;
+    }
+
+    /**
+     * Forgets all the element facts.
+     */
+    public void clear()
+    {
+        facts.clear();
+    }
+
+    /**
+     * Obtains the number of the elements whose facts are currently kept.
+     * @return the number of elements
+     */
+    public int size()
+    {
+        return facts.size();
+    }
+
+    //=========================================================================================
+
+    public String getAttribute(Element e, String name)
+    {
+        return matcher.getAttribute(e, name);
+    }
+
+    public Collection<String> elementClasses(Element e)
+    {
+        return getFacts(e).getClassList();
+    }
+
+    public boolean matchesClass(Element e, String className)
+    {
+        for (String cname : getFacts(e).getClassList())
+        {
+            if (caseSensitiveValues ? cname.equals(className) : cname.equalsIgnoreCase(className))
+                return true;
+        }
+        return false;
+    }
+
+    public String elementID(Element e)
+    {
+        return getFacts(e).getId();
+    }
+
+    public boolean matchesID(Element e, String id)
+    {
+        final String eid = getFacts(e).getId();
+        return caseSensitiveValues ? id.equals(eid) : id.equalsIgnoreCase(eid);
+    }
+
+    public String elementName(Element e)
+    {
+        return getFacts(e).getName();
+    }
+
+    public boolean matchesName(Element e, String name)
+    {
+        final String ename = getFacts(e).getName();
+        return caseSensitiveNames ? name.equals(ename) : name.equalsIgnoreCase(ename);
+    }
+
+    public boolean matchesAttribute(Element e, String name, String value, Selector.Operator o)
+    {
+        return matcher.matchesAttribute(e, name, value, o);
+    }
+
+    /**
+     * Checks whether the element has the given name using the interned symbols.
+     * @param e the DOM element
+     * @param symbol the interned element name
+     * @param foldedSymbol the interned element name converted by {@link #fold(String)}
+     * @return {@code true} when the element has the given name
+     */
+    public boolean matchesNameSymbol(Element e, String symbol, String foldedSymbol)
+    {
+        return matchesNameSymbol(getFacts(e), symbol, foldedSymbol);
+    }
+
+    /**
+     * Checks whether the element described by the facts has the given name using the interned symbols.
+     * @param facts the element facts created by this matcher
+     * @param symbol the interned element name
+     * @param foldedSymbol the interned element name converted by {@link #fold(String)}
+     * @return {@code true} when the element has the given name
+     */
+    public boolean matchesNameSymbol(ElementFacts facts, String symbol, String foldedSymbol)
+    {
+        return facts.hasName(caseSensitiveNames ? symbol : foldedSymbol);
+    }
+
+    /**
+     * Checks whether the element has the given ID using the interned symbols.
+     * @param e the DOM element
+     * @param symbol the interned ID
+     * @param foldedSymbol the interned ID converted by {@link #fold(String)}
+     * @return {@code true} when the element has the given ID
+     */
+    public boolean matchesIDSymbol(Element e, String symbol, String foldedSymbol)
+    {
+        return matchesIDSymbol(getFacts(e), symbol, foldedSymbol);
+    }
+
+    /**
+     * Checks whether the element described by the facts has the given ID using the interned symbols.
+     * @param facts the element facts created by this matcher
+     * @param symbol the interned ID
+     * @param foldedSymbol the interned ID converted by {@link #fold(String)}
+     * @return {@code true} when the element has the given ID
+     */
+    public boolean matchesIDSymbol(ElementFacts facts, String symbol, String foldedSymbol)
+    {
+        return facts.hasId(caseSensitiveValues ? symbol : foldedSymbol);
+    }
+
+    /**
+     * Checks whether the element has the given class assigned using the interned symbols.
+     * @param e the DOM element
+     * @param symbol the interned class name
+     * @param foldedSymbol the interned class name converted by {@link #fold(String)}
+     * @return {@code true} when any of the element classes matches the given class
+     */
+    public boolean matchesClassSymbol(Element e, String symbol, String foldedSymbol)
+    {
+        return matchesClassSymbol(getFacts(e), symbol, foldedSymbol);
+    }
+
+    /**
+     * Checks whether the element described by the facts has the given class assigned using the interned symbols.
+     * @param facts the element facts created by this matcher
+     * @param symbol the interned class name
+     * @param foldedSymbol the interned class name converted by {@link #fold(String)}
+     * @return {@code true} when any of the element classes matches the given class
+     */
+    public boolean matchesClassSymbol(ElementFacts facts, String symbol, String foldedSymbol)
+    {
+        return facts.hasClass(caseSensitiveValues ? symbol : foldedSymbol);
+    }
+
+    /**
+     * Converts a name or a value to the form used for the case-insensitive matching.
+     * @param value the value to be converted
+     * @return the lower-case value
+     */
+    public static String fold(String value)
+    {
+        return value.toLowerCase(Locale.ROOT);
+    }
+
+    //=========================================================================================
+
+    private ElementFacts createFacts(Element e)
+    {
+        return new ElementFacts(matcher.elementName(e), matcher.elementID(e),
+                matcher.getAttribute(e, ElementMatcherSafeCI.CLASS_ATTR),
+                caseSensitiveNames, caseSensitiveValues, symbols);
+    }
+
+}
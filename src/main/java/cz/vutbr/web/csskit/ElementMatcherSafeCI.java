@@ -5,7 +5,6 @@
  */
 package cz.vutbr.web.csskit;
 
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 
@@ -40,16 +39,7 @@ public class ElementMatcherSafeCI implements ElementMatcher
     {
         if (e.hasAttribute(CLASS_ATTR))
         {
-            String classNames = getAttribute(e, CLASS_ATTR);
-            
-            Collection<String> list = new ArrayList<String>();
-            for (String cname : classNames.toLowerCase().split(CLASS_DELIM)) 
-            {
-                cname = cname.trim();
-                if(cname.length() > 0)
-                    list.add(cname);
-            }
-            return list;
+            return ElementFacts.splitClasses(getAttribute(e, CLASS_ATTR), true);
         }
         else
             return Collections.emptyList();
@@ -59,9 +49,9 @@ public class ElementMatcherSafeCI implements ElementMatcher
     {
         if (e.hasAttribute(CLASS_ATTR))
         {
-            String classNames = getAttribute(e, CLASS_ATTR).toLowerCase();
-            String search = className.toLowerCase();
-            int len = className.length();
+            String classNames = ElementMatcherCached.fold(getAttribute(e, CLASS_ATTR));
+            String search = ElementMatcherCached.fold(className);
+            int len = search.length();
             int lastIndex = 0;
             
             while ((lastIndex = classNames.indexOf(search, lastIndex)) != -1) {
@@ -5,7 +5,6 @@
  */
 package cz.vutbr.web.csskit;
 
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 
@@ -40,16 +39,7 @@ public class ElementMatcherSafeCS implements ElementMatcher
     {
         if (e.hasAttribute(CLASS_ATTR))
         {
-            String classNames = getAttribute(e, CLASS_ATTR);
-            
-            Collection<String> list = new ArrayList<String>();
-            for (String cname : classNames.split(CLASS_DELIM)) 
-            {
-                cname = cname.trim();
-                if(cname.length() > 0)
-                    list.add(cname);
-            }
-            return list;
+            return ElementFacts.splitClasses(getAttribute(e, CLASS_ATTR), false);
         }
         else
             return Collections.emptyList();
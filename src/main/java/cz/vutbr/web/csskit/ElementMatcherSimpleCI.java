@@ -5,7 +5,6 @@
  */
 package cz.vutbr.web.csskit;
 
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 
@@ -40,14 +39,7 @@ public class ElementMatcherSimpleCI implements ElementMatcher
         final String classNames = e.getAttribute(CLASS_ATTR);
         if (!classNames.isEmpty())
         {
-            Collection<String> list = new ArrayList<String>();
-            for (String cname : classNames.toLowerCase().split(CLASS_DELIM)) 
-            {
-                cname = cname.trim();
-                if(cname.length() > 0)
-                    list.add(cname);
-            }
-            return list;
+            return ElementFacts.splitClasses(classNames, true);
         }
         else
             return Collections.emptyList();
@@ -55,11 +47,11 @@ public class ElementMatcherSimpleCI implements ElementMatcher
     
     public boolean matchesClass(final Element e, final String className)
     {
-        final String classNames = e.getAttribute(CLASS_ATTR).toLowerCase();
+        final String classNames = ElementMatcherCached.fold(e.getAttribute(CLASS_ATTR));
         if (!classNames.isEmpty())
         {
-            final String search = className.toLowerCase();
-            final int len = className.length();
+            final String search = ElementMatcherCached.fold(className);
+            final int len = search.length();
             int lastIndex = 0;
             
             while ((lastIndex = classNames.indexOf(search, lastIndex)) != -1) {
@@ -5,7 +5,6 @@
  */
 package cz.vutbr.web.csskit;
 
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 
@@ -40,14 +39,7 @@ public class ElementMatcherSimpleCS implements ElementMatcher
         final String classNames = e.getAttribute(CLASS_ATTR);
         if (!classNames.isEmpty())
         {
-            Collection<String> list = new ArrayList<String>();
-            for (String cname : classNames.split(CLASS_DELIM)) 
-            {
-                cname = cname.trim();
-                if(cname.length() > 0)
-                    list.add(cname);
-            }
-            return list;
+            return ElementFacts.splitClasses(classNames, false);
         }
         else
             return Collections.emptyList();
@@ -0,0 +1,196 @@
+package cz.vutbr.web.csskit;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+import cz.vutbr.web.css.AsyncNetworkProcessor;
+import cz.vutbr.web.css.NetworkProcessor;
+
+/**
+ * An asynchronous network processor that runs the fetches of a synchronous {@link NetworkProcessor}
+ * using an executor. At most the given number of fetches run concurrently; the remaining
+ * fetches wait in a queue without occupying the executor threads.
+ *
+ * The executor should not be shared with the tasks that wait for the fetched resources. Otherwise,
+ * the waiting tasks may occupy all the threads and the fetches would never run.
+ */
+public class ExecutorNetworkProcessor implements AsyncNetworkProcessor, NetworkProcessor
+{
+    private final NetworkProcessor network;
+    private final Executor executor;
+    private final int maxFetches;
+
+    /** Number of the running fetches */
+    private int running;
+    /** Fetches waiting for a free slot */
+    private final Queue<FetchTask> waiting;
+
+    /**
+     * Creates the processor that uses the default network processor.
+     * @param executor the executor used for running the fetches
+     * @param maxFetches the maximal number of concurrently running fetches
+     */
+    public ExecutorNetworkProcessor(Executor executor, int maxFetches)
+    {
+        this(new DefaultNetworkProcessor(), executor, maxFetches);
+    }
+
+    /**
+     * Creates the processor.
+     * @param network the network processor used for the individual fetches
+     * @param executor the executor used for running the fetches
+     * @param maxFetches the maximal number of concurrently running fetches
+     */
+    public ExecutorNetworkProcessor(NetworkProcessor network, Executor executor, int maxFetches)
+    {
+        if (maxFetches < 1)
+            throw new IllegalArgumentException("At least one concurrent fetch must be allowed");
+        this.network = network;
+        this.executor = executor;
+        this.maxFetches = maxFetches;
+        this.waiting = new LinkedList<FetchTask>();
+    }
+
+    /**
+     * Obtains the maximal number of concurrently running fetches.
+     * @return the number of fetches
+     */
+    public int getMaxFetches()
+    {
+        return maxFetches;
+    }
+
+    public Future<InputStream> fetchAsync(URL url)
+    {
+        return fetchAsync(url, null);
+    }
+
+    public Future<InputStream> fetchAsync(final URL url, final Callback callback)
+    {
+        final FetchTask task = new FetchTask(new Callable<InputStream>() {
+            public InputStream call() throws IOException
+            {
+                return network.fetch(url);
+            }
+        }, callback);
+
+        boolean start;
+        synchronized (this)
+        {
+            start = running < maxFetches;
+            if (start)
+                running++;
+            else
+                waiting.add(task);
+        }
+        if (start)
+            start(task);
+        return task;
+    }
+
+    /**
+     * Fetches the resource synchronously using the asynchronous processor. The number of the
+     * concurrently running fetches is limited the same way as for the asynchronous fetches.
+     */
+    public InputStream fetch(URL url) throws IOException
+    {
+        return getStream(fetchAsync(url));
+    }
+
+    /**
+     * Waits for a future input stream.
+     * @param future the future stream obtained from an asynchronous network processor
+     * @return the input stream
+     * @throws IOException when the resource could not be fetched or the waiting was interrupted
+     */
+    public static InputStream getStream(Future<InputStream> future) throws IOException
+    {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while fetching the resource");
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            else if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            else if (cause instanceof Error)
+                throw (Error) cause;
+            else
+                throw new IOException(cause.getMessage());
+        }
+    }
+
+    //=========================================================================================
+
+    /**
+     * Runs a fetch using the executor. When the executor rejects the fetch, the fetch fails
+     * and its slot is released.
+     */
+    private void start(FetchTask task)
+    {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.fail(e);
+        }
+    }
+
+    /**
+     * Starts a waiting fetch (if any) when a fetch finishes.
+     */
+    private void fetchFinished(FetchTask task)
+    {
+        FetchTask next;
+        synchronized (this)
+        {
+            if (task.isCancelled() && waiting.remove(task))
+                return; //cancelled before it was started
+            next = waiting.poll();
+            if (next == null)
+                running--;
+        }
+        if (next != null)
+            start(next);
+    }
+
+    /**
+     * A single fetch that releases its slot and notifies the callback when finished.
+     */
+    private class FetchTask extends FutureTask<InputStream>
+    {
+        private final Callback callback;
+
+        public FetchTask(Callable<InputStream> fetch, Callback callback)
+        {
+            super(fetch);
+            this.callback = callback;
+        }
+
+        public void fail(Throwable cause)
+        {
+            setException(cause);
+        }
+
+        @Override
+        protected void done()
+        {
+            fetchFinished(this);
+            if (callback != null)
+                callback.fetched(this);
+        }
+    }
+
+}
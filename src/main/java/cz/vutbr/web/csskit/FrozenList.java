@@ -0,0 +1,67 @@
+package cz.vutbr.web.csskit;
+
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * An immutable list backed by an array. It is used for the contents of the frozen rules and term lists.
+ * All the modification attempts throw an {@link UnsupportedOperationException}.
+ *
+ * @param <T> the list item type
+ */
+final class FrozenList<T> extends AbstractList<T> implements RandomAccess
+{
+    private final Object[] items;
+
+    /**
+     * Creates a frozen copy of a collection.
+     * @param src the source collection
+     */
+    public FrozenList(Collection<? extends T> src)
+    {
+        this.items = src.toArray();
+    }
+
+    @Override
+    public int size()
+    {
+        return items.length;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int index)
+    {
+        return (T) items[index];
+    }
+
+    @Override
+    public Iterator<T> iterator()
+    {
+        return new Iterator<T>() {
+            private int pos = 0;
+
+            public boolean hasNext()
+            {
+                return pos < items.length;
+            }
+
+            @SuppressWarnings("unchecked")
+            public T next()
+            {
+                if (pos >= items.length)
+                    throw new NoSuchElementException();
+                return (T) items[pos++];
+            }
+
+            public void remove()
+            {
+                throw new UnsupportedOperationException("The list is frozen");
+            }
+        };
+    }
+
+}
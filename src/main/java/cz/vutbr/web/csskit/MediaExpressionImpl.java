@@ -29,6 +29,7 @@ public class MediaExpressionImpl extends AbstractRule<Term<?>> implements MediaE
     @Override
     public void setFeature(String feature)
     {
+        checkModifiable();
         this.feature = feature.trim().toLowerCase(Locale.ENGLISH);
     }
 
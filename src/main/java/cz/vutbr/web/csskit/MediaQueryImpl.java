@@ -42,6 +42,7 @@ public class MediaQueryImpl extends AbstractRule<MediaExpression> implements Med
     @Override
     public void setNegative(boolean negative)
     {
+        checkModifiable();
         this.negative = negative;
     }
 
@@ -54,6 +55,7 @@ public class MediaQueryImpl extends AbstractRule<MediaExpression> implements Med
     @Override
     public void setType(String type)
     {
+        checkModifiable();
         this.type = type;
     }
 
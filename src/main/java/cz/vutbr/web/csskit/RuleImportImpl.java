@@ -29,6 +29,7 @@ public class RuleImportImpl extends AbstractRuleBlock<String> implements RuleImp
     }
 
     public RuleImport setURI(String uri) {
+        checkModifiable();
 
     	// sanity check
     	if(uri == null) 
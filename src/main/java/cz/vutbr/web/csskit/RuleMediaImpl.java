@@ -34,10 +34,25 @@ public class RuleMediaImpl extends AbstractRuleBlock<RuleSet> implements RuleMed
 
 	@Override
 	public RuleMedia setMediaQueries(List<MediaQuery> medias) {
+		checkModifiable();
 		this.media = medias;
 		return this;
 	}
 	
+	/**
+	 * Freezes the contained rule sets together with the media queries.
+	 */
+	@Override
+	public RuleMedia freeze() {
+		if (!frozen) {
+			for (MediaQuery q : media)
+				q.freeze();
+			media = new FrozenList<MediaQuery>(media);
+			super.freeze();
+		}
+		return this;
+	}
+
     @Override
     public void setStyleSheet(StyleSheet stylesheet)
     {
@@ -41,6 +41,7 @@ public class RulePageImpl extends AbstractRuleBlock<Rule<?>> implements RulePage
 	 * @return Modified instance
 	 */
 	public RulePage setName(String name) {
+		checkModifiable();
 		this.name = name;
 		return this;
 	}
@@ -58,6 +59,7 @@ public class RulePageImpl extends AbstractRuleBlock<Rule<?>> implements RulePage
 	 * @return Modified instance
 	 */
 	public RulePage setPseudo(String pseudo) {
+		checkModifiable();
 		this.pseudo = pseudo;
 		return this;
 	}
@@ -37,10 +37,10 @@ public class RuleSetImpl extends AbstractRuleBlock<Declaration> implements RuleS
 	
 	
     /**
-	 * @return the selectors
+	 * @return the selectors; a copy of the selectors when the rule set is frozen
 	 */
 	public CombinedSelector[] getSelectors() {
-		return selectors;
+		return frozen ? selectors.clone() : selectors;
 	}
 
 	/**
@@ -48,10 +48,24 @@ public class RuleSetImpl extends AbstractRuleBlock<Declaration> implements RuleS
 	 * @return Modified instance
 	 */
 	public RuleSet setSelectors(List<CombinedSelector> selectors) {
+		checkModifiable();
 		this.selectors = selectors.toArray(new CombinedSelector[selectors.size()]);
 		return this;
 	}
 
+	/**
+	 * Freezes the declarations together with the selectors.
+	 */
+	@Override
+	public RuleSet freeze() {
+		if (!frozen) {
+			for (CombinedSelector cs : selectors)
+				cs.freeze();
+			super.freeze();
+		}
+		return this;
+	}
+
 	@Override
     public String toString() {
     	return this.toString(0);
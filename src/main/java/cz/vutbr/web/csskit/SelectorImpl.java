@@ -38,6 +38,7 @@ public class SelectorImpl extends AbstractRule<Selector.SelectorPart> implements
 	 * @param combinator the combinator to set
 	 */
 	public Selector setCombinator(Combinator combinator) {
+		checkModifiable();
 		this.combinator = combinator;
 		return this;
 	}
@@ -88,7 +89,7 @@ public class SelectorImpl extends AbstractRule<Selector.SelectorPart> implements
             if(item instanceof PseudoPage)
             {
                 final PseudoDeclaration ret = ((PseudoPage)item).getDeclaration();
-                if (ret.isPseudoElement()) {
+                if (ret != null && ret.isPseudoElement()) {
                     return ret; //pseudo-elements may only be appended after the last simple selector of the selector
                 }
             }
@@ -173,17 +174,45 @@ public class SelectorImpl extends AbstractRule<Selector.SelectorPart> implements
 		return true;
 	}
 
-	 
     // ============================================================
     // implementation of intern classes	
 
+    /**
+     * The frozen state common to all the selector parts.
+     */
+    public static abstract class AbstractSelectorPart implements SelectorPart {
+        
+        private boolean frozen = false;
+        
+        public SelectorPart freeze() {
+            frozen = true;
+            return this;
+        }
+        
+        public boolean isFrozen() {
+            return frozen;
+        }
+        
+        /**
+         * Checks whether the part may be modified.
+         * @throws UnsupportedOperationException when the part has been frozen
+         */
+        protected void checkModifiable() {
+            if (frozen)
+                throw new UnsupportedOperationException("The selector part is frozen: " + getClass().getSimpleName());
+        }
+    }
+
 	/**
      * Element name
      * @author kapy
      */
-    public static class ElementNameImpl implements ElementName {    	 
+    public static class ElementNameImpl extends AbstractSelectorPart implements ElementName {    	 
 		
     	private String name;
+    	/** Interned name and its lower-case variant for matching the element facts */
+    	private String symbol;
+    	private String foldedSymbol;
     	
     	protected ElementNameImpl(String name) {
     		setName(name);
@@ -196,6 +225,8 @@ public class SelectorImpl extends AbstractRule<Selector.SelectorPart> implements
 		
 		public boolean matches(Element e, ElementMatcher matcher, MatchCondition cond) {
 			if(name!=null && WILDCARD.equals(name)) return true;
+			if (matcher instanceof ElementMatcherCached)
+			    return ((ElementMatcherCached) matcher).matchesNameSymbol(e, symbol, foldedSymbol);
 			return matcher.matchesName(e, name);
 		}	
 		
@@ -204,12 +235,31 @@ public class SelectorImpl extends AbstractRule<Selector.SelectorPart> implements
 		}
 		
 		public ElementName setName(String name) {
+			checkModifiable();
 			if(name == null)
 				throw new IllegalArgumentException("Invalid element name (null)");
 				
 			this.name = name;
+			this.symbol = SymbolTable.symbol(name);
+			this.foldedSymbol = SymbolTable.foldedSymbol(name);
 			return this;
 		}
+
+		/**
+		 * Obtains the interned name used for matching the element facts.
+		 * @return the name converted by {@link SymbolTable#symbol(String)}
+		 */
+		public String getSymbol() {
+		    return symbol;
+		}
+		
+		/**
+		 * Obtains the interned lower-case name used for matching the element facts.
+		 * @return the name converted by {@link SymbolTable#foldedSymbol(String)}
+		 */
+		public String getFoldedSymbol() {
+		    return foldedSymbol;
+		}
 		
 		@Override
 		public String toString() {
@@ -254,9 +304,12 @@ public class SelectorImpl extends AbstractRule<Selector.SelectorPart> implements
      * @author kapy
      *
      */
-    public static class ElementClassImpl implements ElementClass {
+    public static class ElementClassImpl extends AbstractSelectorPart implements ElementClass {
 
     	private String className;
+    	/** Interned class name and its lower-case variant for matching the element facts */
+    	private String symbol;
+    	private String foldedSymbol;
     	
     	protected ElementClassImpl(String className) {
     		setClassName(className);
@@ -267,6 +320,8 @@ public class SelectorImpl extends AbstractRule<Selector.SelectorPart> implements
     	}
     	
     	public boolean matches(Element e, ElementMatcher matcher, MatchCondition cond) {
+    		if (matcher instanceof ElementMatcherCached)
+    		    return ((ElementMatcherCached) matcher).matchesClassSymbol(e, symbol, foldedSymbol);
     		return matcher.matchesClass(e, className);
     	}
     	
@@ -275,12 +330,31 @@ public class SelectorImpl extends AbstractRule<Selector.SelectorPart> implements
 		}
     	
 		public ElementClass setClassName(String className) {
+			checkModifiable();
 			if(className == null)
 				throw new IllegalArgumentException("Invalid element class (null)");
 			
 			this.className = className;
+			this.symbol = SymbolTable.symbol(className);
+			this.foldedSymbol = SymbolTable.foldedSymbol(className);
 			return this;
 		}
+
+		/**
+		 * Obtains the interned class name used for matching the element facts.
+		 * @return the class name converted by {@link SymbolTable#symbol(String)}
+		 */
+		public String getSymbol() {
+		    return symbol;
+		}
+		
+		/**
+		 * Obtains the interned lower-case class name used for matching the element facts.
+		 * @return the class name converted by {@link SymbolTable#foldedSymbol(String)}
+		 */
+		public String getFoldedSymbol() {
+		    return foldedSymbol;
+		}
     	
     	@Override
     	public String toString() {
@@ -325,7 +399,7 @@ public class SelectorImpl extends AbstractRule<Selector.SelectorPart> implements
      * @author kapy
      *
      */
-    public static class PseudoPageImpl implements PseudoPage {
+    public static class PseudoPageImpl extends AbstractSelectorPart implements PseudoPage {
     	
         private static HashMap<String, PseudoDeclaration> PSEUDO_DECLARATIONS;
         static {
@@ -387,6 +461,7 @@ public class SelectorImpl extends AbstractRule<Selector.SelectorPart> implements
 		 * @param functionName the functionName to set
 		 */
 		public PseudoPage setFunctionName(String functionName) {			
+			checkModifiable();
 			this.functionName = functionName;
             inferDeclaration();
             decodeValue();
@@ -510,6 +585,17 @@ public class SelectorImpl extends AbstractRule<Selector.SelectorPart> implements
 			return false;
 		}
 		
+		/**
+		 * Checks whether an element position matches the <code>an+b</code> index specification
+		 * of this pseudo class.
+		 * @param pos The element position according to the counting criteria of the pseudo class.
+		 * @return <code>true</code> when the position matches the index.
+		 */
+		public boolean matchesPosition(int pos)
+		{
+		    return positionMatches(pos, elementIndex);
+		}
+		
 		/**
 		 * Checks whether the element position matches a <code>an+b</code> index specification.
 		 * @param pos The element position according to some counting criteria.
@@ -645,6 +731,7 @@ public class SelectorImpl extends AbstractRule<Selector.SelectorPart> implements
 		 * @param value New value
 		 */
 		public PseudoPage setValue(String value) {
+			checkModifiable();
 			this.value = value;
 			inferDeclaration();
 			decodeValue();
@@ -745,9 +832,12 @@ public class SelectorImpl extends AbstractRule<Selector.SelectorPart> implements
      * @author kapy
      *
      */
-    public static class ElementIDImpl implements ElementID {
+    public static class ElementIDImpl extends AbstractSelectorPart implements ElementID {
     	
     	private String id;
+    	/** Interned ID and its lower-case variant for matching the element facts */
+    	private String symbol;
+    	private String foldedSymbol;
     	
     	protected ElementIDImpl(String value) {
     		setID(value);
@@ -758,16 +848,37 @@ public class SelectorImpl extends AbstractRule<Selector.SelectorPart> implements
 		}    	
     	
     	public boolean matches(Element e, ElementMatcher matcher, MatchCondition cond) {
+    		if (matcher instanceof ElementMatcherCached)
+    		    return ((ElementMatcherCached) matcher).matchesIDSymbol(e, symbol, foldedSymbol);
     		return matcher.matchesID(e, id);
     	}
     	
     	public ElementID setID(String id) {
+    		checkModifiable();
     		if(id==null)
     			throw new IllegalArgumentException("Invalid element ID (null)");
     		
     		this.id = id;
+    		this.symbol = SymbolTable.symbol(id);
+    		this.foldedSymbol = SymbolTable.foldedSymbol(id);
     		return this;
     	}
+
+		/**
+		 * Obtains the interned ID used for matching the element facts.
+		 * @return the ID converted by {@link SymbolTable#symbol(String)}
+		 */
+		public String getSymbol() {
+		    return symbol;
+		}
+		
+		/**
+		 * Obtains the interned lower-case ID used for matching the element facts.
+		 * @return the ID converted by {@link SymbolTable#foldedSymbol(String)}
+		 */
+		public String getFoldedSymbol() {
+		    return foldedSymbol;
+		}
     	
     	public String getID() {
     		return id;
@@ -817,7 +928,7 @@ public class SelectorImpl extends AbstractRule<Selector.SelectorPart> implements
      * @author kapy
      *
      */
-    public static class ElementAttributeImpl implements ElementAttribute {
+    public static class ElementAttributeImpl extends AbstractSelectorPart implements ElementAttribute {
     	
     	/** Operator between attribute and value */
     	private Operator operator;
@@ -844,6 +955,7 @@ public class SelectorImpl extends AbstractRule<Selector.SelectorPart> implements
 		 * @param operator the operator to set
 		 */
 		public void setOperator(Operator operator) {
+			checkModifiable();
 			this.operator = operator;
 		}
 
@@ -862,6 +974,7 @@ public class SelectorImpl extends AbstractRule<Selector.SelectorPart> implements
 		 * @param name the attribute to set
 		 */
 		public ElementAttribute setAttribute(String name) {
+			checkModifiable();
 			this.attribute = name;
 			return this;
 		}
@@ -879,6 +992,7 @@ public class SelectorImpl extends AbstractRule<Selector.SelectorPart> implements
 		}
 		
     	public ElementAttribute setValue(String value) {
+    		checkModifiable();
     		this.value = value;
     		return this;
     	}
@@ -955,7 +1069,7 @@ public class SelectorImpl extends AbstractRule<Selector.SelectorPart> implements
 		
     }
     
-    public static class ElementDOMImpl implements ElementDOM {
+    public static class ElementDOMImpl extends AbstractSelectorPart implements ElementDOM {
  
         /** The element used as the selector */
     	private Element elem;
@@ -972,6 +1086,7 @@ public class SelectorImpl extends AbstractRule<Selector.SelectorPart> implements
 		}
 
 		public ElementDOM setElement(Element e) {
+			checkModifiable();
 			this.elem = e;
 			return this;
 		}
@@ -21,6 +21,7 @@ public class StyleSheetImpl extends AbstractRule<RuleBlock<?>> implements StyleS
 	@Override
 	public void setOrigin(Origin o)
 	{
+		checkModifiable();
 		this.origin = o;
 	}
 
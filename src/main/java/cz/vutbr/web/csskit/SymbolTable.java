@@ -0,0 +1,175 @@
+package cz.vutbr.web.csskit;
+
+/**
+ * A table of the element names, IDs and class names used in the selectors (the symbols).
+ * Each symbol is kept as a single interned instance in its original and its lower-case form.
+ * The values found in a document are resolved to the symbols without creating or interning
+ * any strings so that they may be compared with the selectors by reference. The values that
+ * are not used by any selector in the table resolve to {@code null}.
+ *
+ * The table is filled while the selectors are compiled. It may be read by several threads
+ * at the same time as long as no symbols are being added.
+ */
+public final class SymbolTable
+{
+    /**
+     * The symbol used for the document values that are not contained in any of the available tables.
+     * It is a unique instance that is never identical to any symbol.
+     */
+    public static final String UNKNOWN = new String("");
+
+    private String[] symbols;
+    private String[] keys;
+    private int count;
+
+    /**
+     * Creates an empty table.
+     */
+    public SymbolTable()
+    {
+        symbols = new String[32];
+        keys = new String[32];
+    }
+
+    /**
+     * Converts a name used in a selector to its symbol.
+     * @param literal the name used in the selector
+     * @return the interned name
+     */
+    public static String symbol(String literal)
+    {
+        return literal.intern();
+    }
+
+    /**
+     * Converts a name used in a selector to its symbol used for the case-insensitive matching.
+     * @param literal the name used in the selector
+     * @return the interned name converted by {@link ElementMatcherCached#fold(String)}
+     */
+    public static String foldedSymbol(String literal)
+    {
+        return ElementMatcherCached.fold(literal).intern();
+    }
+
+    /**
+     * Adds a name used in a selector to the table. Both the {@link #symbol(String)} and
+     * {@link #foldedSymbol(String)} forms are added.
+     * @param literal the name used in the selector
+     */
+    public void add(String literal)
+    {
+        put(symbol(literal));
+        put(foldedSymbol(literal));
+    }
+
+    /**
+     * Obtains the number of symbols in the table.
+     * @return the number of distinct symbols
+     */
+    public int size()
+    {
+        return count;
+    }
+
+    /**
+     * Finds the symbol that is equal to a part of a string.
+     * @param value the string that contains the searched value
+     * @param start the start index of the value (inclusive)
+     * @param end the end index of the value (exclusive)
+     * @param fold when {@code true}, the value is converted to lower case before it is searched
+     * @return the symbol or {@code null} when the value is not contained in the table
+     */
+    public String get(String value, int start, int end, boolean fold)
+    {
+        int h = 0;
+        for (int i = start; i < end; i++)
+            h = 31 * h + (fold ? Character.toLowerCase(value.charAt(i)) : value.charAt(i));
+
+        final int len = end - start;
+        final int mask = symbols.length - 1;
+        for (int i = h & mask; symbols[i] != null; i = (i + 1) & mask)
+        {
+            final String s = symbols[i];
+            if (s.length() == len && s.hashCode() == h && equal(s, value, start, fold))
+                return s;
+        }
+        return null;
+    }
+
+    /**
+     * Finds the symbol that is equal to the given value.
+     * @param value the searched value
+     * @param fold when {@code true}, the value is converted to lower case before it is searched
+     * @return the symbol or {@code null} when the value is not contained in the table
+     */
+    public String get(String value, boolean fold)
+    {
+        return get(value, 0, value.length(), fold);
+    }
+
+    /**
+     * Obtains the key used for a symbol by the classified rules, i.e. the symbol converted to lower case.
+     * @param symbol the symbol obtained from this table
+     * @return the lower-case form of the symbol or {@code null} when the symbol is not contained in the table
+     */
+    public String getKey(String symbol)
+    {
+        final int mask = symbols.length - 1;
+        for (int i = symbol.hashCode() & mask; symbols[i] != null; i = (i + 1) & mask)
+        {
+            if (symbols[i] == symbol)
+                return keys[i];
+        }
+        return null;
+    }
+
+    //=========================================================================================
+
+    private void put(String symbol)
+    {
+        final int mask = symbols.length - 1;
+        int i = symbol.hashCode() & mask;
+        while (symbols[i] != null)
+        {
+            if (symbols[i] == symbol)
+                return;
+            i = (i + 1) & mask;
+        }
+        symbols[i] = symbol;
+        keys[i] = symbol.toLowerCase();
+        if (++count * 2 > symbols.length)
+            rehash();
+    }
+
+    private void rehash()
+    {
+        final String[] oldSymbols = symbols;
+        final String[] oldKeys = keys;
+        symbols = new String[oldSymbols.length * 2];
+        keys = new String[oldKeys.length * 2];
+        final int mask = symbols.length - 1;
+        for (int j = 0; j < oldSymbols.length; j++)
+        {
+            if (oldSymbols[j] != null)
+            {
+                int i = oldSymbols[j].hashCode() & mask;
+                while (symbols[i] != null)
+                    i = (i + 1) & mask;
+                symbols[i] = oldSymbols[j];
+                keys[i] = oldKeys[j];
+            }
+        }
+    }
+
+    private static boolean equal(String symbol, String value, int start, boolean fold)
+    {
+        for (int i = 0; i < symbol.length(); i++)
+        {
+            final char c = value.charAt(start + i);
+            if (symbol.charAt(i) != (fold ? Character.toLowerCase(c) : c))
+                return false;
+        }
+        return true;
+    }
+
+}
@@ -73,7 +73,9 @@ public class TermColorImpl extends TermImpl<Color> implements TermColor {
      * @return <code>TermColor</code> if color matches, <code>null</code> elsewhere
      */
     public static TermColor getColorByIdent(TermIdent ident) {
-    	return ColorCard.getTermColor(ident.getValue());
+    	// the color card terms are shared, return a copy that may be modified or frozen by the caller
+    	final TermColor color = ColorCard.getTermColor(ident.getValue());
+    	return (color == null) ? null : (TermColor) color.shallowClone();
     }
     
     /**
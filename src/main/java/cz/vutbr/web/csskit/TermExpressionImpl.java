@@ -14,6 +14,7 @@ public class TermExpressionImpl extends TermImpl<String> implements TermExpressi
 
 	@Override
 	public TermExpression setValue(String value) {
+		checkModifiable();
 		if (value == null) {
 			throw new IllegalArgumentException(
 					"Invalid value for TermExpression(null)");
@@ -43,8 +43,10 @@ public class TermFactoryImpl implements TermFactory {
 	}
 
 	public TermAngle createAngle(String value, Unit unit, int unary) {
-		return (TermAngle) (new TermAngleImpl()).setUnit(unit).setValue(
-				convertFloat(value, unit.value(), unary));
+		final TermAngleImpl ret = new TermAngleImpl();
+		ret.setValue(convertFloat(value, unit.value(), unary));
+		ret.setUnit(unit);
+		return ret;
 	}
 
 	public TermColor createColor(TermIdent ident) {
@@ -72,8 +74,10 @@ public class TermFactoryImpl implements TermFactory {
 	}
 
 	public TermFrequency createFrequency(String value, Unit unit, int unary) {
-		return (TermFrequency) (new TermFrequencyImpl()).setUnit(unit)
-				.setValue(convertFloat(value, unit.value(), unary));
+		final TermFrequencyImpl ret = new TermFrequencyImpl();
+		ret.setValue(convertFloat(value, unit.value(), unary));
+		ret.setUnit(unit);
+		return ret;
 	}
 
     public TermExpression createExpression(String expr) {
@@ -112,9 +116,15 @@ public class TermFactoryImpl implements TermFactory {
         return (TermLength) (new TermLengthImpl()).setUnit(unit).setValue(value);
     }
 
+    public TermLength createLength(float value, Unit unit) {
+        final TermLengthImpl ret = new TermLengthImpl();
+        ret.setValue(value);
+        ret.setUnit(unit);
+        return ret;
+    }
+
 	public TermLength createLength(String value, Unit unit, int unary) {
-		return (TermLength) (new TermLengthImpl()).setUnit(unit).setValue(
-				convertFloat(value, unit.value(), unary));
+		return createLength(convertFloat(value, unit.value(), unary), unit);
 	}
 
 	public TermList createList() {
@@ -148,8 +158,10 @@ public class TermFactoryImpl implements TermFactory {
     }
 
     public TermResolution createResolution(String value, Unit unit, int unary) {
-        return (TermResolution) (new TermResolutionImpl()).setUnit(unit).setValue(
-                convertFloat(value, unit.value(), unary));
+        final TermResolutionImpl ret = new TermResolutionImpl();
+        ret.setValue(convertFloat(value, unit.value(), unary));
+        ret.setUnit(unit);
+        return ret;
     }
 
 	public TermNumeric<Float> createDimension(String value, int unary) {
@@ -158,22 +170,23 @@ public class TermFactoryImpl implements TermFactory {
     		for (TermNumeric.Unit unit : TermNumeric.Unit.values()) {
     			// try to find valid unit identifier
     			if (value.matches("^[0-9]*\\.?[0-9]+" + unit.value() + "$")) {
-    				Float f = convertFloat(value, unit.value(), unary);
+    				float f = convertFloat(value, unit.value(), unary);
+    				final TermFloatValueImpl ret;
     				if (unit.isAngle())
-    					return (TermNumeric<Float>) (new TermAngleImpl()).setUnit(
-    							unit).setValue(f);
+    					ret = new TermAngleImpl();
     				else if (unit.isFrequency())
-    					return (TermNumeric<Float>) (new TermFrequencyImpl())
-    							.setUnit(unit).setValue(f);
+    					ret = new TermFrequencyImpl();
     				else if (unit.isLength())
-    					return (TermNumeric<Float>) (new TermLengthImpl()).setUnit(
-    							unit).setValue(f);
+    					ret = new TermLengthImpl();
                     else if (unit.isResolution())
-                        return (TermNumeric<Float>) (new TermResolutionImpl()).setUnit(
-                                unit).setValue(f);
+                        ret = new TermResolutionImpl();
     				else if (unit.isTime())
-    					return (TermNumeric<Float>) (new TermTimeImpl()).setUnit(
-    							unit).setValue(f);
+    					ret = new TermTimeImpl();
+    				else
+    					continue;
+    				ret.setValue(f);
+    				ret.setUnit(unit);
+    				return ret;
     			}
     
     		}
@@ -195,6 +208,10 @@ public class TermFactoryImpl implements TermFactory {
 		return (TermPercent) (new TermPercentImpl()).setValue(value);
 	}
 
+	public TermPercent createPercent(float value) {
+		return (TermPercent) (new TermPercentImpl()).setValue(value);
+	}
+
 	public TermPercent createPercent(String value, int unary) {
 		return (TermPercent) (new TermPercentImpl()).setValue(convertFloat(
 				value, OutputUtil.PERCENT_SIGN, unary));
@@ -213,8 +230,10 @@ public class TermFactoryImpl implements TermFactory {
 	}
 
 	public TermTime createTime(String value, Unit unit, int unary) {
-		return (TermTime) (new TermTimeImpl()).setUnit(unit).setValue(
-				convertFloat(value, unit.value(), unary));
+		final TermTimeImpl ret = new TermTimeImpl();
+		ret.setValue(convertFloat(value, unit.value(), unary));
+		ret.setUnit(unit);
+		return ret;
 	}
 
 	public TermURI createURI(String value) {
@@ -229,7 +248,7 @@ public class TermFactoryImpl implements TermFactory {
 	 * HELPERS *
 	 ************************************************************************/
 
-	protected Float convertFloat(String value, String unit, int unary)
+	protected float convertFloat(String value, String unit, int unary)
 			throws IllegalArgumentException {
 
 		try {
@@ -251,7 +270,7 @@ public class TermFactoryImpl implements TermFactory {
 		}
 	}
 
-	protected Integer convertInteger(String value, String unit, int unary)
+	protected int convertInteger(String value, String unit, int unary)
 			throws IllegalArgumentException {
 
 		try {
@@ -264,7 +283,7 @@ public class TermFactoryImpl implements TermFactory {
         		    value = value.substring(0, value.length() - unit.length());
 		    }
 
-			long lval = Long.valueOf(value) * unary;
+			long lval = Long.parseLong(value) * unary;
 			if (lval > Integer.MAX_VALUE)
 			    return Integer.MAX_VALUE;
 			else if (lval < Integer.MIN_VALUE)
@@ -5,26 +5,93 @@ import cz.vutbr.web.css.TermFloatValue;
 import cz.vutbr.web.css.TermNumeric;
 
 /**
+ * A numeric term with the float value. The value is kept as a primitive float; it is only
+ * boxed when obtained using the generic {@link #getValue()}.
  *
  * @author burgetr
  */
 public class TermFloatValueImpl extends TermNumericImpl<Float> implements TermFloatValue
 {
+    protected float floatValue;
+    protected boolean hasValue;
 
-    @Override
-    public TermNumeric<Float> setZero()
+    public float floatValue()
     {
-        super.setValue(0.0f);
+        return floatValue;
+    }
+
+    public TermFloatValue setValue(float value)
+    {
+        checkModifiable();
+        this.floatValue = (value == -0.0f) ? 0.0f : value; //avoid negative zeroes in CSS
+        this.hasValue = true;
         return this;
     }
 
+    @Override
+    public Float getValue()
+    {
+        return hasValue ? Float.valueOf(floatValue) : null;
+    }
+
     @Override
     public Term<Float> setValue(Float value)
     {
-        if (value == -0.0f) //avoid negative zeroes in CSS
-            return super.setValue(0.0f);
+        checkModifiable();
+        if (value == null)
+        {
+            this.floatValue = 0.0f;
+            this.hasValue = false;
+            return this;
+        }
         else
-            return super.setValue(value);
+            return setValue(value.floatValue());
+    }
+
+    @Override
+    public TermNumeric<Float> setZero()
+    {
+        setValue(0.0f);
+        return this;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        if (operator != null) sb.append(operator.value());
+        if (hasValue) {
+            if ((double) (int) floatValue == (double) floatValue) {
+                sb.append((int) floatValue);
+            } else {
+                sb.append(floatValue);
+            }
+        }
+        if (unit != null) sb.append(unit.value());
+        return sb.toString();
+    }
+
+    @Override
+    public int hashCode()
+    {
+        final int prime = 31;
+        int result = super.hashCode();
+        result = prime * result + (hasValue ? Float.floatToIntBits(floatValue) : 0);
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (this == obj)
+            return true;
+        if (!super.equals(obj))
+            return false;
+        if (!(obj instanceof TermFloatValueImpl))
+            return false;
+        TermFloatValueImpl other = (TermFloatValueImpl) obj;
+        return hasValue == other.hasValue
+                && Float.floatToIntBits(floatValue) == Float.floatToIntBits(other.floatValue);
     }
 
 }
@@ -34,6 +34,7 @@ public class TermFunctionImpl extends TermListImpl implements TermFunction {
 	public TermFunction setFunctionName(String functionName) {
 		if(functionName==null)
 			throw new IllegalArgumentException("Invalid functionName in function (null)");
+		checkModifiable();
 		
 		// this should be done by lexer/parser
 		// functionName = functionName.replaceAll("\\($", "");
@@ -11,6 +11,7 @@ public class TermImpl<T> implements Term<T> {
 
 	protected T value;
 	protected Operator operator = null;
+	protected boolean frozen = false;
 
 	protected TermImpl() {
 	}
@@ -20,6 +21,7 @@ public class TermImpl<T> implements Term<T> {
 	}
 
 	public Term<T> setOperator(Operator operator) {
+		checkModifiable();
 		this.operator = operator;
 		return this;
 	}
@@ -36,9 +38,28 @@ public class TermImpl<T> implements Term<T> {
 	 *            the value to set
 	 */
 	public Term<T> setValue(T value) {
+		checkModifiable();
 		this.value = value;
 		return this;
 	}
+	
+	public Term<T> freeze() {
+		frozen = true;
+		return this;
+	}
+	
+	public boolean isFrozen() {
+		return frozen;
+	}
+	
+	/**
+	 * Checks whether the term may be modified.
+	 * @throws UnsupportedOperationException when the term has been frozen
+	 */
+	protected void checkModifiable() {
+		if (frozen)
+			throw new UnsupportedOperationException("The term is frozen: " + getClass().getSimpleName());
+	}
 
 	@Override
 	public String toString() {
@@ -88,10 +109,15 @@ public class TermImpl<T> implements Term<T> {
 		return true;
 	}
 
+	/**
+	 * Creates a shallow copy of the term. The copy of a frozen term is not frozen.
+	 */
 	@SuppressWarnings("unchecked")
     public Term<T> shallowClone() {
 		try {
-			return (Term<T>) super.clone();
+			final TermImpl<T> clone = (TermImpl<T>) super.clone();
+			clone.frozen = false;
+			return clone;
 		} catch (CloneNotSupportedException e) {
 			throw new RuntimeException(e);
 		}
@@ -9,11 +9,11 @@ public class TermIntegerImpl extends TermLengthImpl implements TermInteger {
 	}
 
     public int getIntValue() {
-        return getValue().intValue();
+        return (int) floatValue();
     }
 
     public TermInteger setValue(int value) {
-        setValue(Float.valueOf(value));
+        setValue((float) value);
         return this;
     }
 
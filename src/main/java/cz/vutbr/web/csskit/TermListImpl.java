@@ -12,6 +12,7 @@ public class TermListImpl extends AbstractList<Term<?>> implements TermList {
 
 	protected List<Term<?>> value;
 	protected Operator operator;
+	protected boolean frozen = false;
 	
 	protected TermListImpl() {
 		this.value = new ArrayList<Term<?>>();
@@ -32,6 +33,7 @@ public class TermListImpl extends AbstractList<Term<?>> implements TermList {
 	 * @param value the value to set
 	 */
 	public TermList setValue(List<Term<?>> value) {
+		checkModifiable();
 		this.value = value;
 		return this;
 	}
@@ -45,10 +47,34 @@ public class TermListImpl extends AbstractList<Term<?>> implements TermList {
 	 * @param operator the operator to set
 	 */
 	public TermList setOperator(Operator operator) {
+		checkModifiable();
 		this.operator = operator;
 		return this;
 	}
 	
+	public TermList freeze() {
+		if (!frozen) {
+			for (Term<?> t : value)
+				t.freeze();
+			this.value = new FrozenList<Term<?>>(value);
+			this.frozen = true;
+		}
+		return this;
+	}
+	
+	public boolean isFrozen() {
+		return frozen;
+	}
+	
+	/**
+	 * Checks whether the list may be modified.
+	 * @throws UnsupportedOperationException when the list has been frozen
+	 */
+	protected void checkModifiable() {
+		if (frozen)
+			throw new UnsupportedOperationException("The term list is frozen: " + getClass().getSimpleName());
+	}
+	
 	@Override
 	public Term<?> get(int arg0) {
 		return value.get(arg0);
@@ -56,11 +82,13 @@ public class TermListImpl extends AbstractList<Term<?>> implements TermList {
 	
 	@Override
 	public void add(int index, Term<?> element) {
+		checkModifiable();
 		value.add(index, element);
 	}
 	
 	@Override
 	public Term<?> remove(int index) {
+		checkModifiable();
 		return value.remove(index);
 	}
 
@@ -76,6 +104,7 @@ public class TermListImpl extends AbstractList<Term<?>> implements TermList {
 	
 	@Override
 	public boolean add(Term<?> o) {
+		checkModifiable();
 		return value.add(o);
 	}
 	
@@ -129,9 +158,17 @@ public class TermListImpl extends AbstractList<Term<?>> implements TermList {
 		return true;
 	}	
 
+	/**
+	 * Creates a shallow copy of the list. The copy of a frozen list is not frozen.
+	 */
 	public TermList shallowClone() {
 		try {
-			return (TermList) super.clone();
+			TermListImpl clone = (TermListImpl) super.clone();
+			if (frozen) {
+				clone.value = new ArrayList<Term<?>>(value);
+				clone.frozen = false;
+			}
+			return clone;
 		} catch (CloneNotSupportedException e) {
 			throw new RuntimeException(e);
 		}
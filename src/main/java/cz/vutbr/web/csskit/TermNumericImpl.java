@@ -17,6 +17,7 @@ public abstract class TermNumericImpl<T extends Number> extends TermImpl<T> impl
 	 * @param unit the unit to set
 	 */
 	public TermNumeric<T> setUnit(Unit unit) {
+		checkModifiable();
 		this.unit = unit;
 		return this;
 	}
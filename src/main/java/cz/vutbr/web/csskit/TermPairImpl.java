@@ -1,5 +1,6 @@
 package cz.vutbr.web.csskit;
 
+import cz.vutbr.web.css.Term;
 import cz.vutbr.web.css.TermPair;
 
 public class TermPairImpl<K,V> extends TermImpl<V> implements TermPair<K,V> {
@@ -14,10 +15,23 @@ public class TermPairImpl<K,V> extends TermImpl<V> implements TermPair<K,V> {
 	}
 	
 	public TermPair<K,V> setKey(K key) {
+		checkModifiable();
 		this.key = key;
 		return this;
 	}
 	
+	/**
+	 * Freezes the key and the value as well when they are terms.
+	 */
+	@Override
+	public Term<V> freeze() {
+		if (key instanceof Term<?>)
+			((Term<?>) key).freeze();
+		if (value instanceof Term<?>)
+			((Term<?>) value).freeze();
+		return super.freeze();
+	}
+
 	@Override
 	public String toString() {
 		
@@ -17,6 +17,7 @@ public class TermStringImpl extends TermImpl<String> implements TermString {
 
 	@Override
 	public TermString setValue(String value) {
+		checkModifiable();
 		if (value == null) {
 			throw new IllegalArgumentException(
 					"Invalid value for TermString(null)");
@@ -9,10 +9,17 @@ public class TermTimeImpl extends TermFloatValueImpl implements TermTime {
 	
 	@Override
 	public TermTime setValue(Float value) {
+		if(value==null)
+				throw new IllegalArgumentException("Null or negative value for CSS time");
+		return setValue(value.floatValue());
+	}
+
+	@Override
+	public TermTime setValue(float value) {
 		// value is negative
-		if(value==null || (new Float(0.0f)).compareTo(value) > 0)
+		if(value < 0.0f)
 				throw new IllegalArgumentException("Null or negative value for CSS time");
-		this.value = value;
+		super.setValue(value);
 		return this;
 	}
 
@@ -20,6 +20,7 @@ public class TermURIImpl extends TermImpl<String> implements TermURI {
 
     @Override
     public TermURI setValue(String uri) {
+        checkModifiable();
         if(uri == null) 
             throw new IllegalArgumentException("Invalid uri for TermURI(null)");
         
@@ -38,6 +39,7 @@ public class TermURIImpl extends TermImpl<String> implements TermURI {
     
     public TermURI setBase(URL base)
     {
+        checkModifiable();
         this.base = base;
         return this;
     }
@@ -1,12 +1,14 @@
 package cz.vutbr.web.domassign;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,6 +29,8 @@ import cz.vutbr.web.css.RuleSet;
 import cz.vutbr.web.css.Selector;
 import cz.vutbr.web.css.Selector.PseudoDeclaration;
 import cz.vutbr.web.css.StyleSheet;
+import cz.vutbr.web.csskit.ElementMatcherCached;
+import cz.vutbr.web.csskit.SymbolTable;
 
 /**
  * Analyzer allows to apply the given style to any document.
@@ -50,12 +54,43 @@ public class Analyzer {
 	
 	/**
 	 * Holds maps of declared rules classified into groups of
-	 * HolderItem (ID, CLASS, ELEMENT, OTHER).
+	 * HolderItem (ID, CLASS, ELEMENT, ATTRIBUTE, PSEUDO, OTHER).
 	 */
 	protected Holder rules;
 
 	private MatchCondition matchCond;
 	private ElementMatcher matcher;
+	
+	/** The matcher that keeps the element facts during the DOM traversal or {@code null} */
+	private ElementMatcherCached traversalMatcher;
+	
+	/** The results of the shared simple selectors during the DOM traversal or {@code null} */
+	private MatchMemo traversalMemo;
+	
+	/** Use a snapshot of the document for matching the selectors? */
+	private boolean snapshotMatching;
+	
+	/** The snapshot of the document during the DOM traversal or {@code null} */
+	private TreeSnapshot<Element> traversalSnapshot;
+	
+	/** The last element looked up in the snapshot and its ordinal */
+	private Element snapshotElement;
+	private int snapshotOrdinal;
+	
+	/** Cache of the computed styles or {@code null} when disabled */
+	private StyleCache styleCache;
+	
+	/** Cache the classified rules for the media? */
+	private boolean classificationCaching;
+	
+	/** Cached classifications of the rules for the media, created when first used */
+	private MediaBreakpoints classificationCache;
+	
+	/** Are the current rules shared with the classification cache? */
+	private boolean sharedRules;
+	
+	/** The rules classified in advance that precede the rules of the style sheets or {@code null} */
+	private List<Holder> baseLayers;
 
 	/**
 	 * Creates the analyzer for a single style sheet.
@@ -119,6 +154,105 @@ public class Analyzer {
         return matcher;
     }
 
+    /**
+     * Enables or disables sharing of the computed styles among the elements. When enabled,
+     * the elements with the same assigned declarations whose parents share the same style
+     * obtain a single shared {@link NodeData} instance that is computed only once. The shared
+     * instances are frozen (see {@link NodeData#freeze()}). The sharing is disabled by default.
+     *
+     * @param size
+     *            the maximal number of distinct styles remembered or 0 for disabling the sharing
+     */
+    public void setStyleCacheSize(int size) {
+        if (size > 0)
+            styleCache = new StyleCache(size);
+        else
+            styleCache = null;
+    }
+
+    /**
+     * Obtains the cache of the computed styles.
+     *
+     * @return the cache or {@code null} when the style sharing is disabled
+     */
+    public StyleCache getStyleCache() {
+        return styleCache;
+    }
+
+    /**
+     * Enables or disables caching of the classified rules. When enabled, the rules are classified
+     * once for each set of the media rules that apply to the evaluated media (e.g. once for each
+     * interval between the width breakpoints used in the style sheets) and the classification
+     * is reused by the subsequent evaluations. The style sheets must not be modified directly while
+     * the caching is enabled; disabling the caching discards the cached classifications.
+     * The caching is disabled by default.
+     *
+     * @param enabled
+     *            {@code true} for caching the classified rules
+     */
+    public void setClassificationCaching(boolean enabled) {
+        this.classificationCaching = enabled;
+        if (!enabled)
+            classificationCache = null;
+    }
+
+    /**
+     * Obtains the media breakpoint analysis of the style sheets used for caching the classified rules.
+     *
+     * @return the analysis or {@code null} when the caching is disabled
+     */
+    public MediaBreakpoints getClassificationCache() {
+        if (classificationCaching && classificationCache == null)
+            classificationCache = new MediaBreakpoints(sheets);
+        return classificationCache;
+    }
+
+    /**
+     * Sets the rules classified in advance that are used together with the rules of the analyzer
+     * style sheets, e.g. the user agent and site style sheets shared by many documents. The layers
+     * are used as they are without copying; only the analyzer style sheets are classified for
+     * each evaluation. The rules of the base layers precede the rules of the analyzer style sheets
+     * and they are used for all the evaluated media. The layers should be frozen.
+     *
+     * @param layers
+     *            the layers in the order of their precedence (see {@link AnalyzerUtil#getClassifiedLayer})
+     *            or {@code null} for no base layers
+     */
+    public void setBaseLayers(List<Holder> layers) {
+        this.baseLayers = (layers == null) ? null : new ArrayList<Holder>(layers);
+    }
+
+    /**
+     * Obtains the rules classified in advance that precede the rules of the analyzer style sheets.
+     *
+     * @return the list of layers or {@code null} when no base layers are used
+     */
+    public List<Holder> getBaseLayers() {
+        return baseLayers;
+    }
+
+    /**
+     * Enables or disables matching the selectors against a {@link TreeSnapshot} of the document.
+     * When enabled, the element tree is copied to arrays before the declarations are assigned
+     * and the selectors are evaluated on the arrays instead of the DOM nodes. This pays off
+     * for larger documents and style sheets. The snapshot matching is disabled by default.
+     *
+     * @param enabled
+     *            {@code true} for matching against the snapshot
+     */
+    public void setSnapshotMatching(boolean enabled) {
+        this.snapshotMatching = enabled;
+    }
+
+    /**
+     * Checks whether the selectors are matched against a snapshot of the document.
+     *
+     * @return {@code true} when the snapshot matching is enabled
+     */
+    public boolean isSnapshotMatching() {
+        return snapshotMatching;
+    }
+
 	/**
 	 * Evaluates CSS properties of DOM tree
 	 * 
@@ -132,47 +266,35 @@ public class Analyzer {
 	 */
 	public StyleMap evaluateDOM(Document doc, MediaSpec media, final boolean inherit) {
 
+		if (styleCache != null)
+		    styleCache.clear();
 		DeclarationMap declarations = assingDeclarationsToDOM(doc, media, inherit);
+		return evaluateDeclarations(doc, declarations, inherit);
+	}
 
-		StyleMap nodes = new StyleMap(declarations.size());
+	/**
+	 * Computes the styles of all the elements of a DOM tree from the declarations
+	 * that have been already assigned to the individual elements.
+	 * 
+	 * @param doc
+	 *            Document tree
+	 * @param declarations
+	 *            Declarations assigned to the elements
+	 * @param inherit
+	 *            Use inheritance
+	 * @return Map where each element contains its CSS properties
+	 */
+	protected StyleMap evaluateDeclarations(Document doc, DeclarationMap declarations, final boolean inherit) {
+	    
+		StyleMap nodes = (declarations.getIndex() != null) ? new StyleMap(declarations.getIndex())
+		        : new StyleMap(declarations.size());
 
 		Traversal<StyleMap> traversal = new Traversal<StyleMap>(
 				doc, (Object) declarations, NodeFilter.SHOW_ELEMENT) {
 			
 			@Override
 			protected void processNode(StyleMap result, Node current, Object source) {
-
-			    NodeData main = CSSFactory.createNodeData();
-			    
-				// for all declarations available in the main list (pseudo=null)
-				List<Declaration> declarations = ((DeclarationMap) source).get((Element) current, null);
-				if (declarations != null) 
-				{
-					for (Declaration d : declarations) {
-						main.push(d);
-					}
-					if (inherit)
-						main.inheritFrom(result.get((Element) walker.parentNode(), null));
-				}
-				// concretize values and store them
-				result.put((Element) current, null, main.concretize());
-				
-				//repeat for the pseudo classes (if any)
-				for (PseudoDeclaration pseudo : ((DeclarationMap) source).pseudoSet((Element) current))
-				{
-				    NodeData pdata = CSSFactory.createNodeData();
-	                declarations = ((DeclarationMap) source).get((Element) current, pseudo);
-	                if (declarations != null) 
-	                {
-	                    for (Declaration d : declarations) {
-	                        pdata.push(d);
-	                    }
-                        pdata.inheritFrom(main); //always inherit from the main element style
-	                }
-	                // concretize values and store them
-	                result.put((Element) current, pseudo, pdata.concretize());
-				}
-				
+			    evaluateElement(result, (DeclarationMap) source, (Element) current, walker, inherit);
 			}
 		};
 
@@ -181,10 +303,310 @@ public class Analyzer {
 		return nodes;
 	}
 
+	/**
+	 * Computes the style of a single element and its pseudo elements from the assigned
+	 * declarations and stores it to the resulting map. When the inheritance is used,
+	 * the style of the parent element must be already present in the resulting map.
+	 * 
+	 * @param result
+	 *            The resulting style map
+	 * @param declarations
+	 *            Declarations assigned to the elements
+	 * @param e
+	 *            DOM Element
+	 * @param walker
+	 *            Tree walker positioned at the element
+	 * @param inherit
+	 *            Use inheritance
+	 */
+	protected void evaluateElement(StyleMap result, DeclarationMap declarations,
+	        Element e, TreeWalker walker, boolean inherit) {
+	    
+		// for all declarations available in the main list (pseudo=null)
+		List<Declaration> decls = declarations.get(e, null);
+		NodeData parent = null;
+		if (decls != null && inherit)
+		{
+		    Node current = walker.getCurrentNode();
+		    parent = result.get((Element) walker.parentNode(), null);
+		    walker.setCurrentNode(current);
+		}
+		NodeData main = computeStyle(decls, parent);
+		// store the values
+		result.put(e, null, main);
+		
+		//repeat for the pseudo classes (if any)
+		for (PseudoDeclaration pseudo : declarations.pseudoSet(e))
+		{
+            decls = declarations.get(e, pseudo);
+            // always inherit from the main element style
+            result.put(e, pseudo, computeStyle(decls, (decls != null) ? main : null));
+		}
+	}
+
+	/**
+	 * Computes the style from the assigned declarations and the parent style. When the style
+	 * cache is enabled, the previously computed style is reused if possible.
+	 * 
+	 * @param decls
+	 *            The ordered declarations or {@code null} when no declarations are assigned
+	 * @param parent
+	 *            The parent style to inherit from or {@code null}
+	 * @return The concretized style
+	 */
+	protected NodeData computeStyle(List<Declaration> decls, NodeData parent) {
+	    
+	    if (styleCache != null) {
+	        NodeData cached = styleCache.get(decls, parent);
+	        if (cached != null)
+	            return cached;
+	    }
+	    
+	    NodeData data = CSSFactory.createNodeData();
+	    if (decls != null)
+	    {
+	        for (Declaration d : decls) {
+	            data.push(d);
+	        }
+	        data.inheritFrom(parent);
+	    }
+	    // concretize values
+	    data.concretize();
+	    
+	    if (styleCache != null)
+	        styleCache.put(decls, parent, data.freeze());
+	    return data;
+	}
+
    public StyleMap evaluateDOM(Document doc, String media, final boolean inherit) {
        return evaluateDOM(doc, new MediaSpec(media), inherit);
    }
 
+	/**
+	 * Evaluates CSS properties of DOM tree for several media at once. The rules are
+	 * classified and the selectors are matched only once during a single traversal;
+	 * the rules contained in the media rules that do not apply to all the media are
+	 * only used for the media they apply to. The styles computed from the same
+	 * declarations and the same parent style are shared by the resulting maps.
+	 * 
+	 * @param doc
+	 *            Document tree
+	 * @param media
+	 *            The list of media
+	 * @param inherit
+	 *            Use inheritance
+	 * @return The list of maps where each element contains its CSS properties, one map
+	 *         for each of the media in the same order
+	 */
+	public List<StyleMap> evaluateDOM(Document doc, List<MediaSpec> media, final boolean inherit) {
+	    
+		if (styleCache != null)
+		    styleCache.clear();
+		final Holder own = new Holder();
+		AnalyzerUtil.classifyAllSheets(sheets, own, media);
+		useClassifiedRules(own, false);
+		
+		// if the holder is empty skip the matching
+		final Holder holder = rules.isEmpty() ? null : rules;
+		final List<StyleMap> results = new ArrayList<StyleMap>(media.size());
+		final Element root = doc.getDocumentElement();
+		
+		Traversal<List<StyleMap>> traversal = new Traversal<List<StyleMap>>(
+				doc, (Object) holder, NodeFilter.SHOW_ELEMENT) {
+			
+			@Override
+			protected void processNode(List<StyleMap> result, Node current, Object source) {
+			    // the document element is not assigned when the inheritance is not used (see the list traversal)
+			    final Holder used = (inherit || current != root) ? (Holder) source : null;
+			    evaluateElement(result, walker, (Element) current, used, inherit);
+			}
+		};
+		
+		try {
+		    // all the maps share the element ordinals
+		    final ElementIndex<Element> index = (holder != null) ? beginTraversal(doc) : new ElementIndex<Element>();
+		    for (int i = 0; i < media.size(); i++)
+		        results.add(new StyleMap(index));
+		    traversal.levelTraversal(results);
+		} finally {
+		    endTraversal();
+		}
+		return results;
+	}
+
+	/**
+	 * Matches the rules with a single element and computes its style for several media.
+	 * The media whose rules matching the element are the same share the declaration lists.
+	 * When the inheritance is used, the styles of the parent element must be already
+	 * present in the resulting maps.
+	 * 
+	 * @param results
+	 *            The resulting style maps, one for each media
+	 * @param walker
+	 *            Tree walker positioned at the element
+	 * @param e
+	 *            DOM Element
+	 * @param holder
+	 *            The rules classified for all the media or {@code null} when there are no rules
+	 * @param inherit
+	 *            Use inheritance
+	 */
+	protected void evaluateElement(List<StyleMap> results, TreeWalker walker,
+	        Element e, Holder holder, boolean inherit) {
+	    
+	    final int cnt = results.size();
+	    
+	    // the matching declarations with their pseudo elements and media
+	    final List<Declaration> matched = new ArrayList<Declaration>();
+	    final List<PseudoDeclaration> matchedPseudo = new ArrayList<PseudoDeclaration>();
+	    final List<BitSet> matchedMedia = new ArrayList<BitSet>();
+	    boolean selective = false;
+	    if (holder != null) {
+	        final MatchContext ctx = MatchContext.acquire();
+	        try {
+	            AnalyzerUtil.collectCandidates(ctx, e, holder, currentMatcher(), matchCond);
+	            final int count = ctx.merge();
+	            final OrderedRule[] clist = ctx.getCandidates();
+	            for (int i = 0; i < count; i++) {
+	                final RuleSet rule = clist[i].getRule();
+	                final StyleSheet sheet = rule.getStyleSheet();
+	                final StyleSheet.Origin origin = (sheet == null) ? StyleSheet.Origin.AGENT : sheet.getOrigin();
+	                final BitSet ruleMedia = clist[i].getMedia();
+	                
+	                for (CompiledSelector cs : clist[i].getCompiledSelectors()) {
+	                    if (!matchSelector(cs, e, walker))
+	                        continue;
+	                    final PseudoDeclaration pseudo = cs.getPseudoElement();
+	                    final CombinedSelector.Specificity spec = cs.getSpecificity();
+	                    for (Declaration d : rule) {
+	                        matched.add(new AssignedDeclaration(d, spec, origin));
+	                        matchedPseudo.add(pseudo);
+	                        matchedMedia.add(ruleMedia);
+	                    }
+	                    if (ruleMedia != null)
+	                        selective = true;
+	                }
+	            }
+	        } finally {
+	            ctx.release();
+	        }
+	    }
+	    
+	    // group the media that use the same declarations, the first media of the group builds the lists
+	    final int[] group = new int[cnt];
+	    final List<List<Declaration>> mainDecls = new ArrayList<List<Declaration>>(cnt);
+	    final List<Map<PseudoDeclaration, List<Declaration>>> pseudoDecls = new ArrayList<Map<PseudoDeclaration, List<Declaration>>>(cnt);
+	    for (int i = 0; i < cnt; i++) {
+	        group[i] = i;
+	        if (i > 0 && !selective)
+	            group[i] = 0;
+	        else {
+	            for (int j = 0; j < i; j++) {
+	                if (group[j] == j && sameMediaDeclarations(matchedMedia, i, j)) {
+	                    group[i] = j;
+	                    break;
+	                }
+	            }
+	        }
+	        
+	        List<Declaration> main = null;
+	        Map<PseudoDeclaration, List<Declaration>> pseudos = null;
+	        if (group[i] == i && holder != null) {
+	            main = new ArrayList<Declaration>();
+	            pseudos = new EnumMap<PseudoDeclaration, List<Declaration>>(PseudoDeclaration.class);
+	            for (int k = 0; k < matched.size(); k++) {
+	                final BitSet m = matchedMedia.get(k);
+	                if (m != null && !m.get(i))
+	                    continue;
+	                final PseudoDeclaration pseudo = matchedPseudo.get(k);
+	                List<Declaration> dest = main;
+	                if (pseudo != null) {
+	                    dest = pseudos.get(pseudo);
+	                    if (dest == null) {
+	                        dest = new ArrayList<Declaration>();
+	                        pseudos.put(pseudo, dest);
+	                    }
+	                }
+	                dest.add(matched.get(k));
+	            }
+	            Collections.sort(main);
+	            for (List<Declaration> list : pseudos.values())
+	                Collections.sort(list);
+	        }
+	        mainDecls.add(main);
+	        pseudoDecls.add(pseudos);
+	    }
+	    
+	    Element parentElement = null;
+	    if (holder != null && inherit) {
+	        Node current = walker.getCurrentNode();
+	        parentElement = (Element) walker.parentNode();
+	        walker.setCurrentNode(current);
+	    }
+	    
+	    final NodeData[] parents = new NodeData[cnt];
+	    for (int i = 0; i < cnt; i++) {
+	        final StyleMap result = results.get(i);
+	        final int g = group[i];
+	        if (parentElement != null)
+	            parents[i] = result.get(parentElement, null);
+	        
+	        // the same declarations and the same parent give the same style
+	        int same = -1;
+	        for (int j = 0; j < i && same == -1; j++) {
+	            if (group[j] == g && parents[j] == parents[i])
+	                same = j;
+	        }
+	        if (same != -1) {
+	            final StyleMap src = results.get(same);
+	            result.put(e, null, src.get(e, null));
+	            for (PseudoDeclaration pseudo : src.pseudoSet(e))
+	                result.put(e, pseudo, src.get(e, pseudo));
+	        } else {
+	            final NodeData main = computeStyle(mainDecls.get(g), parents[i]);
+	            result.put(e, null, main);
+	            // always inherit from the main element style
+	            if (pseudoDecls.get(g) != null) {
+	                for (Map.Entry<PseudoDeclaration, List<Declaration>> entry : pseudoDecls.get(g).entrySet())
+	                    result.put(e, entry.getKey(), computeStyle(entry.getValue(), main));
+	            }
+	        }
+	    }
+	}
+	
+	/**
+	 * Checks whether the same declarations apply to two media.
+	 */
+	private static boolean sameMediaDeclarations(List<BitSet> declMedia, int i, int j) {
+	    for (BitSet m : declMedia) {
+	        if (m != null && m.get(i) != m.get(j))
+	            return false;
+	    }
+	    return true;
+	}
+
+	/**
+	 * Creates a style map that computes the CSS properties of the individual elements
+	 * on demand, when they are obtained from the map for the first time. This is
+	 * useful when only the styles of a small part of a large DOM tree are required.
+	 *
+	 * @param doc
+	 *            Document tree
+	 * @param media
+	 *            Media
+	 * @param inherit
+	 *            Use inheritance
+	 * @return Map that computes the CSS properties of the elements when required
+	 */
+	public StyleMap evaluateDOMLazily(Document doc, MediaSpec media, final boolean inherit) {
+	    classifyAllSheets(media);
+	    return new LazyStyleMap(this, rules, doc, inherit);
+	}
+
+	public StyleMap evaluateDOMLazily(Document doc, String media, final boolean inherit) {
+	    return evaluateDOMLazily(doc, new MediaSpec(media), inherit);
+	}
+
 	/**
 	 * Creates map of declarations assigned to each element of a DOM tree
 	 * 
@@ -201,8 +623,8 @@ public class Analyzer {
 		// classify the rules
 	    classifyAllSheets(media);
 		
-		// resulting map
-		DeclarationMap declarations = new DeclarationMap();
+		// resulting map, the elements are indexed in the traversal order
+		DeclarationMap declarations;
 		
         // if the holder is empty skip evaluation
         if(rules!=null && !rules.isEmpty()) {
@@ -216,18 +638,57 @@ public class Analyzer {
     			}
     		};
     
-    		// list traversal will be enough
-    		if (!inherit)
-    			traversal.listTraversal(declarations);
-    		// we will do level traversal to economize blind returning
-    		// in tree
-    		else
-    			traversal.levelTraversal(declarations);
+    		try {
+    		    // the snapshot ordinals are shared by the resulting map
+    		    declarations = new DeclarationMap(beginTraversal(doc));
+    		    
+        		// list traversal will be enough
+        		if (!inherit)
+        			traversal.listTraversal(declarations);
+        		// we will do level traversal to economize blind returning
+        		// in tree
+        		else
+        			traversal.levelTraversal(declarations);
+    		} finally {
+    		    endTraversal();
+    		}
         }
+        else
+            declarations = new DeclarationMap(new ElementIndex<Element>());
 
 		return declarations;
 	}
 
+	/**
+	 * Prepares the matching state used during a traversal of the given document:
+	 * the element facts are obtained once for each element and the results of the
+	 * shared simple selectors are memoized. The classified rules must be already available.
+	 * 
+	 * @param doc
+	 *            The traversed document
+	 * @return The element index to be used by the resulting maps; the snapshot ordinals
+	 *            are used when the snapshot matching is enabled
+	 */
+	private ElementIndex<Element> beginTraversal(Document doc) {
+	    traversalMatcher = ElementMatcherCached.create(matcher, rules.getSymbols());
+	    traversalMemo = new MatchMemo(rules.getCompilers());
+	    if (snapshotMatching) {
+	        traversalSnapshot = TreeSnapshot.create(doc, currentMatcher());
+	        return traversalSnapshot.getIndex();
+	    } else
+	        return new ElementIndex<Element>();
+	}
+	
+	/**
+	 * Discards the matching state created by {@link #beginTraversal(Document)}.
+	 */
+	private void endTraversal() {
+	    traversalMatcher = null;
+	    traversalMemo = null;
+	    traversalSnapshot = null;
+	    snapshotElement = null;
+	}
+
 	/**
 	 * Assigns declarations to one element.
 	 * 
@@ -248,98 +709,71 @@ public class Analyzer {
 			log.debug("Traversal of {} {}.", e.getNodeName(), e.getNodeValue());
 		}
 		
-		// create set of possible candidates applicable to given element
-		// set is automatically filtered to not contain duplicates
-		Set<OrderedRule> candidates = new HashSet<OrderedRule>();
-
-		// match element classes
-		for (String cname : matcher.elementClasses(e)) {
-			// holder contains rule with given class
-			List<OrderedRule> rules = holder.get(HolderItem.CLASS, cname.toLowerCase());
-			if (rules != null)
-				candidates.addAll(rules);
-		}
-		log.trace("After CLASSes {} total candidates.", candidates.size());
-
-		// match IDs
-		String id = matcher.elementID(e);
-		if (id != null && id.length() != 0) {
-			List<OrderedRule> rules = holder.get(HolderItem.ID, id.toLowerCase());
-			if (rules != null)
-				candidates.addAll(rules);
-		}
-		log.trace("After IDs {} total candidates.", candidates.size());
-		
-		// match elements
-		String name = matcher.elementName(e);
-		if (name != null) {
-			List<OrderedRule> rules = holder.get(HolderItem.ELEMENT, name.toLowerCase());
-			if (rules != null)
-				candidates.addAll(rules);
-		}
-		log.trace("After ELEMENTs {} total candidates.", candidates.size());
-
-		// others
-		candidates.addAll(holder.get(HolderItem.OTHER, null));
-		
-	    // transform to list to speed up traversal
-		// and sort rules in order as they were found in CSS definition
-		List<OrderedRule> clist = new ArrayList<OrderedRule>(candidates);
-		Collections.sort(clist);
-		
-		log.debug("Totally {} candidates.", candidates.size());
-		log.trace("With values: {}", clist);
-
-		// resulting list of declaration for this element with no pseudo-selectors (main list)(local cache)
-		List<Declaration> eldecl = new ArrayList<Declaration>();
-		
-		// existing pseudo selectors found
-		Set<PseudoDeclaration> pseudos = new HashSet<PseudoDeclaration>();
-
-		// for all candidates
-		for (OrderedRule orule : clist) {
-		    
-			final RuleSet rule = orule.getRule();
-			StyleSheet sheet = rule.getStyleSheet();
-			if (sheet == null)
-			    log.warn("No source style sheet set for rule: {}", rule.toString());
-			StyleSheet.Origin origin = (sheet == null) ? StyleSheet.Origin.AGENT : sheet.getOrigin();
-			
-			// for all selectors inside
-			for (CombinedSelector s : rule.getSelectors()) {
-				// this method does automatic rewind of walker
-				if (!matchSelector(s, e, walker)) {
-					log.trace("CombinedSelector \"{}\" NOT matched!", s);
-					continue;
-				}
-
-				log.trace("CombinedSelector \"{}\" matched", s);
-				
-				PseudoDeclaration pseudo = s.getPseudoElement();
-                CombinedSelector.Specificity spec = s.computeSpecificity();
-				if (pseudo == null)
-				{
-    				// add to main list
-    				for (Declaration d : rule)
-    					eldecl.add(new AssignedDeclaration(d, spec, origin));
-				}
-				else
-				{
-				    // remember the pseudo element
-				    pseudos.add(pseudo);
-				    // add to pseudo lists
-                    for (Declaration d : rule)
-                        declarations.addDeclaration(e, pseudo, new AssignedDeclaration(d, spec, origin));
-				}
-
-			}
+		// collect the possible candidates applicable to given element
+		// the context merges the sorted buckets and filters duplicates so that the rules are
+		// in order as they were found in CSS definition
+		final MatchContext ctx = MatchContext.acquire();
+		List<Declaration> eldecl;
+		try {
+    		AnalyzerUtil.collectCandidates(ctx, e, holder, currentMatcher(), matchCond);
+    		final int count = ctx.merge();
+    		final OrderedRule[] clist = ctx.getCandidates();
+    		
+    		if (log.isDebugEnabled()) {
+    		    log.debug("Totally {} candidates.", count);
+    		    log.trace("With values: {}", Arrays.asList(clist).subList(0, count));
+    		}
+    
+    		// resulting list of declaration for this element with no pseudo-selectors (main list)(local cache)
+    		eldecl = new ArrayList<Declaration>();
+    		
+    		// for all candidates
+    		for (int i = 0; i < count; i++) {
+    		    
+    			final RuleSet rule = clist[i].getRule();
+    			StyleSheet sheet = rule.getStyleSheet();
+    			if (sheet == null)
+    			    log.warn("No source style sheet set for rule: {}", rule.toString());
+    			StyleSheet.Origin origin = (sheet == null) ? StyleSheet.Origin.AGENT : sheet.getOrigin();
+    			
+    			// for all selectors inside
+    			for (CompiledSelector cs : clist[i].getCompiledSelectors()) {
+    				final CombinedSelector s = cs.getSelector();
+    				if (!matchSelector(cs, e, walker)) {
+    					log.trace("CombinedSelector \"{}\" NOT matched!", s);
+    					continue;
+    				}
+    
+    				log.trace("CombinedSelector \"{}\" matched", s);
+    				
+    				PseudoDeclaration pseudo = cs.getPseudoElement();
+                    CombinedSelector.Specificity spec = cs.getSpecificity();
+    				if (pseudo == null)
+    				{
+        				// add to main list
+        				for (Declaration d : rule)
+        					eldecl.add(new AssignedDeclaration(d, spec, origin));
+    				}
+    				else
+    				{
+                        // add to pseudo lists
+                        for (Declaration d : rule)
+                            declarations.addDeclaration(e, pseudo, new AssignedDeclaration(d, spec, origin));
+    				}
+    
+    			}
+    		}
+		} finally {
+		    ctx.release();
 		}
 
 		// sort declarations
 		Collections.sort(eldecl); //sort the main list
-		log.debug("Sorted {} declarations.", eldecl.size());
-		log.trace("With values: {}", eldecl);
-		for (PseudoDeclaration p : pseudos)
+		if (log.isDebugEnabled()) {
+		    log.debug("Sorted {} declarations.", eldecl.size());
+		    log.trace("With values: {}", eldecl);
+		}
+		for (PseudoDeclaration p : declarations.pseudoSet(e))
 		    declarations.sortDeclarations(e, p); //sort pseudos
 		
 		// set the main list
@@ -347,7 +781,39 @@ public class Analyzer {
 	}
 
 	protected boolean elementSelectorMatches(final Selector s, final Element e) {
-		return s.matches(e, matcher, matchCond);
+		return s.matches(e, currentMatcher(), matchCond);
+	}
+	
+	/**
+	 * Obtains the matcher to be used for the elements being currently processed.
+	 * During the DOM traversal, this is a matcher that keeps the element facts.
+	 */
+	private ElementMatcher currentMatcher() {
+	    return (traversalMatcher != null) ? traversalMatcher : matcher;
+	}
+
+	/**
+	 * Checks whether a compiled selector matches the element. The DOM is accessed
+	 * directly; the walker position is not changed.
+	 * 
+	 * @param sel
+	 *            The compiled selector
+	 * @param e
+	 *            DOM Element
+	 * @param w
+	 *            Tree walker positioned at the element
+	 * @return {@code true} when the selector matches the element
+	 */
+	protected boolean matchSelector(CompiledSelector sel, Element e, TreeWalker w) {
+		if (traversalSnapshot != null) {
+		    if (e != snapshotElement) {
+		        snapshotElement = e;
+		        snapshotOrdinal = traversalSnapshot.indexOf(e);
+		    }
+		    if (snapshotOrdinal != TreeSnapshot.NONE)
+		        return sel.matches(traversalSnapshot, snapshotOrdinal, matchCond, traversalMemo);
+		}
+		return sel.matches(e, currentMatcher(), matchCond, traversalMemo);
 	}
 
 	protected boolean matchSelector(CombinedSelector sel, Element e, TreeWalker w) {
@@ -409,9 +875,47 @@ public class Analyzer {
 	 */
 	protected void classifyAllSheets(MediaSpec mediaspec)
 	{
-	    rules = new Holder();
-
-	    AnalyzerUtil.classifyAllSheets(sheets, rules, mediaspec);
+	    if (classificationCaching) {
+	        useClassifiedRules(getClassificationCache().getClassifiedRules(mediaspec), true);
+	    } else {
+	        final Holder own = new Holder();
+	        AnalyzerUtil.classifyAllSheets(sheets, own, mediaspec);
+	        useClassifiedRules(own, false);
+	    }
+	}
+	
+	/**
+	 * Uses the rules classified from the analyzer style sheets as the current rules.
+	 * When there are some base layers, the rules are composed with them.
+	 * @param own The rules of the analyzer style sheets
+	 * @param shared Are the rules shared with the classification cache?
+	 */
+	private void useClassifiedRules(Holder own, boolean shared)
+	{
+	    if (baseLayers != null && !baseLayers.isEmpty()) {
+	        final List<Holder> all = new ArrayList<Holder>(baseLayers.size() + 1);
+	        all.addAll(baseLayers);
+	        all.add(own);
+	        rules = Holder.layered(all);
+	    } else
+	        rules = own;
+	    sharedRules = shared;
+	}
+	
+	/**
+	 * Prepares the classified rules for being updated in place before the style sheets
+	 * are modified. The cached classifications are discarded and the rules shared with
+	 * the cache are replaced by a private classification. The base layers are not affected.
+	 * @param mediaspec The specification of the media the current rules have been classified for.
+	 */
+	protected void prepareRulesUpdate(MediaSpec mediaspec)
+	{
+	    classificationCache = null; //created again for the modified style sheets
+	    if (sharedRules) {
+	        final Holder own = new Holder();
+	        AnalyzerUtil.classifyAllSheets(sheets, own, mediaspec);
+	        useClassifiedRules(own, false);
+	    }
 	}
 	
 	/**
@@ -420,7 +924,7 @@ public class Analyzer {
 	 * @author kapy
 	 */
 	protected enum HolderItem {
-		ELEMENT(0), ID(1), CLASS(2), OTHER(3);
+		ELEMENT(0), ID(1), CLASS(2), ATTRIBUTE(3), PSEUDO(4), OTHER(5);
 
 		private int type;
 
@@ -443,11 +947,18 @@ public class Analyzer {
 	protected static class HolderSelector {
 		public HolderItem item;
 		public String key;
+		/** The pseudo class used as the key in case of HolderItem.PSEUDO */
+		public Selector.PseudoPage pseudo;
 
 		public HolderSelector(HolderItem item, String key) {
 			this.item = item;
 			this.key = key;
 		}
+
+		public HolderSelector(Selector.PseudoPage pseudo, String key) {
+			this(HolderItem.PSEUDO, key);
+			this.pseudo = pseudo;
+		}
 	}
 
 	/**
@@ -458,10 +969,37 @@ public class Analyzer {
 	public static final class OrderedRule implements Comparable<OrderedRule> {
 	    private final RuleSet rule;
         private final int order;
+        private CompiledSelector[] compiled;
+        private final BitSet media;
 	    
         public OrderedRule(RuleSet rule, int order) {
+            this(rule, order, null, null);
+        }
+
+        /**
+         * Creates a rule with the selectors already compiled.
+         * 
+         * @param rule The rule set
+         * @param order The rule order
+         * @param compiled The compiled selectors of the rule set
+         */
+        public OrderedRule(RuleSet rule, int order, CompiledSelector[] compiled) {
+            this(rule, order, compiled, null);
+        }
+
+        /**
+         * Creates a rule that only applies to some of the media evaluated together.
+         * 
+         * @param rule The rule set
+         * @param order The rule order
+         * @param compiled The compiled selectors of the rule set
+         * @param media The indices of the media the rule applies to or {@code null} for all the media
+         */
+        public OrderedRule(RuleSet rule, int order, CompiledSelector[] compiled, BitSet media) {
             this.rule = rule;
             this.order = order;
+            this.compiled = compiled;
+            this.media = media;
         }
 
         public RuleSet getRule() {
@@ -472,6 +1010,35 @@ public class Analyzer {
             return order;
         }
 
+        /**
+         * Obtains the media the rule applies to when the rules are classified for several
+         * media at once.
+         * 
+         * @return The indices of the media in the evaluated list or {@code null} when the rule
+         * applies to all of them
+         */
+        public BitSet getMedia() {
+            return media;
+        }
+
+        /**
+         * Obtains the compiled selectors of the rule set. The selectors are compiled
+         * when used for the first time.
+         * 
+         * @return The compiled selectors in the order of the rule set selectors
+         */
+        public CompiledSelector[] getCompiledSelectors() {
+            CompiledSelector[] ret = compiled;
+            if (ret == null) {
+                final CombinedSelector[] selectors = rule.getSelectors();
+                ret = new CompiledSelector[selectors.length];
+                for (int i = 0; i < ret.length; i++)
+                    ret[i] = CompiledSelector.compile(selectors[i]);
+                compiled = ret;
+            }
+            return ret;
+        }
+
         public int compareTo(OrderedRule o) {
             return getOrder() - o.getOrder();
         }
@@ -485,7 +1052,15 @@ public class Analyzer {
 	
 	/**
 	 * Holds list of maps of list. This is used to classify rulesets into
-	 * structure which is easily accessible by analyzator
+	 * structure which is easily accessible by analyzator. Each list of rules
+	 * is kept sorted by the rule order so that the lists may be merged
+	 * without sorting.
+	 * 
+	 * A holder may be also composed of several independently classified layers
+	 * (e.g. the user agent style sheet, the site style sheets and the document
+	 * style sheets) using {@link #layered(List)}. The rules of each layer follow
+	 * all the rules of the preceding layers. The layers shared by several
+	 * documents should be frozen so that they cannot be modified.
 	 * 
 	 * @author kapy
 	 * 
@@ -497,6 +1072,24 @@ public class Analyzer {
 
 		/** OTHER rules are stored there */
 		private List<OrderedRule> others;
+		
+		/** The keys of the PSEUDO group in the order of their first use */
+		private List<String> pseudoKeys;
+		
+		/** The pseudo classes corresponding to the PSEUDO keys */
+		private List<Selector.PseudoPage> pseudoClasses;
+		
+		/** The order to be used for the next inserted rule */
+		private int nextOrder;
+		
+		/** The compiler used for the selectors of the inserted rules */
+		private SelectorCompiler compiler;
+		
+		/** The layers of a layered holder or {@code null} */
+		private List<Holder> layers;
+		
+		/** Is the holder frozen, i.e. read only? */
+		private boolean frozen;
 
 		public Holder() {
 			// create list of items
@@ -510,9 +1103,19 @@ public class Analyzer {
 				else
 					items.add(new HashMap<String, List<OrderedRule>>());
 			}
+			pseudoKeys = new ArrayList<String>();
+			pseudoClasses = new ArrayList<Selector.PseudoPage>();
+			compiler = new SelectorCompiler();
 		}
 
 		public boolean isEmpty() {
+			if (layers != null) {
+			    for (Holder layer : layers) {
+			        if (!layer.isEmpty())
+			            return false;
+			    }
+			    return true;
+			}
 			for(HolderItem hi: HolderItem.values()) {
 				if(hi == HolderItem.OTHER) { 
 					if(!others.isEmpty()) return false;
@@ -529,11 +1132,17 @@ public class Analyzer {
 			Holder union = new Holder();
 			if(one==null) one = new Holder();
 			if(two==null) two = new Holder();
+			if (one.layers != null || two.layers != null)
+			    throw new IllegalArgumentException("Layered holders cannot be merged");
+			union.nextOrder = Math.max(one.nextOrder, two.nextOrder);
+			union.addPseudoClasses(one);
+			union.addPseudoClasses(two);
 			
 			for(HolderItem hi: HolderItem.values()) {
 				if(hi == HolderItem.OTHER) {
 					union.others.addAll(one.others);
 					union.others.addAll(two.others);
+					Collections.sort(union.others);
 				}
 				else {
 					
@@ -546,7 +1155,10 @@ public class Analyzer {
 					for(String key: twoMap.keySet()) {
 						// map already contains this as key, append to list
 						if(unionMap.containsKey(key)) {
-							unionMap.get(key).addAll(twoMap.get(key));
+							List<OrderedRule> list = new ArrayList<OrderedRule>(unionMap.get(key));
+							list.addAll(twoMap.get(key));
+							Collections.sort(list);
+							unionMap.put(key, list);
 						}
 						// we could directly add elements
 						else {
@@ -559,6 +1171,78 @@ public class Analyzer {
 			return union;
 		}
 		
+		/**
+		 * Composes a holder of several layers without copying their contents. The rules
+		 * of each layer follow all the rules of the preceding layers regardless of their
+		 * order numbers so that the layers may be classified independently. The new rules
+		 * are inserted to the last layer and the rules are only removed from the layers
+		 * that are not frozen. The layers should not be modified by other means while
+		 * the composed holder is in use.
+		 * 
+		 * @param layers
+		 *            The layers in the order of their precedence. The layers of the layered
+		 *            holders are used directly.
+		 * @return The layered holder
+		 */
+		public static Holder layered(List<Holder> layers) {
+		    final List<Holder> flat = new ArrayList<Holder>(layers.size() + 1);
+		    for (Holder layer : layers) {
+		        if (layer.layers != null)
+		            flat.addAll(layer.layers);
+		        else
+		            flat.add(layer);
+		    }
+		    if (flat.isEmpty())
+		        flat.add(new Holder());
+		    final Holder ret = new Holder();
+		    ret.layers = flat;
+		    return ret;
+		}
+		
+		/**
+		 * Checks whether the holder is composed of layers.
+		 * 
+		 * @return {@code true} for the holders created by {@link #layered(List)}
+		 */
+		public boolean isLayered() {
+		    return layers != null;
+		}
+		
+		/**
+		 * Obtains the layers of the holder.
+		 * 
+		 * @return The layers in the order of their precedence; a holder that is not layered
+		 *         consists of a single layer: itself
+		 */
+		public List<Holder> getLayers() {
+		    if (layers != null)
+		        return Collections.unmodifiableList(layers);
+		    else
+		        return Collections.singletonList(this);
+		}
+		
+		/**
+		 * Makes the holder read only. The attempts to insert or remove the rules
+		 * fail with an {@link UnsupportedOperationException} afterwards.
+		 */
+		public void freeze() {
+		    frozen = true;
+		}
+		
+		/**
+		 * Checks whether the holder is read only.
+		 * 
+		 * @return {@code true} when the holder has been frozen
+		 */
+		public boolean isFrozen() {
+		    return frozen;
+		}
+		
+		private void checkModifiable() {
+		    if (frozen)
+		        throw new UnsupportedOperationException("The holder is frozen");
+		}
+		
 		/**
 		 * Inserts Ruleset into group identified by HolderType, and optionally
 		 * by key value
@@ -572,9 +1256,17 @@ public class Analyzer {
 		 */
 		public void insert(HolderItem item, String key, OrderedRule value) {
 
+			checkModifiable();
+			if (layers != null) {
+			    layers.get(layers.size() - 1).insert(item, key, value);
+			    return;
+			}
+			if (value.getOrder() >= nextOrder)
+				nextOrder = value.getOrder() + 1;
+			
 			// check others and if so, insert item
 			if (item == HolderItem.OTHER) {
-				others.add(value);
+				insertSorted(others, value);
 				return;
 			}
 
@@ -586,9 +1278,52 @@ public class Analyzer {
 				map.put(key, list);
 			}
 
-			list.add(value);
+			insertSorted(list, value);
 
 		}
+		
+		/**
+		 * Inserts Ruleset into the PSEUDO group identified by a pseudo class.
+		 * 
+		 * @param pseudo
+		 *            The pseudo class that must be satisfied by the element
+		 * @param key
+		 *            The key that identifies the pseudo class
+		 * @param value
+		 *            Value to be store inside
+		 */
+		public void insertPseudoClass(Selector.PseudoPage pseudo, String key, OrderedRule value) {
+		    checkModifiable();
+		    if (layers != null) {
+		        layers.get(layers.size() - 1).insertPseudoClass(pseudo, key, value);
+		        return;
+		    }
+		    if (!pseudoKeys.contains(key)) {
+		        pseudoKeys.add(key);
+		        pseudoClasses.add(pseudo);
+		    }
+		    insert(HolderItem.PSEUDO, key, value);
+		}
+		
+		private void addPseudoClasses(Holder src) {
+		    for (int i = 0; i < src.pseudoKeys.size(); i++) {
+		        if (!pseudoKeys.contains(src.pseudoKeys.get(i))) {
+		            pseudoKeys.add(src.pseudoKeys.get(i));
+		            pseudoClasses.add(src.pseudoClasses.get(i));
+		        }
+		    }
+		}
+		
+		/**
+		 * Inserts the rule to a list so that the list remains sorted by the rule order.
+		 * The rules are usually inserted in their order so that they are just appended.
+		 */
+		private static void insertSorted(List<OrderedRule> list, OrderedRule value) {
+		    int pos = list.size();
+		    while (pos > 0 && list.get(pos - 1).getOrder() > value.getOrder())
+		        pos--;
+		    list.add(pos, value);
+		}
 
 		/**
 		 * Returns list of rules (ruleset) for given holder and key
@@ -598,10 +1333,25 @@ public class Analyzer {
 		 * @param key
 		 *            Key or <code>null</code> in case of HolderItem.OTHER
 		 * @return List of rules or <code>null</code> if not found under given
-		 *         combination of key and item
+		 *         combination of key and item. For a layered holder, a new list
+		 *         that contains the rules of all the layers in their precedence
+		 *         is created.
 		 */
 		public List<OrderedRule> get(HolderItem item, String key) {
 
+			if (layers != null) {
+			    List<OrderedRule> ret = null;
+			    for (Holder layer : layers) {
+			        final List<OrderedRule> list = layer.get(item, key);
+			        if (list != null) {
+			            if (ret == null)
+			                ret = new ArrayList<OrderedRule>();
+			            ret.addAll(list);
+			        }
+			    }
+			    return ret;
+			}
+
 			// check others
 			if (item == HolderItem.OTHER)
 				return others;
@@ -609,10 +1359,184 @@ public class Analyzer {
 			return items.get(item.type()).get(key);
 		}
 		
+		/**
+		 * Obtains the number of the pseudo classes used as the keys of the PSEUDO group.
+		 * 
+		 * @return The number of pseudo classes
+		 */
+		public int getPseudoClassCount() {
+		    if (layers != null) {
+		        int cnt = 0;
+		        for (Holder layer : layers)
+		            cnt += layer.getPseudoClassCount();
+		        return cnt;
+		    }
+		    return pseudoKeys.size();
+		}
+		
+		/**
+		 * Obtains a pseudo class used as a key of the PSEUDO group.
+		 * 
+		 * @param index
+		 *            The pseudo class index
+		 * @return The pseudo class
+		 */
+		public Selector.PseudoPage getPseudoClass(int index) {
+		    if (layers != null) {
+		        for (Holder layer : layers) {
+		            if (index < layer.getPseudoClassCount())
+		                return layer.getPseudoClass(index);
+		            index -= layer.getPseudoClassCount();
+		        }
+		        throw new IndexOutOfBoundsException("Pseudo class index out of range");
+		    }
+		    return pseudoClasses.get(index);
+		}
+		
+		/**
+		 * Obtains the key of the PSEUDO group that corresponds to the given pseudo class.
+		 * 
+		 * @param index
+		 *            The pseudo class index
+		 * @return The key to be used for {@link #get(HolderItem, String)}
+		 */
+		public String getPseudoClassKey(int index) {
+		    if (layers != null) {
+		        for (Holder layer : layers) {
+		            if (index < layer.getPseudoClassCount())
+		                return layer.getPseudoClassKey(index);
+		            index -= layer.getPseudoClassCount();
+		        }
+		        throw new IndexOutOfBoundsException("Pseudo class index out of range");
+		    }
+		    return pseudoKeys.get(index);
+		}
+		
+		/**
+		 * Removes all the occurences of the given rule set from all the groups.
+		 * 
+		 * @param rule
+		 *            The rule set to be removed
+		 * @return The number of removed items
+		 */
+		public int remove(RuleSet rule) {
+		    
+		    checkModifiable();
+		    if (layers != null) {
+		        int cnt = 0;
+		        for (Holder layer : layers) {
+		            if (!layer.isFrozen())
+		                cnt += layer.remove(rule);
+		        }
+		        return cnt;
+		    }
+		    int cnt = removeFrom(others, rule);
+		    for (Map<String, List<OrderedRule>> map : items) {
+		        for (Iterator<List<OrderedRule>> it = map.values().iterator(); it.hasNext(); ) {
+		            List<OrderedRule> list = it.next();
+		            cnt += removeFrom(list, rule);
+		            if (list.isEmpty())
+		                it.remove();
+		        }
+		    }
+		    return cnt;
+		}
+		
+		private int removeFrom(List<OrderedRule> list, RuleSet rule) {
+		    int cnt = 0;
+		    for (Iterator<OrderedRule> it = list.iterator(); it.hasNext(); ) {
+		        if (it.next().getRule() == rule) {
+		            it.remove();
+		            cnt++;
+		        }
+		    }
+		    return cnt;
+		}
+		
+		/**
+		 * Obtains the compiler that should be used for the selectors of the inserted rules
+		 * so that the equal simple selectors are shared among the rules.
+		 * 
+		 * @return The selector compiler
+		 */
+		public SelectorCompiler getCompiler() {
+		    if (layers != null)
+		        return layers.get(layers.size() - 1).getCompiler();
+		    return compiler;
+		}
+		
+		/**
+		 * Obtains the distinct compilers used by the layers of the holder.
+		 * 
+		 * @return The list of compilers in the order of the layers
+		 */
+		public List<SelectorCompiler> getCompilers() {
+		    if (layers == null)
+		        return Collections.singletonList(compiler);
+		    final List<SelectorCompiler> ret = new ArrayList<SelectorCompiler>(layers.size());
+		    for (Holder layer : layers) {
+		        if (!ret.contains(layer.getCompiler()))
+		            ret.add(layer.getCompiler());
+		    }
+		    return ret;
+		}
+		
+		/**
+		 * Obtains the symbol tables of the compilers used by the layers of the holder.
+		 * 
+		 * @return The symbol tables in the order of the layers
+		 */
+		public SymbolTable[] getSymbols() {
+		    final List<SelectorCompiler> compilers = getCompilers();
+		    final SymbolTable[] ret = new SymbolTable[compilers.size()];
+		    for (int i = 0; i < ret.length; i++)
+		        ret[i] = compilers.get(i).getSymbols();
+		    return ret;
+		}
+		
+		/**
+		 * Obtains the order that will be assigned to the next rule added after
+		 * all the rules contained in the holder.
+		 * 
+		 * @return The order greater than the order of all the contained rules
+		 */
+		public int getNextOrder() {
+		    if (layers != null)
+		        return layers.get(layers.size() - 1).getNextOrder();
+		    return nextOrder;
+		}
+		
+		/**
+		 * Returns all the rules stored in the holder regardless of their classification.
+		 * A rule may be contained multiple times when it has multiple selectors.
+		 * 
+		 * @return List of all the stored rules
+		 */
+		public List<OrderedRule> getAllRules() {
+		    
+		    if (layers != null) {
+		        List<OrderedRule> ret = new ArrayList<OrderedRule>();
+		        for (Holder layer : layers)
+		            ret.addAll(layer.getAllRules());
+		        return ret;
+		    }
+		    List<OrderedRule> ret = new ArrayList<OrderedRule>(others);
+		    for (Map<String, List<OrderedRule>> map : items) {
+		        for (List<OrderedRule> list : map.values())
+		            ret.addAll(list);
+		    }
+		    return ret;
+		}
+		
 		
 		public String contentCount(){
 			StringBuilder sb = new StringBuilder();
 			
+			if (layers != null) {
+			    for (Holder layer : layers)
+			        sb.append("[").append(layer.contentCount()).append("] ");
+			    return sb.toString();
+			}
 			for(HolderItem hi: HolderItem.values()) {
 				if(hi == HolderItem.OTHER) {
 					sb.append(hi.name())
@@ -636,6 +1560,11 @@ public class Analyzer {
 		public String toString() {
 			StringBuilder sb = new StringBuilder();
 			
+			if (layers != null) {
+			    for (int i = 0; i < layers.size(); i++)
+			        sb.append("LAYER ").append(i).append(":\n").append(layers.get(i));
+			    return sb.toString();
+			}
 			for(HolderItem hi: HolderItem.values()) {
 				if(hi == HolderItem.OTHER) {
 					sb.append(hi.name())
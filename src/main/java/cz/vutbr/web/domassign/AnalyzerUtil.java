@@ -2,14 +2,14 @@ package cz.vutbr.web.domassign;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 
 import cz.vutbr.web.css.CSSFactory;
@@ -26,6 +26,9 @@ import cz.vutbr.web.css.RuleSet;
 import cz.vutbr.web.css.Selector;
 import cz.vutbr.web.css.Selector.PseudoDeclaration;
 import cz.vutbr.web.css.StyleSheet;
+import cz.vutbr.web.csskit.ElementFacts;
+import cz.vutbr.web.csskit.ElementMatcherCached;
+import cz.vutbr.web.csskit.SymbolTable;
 import cz.vutbr.web.domassign.Analyzer.Holder;
 import cz.vutbr.web.domassign.Analyzer.HolderItem;
 import cz.vutbr.web.domassign.Analyzer.HolderSelector;
@@ -60,56 +63,53 @@ public final class AnalyzerUtil {
 	    return rules;
     }
 
+    /**
+     * Classifies the rules of a style sheet to a frozen holder that may be used as a layer
+     * of the rules of many documents (see {@link Holder#layered(List)}).
+     * 
+     * @param sheet the style sheet
+     * @param mediaspec the media the rules are classified for
+     * @return the classified rules that cannot be modified
+     */
+    public static Holder getClassifiedLayer(final StyleSheet sheet, final MediaSpec mediaspec) {
+        final Holder rules = getClassifiedRules(Collections.singletonList(sheet), mediaspec);
+        rules.freeze();
+        return rules;
+    }
+
     public static NodeData getElementStyle(Element el, PseudoDeclaration pseudo, final ElementMatcher matcher, MatchCondition matchCond, OrderedRule[] applicableRules)
     {
     	return makeNodeData(computeDeclarations(el, pseudo, applicableRules, matcher, matchCond));
     }
 
+    /**
+     * Computes the style of an element of a tree snapshot. The selectors are matched
+     * against the snapshot using its tree adapter.
+     */
+    public static NodeData getElementStyle(TreeSnapshot<?> snapshot, int ord, PseudoDeclaration pseudo, MatchCondition matchCond, OrderedRule[] applicableRules)
+    {
+        return makeNodeData(computeDeclarations(null, snapshot, ord, pseudo, applicableRules, null, matchCond));
+    }
+
 	public static OrderedRule[] getApplicableRules(final Element e, final Holder holder, final RuleSet[] elementRuleSets)
 	{
-        // create set of possible candidates applicable to given element
-        // set is automatically filtered to not contain duplicates
-        final Set<OrderedRule> candidates = new HashSet<OrderedRule>();
-
-        // match element classes
-        for (final String cname : CSSFactory.getElementMatcher().elementClasses(e)) {
-            // holder contains rule with given class
-            final List<OrderedRule> classRules = holder.get(HolderItem.CLASS, cname.toLowerCase());
-            if (classRules != null)
-                candidates.addAll(classRules);
-        }
-        // log.trace("After CLASSes {} total candidates.", candidates.size());
-
-        // match IDs
-        final String id = CSSFactory.getElementMatcher().elementID(e);
-        if (id != null && id.length() != 0) {
-            final List<OrderedRule> idRules = holder.get(HolderItem.ID, id.toLowerCase());
-            if (idRules != null)
-                candidates.addAll(idRules);
-        }
-        // log.trace("After IDs {} total candidates.", candidates.size());
-        
-        // match elements
-        final String name = CSSFactory.getElementMatcher().elementName(e);
-        if (name != null) {
-            final List<OrderedRule> nameRules = holder.get(HolderItem.ELEMENT, name.toLowerCase());
-            if (nameRules != null)
-                candidates.addAll(nameRules);
+        // collect the possible candidates applicable to given element
+        // the context merges the sorted buckets and filters duplicates so that the rules are
+        // in order as they were found in CSS definition
+        final MatchContext ctx = MatchContext.acquire();
+        final OrderedRule[] clist;
+        final int totalCandidates;
+        try {
+            collectCandidates(ctx, e, holder, CSSFactory.getElementMatcher(), null);
+            totalCandidates = ctx.merge();
+            final int netCandidates = elementRuleSets == null ? totalCandidates : totalCandidates + elementRuleSets.length;
+    
+            // transform to array to speed up traversal
+            clist = new OrderedRule[netCandidates];
+            System.arraycopy(ctx.getCandidates(), 0, clist, 0, totalCandidates);
+        } finally {
+            ctx.release();
         }
-        // log.trace("After ELEMENTs {} total candidates.", candidates.size());
-
-        // others
-        candidates.addAll(holder.get(HolderItem.OTHER, null));
-
-        final int totalCandidates = candidates.size();
-        final int netCandidates = elementRuleSets == null ? totalCandidates : totalCandidates + elementRuleSets.length;
-
-        // log.debug("Totally {} candidates.", totalCandidates);
-
-        // transform to array to speed up traversal
-        // and sort rules in order as they were found in CSS definition
-        final OrderedRule[] clist = (OrderedRule[]) candidates.toArray(new OrderedRule[netCandidates]);
-        Arrays.sort(clist, 0, totalCandidates);
 
         // Append the element rules
         if (elementRuleSets != null) {
@@ -125,6 +125,174 @@ public final class AnalyzerUtil {
         return clist;
 	}
 
+	/**
+	 * Adds the groups of the holder that may contain the rules applicable to the element
+	 * to the match context.
+	 * 
+	 * @param ctx The context the groups are added to
+	 * @param e The element
+	 * @param holder The classified rules
+	 * @param matcher The element matcher used for obtaining the element classes, ID and name
+	 * @param matchCond The match condition used for the dynamic pseudo classes. When {@code null},
+	 * the rules with the dynamic pseudo classes are always included.
+	 */
+	static void collectCandidates(final MatchContext ctx, final Element e, final Holder holder,
+	        final ElementMatcher matcher, final MatchCondition matchCond)
+	{
+	    // the layers are merged one by one so that they keep their precedence
+	    if (holder.isLayered()) {
+	        for (final Holder layer : holder.getLayers()) {
+	            collectCandidates(ctx, e, layer, matcher, matchCond);
+	            ctx.merge();
+	        }
+	        return;
+	    }
+	    
+	    // the values resolved against the symbols of the holder are looked up without converting them
+	    if (matcher instanceof ElementMatcherCached
+	            && ((ElementMatcherCached) matcher).resolves(holder.getCompiler().getSymbols())) {
+	        collectSymbolCandidates(ctx, e, holder, (ElementMatcherCached) matcher);
+	    } else {
+	        collectValueCandidates(ctx, e, holder, matcher);
+	    }
+        
+        // match attribute names
+        final NamedNodeMap attrs = e.getAttributes();
+        if (attrs != null) {
+            for (int i = 0; i < attrs.getLength(); i++)
+                ctx.addAll(holder.get(HolderItem.ATTRIBUTE, attrs.item(i).getNodeName().toLowerCase()));
+        }
+        
+        // match pseudo classes
+        for (int i = 0; i < holder.getPseudoClassCount(); i++) {
+            final Selector.PseudoPage pseudo = holder.getPseudoClass(i);
+            if ((matchCond == null && isDynamicPseudoClass(pseudo)) || pseudo.matches(e, matcher, matchCond))
+                ctx.addAll(holder.get(HolderItem.PSEUDO, holder.getPseudoClassKey(i)));
+        }
+
+        // others
+        ctx.addAll(holder.get(HolderItem.OTHER, null));
+	}
+	
+	/**
+	 * Adds the groups of the element classes, ID and name obtained from the element matcher.
+	 */
+	private static void collectValueCandidates(final MatchContext ctx, final Element e, final Holder holder,
+	        final ElementMatcher matcher)
+	{
+        // match element classes
+        for (final String cname : matcher.elementClasses(e)) {
+            // holder contains rule with given class
+            ctx.addAll(holder.get(HolderItem.CLASS, cname.toLowerCase()));
+        }
+
+        // match IDs
+        final String id = matcher.elementID(e);
+        if (id != null && id.length() != 0) {
+            ctx.addAll(holder.get(HolderItem.ID, id.toLowerCase()));
+        }
+        
+        // match elements
+        final String name = matcher.elementName(e);
+        if (name != null) {
+            ctx.addAll(holder.get(HolderItem.ELEMENT, name.toLowerCase()));
+        }
+	}
+	
+	/**
+	 * Adds the groups of the element classes, ID and name using the element symbols. The values
+	 * that are not contained in the symbol table of the holder cannot be used by any of its rules;
+	 * they are skipped.
+	 */
+	private static void collectSymbolCandidates(final MatchContext ctx, final Element e, final Holder holder,
+	        final ElementMatcherCached matcher)
+	{
+	    final ElementFacts facts = matcher.getFacts(e);
+	    for (final String cname : facts.getClassSymbols())
+	        ctx.addAll(holder.get(HolderItem.CLASS, matcher.getKey(cname)));
+	    
+	    if (facts.getIdSymbol() != SymbolTable.UNKNOWN)
+	        ctx.addAll(holder.get(HolderItem.ID, matcher.getKey(facts.getIdSymbol())));
+	    
+	    if (facts.getNameSymbol() != SymbolTable.UNKNOWN)
+	        ctx.addAll(holder.get(HolderItem.ELEMENT, matcher.getKey(facts.getNameSymbol())));
+	}
+	
+	/**
+	 * Adds the groups of the holder that may contain the rules applicable to an element
+	 * of a tree snapshot to the match context.
+	 * 
+	 * @param ctx The context the groups are added to
+	 * @param snapshot The tree snapshot
+	 * @param ord The element ordinal in the snapshot
+	 * @param holder The classified rules
+	 * @param matchCond The match condition used for the dynamic pseudo classes. When {@code null},
+	 * the rules with the dynamic pseudo classes are always included.
+	 */
+	static <N> void collectCandidates(final MatchContext ctx, final TreeSnapshot<N> snapshot, final int ord,
+	        final Holder holder, final MatchCondition matchCond)
+	{
+	    if (holder.isLayered()) {
+	        for (final Holder layer : holder.getLayers()) {
+	            collectCandidates(ctx, snapshot, ord, layer, matchCond);
+	            ctx.merge();
+	        }
+	        return;
+	    }
+	    
+	    final TreeAdapter<N> adapter = snapshot.getAdapter();
+	    final N node = snapshot.getNode(ord);
+	    
+	    for (final String cname : adapter.getClassNames(node))
+	        ctx.addAll(holder.get(HolderItem.CLASS, cname.toLowerCase()));
+	    
+	    final String id = adapter.getId(node);
+	    if (id != null && id.length() != 0)
+	        ctx.addAll(holder.get(HolderItem.ID, id.toLowerCase()));
+	    
+	    final String name = adapter.getName(node);
+	    if (name != null)
+	        ctx.addAll(holder.get(HolderItem.ELEMENT, name.toLowerCase()));
+	    
+	    for (final String aname : adapter.getAttributeNames(node))
+	        ctx.addAll(holder.get(HolderItem.ATTRIBUTE, aname.toLowerCase()));
+	    
+	    for (int i = 0; i < holder.getPseudoClassCount(); i++) {
+	        final Selector.PseudoPage pseudo = holder.getPseudoClass(i);
+	        if ((matchCond == null && isDynamicPseudoClass(pseudo)) || snapshot.matchesPart(ord, pseudo, matchCond))
+	            ctx.addAll(holder.get(HolderItem.PSEUDO, holder.getPseudoClassKey(i)));
+	    }
+	    
+	    ctx.addAll(holder.get(HolderItem.OTHER, null));
+	}
+	
+	/**
+	 * Checks whether the pseudo class depends on a match condition.
+	 */
+	static boolean isDynamicPseudoClass(final Selector.PseudoPage pseudo)
+	{
+	    final PseudoDeclaration decl = pseudo.getDeclaration();
+	    if (decl == null)
+	        return false; //unknown pseudo classes never match
+	    switch (decl) {
+	        case FIRST_CHILD:
+	        case LAST_CHILD:
+	        case ONLY_CHILD:
+	        case FIRST_OF_TYPE:
+	        case LAST_OF_TYPE:
+	        case ONLY_OF_TYPE:
+	        case NTH_CHILD:
+	        case NTH_LAST_CHILD:
+	        case NTH_OF_TYPE:
+	        case NTH_LAST_OF_TYPE:
+	        case ROOT:
+	        case EMPTY:
+	            return false;
+	        default:
+	            return true;
+	    }
+	}
+
 	static NodeData makeNodeData(final List<Declaration> decls)
 	{
 		final NodeData main = CSSFactory.createNodeData();
@@ -145,6 +313,26 @@ public final class AnalyzerUtil {
 	        classifyRules(sheet, mediaspec, rules, orderCounter);
 	}
 	
+	/**
+	 * Classifies the rules in all the style sheets for several media at once. The rules
+	 * that apply to at least one of the media are inserted to the holder. The rules placed
+	 * in media rules that do not apply to all the media are marked by the set of the indices
+	 * of the media they apply to (see {@link OrderedRule#getMedia()}).
+	 * @param media The specifications of the media for evaluating the media queries.
+	 */
+	static void classifyAllSheets(final List<StyleSheet> sheets, final Holder rules, final List<MediaSpec> media)
+	{
+		final Counter orderCounter = new Counter();
+		for (final StyleSheet sheet : sheets)
+		{
+			for (final Rule<?> rule : sheet)
+				classifyRule(rule, media, rules, orderCounter);
+		}
+		if (log.isDebugEnabled())
+			log.debug("For media {} we have {} rules", media, rules.contentCount());
+	}
+	
+	
 	static boolean elementSelectorMatches(final Selector s, final Element e, final ElementMatcher matcher, final MatchCondition matchCond) {
 		return s.matches(e, matcher, matchCond);
 	}
@@ -158,6 +346,11 @@ public final class AnalyzerUtil {
     }
     
 	static List<Declaration> computeDeclarations(final Element e, final PseudoDeclaration pseudo, final OrderedRule[] clist, final ElementMatcher matcher, final MatchCondition matchCond) {
+	    return computeDeclarations(e, null, TreeSnapshot.NONE, pseudo, clist, matcher, matchCond);
+	}
+
+	private static List<Declaration> computeDeclarations(final Element e, final TreeSnapshot<?> snapshot, final int ord,
+	        final PseudoDeclaration pseudo, final OrderedRule[] clist, final ElementMatcher matcher, final MatchCondition matchCond) {
 		// resulting list of declaration for this element with no pseudo-selectors (main list)(local cache)
         final List<Declaration> eldecl = new ArrayList<Declaration>();
         
@@ -169,17 +362,19 @@ public final class AnalyzerUtil {
             final StyleSheet.Origin origin = (sheet == null) ? StyleSheet.Origin.AGENT : sheet.getOrigin();
             
             // for all selectors inside
-            for (final CombinedSelector s : rule.getSelectors()) {
+            for (final CompiledSelector cs : orule.getCompiledSelectors()) {
                 
-                if (!AnalyzerUtil.matchSelector(s, e, matcher, matchCond)) {
+                final CombinedSelector s = cs.getSelector();
+                final boolean matches = (snapshot != null) ? cs.matches(snapshot, ord, matchCond) : cs.matches(e, matcher, matchCond);
+                if (!matches) {
                     log.trace("CombinedSelector \"{}\" NOT matched!", s);
                     continue;
                 }
 
                 log.trace("CombinedSelector \"{}\" matched", s);
                 
-                final PseudoDeclaration psel = s.getPseudoElement();
-                final CombinedSelector.Specificity spec = s.computeSpecificity();
+                final PseudoDeclaration psel = cs.getPseudoElement();
+                final CombinedSelector.Specificity spec = cs.getSpecificity();
                 if (psel == pseudo)
                 {
                     // add to the resulting list
@@ -380,66 +575,84 @@ public final class AnalyzerUtil {
     }
     
 	/**
-	 * Classify CSS rule according its selector for to be of specified item(s)
+	 * Classify CSS rule according its selector to the most selective item.
+	 * The ID is preferred over the class name and the class name is preferred
+	 * over the element name. The selectors with no such key are classified by
+	 * their attribute name or pseudo class; only the remaining ones are
+	 * classified as OTHER.
 	 * 
 	 * @param selector
 	 *            CombinedSelector of rules
-	 * @return List of HolderSelectors to which selectors conforms
+	 * @return HolderSelector to which selector conforms
 	 */
-	private static List<HolderSelector> classifySelector(final CombinedSelector selector) {
-
-		final List<HolderSelector> hs = new ArrayList<HolderSelector>();
+	private static HolderSelector classifySelector(final CombinedSelector selector) {
 
 		try {
 			// last simple selector decided about all selector
 			final Selector last = selector.getLastSelector();
 
-			// is element or other (wildcard)
-			final String element = last.getElementName();
-			if (element != null) {
-				// wildcard
-				if (Selector.ElementName.WILDCARD.equals(element))
-					hs.add(new HolderSelector(HolderItem.OTHER, null));
-				// element
-				else
-					hs.add(new HolderSelector(HolderItem.ELEMENT, element
-							.toLowerCase()));
-			}
+			// is id
+			final String id = last.getIDName();
+			if (id != null)
+				return new HolderSelector(HolderItem.ID, id.toLowerCase());
 
 			// is class name
 			final String className = last.getClassName();
 			if (className != null)
-				hs.add(new HolderSelector(HolderItem.CLASS, className
-						.toLowerCase()));
+				return new HolderSelector(HolderItem.CLASS, className.toLowerCase());
 
-			// is id
-			final String id = last.getIDName();
-			if (id != null)
-				hs.add(new HolderSelector(HolderItem.ID, id.toLowerCase()));
+			// is element (not a wildcard)
+			final String element = last.getElementName();
+			if (element != null && !Selector.ElementName.WILDCARD.equals(element))
+				return new HolderSelector(HolderItem.ELEMENT, element.toLowerCase());
+
+			// is attribute
+			for (final Selector.SelectorPart part : last) {
+				if (part instanceof Selector.ElementAttribute)
+					return new HolderSelector(HolderItem.ATTRIBUTE,
+							((Selector.ElementAttribute) part).getAttribute().toLowerCase());
+			}
 
-			// is in others
-			if (hs.size() == 0)
-				hs.add(new HolderSelector(HolderItem.OTHER, null));
+			// is pseudo class
+			for (final Selector.SelectorPart part : last) {
+				if (part instanceof Selector.PseudoPage) {
+					final Selector.PseudoPage pseudo = (Selector.PseudoPage) part;
+					if (pseudo.getDeclaration() == null || !pseudo.getDeclaration().isPseudoElement())
+						return new HolderSelector(pseudo, pseudo.toString().toLowerCase());
+				}
+			}
 
-			return hs;
+			// is in others
+			return new HolderSelector(HolderItem.OTHER, null);
 
 		} catch (final UnsupportedOperationException e) {
 			log
 					.error("CombinedSelector does not include any selector, this should not happen!");
-			return Collections.emptyList();
+			return null;
 		}
 	}
 
 	private static class Counter {
-		private int count = 0;
+		private int count;
+		public Counter() {
+			this(0);
+		}
+		public Counter(int start) {
+			count = start;
+		}
 		public int getAndIncrement() {
 			return count++;
 		}
 	}
 
-	private static void insertClassified(final Holder holder, final List<HolderSelector> hs, final RuleSet value, final Counter orderCounter) {
-		for (final HolderSelector h : hs)
-			holder.insert(h.item, h.key, new OrderedRule(value, orderCounter.getAndIncrement()));
+	private static void insertClassified(final Holder holder, final HolderSelector h, final RuleSet value,
+	        final CompiledSelector[] compiled, final BitSet media, final Counter orderCounter) {
+		if (h == null)
+			return;
+		if (h.item == HolderItem.PSEUDO)
+			holder.insertPseudoClass(h.pseudo, h.key, new OrderedRule(value, orderCounter.getAndIncrement(), compiled, media));
+		else
+			holder.insert(h.item, h.key, new OrderedRule(value, orderCounter.getAndIncrement(), compiled, media));
 	}
 
 	/**
@@ -453,42 +666,7 @@ public final class AnalyzerUtil {
 	private static void classifyRules(final StyleSheet sheet, final MediaSpec mediaspec, final Holder rules, final Counter orderCounter) {
 
 		for (final Rule<?> rule : sheet) {
-			// this rule conforms to all media
-			if (rule instanceof RuleSet) {
-				final RuleSet ruleset = (RuleSet) rule;
-				for (final CombinedSelector s : ruleset.getSelectors()) {
-					insertClassified(rules, classifySelector(s), ruleset, orderCounter);
-				}
-			}
-			// this rule conforms to different media
-			else if (rule instanceof RuleMedia) {
-				final RuleMedia rulemedia = (RuleMedia) rule;
-
-				boolean mediaValid = false;
-                if(rulemedia.getMediaQueries()==null || rulemedia.getMediaQueries().isEmpty()) {
-                    //no media queries actually
-                    mediaValid = mediaspec.matchesEmpty();
-                } else {
-                    //find a matching query
-    				for (final MediaQuery media : rulemedia.getMediaQueries()) {
-                        if (mediaspec.matches(media)) {
-                            mediaValid = true;
-                            break;
-                        }
-    				}
-                }
-				
-                if (mediaValid)
-                {
-    				// for all rules in media set
-    				for (final RuleSet ruleset : rulemedia) {
-    					// for all selectors in there
-    					for (final CombinedSelector s : ruleset.getSelectors()) {
-   							insertClassified(rules, classifySelector(s), ruleset, orderCounter);
-    					}
-    				}
-                }
-			}
+			classifyRule(rule, mediaspec, rules, orderCounter);
 		}
 
 		// logging
@@ -500,4 +678,95 @@ public final class AnalyzerUtil {
 		}
 	}
 
+	/**
+	 * Classifies a rule that is added to an already classified set of rules. The rule is
+	 * placed after all the rules that are already contained in the holder.
+	 * 
+	 * @param rule The rule to be classified (a rule set or a media rule)
+	 * @param mediaspec The specification of the media for evaluating the media queries.
+	 * @param rules The holder to be extended
+	 */
+	static void classifyAdditionalRule(final Rule<?> rule, final MediaSpec mediaspec, final Holder rules) {
+		classifyRule(rule, mediaspec, rules, new Counter(rules.getNextOrder()));
+	}
+
+	private static void classifyRule(final Rule<?> rule, final MediaSpec mediaspec, final Holder rules, final Counter orderCounter) {
+		// this rule conforms to all media
+		if (rule instanceof RuleSet) {
+			final RuleSet ruleset = (RuleSet) rule;
+			final CompiledSelector[] compiled = rules.getCompiler().compile(ruleset);
+			for (final CombinedSelector s : ruleset.getSelectors()) {
+				insertClassified(rules, classifySelector(s), ruleset, compiled, null, orderCounter);
+			}
+		}
+		// this rule conforms to different media
+		else if (rule instanceof RuleMedia) {
+			final RuleMedia rulemedia = (RuleMedia) rule;
+			if (isMediaValid(rulemedia, mediaspec))
+			{
+				// for all rules in media set
+				for (final RuleSet ruleset : rulemedia) {
+					final CompiledSelector[] compiled = rules.getCompiler().compile(ruleset);
+					// for all selectors in there
+					for (final CombinedSelector s : ruleset.getSelectors()) {
+						insertClassified(rules, classifySelector(s), ruleset, compiled, null, orderCounter);
+					}
+				}
+			}
+		}
+	}
+
+	private static void classifyRule(final Rule<?> rule, final List<MediaSpec> media, final Holder rules, final Counter orderCounter) {
+		// this rule conforms to all media
+		if (rule instanceof RuleSet) {
+			final RuleSet ruleset = (RuleSet) rule;
+			final CompiledSelector[] compiled = rules.getCompiler().compile(ruleset);
+			for (final CombinedSelector s : ruleset.getSelectors()) {
+				insertClassified(rules, classifySelector(s), ruleset, compiled, null, orderCounter);
+			}
+		}
+		// this rule conforms to some of the media
+		else if (rule instanceof RuleMedia) {
+			final RuleMedia rulemedia = (RuleMedia) rule;
+			final BitSet valid = new BitSet(media.size());
+			for (int i = 0; i < media.size(); i++) {
+				if (isMediaValid(rulemedia, media.get(i)))
+					valid.set(i);
+			}
+			if (!valid.isEmpty())
+			{
+				// the rules valid for all the media are not marked
+				final BitSet mark = (valid.cardinality() == media.size()) ? null : valid;
+				for (final RuleSet ruleset : rulemedia) {
+					final CompiledSelector[] compiled = rules.getCompiler().compile(ruleset);
+					for (final CombinedSelector s : ruleset.getSelectors()) {
+						insertClassified(rules, classifySelector(s), ruleset, compiled, mark, orderCounter);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Checks whether the media rule applies to the given media.
+	 * 
+	 * @param rulemedia The media rule
+	 * @param mediaspec The specification of the media for evaluating the media queries.
+	 * @return {@code true} when the rules contained in the media rule should be used
+	 */
+	static boolean isMediaValid(final RuleMedia rulemedia, final MediaSpec mediaspec) {
+		if(rulemedia.getMediaQueries()==null || rulemedia.getMediaQueries().isEmpty()) {
+			//no media queries actually
+			return mediaspec.matchesEmpty();
+		} else {
+			//find a matching query
+			for (final MediaQuery media : rulemedia.getMediaQueries()) {
+				if (mediaspec.matches(media)) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
 }
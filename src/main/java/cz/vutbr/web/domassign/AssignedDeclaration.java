@@ -16,6 +16,7 @@ public class AssignedDeclaration extends DeclarationImpl implements Declaration
 	
 	protected CombinedSelector.Specificity spec;
 	protected StyleSheet.Origin origin;
+	protected Declaration original;
 
 	/**
 	 * Creates assigned declaration from specificity and shallow copy of declaration
@@ -26,6 +27,7 @@ public class AssignedDeclaration extends DeclarationImpl implements Declaration
 		super(d);
 		this.spec = spec;
 		this.origin = origin;
+		this.original = (d instanceof AssignedDeclaration) ? ((AssignedDeclaration) d).original : d;
 	}
 	
 	/**
@@ -37,6 +39,14 @@ public class AssignedDeclaration extends DeclarationImpl implements Declaration
 		this(d, s.computeSpecificity(), origin);
 	}
 	
+	/**
+	 * Obtains the style sheet declaration this declaration has been created from.
+	 * @return the original declaration
+	 */
+	public Declaration getOriginal() {
+		return original;
+	}
+	
 	@Override
 	public int compareTo(Declaration other) {
 		
@@ -0,0 +1,733 @@
+package cz.vutbr.web.domassign;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import cz.vutbr.web.css.CombinedSelector;
+import cz.vutbr.web.css.ElementMatcher;
+import cz.vutbr.web.css.MatchCondition;
+import cz.vutbr.web.css.Selector;
+import cz.vutbr.web.css.Selector.PseudoDeclaration;
+import cz.vutbr.web.csskit.ElementFacts;
+import cz.vutbr.web.csskit.ElementMatcherCached;
+import cz.vutbr.web.csskit.SelectorImpl;
+import cz.vutbr.web.csskit.SymbolTable;
+
+/**
+ * A combined selector compiled to a sequence of matching steps. Each step corresponds to a simple
+ * selector; it moves from the element matched by the previous step according to the combinator
+ * and checks the element with a set of tests created from the selector parts. The selector is
+ * evaluated from right to left in the same way as {@link AnalyzerUtil#matchSelector} does:
+ * each step uses the first suitable element found and no backtracking is performed. The DOM is
+ * accessed directly via the parent and sibling links; no tree walker is necessary. Alternatively,
+ * the selector may be evaluated on a {@link TreeSnapshot} of the document.
+ *
+ * The selectors compiled by a common {@link SelectorCompiler} share the equal simple selectors
+ * so that the results of matching them may be remembered by a {@link MatchMemo} during a single
+ * DOM traversal.
+ */
+public final class CompiledSelector
+{
+    private final CombinedSelector selector;
+    private final Step[] steps;
+    private final CombinedSelector.Specificity specificity;
+    private final PseudoDeclaration pseudoElement;
+
+    private CompiledSelector(CombinedSelector selector, Step[] steps)
+    {
+        this.selector = selector;
+        this.steps = steps;
+        this.specificity = selector.computeSpecificity();
+        this.pseudoElement = selector.getPseudoElement();
+    }
+
+    /**
+     * Compiles a combined selector.
+     * @param selector the selector to be compiled
+     * @return the compiled selector
+     */
+    public static CompiledSelector compile(CombinedSelector selector)
+    {
+        return compile(selector, null);
+    }
+
+    /**
+     * Compiles a combined selector using the shared simple selectors of a compiler.
+     * @param selector the selector to be compiled
+     * @param compiler the compiler that provides the shared simple selectors or {@code null}
+     * @return the compiled selector
+     */
+    static CompiledSelector compile(CombinedSelector selector, SelectorCompiler compiler)
+    {
+        final Step[] steps = new Step[selector.size()];
+        Selector.Combinator combinator = null;
+        for (int i = selector.size() - 1; i >= 0; i--)
+        {
+            final Selector s = selector.get(i);
+            final Compound tests = (compiler == null) ? new Compound(compileTests(s), null, -1) : compiler.getCompound(s);
+            final Step step;
+            if (combinator == Selector.Combinator.ADJACENT)
+                step = new AdjacentStep(tests);
+            else if (combinator == Selector.Combinator.PRECEDING)
+                step = new PrecedingStep(tests);
+            else if (combinator == Selector.Combinator.DESCENDANT)
+                step = new DescendantStep(tests);
+            else if (combinator == Selector.Combinator.CHILD)
+                step = new ChildStep(tests);
+            else
+                step = new SelfStep(tests);
+            steps[selector.size() - 1 - i] = step;
+            combinator = s.getCombinator();
+        }
+        return new CompiledSelector(selector, steps);
+    }
+
+    /**
+     * Obtains the source selector.
+     * @return the combined selector this selector has been compiled from
+     */
+    public CombinedSelector getSelector()
+    {
+        return selector;
+    }
+
+    /**
+     * Obtains the specificity of the source selector computed when the selector has been compiled.
+     * The returned specificity is shared and it must not be modified.
+     * @return the selector specificity
+     */
+    public CombinedSelector.Specificity getSpecificity()
+    {
+        return specificity;
+    }
+
+    /**
+     * Obtains the pseudo element of the source selector.
+     * @return the pseudo element or {@code null} when the selector applies to the element itself
+     */
+    public PseudoDeclaration getPseudoElement()
+    {
+        return pseudoElement;
+    }
+
+    /**
+     * Checks whether the selector matches the element.
+     * @param e the DOM element
+     * @param matcher the element matcher to be used
+     * @param cond the match condition used for the dynamic pseudo classes
+     * @return {@code true} when the selector matches the element
+     */
+    public boolean matches(Element e, ElementMatcher matcher, MatchCondition cond)
+    {
+        return matches(e, matcher, cond, null);
+    }
+
+    /**
+     * Checks whether the selector matches the element. The results of matching the ancestors
+     * and siblings are remembered in the given memo.
+     * @param e the DOM element
+     * @param matcher the element matcher to be used
+     * @param cond the match condition used for the dynamic pseudo classes
+     * @param memo the memo of the simple selector results or {@code null}
+     * @return {@code true} when the selector matches the element
+     */
+    boolean matches(Element e, ElementMatcher matcher, MatchCondition cond, MatchMemo memo)
+    {
+        Element current = e;
+        for (int i = 0; i < steps.length; i++)
+        {
+            current = steps[i].next(current, matcher, cond, memo);
+            if (current == null)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether the selector matches an element of a document snapshot. The parts that
+     * are not evaluated on the snapshot are matched by the tree adapter of the snapshot.
+     * @param snapshot the document snapshot
+     * @param ord the element ordinal in the snapshot
+     * @param cond the match condition used for the dynamic pseudo classes
+     * @return {@code true} when the selector matches the element
+     */
+    public boolean matches(TreeSnapshot<?> snapshot, int ord, MatchCondition cond)
+    {
+        return matches(snapshot, ord, cond, null);
+    }
+
+    /**
+     * Checks whether the selector matches an element of a document snapshot. The results of
+     * matching the ancestors and siblings are remembered in the given memo.
+     * @param snapshot the document snapshot
+     * @param ord the element ordinal in the snapshot
+     * @param cond the match condition used for the dynamic pseudo classes
+     * @param memo the memo of the simple selector results or {@code null}
+     * @return {@code true} when the selector matches the element
+     */
+    boolean matches(TreeSnapshot<?> snapshot, int ord, MatchCondition cond, MatchMemo memo)
+    {
+        int current = ord;
+        for (int i = 0; i < steps.length; i++)
+        {
+            current = steps[i].next(snapshot, current, cond, memo);
+            if (current == TreeSnapshot.NONE)
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public String toString()
+    {
+        return selector.toString();
+    }
+
+    //=========================================================================================
+
+    static Test[] compileTests(Selector s)
+    {
+        final List<Test> tests = new ArrayList<Test>(s.size());
+        for (Selector.SelectorPart part : s)
+        {
+            if (part == null) //syntax error (missing term)
+                return new Test[] {NEVER};
+            else if (part instanceof Selector.ElementName)
+            {
+                final String name = ((Selector.ElementName) part).getName();
+                if (!Selector.ElementName.WILDCARD.equals(name))
+                    tests.add(new NameTest(part, name));
+            }
+            else if (part instanceof Selector.ElementClass)
+                tests.add(new ClassTest(part, ((Selector.ElementClass) part).getClassName()));
+            else if (part instanceof Selector.ElementID)
+                tests.add(new IDTest(part, ((Selector.ElementID) part).getID()));
+            else if (part instanceof Selector.PseudoPage)
+            {
+                final Selector.PseudoPage pseudo = (Selector.PseudoPage) part;
+                final PseudoDeclaration decl = pseudo.getDeclaration();
+                if (decl == null) //unknown pseudo classes never match
+                    return new Test[] {NEVER};
+                else if (decl.isPseudoElement())
+                    continue; //pseudo elements are not tested on the element
+                else if (decl == PseudoDeclaration.FIRST_CHILD)
+                    tests.add(new ChildPositionTest(part, true, false));
+                else if (decl == PseudoDeclaration.LAST_CHILD)
+                    tests.add(new ChildPositionTest(part, false, true));
+                else if (decl == PseudoDeclaration.ONLY_CHILD)
+                    tests.add(new ChildPositionTest(part, true, true));
+                else if (decl == PseudoDeclaration.ROOT)
+                    tests.add(ROOT);
+                else if (AnalyzerUtil.isDynamicPseudoClass(pseudo))
+                    tests.add(new ConditionTest(pseudo));
+                else
+                    tests.add(new PartTest(part));
+            }
+            else
+                tests.add(new PartTest(part));
+        }
+        return tests.toArray(new Test[tests.size()]);
+    }
+
+    //=========================================================================================
+
+    /**
+     * A compiled simple selector. The simple selectors created by a compiler are identified
+     * by their index in the compiler.
+     */
+    static final class Compound
+    {
+        private final Test[] tests;
+        private final SelectorCompiler compiler;
+        private final int id;
+
+        public Compound(Test[] tests, SelectorCompiler compiler, int id)
+        {
+            this.tests = tests;
+            this.compiler = compiler;
+            this.id = id;
+        }
+
+        public boolean matches(Element e, ElementMatcher matcher, MatchCondition cond)
+        {
+            for (int i = 0; i < tests.length; i++)
+            {
+                if (!tests[i].matches(e, matcher, cond))
+                    return false;
+            }
+            return true;
+        }
+
+        /**
+         * Checks whether the simple selector matches the element and uses the memo
+         * when it has been created for the compiler of the simple selector.
+         */
+        public boolean matches(Element e, ElementMatcher matcher, MatchCondition cond, MatchMemo memo)
+        {
+            final int index = (memo == null || compiler == null) ? -1 : memo.indexOf(compiler, id);
+            if (index == -1)
+                return matches(e, matcher, cond);
+            final int known = memo.get(e, index);
+            if (known != MatchMemo.UNKNOWN)
+                return known == MatchMemo.MATCHES;
+            final boolean ret = matches(e, matcher, cond);
+            memo.put(e, index, ret);
+            return ret;
+        }
+
+        public boolean matches(TreeSnapshot<?> snapshot, int ord, MatchCondition cond)
+        {
+            for (int i = 0; i < tests.length; i++)
+            {
+                if (!tests[i].matches(snapshot, ord, cond))
+                    return false;
+            }
+            return true;
+        }
+
+        public boolean matches(TreeSnapshot<?> snapshot, int ord, MatchCondition cond, MatchMemo memo)
+        {
+            final int index = (memo == null || compiler == null) ? -1 : memo.indexOf(compiler, id);
+            if (index == -1)
+                return matches(snapshot, ord, cond);
+            final int known = memo.get(ord, index);
+            if (known != MatchMemo.UNKNOWN)
+                return known == MatchMemo.MATCHES;
+            final boolean ret = matches(snapshot, ord, cond);
+            memo.put(ord, index, ret);
+            return ret;
+        }
+    }
+
+    //=========================================================================================
+
+    /**
+     * A step that moves from an element to the next one to be tested.
+     */
+    private static abstract class Step
+    {
+        protected final Compound tests;
+
+        public Step(Compound tests)
+        {
+            this.tests = tests;
+        }
+
+        /**
+         * Finds the matching element.
+         * @return the matching element or {@code null} when no element matches
+         */
+        public abstract Element next(Element current, ElementMatcher matcher, MatchCondition cond, MatchMemo memo);
+
+        /**
+         * Finds the matching element in a snapshot.
+         * @return the matching element ordinal or {@link TreeSnapshot#NONE} when no element matches
+         */
+        public abstract int next(TreeSnapshot<?> snapshot, int current, MatchCondition cond, MatchMemo memo);
+    }
+
+    /** Tests the current element (the rightmost selector) */
+    private static final class SelfStep extends Step
+    {
+        public SelfStep(Compound tests)
+        {
+            super(tests);
+        }
+
+        @Override
+        public Element next(Element current, ElementMatcher matcher, MatchCondition cond, MatchMemo memo)
+        {
+            return tests.matches(current, matcher, cond) ? current : null;
+        }
+
+        @Override
+        public int next(TreeSnapshot<?> snapshot, int current, MatchCondition cond, MatchMemo memo)
+        {
+            return tests.matches(snapshot, current, cond) ? current : TreeSnapshot.NONE;
+        }
+    }
+
+    /** Tests the parent element */
+    private static final class ChildStep extends Step
+    {
+        public ChildStep(Compound tests)
+        {
+            super(tests);
+        }
+
+        @Override
+        public Element next(Element current, ElementMatcher matcher, MatchCondition cond, MatchMemo memo)
+        {
+            final Node parent = current.getParentNode();
+            if (parent != null && parent.getNodeType() == Node.ELEMENT_NODE
+                    && tests.matches((Element) parent, matcher, cond, memo))
+                return (Element) parent;
+            else
+                return null;
+        }
+
+        @Override
+        public int next(TreeSnapshot<?> snapshot, int current, MatchCondition cond, MatchMemo memo)
+        {
+            final int parent = snapshot.getParent(current);
+            if (parent != TreeSnapshot.NONE && tests.matches(snapshot, parent, cond, memo))
+                return parent;
+            else
+                return TreeSnapshot.NONE;
+        }
+    }
+
+    /** Finds the nearest matching ancestor */
+    private static final class DescendantStep extends Step
+    {
+        public DescendantStep(Compound tests)
+        {
+            super(tests);
+        }
+
+        @Override
+        public Element next(Element current, ElementMatcher matcher, MatchCondition cond, MatchMemo memo)
+        {
+            for (Node n = current.getParentNode(); n != null; n = n.getParentNode())
+            {
+                if (n.getNodeType() == Node.ELEMENT_NODE && tests.matches((Element) n, matcher, cond, memo))
+                    return (Element) n;
+            }
+            return null;
+        }
+
+        @Override
+        public int next(TreeSnapshot<?> snapshot, int current, MatchCondition cond, MatchMemo memo)
+        {
+            for (int n = snapshot.getParent(current); n != TreeSnapshot.NONE; n = snapshot.getParent(n))
+            {
+                if (tests.matches(snapshot, n, cond, memo))
+                    return n;
+            }
+            return TreeSnapshot.NONE;
+        }
+    }
+
+    /** Tests the previous element sibling */
+    private static final class AdjacentStep extends Step
+    {
+        public AdjacentStep(Compound tests)
+        {
+            super(tests);
+        }
+
+        @Override
+        public Element next(Element current, ElementMatcher matcher, MatchCondition cond, MatchMemo memo)
+        {
+            Node n = current.getPreviousSibling();
+            while (n != null && n.getNodeType() != Node.ELEMENT_NODE)
+                n = n.getPreviousSibling();
+            if (n != null && tests.matches((Element) n, matcher, cond, memo))
+                return (Element) n;
+            else
+                return null;
+        }
+
+        @Override
+        public int next(TreeSnapshot<?> snapshot, int current, MatchCondition cond, MatchMemo memo)
+        {
+            final int n = snapshot.getPreviousSibling(current);
+            if (n != TreeSnapshot.NONE && tests.matches(snapshot, n, cond, memo))
+                return n;
+            else
+                return TreeSnapshot.NONE;
+        }
+    }
+
+    /** Finds the nearest matching preceding sibling */
+    private static final class PrecedingStep extends Step
+    {
+        public PrecedingStep(Compound tests)
+        {
+            super(tests);
+        }
+
+        @Override
+        public Element next(Element current, ElementMatcher matcher, MatchCondition cond, MatchMemo memo)
+        {
+            for (Node n = current.getPreviousSibling(); n != null; n = n.getPreviousSibling())
+            {
+                if (n.getNodeType() == Node.ELEMENT_NODE && tests.matches((Element) n, matcher, cond, memo))
+                    return (Element) n;
+            }
+            return null;
+        }
+
+        @Override
+        public int next(TreeSnapshot<?> snapshot, int current, MatchCondition cond, MatchMemo memo)
+        {
+            for (int n = snapshot.getPreviousSibling(current); n != TreeSnapshot.NONE; n = snapshot.getPreviousSibling(n))
+            {
+                if (tests.matches(snapshot, n, cond, memo))
+                    return n;
+            }
+            return TreeSnapshot.NONE;
+        }
+    }
+
+    //=========================================================================================
+
+    /**
+     * A test of a single selector part.
+     */
+    static abstract class Test
+    {
+        /** The tested selector part or {@code null} */
+        protected final Selector.SelectorPart part;
+
+        public Test(Selector.SelectorPart part)
+        {
+            this.part = part;
+        }
+
+        public abstract boolean matches(Element e, ElementMatcher matcher, MatchCondition cond);
+
+        /**
+         * Tests an element of a snapshot. By default, the part is matched by the tree adapter.
+         */
+        public boolean matches(TreeSnapshot<?> snapshot, int ord, MatchCondition cond)
+        {
+            return snapshot.matchesPart(ord, part, cond);
+        }
+    }
+
+    private static final Test NEVER = new Test(null) {
+        @Override
+        public boolean matches(Element e, ElementMatcher matcher, MatchCondition cond)
+        {
+            return false;
+        }
+
+        @Override
+        public boolean matches(TreeSnapshot<?> snapshot, int ord, MatchCondition cond)
+        {
+            return false;
+        }
+    };
+
+    private static final Test ROOT = new Test(null) {
+        @Override
+        public boolean matches(Element e, ElementMatcher matcher, MatchCondition cond)
+        {
+            final Node parent = e.getParentNode();
+            return parent != null && parent.getNodeType() == Node.DOCUMENT_NODE;
+        }
+
+        @Override
+        public boolean matches(TreeSnapshot<?> snapshot, int ord, MatchCondition cond)
+        {
+            return snapshot.getParent(ord) == TreeSnapshot.NONE;
+        }
+    };
+
+    private static final class NameTest extends Test
+    {
+        private final String name;
+        private final String symbol;
+        private final String foldedSymbol;
+
+        public NameTest(Selector.SelectorPart part, String name)
+        {
+            super(part);
+            this.name = name;
+            if (part instanceof SelectorImpl.ElementNameImpl)
+            {
+                final SelectorImpl.ElementNameImpl source = (SelectorImpl.ElementNameImpl) part;
+                this.symbol = source.getSymbol();
+                this.foldedSymbol = source.getFoldedSymbol();
+            }
+            else
+            {
+                this.symbol = SymbolTable.symbol(name);
+                this.foldedSymbol = SymbolTable.foldedSymbol(name);
+            }
+        }
+
+        @Override
+        public boolean matches(Element e, ElementMatcher matcher, MatchCondition cond)
+        {
+            if (matcher instanceof ElementMatcherCached)
+                return ((ElementMatcherCached) matcher).matchesNameSymbol(e, symbol, foldedSymbol);
+            else
+                return matcher.matchesName(e, name);
+        }
+
+        @Override
+        public boolean matches(TreeSnapshot<?> snapshot, int ord, MatchCondition cond)
+        {
+            final ElementFacts facts = snapshot.getFacts(ord);
+            if (facts != null)
+                return snapshot.matchesNameSymbol(facts, symbol, foldedSymbol);
+            else
+                return super.matches(snapshot, ord, cond);
+        }
+    }
+
+    private static final class ClassTest extends Test
+    {
+        private final String className;
+        private final String symbol;
+        private final String foldedSymbol;
+
+        public ClassTest(Selector.SelectorPart part, String className)
+        {
+            super(part);
+            this.className = className;
+            if (part instanceof SelectorImpl.ElementClassImpl)
+            {
+                final SelectorImpl.ElementClassImpl source = (SelectorImpl.ElementClassImpl) part;
+                this.symbol = source.getSymbol();
+                this.foldedSymbol = source.getFoldedSymbol();
+            }
+            else
+            {
+                this.symbol = SymbolTable.symbol(className);
+                this.foldedSymbol = SymbolTable.foldedSymbol(className);
+            }
+        }
+
+        @Override
+        public boolean matches(Element e, ElementMatcher matcher, MatchCondition cond)
+        {
+            if (matcher instanceof ElementMatcherCached)
+                return ((ElementMatcherCached) matcher).matchesClassSymbol(e, symbol, foldedSymbol);
+            else
+                return matcher.matchesClass(e, className);
+        }
+
+        @Override
+        public boolean matches(TreeSnapshot<?> snapshot, int ord, MatchCondition cond)
+        {
+            final ElementFacts facts = snapshot.getFacts(ord);
+            if (facts != null)
+                return snapshot.matchesClassSymbol(facts, symbol, foldedSymbol);
+            else
+                return super.matches(snapshot, ord, cond);
+        }
+    }
+
+    private static final class IDTest extends Test
+    {
+        private final String id;
+        private final String symbol;
+        private final String foldedSymbol;
+
+        public IDTest(Selector.SelectorPart part, String id)
+        {
+            super(part);
+            this.id = id;
+            if (part instanceof SelectorImpl.ElementIDImpl)
+            {
+                final SelectorImpl.ElementIDImpl source = (SelectorImpl.ElementIDImpl) part;
+                this.symbol = source.getSymbol();
+                this.foldedSymbol = source.getFoldedSymbol();
+            }
+            else
+            {
+                this.symbol = SymbolTable.symbol(id);
+                this.foldedSymbol = SymbolTable.foldedSymbol(id);
+            }
+        }
+
+        @Override
+        public boolean matches(Element e, ElementMatcher matcher, MatchCondition cond)
+        {
+            if (matcher instanceof ElementMatcherCached)
+                return ((ElementMatcherCached) matcher).matchesIDSymbol(e, symbol, foldedSymbol);
+            else
+                return matcher.matchesID(e, id);
+        }
+
+        @Override
+        public boolean matches(TreeSnapshot<?> snapshot, int ord, MatchCondition cond)
+        {
+            final ElementFacts facts = snapshot.getFacts(ord);
+            if (facts != null)
+                return snapshot.matchesIDSymbol(facts, symbol, foldedSymbol);
+            else
+                return super.matches(snapshot, ord, cond);
+        }
+    }
+
+    /** The :first-child, :last-child and :only-child pseudo classes */
+    private static final class ChildPositionTest extends Test
+    {
+        private final boolean first;
+        private final boolean last;
+
+        public ChildPositionTest(Selector.SelectorPart part, boolean first, boolean last)
+        {
+            super(part);
+            this.first = first;
+            this.last = last;
+        }
+
+        @Override
+        public boolean matches(Element e, ElementMatcher matcher, MatchCondition cond)
+        {
+            final Node parent = e.getParentNode();
+            if (parent == null || parent.getNodeType() != Node.ELEMENT_NODE)
+                return false;
+            if (first)
+            {
+                for (Node n = e.getPreviousSibling(); n != null; n = n.getPreviousSibling())
+                    if (n.getNodeType() == Node.ELEMENT_NODE)
+                        return false;
+            }
+            if (last)
+            {
+                for (Node n = e.getNextSibling(); n != null; n = n.getNextSibling())
+                    if (n.getNodeType() == Node.ELEMENT_NODE)
+                        return false;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean matches(TreeSnapshot<?> snapshot, int ord, MatchCondition cond)
+        {
+            return snapshot.getParent(ord) != TreeSnapshot.NONE
+                    && (!first || snapshot.getPreviousSibling(ord) == TreeSnapshot.NONE)
+                    && (!last || snapshot.getNextSibling(ord) == TreeSnapshot.NONE);
+        }
+    }
+
+    /** The pseudo classes evaluated by the match condition */
+    private static final class ConditionTest extends Test
+    {
+        public ConditionTest(Selector.SelectorPart part)
+        {
+            super(part);
+        }
+
+        @Override
+        public boolean matches(Element e, ElementMatcher matcher, MatchCondition cond)
+        {
+            return cond.isSatisfied(e, part);
+        }
+    }
+
+    /** Any other selector part evaluated by the part itself */
+    private static final class PartTest extends Test
+    {
+        public PartTest(Selector.SelectorPart part)
+        {
+            super(part);
+        }
+
+        @Override
+        public boolean matches(Element e, ElementMatcher matcher, MatchCondition cond)
+        {
+            return part.matches(e, matcher, cond);
+        }
+    }
+
+}
@@ -0,0 +1,360 @@
+package cz.vutbr.web.domassign;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.traversal.DocumentTraversal;
+import org.w3c.dom.traversal.NodeFilter;
+import org.w3c.dom.traversal.TreeWalker;
+
+import cz.vutbr.web.css.CSSFactory;
+import cz.vutbr.web.css.CSSProperty;
+import cz.vutbr.web.css.NodeData;
+import cz.vutbr.web.css.SupportedCSS;
+import cz.vutbr.web.css.Term;
+import cz.vutbr.web.css.TermColor;
+import cz.vutbr.web.css.TermFloatValue;
+import cz.vutbr.web.css.TermNumeric;
+import cz.vutbr.web.css.TermPercent;
+
+/**
+ * A columnar export of the computed styles of a document. The rows correspond to the styled
+ * elements in the document order and the columns correspond to the properties identified by their
+ * ordinals in {@link SupportedCSS}. Each property is stored in primitive arrays indexed by the
+ * row numbers:
+ * <ul>
+ * <li>the keywords, i.e. the ordinals of the {@link CSSProperty} enum constants,</li>
+ * <li>the kinds of the values (see the {@code KIND_*} constants),</li>
+ * <li>the numeric values and the ordinals of their {@link TermNumeric.Unit}s,</li>
+ * <li>the colors as the ARGB values.</li>
+ * </ul>
+ * The arrays of a property are only created when some element has the corresponding value.
+ * The other values (e.g. lists, strings or URIs) are kept as terms. The table is a snapshot;
+ * it is not updated when the style map changes. Only the styles of the elements themselves are
+ * exported, the pseudo-elements are not included.
+ */
+public class ComputedStyleTable
+{
+    /** The keyword of an element that does not have the property */
+    public static final int NO_KEYWORD = -1;
+    /** The keyword of a property that is not represented by an enum constant */
+    public static final int OTHER_KEYWORD = -2;
+    /** The unit of a value that is not numeric */
+    public static final byte NO_UNIT = -1;
+
+    /** The element does not have a value of the property */
+    public static final byte KIND_NONE = 0;
+    /** The value is a number with a unit (possibly {@link TermNumeric.Unit#none}) */
+    public static final byte KIND_NUMERIC = 1;
+    /** The value is a percentage */
+    public static final byte KIND_PERCENT = 2;
+    /** The value is a color */
+    public static final byte KIND_COLOR = 3;
+    /** The value is another term that can be obtained using {@link #getTerm(int, int)} */
+    public static final byte KIND_OTHER = 4;
+
+    private static final TermNumeric.Unit[] UNITS = TermNumeric.Unit.values();
+
+    private final SupportedCSS css;
+    private final Element[] elements;
+    private final Column[] columns;
+
+    /**
+     * Exports the styles of a document using the default supported CSS.
+     * @param styles the computed styles
+     * @param doc the styled document
+     */
+    public ComputedStyleTable(StyleMap styles, Document doc)
+    {
+        this(styles, doc, CSSFactory.getSupportedCSS());
+    }
+
+    /**
+     * Exports the styles of a document.
+     * @param styles the computed styles
+     * @param doc the styled document
+     * @param css the supported CSS that defines the property ordinals
+     */
+    public ComputedStyleTable(StyleMap styles, Document doc, SupportedCSS css)
+    {
+        this.css = css;
+        final List<Element> rows = new ArrayList<Element>();
+        final List<NodeData> data = new ArrayList<NodeData>();
+        final TreeWalker walker = ((DocumentTraversal) doc).createTreeWalker(doc.getDocumentElement(),
+                NodeFilter.SHOW_ELEMENT, null, false);
+        for (Node current = walker.getCurrentNode(); current != null; current = walker.nextNode())
+        {
+            final Element e = (Element) current;
+            final NodeData nd = styles.get(e);
+            if (nd != null)
+            {
+                rows.add(e);
+                data.add(nd);
+            }
+        }
+        this.elements = rows.toArray(new Element[rows.size()]);
+        this.columns = new Column[css.getTotalProperties()];
+
+        for (int row = 0; row < elements.length; row++)
+        {
+            final NodeData nd = data.get(row);
+            for (String name : nd.getPropertyNames())
+            {
+                final int id = css.getOrdinal(name);
+                if (id >= 0)
+                {
+                    final CSSProperty prop = nd.getProperty(name, true);
+                    if (prop != null)
+                    {
+                        if (columns[id] == null)
+                            columns[id] = new Column(elements.length);
+                        columns[id].set(row, prop, nd.getValue(name, true));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Obtains the number of rows (styled elements).
+     * @return the number of rows
+     */
+    public int getRowCount()
+    {
+        return elements.length;
+    }
+
+    /**
+     * Obtains the element that corresponds to a row.
+     * @param row the row number
+     * @return the element
+     */
+    public Element getElement(int row)
+    {
+        return elements[row];
+    }
+
+    /**
+     * Obtains the number of property columns.
+     * @return the total number of the supported properties
+     */
+    public int getPropertyCount()
+    {
+        return columns.length;
+    }
+
+    /**
+     * Obtains the property id (the column number) for a property name.
+     * @param name the property name
+     * @return the property id or {@code -1} when the property is not supported
+     */
+    public int getPropertyId(String name)
+    {
+        return css.getOrdinal(name);
+    }
+
+    /**
+     * Obtains the property name for a property id.
+     * @param id the property id
+     * @return the property name
+     */
+    public String getPropertyName(int id)
+    {
+        return css.getPropertyName(id);
+    }
+
+    /**
+     * Checks whether any element has the property.
+     * @param id the property id
+     * @return {@code true} when the property column is present
+     */
+    public boolean hasProperty(int id)
+    {
+        return columns[id] != null;
+    }
+
+    /**
+     * Obtains the keyword column of a property. The array contains the ordinals of the enum constants,
+     * {@link #NO_KEYWORD} or {@link #OTHER_KEYWORD}. The array is shared and it must not be modified.
+     * @param id the property id
+     * @return the keyword ordinals for all the rows or {@code null} when no element has the property
+     */
+    public int[] getKeywords(int id)
+    {
+        return (columns[id] == null) ? null : columns[id].keywords;
+    }
+
+    /**
+     * Obtains the value kinds of a property. The array contains the {@code KIND_*} constants.
+     * The array is shared and it must not be modified.
+     * @param id the property id
+     * @return the value kinds for all the rows or {@code null} when no element has a value of the property
+     */
+    public byte[] getKinds(int id)
+    {
+        return (columns[id] == null) ? null : columns[id].kinds;
+    }
+
+    /**
+     * Obtains the numeric values of a property. The values of the rows that do not contain a numeric
+     * value or a percentage are {@code NaN}. The array is shared and it must not be modified.
+     * @param id the property id
+     * @return the numeric values for all the rows or {@code null} when no element has a numeric value
+     */
+    public float[] getNumbers(int id)
+    {
+        return (columns[id] == null) ? null : columns[id].numbers;
+    }
+
+    /**
+     * Obtains the units of the numeric values of a property. The array contains the ordinals of
+     * {@link TermNumeric.Unit} or {@link #NO_UNIT}. The array is shared and it must not be modified.
+     * @param id the property id
+     * @return the units for all the rows or {@code null} when no element has a numeric value
+     */
+    public byte[] getUnits(int id)
+    {
+        return (columns[id] == null) ? null : columns[id].units;
+    }
+
+    /**
+     * Obtains the color values of a property as the ARGB values. The values are only meaningful
+     * for the rows of the {@link #KIND_COLOR} kind. The array is shared and it must not be modified.
+     * @param id the property id
+     * @return the colors for all the rows or {@code null} when no element has a color value
+     */
+    public int[] getColors(int id)
+    {
+        return (columns[id] == null) ? null : columns[id].colors;
+    }
+
+    /**
+     * Obtains the property keyword of an element.
+     * @param id the property id
+     * @param row the row number
+     * @return the property or {@code null} when the element does not have the property
+     */
+    public CSSProperty getProperty(int id, int row)
+    {
+        final Column col = columns[id];
+        if (col == null || col.keywords[row] == NO_KEYWORD)
+            return null;
+        else if (col.keywords[row] == OTHER_KEYWORD)
+            return col.otherProperties[row];
+        else
+            return col.constants[col.keywords[row]];
+    }
+
+    /**
+     * Obtains the value term of a property of an element that is not numeric nor a color.
+     * @param id the property id
+     * @param row the row number
+     * @return the term or {@code null} when the value is not of the {@link #KIND_OTHER} kind
+     */
+    public Term<?> getTerm(int id, int row)
+    {
+        final Column col = columns[id];
+        return (col == null || col.others == null) ? null : col.others[row];
+    }
+
+    /**
+     * Obtains the unit that corresponds to a unit ordinal obtained from {@link #getUnits(int)}.
+     * @param ordinal the unit ordinal
+     * @return the unit or {@code null} for {@link #NO_UNIT}
+     */
+    public static TermNumeric.Unit getUnit(byte ordinal)
+    {
+        return (ordinal == NO_UNIT) ? null : UNITS[ordinal];
+    }
+
+    //=========================================================================================
+
+    /**
+     * The arrays of a single property.
+     */
+    private static class Column
+    {
+        public final int[] keywords;
+        public CSSProperty[] constants;
+        public CSSProperty[] otherProperties;
+        public byte[] kinds;
+        public float[] numbers;
+        public byte[] units;
+        public int[] colors;
+        public Term<?>[] others;
+
+        public Column(int rows)
+        {
+            keywords = new int[rows];
+            Arrays.fill(keywords, NO_KEYWORD);
+        }
+
+        public void set(int row, CSSProperty prop, Term<?> value)
+        {
+            if (prop instanceof Enum<?>)
+            {
+                final Enum<?> en = (Enum<?>) prop;
+                if (constants == null)
+                    constants = (CSSProperty[]) en.getDeclaringClass().getEnumConstants();
+                keywords[row] = en.ordinal();
+            }
+            else
+            {
+                if (otherProperties == null)
+                    otherProperties = new CSSProperty[keywords.length];
+                otherProperties[row] = prop;
+                keywords[row] = OTHER_KEYWORD;
+            }
+
+            if (value != null)
+            {
+                if (kinds == null)
+                    kinds = new byte[keywords.length];
+                if (value instanceof TermNumeric<?> && value.getValue() != null)
+                {
+                    if (numbers == null)
+                    {
+                        numbers = new float[keywords.length];
+                        Arrays.fill(numbers, Float.NaN);
+                        units = new byte[keywords.length];
+                        Arrays.fill(units, NO_UNIT);
+                    }
+                    final TermNumeric<?> num = (TermNumeric<?>) value;
+                    if (num instanceof TermFloatValue)
+                        numbers[row] = ((TermFloatValue) num).floatValue();
+                    else
+                        numbers[row] = num.getValue().floatValue();
+                    if (value instanceof TermPercent)
+                        kinds[row] = KIND_PERCENT;
+                    else
+                    {
+                        kinds[row] = KIND_NUMERIC;
+                        final TermNumeric.Unit unit = num.getUnit();
+                        units[row] = (byte) (unit == null ? TermNumeric.Unit.none : unit).ordinal();
+                    }
+                }
+                else if (value instanceof TermColor && value.getValue() != null)
+                {
+                    if (colors == null)
+                        colors = new int[keywords.length];
+                    colors[row] = ((Color) value.getValue()).getRGB();
+                    kinds[row] = KIND_COLOR;
+                }
+                else
+                {
+                    if (others == null)
+                        others = new Term<?>[keywords.length];
+                    others[row] = value;
+                    kinds[row] = KIND_OTHER;
+                }
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,160 @@
+package cz.vutbr.web.domassign;
+
+import org.w3c.dom.Element;
+
+/**
+ * A description of a single modification of a DOM tree that has been already evaluated
+ * by an {@link IncrementalAnalyzer}. The mutations are created using the static factory
+ * methods and they are passed to {@link IncrementalAnalyzer#restyle(java.util.Collection)}
+ * after the DOM has been modified.
+ */
+public class DOMMutation
+{
+    /**
+     * The type of the DOM modification.
+     */
+    public enum Type
+    {
+        /** An attribute of an element has been added, modified or removed */
+        ATTRIBUTE,
+        /** An element has been inserted to the tree */
+        INSERTED,
+        /** An element has been removed from the tree */
+        REMOVED,
+        /** The text content of an element has been changed */
+        TEXT,
+        /** Something else has changed, e.g. the state used by the match condition */
+        ELEMENT
+    }
+
+    private Type type;
+    private Element target;
+    private Element parent;
+    private String attributeName;
+    private String oldValue;
+
+
+    protected DOMMutation(Type type, Element target, Element parent, String attributeName, String oldValue)
+    {
+        this.type = type;
+        this.target = target;
+        this.parent = parent;
+        this.attributeName = attributeName;
+        this.oldValue = oldValue;
+    }
+
+    /**
+     * Creates a mutation that describes an attribute change.
+     * @param e the element whose attribute has been changed
+     * @param name the attribute name
+     * @param oldValue the attribute value before the change or {@code null} when the attribute
+     * has not been present before
+     * @return the created mutation
+     */
+    public static DOMMutation attributeChanged(Element e, String name, String oldValue)
+    {
+        return new DOMMutation(Type.ATTRIBUTE, e, null, name, oldValue);
+    }
+
+    /**
+     * Creates a mutation that describes an element insertion. The element must be already
+     * inserted to the tree.
+     * @param e the inserted element
+     * @return the created mutation
+     */
+    public static DOMMutation elementInserted(Element e)
+    {
+        return new DOMMutation(Type.INSERTED, e, null, null, null);
+    }
+
+    /**
+     * Creates a mutation that describes an element removal.
+     * @param parent the parent element the element has been removed from
+     * @param removed the removed element
+     * @return the created mutation
+     */
+    public static DOMMutation elementRemoved(Element parent, Element removed)
+    {
+        return new DOMMutation(Type.REMOVED, removed, parent, null, null);
+    }
+
+    /**
+     * Creates a mutation that describes a change of the text content (text node insertion,
+     * modification or removal) of an element.
+     * @param parent the element whose child text nodes have changed
+     * @return the created mutation
+     */
+    public static DOMMutation textChanged(Element parent)
+    {
+        return new DOMMutation(Type.TEXT, parent, null, null, null);
+    }
+
+    /**
+     * Creates a mutation that forces the element, its descendants and its following siblings
+     * to be restyled. This may be used when the changed state is not visible in the DOM,
+     * e.g. when the pseudo classes assigned by the match condition have changed.
+     * @param e the changed element
+     * @return the created mutation
+     */
+    public static DOMMutation elementChanged(Element e)
+    {
+        return new DOMMutation(Type.ELEMENT, e, null, null, null);
+    }
+
+    /**
+     * Obtains the mutation type.
+     * @return the type
+     */
+    public Type getType()
+    {
+        return type;
+    }
+
+    /**
+     * Obtains the target element of the mutation, i.e. the modified, inserted or removed element.
+     * @return the target element
+     */
+    public Element getTarget()
+    {
+        return target;
+    }
+
+    /**
+     * Obtains the parent element for the {@link Type#REMOVED} mutations.
+     * @return the former parent element or {@code null} for other mutations
+     */
+    public Element getParent()
+    {
+        return parent;
+    }
+
+    /**
+     * Obtains the modified attribute name for the {@link Type#ATTRIBUTE} mutations.
+     * @return the attribute name or {@code null} for other mutations
+     */
+    public String getAttributeName()
+    {
+        return attributeName;
+    }
+
+    /**
+     * Obtains the original attribute value for the {@link Type#ATTRIBUTE} mutations.
+     * @return the attribute value before the change or {@code null} when the attribute
+     * has not been present or for other mutations
+     */
+    public String getOldValue()
+    {
+        return oldValue;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append(type).append(' ').append(target == null ? null : target.getNodeName());
+        if (attributeName != null)
+            sb.append(" @").append(attributeName);
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,164 @@
+package cz.vutbr.web.domassign;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import cz.vutbr.web.css.ElementMatcher;
+import cz.vutbr.web.css.MatchCondition;
+import cz.vutbr.web.css.Selector;
+import cz.vutbr.web.csskit.ElementFacts;
+import cz.vutbr.web.csskit.ElementMatcherCached;
+import cz.vutbr.web.csskit.SymbolTable;
+
+/**
+ * The tree adapter for the W3C DOM. The elements are accessed using an {@link ElementMatcher}
+ * and the selector parts are matched by the parts themselves so that the results are the same
+ * as when the DOM is processed directly.
+ */
+public class DOMTreeAdapter extends TreeAdapter<Element>
+{
+    private final ElementMatcher matcher;
+    private final ElementMatcherCached cachedMatcher;
+
+    /**
+     * Creates the adapter.
+     * @param matcher the element matcher used for accessing the elements. For the standard
+     * matchers, the element facts are kept in a caching matcher.
+     */
+    public DOMTreeAdapter(ElementMatcher matcher)
+    {
+        if (matcher instanceof ElementMatcherCached)
+            this.cachedMatcher = (ElementMatcherCached) matcher;
+        else
+            this.cachedMatcher = ElementMatcherCached.create(matcher);
+        this.matcher = (cachedMatcher != null) ? cachedMatcher : matcher;
+    }
+
+    /**
+     * Obtains the matcher used for accessing the elements.
+     * @return the element matcher
+     */
+    public ElementMatcher getMatcher()
+    {
+        return matcher;
+    }
+
+    @Override
+    public Element getParent(Element node)
+    {
+        final Node parent = node.getParentNode();
+        return (parent != null && parent.getNodeType() == Node.ELEMENT_NODE) ? (Element) parent : null;
+    }
+
+    @Override
+    public Element getPreviousSibling(Element node)
+    {
+        Node n = node.getPreviousSibling();
+        while (n != null && n.getNodeType() != Node.ELEMENT_NODE)
+            n = n.getPreviousSibling();
+        return (Element) n;
+    }
+
+    @Override
+    public Element getNextSibling(Element node)
+    {
+        Node n = node.getNextSibling();
+        while (n != null && n.getNodeType() != Node.ELEMENT_NODE)
+            n = n.getNextSibling();
+        return (Element) n;
+    }
+
+    @Override
+    public Element getFirstChild(Element node)
+    {
+        Node n = node.getFirstChild();
+        while (n != null && n.getNodeType() != Node.ELEMENT_NODE)
+            n = n.getNextSibling();
+        return (Element) n;
+    }
+
+    @Override
+    public boolean isEmpty(Element node)
+    {
+        for (Node n = node.getFirstChild(); n != null; n = n.getNextSibling())
+        {
+            final short t = n.getNodeType();
+            if (t == Node.ELEMENT_NODE || t == Node.TEXT_NODE
+                    || t == Node.CDATA_SECTION_NODE || t == Node.ENTITY_REFERENCE_NODE)
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public String getName(Element node)
+    {
+        return matcher.elementName(node);
+    }
+
+    @Override
+    public String getId(Element node)
+    {
+        return matcher.elementID(node);
+    }
+
+    @Override
+    public Collection<String> getClassNames(Element node)
+    {
+        return matcher.elementClasses(node);
+    }
+
+    @Override
+    public String getAttribute(Element node, String name)
+    {
+        return node.hasAttribute(name) ? matcher.getAttribute(node, name) : null;
+    }
+
+    @Override
+    public Collection<String> getAttributeNames(Element node)
+    {
+        final NamedNodeMap attrs = node.getAttributes();
+        final List<String> ret = new ArrayList<String>((attrs == null) ? 0 : attrs.getLength());
+        if (attrs != null)
+        {
+            for (int i = 0; i < attrs.getLength(); i++)
+                ret.add(attrs.item(i).getNodeName());
+        }
+        return ret;
+    }
+
+    @Override
+    public boolean isCaseSensitiveNames()
+    {
+        return cachedMatcher != null && cachedMatcher.isCaseSensitiveNames();
+    }
+
+    @Override
+    public boolean isCaseSensitiveValues()
+    {
+        return cachedMatcher == null || cachedMatcher.isCaseSensitiveValues();
+    }
+
+    /**
+     * Obtains the facts kept by the caching matcher. The facts are resolved against the symbol
+     * tables of the caching matcher. No facts are used for the other matchers since their
+     * case sensitivity is not known.
+     */
+    @Override
+    public ElementFacts createFacts(Element node, SymbolTable[] symbols)
+    {
+        return (cachedMatcher == null) ? null : cachedMatcher.getFacts(node);
+    }
+
+    @Override
+    public boolean matchesPart(TreeSnapshot<Element> snapshot, int ord, Selector.SelectorPart part, MatchCondition cond)
+    {
+        return part.matches(snapshot.getNode(ord), matcher, cond);
+    }
+
+}
@@ -23,6 +23,23 @@ import cz.vutbr.web.css.Selector.PseudoDeclaration;
 public class DeclarationMap extends MultiMap<Element, PseudoDeclaration, List<Declaration>>
 {
 
+    /**
+     * Creates an empty map.
+     */
+    public DeclarationMap()
+    {
+        super();
+    }
+    
+    /**
+     * Creates an empty map that stores the declarations in arrays indexed by the element ordinals.
+     * @param index the element index
+     */
+    public DeclarationMap(ElementIndex<Element> index)
+    {
+        super(index, PseudoDeclaration.class);
+    }
+
     /**
      * Adds a declaration for a specified list. If the list does not exist yet, it is created.
      * @param el the element that the declaration belongs to
@@ -36,6 +36,7 @@ import cz.vutbr.web.css.TermLength;
 import cz.vutbr.web.css.TermLengthOrPercent;
 import cz.vutbr.web.css.TermList;
 import cz.vutbr.web.css.TermNumber;
+import cz.vutbr.web.css.TermNumeric;
 import cz.vutbr.web.css.TermPercent;
 import cz.vutbr.web.css.TermString;
 import cz.vutbr.web.css.TermURI;
@@ -400,9 +401,9 @@ public class DeclarationTransformer {
 			Map<String, CSSProperty> properties, Map<String, Term<?>> values) {
 
         if (term instanceof TermInteger  && ((TermInteger) term).getUnit().equals(TermNumber.Unit.none)) {
-            if (CSSFactory.getImplyPixelLength() || ((TermInteger) term).getValue() == 0) { //0 is always allowed with no units
+            if (CSSFactory.getImplyPixelLength() || ((TermInteger) term).floatValue() == 0) { //0 is always allowed with no units
                 // convert to length with units of px
-                TermLength tl = tf.createLength(((TermInteger) term).getValue(), TermNumber.Unit.px);
+                TermLength tl = tf.createLength(((TermInteger) term).floatValue(), TermNumber.Unit.px);
                 return genericTerm(TermLength.class, tl, propertyName, lengthIdentification, range, properties, values);
             } else {
                 return false;
@@ -449,14 +450,25 @@ public class DeclarationTransformer {
 		if (termType.isInstance(term)) {
 			// sanity check
 			if (range != ValueRange.ALLOW_ALL) {
+				// check for float (read without boxing)
+				if (term instanceof TermFloatValue) {
+					if (((TermFloatValue) term).floatValue() < 0.0f) {
+						// return false is also possibility
+						// but we will change to zero
+					    if (range == ValueRange.TRUNCATE_NEGATIVE)
+					        term = ((TermNumeric<?>) term.shallowClone()).setZero(); //do not modify the shared style sheet term
+					    else
+					        return false;
+					}
+				}
 				// check for integer
-				if (term.getValue() instanceof Integer) {
+				else if (term.getValue() instanceof Integer) {
 					final Integer zero = new Integer(0);
 					if (zero.compareTo((Integer) term.getValue()) > 0) {
 						// return false is also possibility
 						// but we will change to zero
 					    if (range == ValueRange.TRUNCATE_NEGATIVE)
-					        ((TermInteger) term).setZero();
+					        term = ((TermNumeric<?>) term.shallowClone()).setZero();
 					    else
 					        return false;
 					}
@@ -468,7 +480,7 @@ public class DeclarationTransformer {
 						// return false is also possibility
 						// but we will change to zero
 					    if (range == ValueRange.TRUNCATE_NEGATIVE)
-					        ((TermFloatValue) term).setZero();
+					        term = ((TermNumeric<?>) term.shallowClone()).setZero();
 					    else
 					        return false;
 					}
@@ -2919,9 +2931,9 @@ public class DeclarationTransformer {
             if (src.getOperator() == Operator.SLASH)
             {
                 if (src instanceof TermLength)
-                    return tf.createLength((Float) src.getValue(), ((TermLength) src).getUnit());
+                    return tf.createLength(((TermLength) src).floatValue(), ((TermLength) src).getUnit());
                 else if (src instanceof TermPercent)
-                    return tf.createPercent((Float) src.getValue());
+                    return tf.createPercent(((TermPercent) src).floatValue());
                 else
                     return src;
             }
@@ -9,6 +9,7 @@ import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
 import cz.vutbr.web.css.MediaSpec;
@@ -22,6 +23,10 @@ import cz.vutbr.web.css.StyleSheet;
  * for the whole DOM tree. However, in larger scale, the performance of the individual computation
  * is significantly worse.  
  * 
+ * When the classification caching is enabled (see {@link #setClassificationCaching(boolean)}),
+ * the rules are classified once for each set of the media rules that apply to the used media
+ * and the classification is reused by the subsequent computations. The caching is disabled by default.
+ * 
  * @author burgetr
  */
 public class DirectAnalyzer extends Analyzer
@@ -56,7 +61,7 @@ public class DirectAnalyzer extends Analyzer
      */
     public NodeData getElementStyle(Element el, PseudoDeclaration pseudo, MediaSpec media)
     {
-        final OrderedRule[] applicableRules = AnalyzerUtil.getApplicableRules(sheets, el, media);
+        final OrderedRule[] applicableRules = AnalyzerUtil.getApplicableRules(el, getClassifiedRules(media), null);
         return AnalyzerUtil.getElementStyle(el, pseudo, getElementMatcher(), getMatchCondition(), applicableRules);
     }
 
@@ -71,7 +76,50 @@ public class DirectAnalyzer extends Analyzer
     {
         return getElementStyle(el, pseudo, new MediaSpec(media));
     }
+
+    /**
+     * Creates a snapshot of a document that may be used for computing the styles of its elements.
+     * The snapshot uses the element matcher registered at the time of its creation and it must be
+     * created again when the document is modified.
+     * @param doc The DOM document.
+     * @return The document snapshot.
+     */
+    public TreeSnapshot<Element> createSnapshot(Document doc)
+    {
+        return TreeSnapshot.create(doc, getElementMatcher());
+    }
+
+    /**
+     * Computes the style of an element with an eventual pseudo element for the given media. The selectors
+     * are matched against a snapshot of the document instead of the DOM nodes.
+     * @param snapshot The snapshot of the document created by {@link #createSnapshot(Document)}.
+     * @param el The DOM element. When it is not contained in the snapshot, the DOM is used for matching.
+     * @param pseudo A pseudo element that should be used for style computation or <code>null</code> if no pseudo element should be used (e.g. :after).
+     * @param media Used media specification.
+     * @return The relevant declarations from the registered style sheets.
+     */
+    public NodeData getElementStyle(TreeSnapshot<Element> snapshot, Element el, PseudoDeclaration pseudo, MediaSpec media)
+    {
+        final int ord = snapshot.indexOf(el);
+        if (ord == TreeSnapshot.NONE)
+            return getElementStyle(el, pseudo, media);
+        final OrderedRule[] applicableRules = AnalyzerUtil.getApplicableRules(el, getClassifiedRules(media), null);
+        return AnalyzerUtil.getElementStyle(snapshot, ord, pseudo, getMatchCondition(), applicableRules);
+    }
     
     //==========================================================================================
 
+    /**
+     * Obtains the rules classified for the given media. The cached classification is used
+     * when the classification caching is enabled.
+     */
+    private Holder getClassifiedRules(MediaSpec media)
+    {
+        final MediaBreakpoints cache = getClassificationCache();
+        if (cache != null)
+            return cache.getClassifiedRules(media);
+        else
+            return AnalyzerUtil.getClassifiedRules(sheets, media);
+    }
+
 }
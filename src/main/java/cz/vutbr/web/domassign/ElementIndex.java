@@ -0,0 +1,197 @@
+package cz.vutbr.web.domassign;
+
+import java.util.Arrays;
+
+/**
+ * Assigns consecutive ordinals to the elements in the order they are added, usually
+ * in the order of a DOM traversal. The elements are compared by identity. The index may
+ * be shared by several {@link MultiMap}s created for the same traversal so that they
+ * store their data in arrays indexed by the same ordinals.
+ *
+ * When an element is removed, its ordinal is reused by the elements added later. The data
+ * of the element must be removed from all the maps that share the index before the element
+ * is removed from the index.
+ *
+ * @param <E> the element type
+ */
+public final class ElementIndex<E>
+{
+    private static final int NONE = -1;
+    private static final int REMOVED = -2;
+
+    /** Open addressing table of the ordinals, {@code NONE} for empty entries, {@code REMOVED} for removed ones */
+    private int[] table;
+    /** The elements in the order of their ordinals, {@code null} for the removed elements */
+    private Object[] elements;
+    /** The number of ordinals assigned so far */
+    private int size;
+    /** The number of non-empty entries of the table including the removed ones */
+    private int used;
+    /** The ordinals of the removed elements that may be reused */
+    private int[] free;
+    private int freeCount;
+
+    /**
+     * Creates an empty index.
+     */
+    public ElementIndex()
+    {
+        this(64);
+    }
+
+    /**
+     * Creates an empty index.
+     * @param expectedSize the expected number of elements
+     */
+    public ElementIndex(int expectedSize)
+    {
+        int capacity = 16;
+        while (capacity < expectedSize * 2)
+            capacity <<= 1;
+        table = new int[capacity];
+        Arrays.fill(table, NONE);
+        elements = new Object[Math.max(expectedSize, 16)];
+        free = new int[16];
+    }
+
+    /**
+     * Obtains the ordinal of an element.
+     * @param el the element
+     * @return the element ordinal or -1 when the element has not been added
+     */
+    public int indexOf(E el)
+    {
+        final int mask = table.length - 1;
+        for (int i = hash(el) & mask; table[i] != NONE; i = (i + 1) & mask)
+        {
+            if (table[i] != REMOVED && elements[table[i]] == el)
+                return table[i];
+        }
+        return NONE;
+    }
+
+    /**
+     * Adds an element to the index when not present yet.
+     * @param el the element
+     * @return the element ordinal
+     */
+    public int add(E el)
+    {
+        final int mask = table.length - 1;
+        int i = hash(el) & mask;
+        int slot = NONE;
+        for (; table[i] != NONE; i = (i + 1) & mask)
+        {
+            if (table[i] == REMOVED)
+            {
+                if (slot == NONE)
+                    slot = i;
+            }
+            else if (elements[table[i]] == el)
+                return table[i];
+        }
+        if (slot == NONE)
+        {
+            slot = i;
+            used++;
+        }
+        final int ord;
+        if (freeCount > 0)
+            ord = free[--freeCount];
+        else
+        {
+            ord = size++;
+            if (ord >= elements.length)
+                elements = Arrays.copyOf(elements, elements.length * 2);
+        }
+        elements[ord] = el;
+        table[slot] = ord;
+        if (used * 2 > table.length)
+            rehash();
+        return ord;
+    }
+
+    /**
+     * Removes an element from the index. Its ordinal may be assigned to another element
+     * by a subsequent {@link #add(Object)}.
+     * @param el the element
+     * @return the ordinal the element had or -1 when the element has not been added
+     */
+    public int remove(E el)
+    {
+        final int mask = table.length - 1;
+        for (int i = hash(el) & mask; table[i] != NONE; i = (i + 1) & mask)
+        {
+            final int ord = table[i];
+            if (ord != REMOVED && elements[ord] == el)
+            {
+                table[i] = REMOVED;
+                elements[ord] = null;
+                if (freeCount >= free.length)
+                    free = Arrays.copyOf(free, free.length * 2);
+                free[freeCount++] = ord;
+                return ord;
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Obtains the element with the given ordinal.
+     * @param ordinal the element ordinal
+     * @return the element or {@code null} when the element has been removed
+     */
+    @SuppressWarnings("unchecked")
+    public E get(int ordinal)
+    {
+        if (ordinal < 0 || ordinal >= size)
+            throw new IndexOutOfBoundsException("Ordinal: " + ordinal + ", size: " + size);
+        return (E) elements[ordinal];
+    }
+
+    /**
+     * Obtains the number of ordinals assigned so far. All the ordinals are lower than this
+     * number; the ordinals of the removed elements are included.
+     * @return the number of ordinals
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Obtains the number of elements currently contained in the index.
+     * @return the number of elements
+     */
+    public int count()
+    {
+        return size - freeCount;
+    }
+
+    private void rehash()
+    {
+        // the removed entries are dropped; the table grows only when it is filled by the contained elements
+        final int capacity = (count() * 4 > table.length) ? table.length * 2 : table.length;
+        final int[] ntable = new int[capacity];
+        Arrays.fill(ntable, NONE);
+        final int mask = ntable.length - 1;
+        for (int ord = 0; ord < size; ord++)
+        {
+            if (elements[ord] == null)
+                continue;
+            int i = hash(elements[ord]) & mask;
+            while (ntable[i] != NONE)
+                i = (i + 1) & mask;
+            ntable[i] = ord;
+        }
+        table = ntable;
+        used = count();
+    }
+
+    private static int hash(Object el)
+    {
+        final int h = System.identityHashCode(el);
+        return h ^ (h >>> 16);
+    }
+
+}
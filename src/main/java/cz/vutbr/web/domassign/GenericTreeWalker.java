@@ -487,20 +487,28 @@ public class GenericTreeWalker implements TreeWalker {
 
 		public void levelTraversal(T result) {
 
-			// this method can change position in walker
-			Node current, checkpoint = null;
-			current = checkpoint = walker.getCurrentNode();
-			processNode(result, current, source);
-			walker.setCurrentNode(checkpoint);
-
-			// traverse children:
-			for (Node n = walker.firstChild(); n != null; n = walker
-					.nextSibling()) {
-				levelTraversal(result);
+			// the same non-recursive traversal as in the domassign Traversal
+			final Node root = walker.getCurrentNode();
+			Node current = root;
+			while (current != null) {
+				// this method can change position in walker
+				processNode(result, current, source);
+				walker.setCurrentNode(current);
+
+				Node next = walker.firstChild();
+				while (next == null && current != null && current != root) {
+					walker.setCurrentNode(current);
+					next = walker.nextSibling();
+					if (next == null) {
+						walker.setCurrentNode(current);
+						current = walker.parentNode();
+					}
+				}
+				current = next;
 			}
 
-			// return position to the current (level up):
-			walker.setCurrentNode(checkpoint);
+			// return position to the subtree root
+			walker.setCurrentNode(root);
 		}
 
 		protected abstract void processNode(T result, Node current,
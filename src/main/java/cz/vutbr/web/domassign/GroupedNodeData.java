@@ -0,0 +1,447 @@
+package cz.vutbr.web.domassign;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import cz.vutbr.web.css.CSSFactory;
+import cz.vutbr.web.css.CSSProperty;
+import cz.vutbr.web.css.Declaration;
+import cz.vutbr.web.css.NodeData;
+import cz.vutbr.web.css.SupportedCSS;
+import cz.vutbr.web.css.Term;
+import cz.vutbr.web.csskit.OutputUtil;
+import cz.vutbr.web.domassign.SingleMapNodeData.Quadruple;
+
+/**
+ * Implementation of NodeData that splits the properties to groups (font, text, color,
+ * background, list, border, ...) according to the property name. The groups inherited
+ * from the parent node are shared by reference until the node modifies them (copy-on-write).
+ * Therefore, the inheritance only costs the groups that are actually declared
+ * for the node. The results are the same as for {@link SingleMapNodeData}.
+ */
+public class GroupedNodeData implements NodeData {
+
+	private static final int COMMON_DECLARATION_SIZE = 7;
+
+	protected static DeclarationTransformer transformer = CSSFactory.getDeclarationTransformer();
+	protected static SupportedCSS css = CSSFactory.getSupportedCSS();
+
+	/** Group names for the supported properties */
+	private static final Map<String, String> groupNames;
+	static {
+	    groupNames = new HashMap<String, String>(css.getTotalProperties());
+	    for (int i = 0; i < css.getTotalProperties(); i++) {
+	        final String name = css.getPropertyName(i);
+	        if (name != null)
+	            groupNames.put(name, createGroupName(name));
+	    }
+	}
+
+	/** The property groups of this node */
+	private Map<String, Group> groups;
+	/** Is the groups map shared with other nodes? */
+	private boolean groupsShared;
+	/** Cached groups to be inherited by the child nodes */
+	private Map<String, Group> inheritedGroups;
+
+	/** Frozen data may not be modified anymore */
+	private boolean frozen;
+
+	public GroupedNodeData() {
+		this.groups = new HashMap<String, Group>();
+		this.groupsShared = false;
+	}
+
+	public <T extends CSSProperty> T getProperty(String name) {
+		return this.<T>getProperty(name, true);
+	}
+
+	public <T extends CSSProperty> T getProperty(String name,
+			boolean includeInherited) {
+
+		Quadruple q = getQuadruple(name);
+		if(q==null) return null;
+
+		CSSProperty tmp;
+		if(includeInherited && q.curProp==null)
+			tmp = q.inhProp;
+		else
+			tmp = q.curProp;
+
+		@SuppressWarnings("unchecked")
+		T retval = (T) tmp;
+		return retval;
+	}
+
+    public Term<?> getValue(String name, boolean includeInherited) {
+
+        Quadruple q = getQuadruple(name);
+        if(q==null) return null;
+
+        if(includeInherited && q.curProp==null)
+            return q.inhValue;
+        else
+            return q.curValue;
+    }
+
+	public <T extends Term<?>> T getValue(Class<T> clazz, String name) {
+		return getValue(clazz, name, true);
+	}
+
+    public <T extends Term<?>> T getValue(Class<T> clazz, String name,
+			boolean includeInherited) {
+        return clazz.cast(getValue(name, includeInherited));
+	}
+
+    public String getAsString(String name, boolean includeInherited) {
+        Quadruple q = getQuadruple(name);
+        if(q==null) return null;
+
+        CSSProperty prop = q.curProp;
+        Term<?> value = q.curValue;
+        if (prop == null && includeInherited) {
+            prop = q.inhProp;
+            value = q.inhValue;
+        }
+        return (value == null ? prop.toString() : value.toString());
+    }
+
+	public NodeData push(Declaration d) {
+	    checkModifiable();
+
+		Map<String,CSSProperty> properties =
+			new HashMap<String,CSSProperty>(COMMON_DECLARATION_SIZE);
+		Map<String,Term<?>> terms =
+			new HashMap<String, Term<?>>(COMMON_DECLARATION_SIZE);
+
+		boolean result = transformer.parseDeclaration(d, properties, terms);
+
+		// in case of false do not insert anything
+		if(!result) return this;
+
+		for(Entry<String, CSSProperty> entry : properties.entrySet()) {
+		    final String key = entry.getKey();
+		    final Group group = getOwnGroup(groupName(key));
+			Quadruple q = group.values.get(key);
+			if(q==null) q = new Quadruple();
+			q.curProp = entry.getValue();
+			q.curValue = terms.get(key);
+			q.curSource = d;
+			// remove operator
+			if((q.curValue!=null) && (q.curValue.getOperator() != null)) {
+				q.curValue = q.curValue.shallowClone().setOperator(null);
+			}
+			group.values.put(key, q);
+		}
+		return this;
+	}
+
+	public NodeData concretize() {
+	    checkModifiable();
+
+	    // only the own groups may contain the 'inherit' values
+		for(Entry<String, Group> gentry : groups.entrySet()) {
+		    final Group group = gentry.getValue();
+		    if (group.owner == this) {
+        		for(Map.Entry<String, Quadruple> entry : group.values.entrySet()) {
+        		    final String key = entry.getKey();
+        			final Quadruple q = entry.getValue();
+
+        			// replace current with inherited or defaults
+        			if(q.curProp!=null && q.curProp.equalsInherit()) {
+        				if(q.inhProp==null) q.curProp = css.getDefaultProperty(key);
+        				else {
+        				    q.curProp = q.inhProp;
+        				    q.curSource = q.inhSource;
+        				}
+
+        				if(q.inhValue==null) q.curValue = css.getDefaultValue(key);
+        				else q.curValue = q.inhValue;
+        			}
+        		}
+        		group.inherited = null;
+		    }
+		}
+		inheritedGroups = null;
+		return this;
+	}
+
+	public NodeData inheritFrom(NodeData parent) throws ClassCastException{
+	    checkModifiable();
+
+		if(parent==null)
+			return this;
+
+		if(!(parent instanceof GroupedNodeData))
+			throw new ClassCastException(
+					"Cant't inherit from NodeData different from "
+							+ this.getClass().getName() + "("+ parent.getClass().getName()+")");
+
+		GroupedNodeData nd = (GroupedNodeData) parent;
+		final Map<String, Group> pgroups = nd.getInheritedGroups();
+
+		if (groups.isEmpty()) {
+		    // nothing declared, share all the inherited groups
+		    groups = pgroups;
+		    groupsShared = true;
+		}
+		else {
+    		for(Entry<String, Group> gentry : nd.groups.entrySet()) {
+    		    final String gname = gentry.getKey();
+    		    final Group own = groups.get(gname);
+    		    if (own == null || own.owner != this) {
+    		        // not declared here, share the group of the parent
+    		        final Group inh = pgroups.get(gname);
+    		        if (inh != null)
+    		            setGroup(gname, inh);
+    		    }
+    		    else {
+    		        // declared here, inherit the individual values
+    		        for(Entry<String, Quadruple> entry : gentry.getValue().values.entrySet()) {
+    		            inheritValue(own.values, entry.getKey(), entry.getValue());
+    		        }
+    		        own.inherited = null;
+    		    }
+    		}
+		}
+		inheritedGroups = null;
+		return this;
+	}
+
+
+	public NodeData freeze() {
+	    frozen = true;
+	    return this;
+	}
+
+	public boolean isFrozen() {
+	    return frozen;
+	}
+
+	private void checkModifiable() {
+	    if (frozen)
+	        throw new UnsupportedOperationException("The node data is frozen");
+	}
+
+	@Override
+	public String toString() {
+
+		StringBuilder sb = new StringBuilder();
+
+		List<String> keys = new ArrayList<String>(getPropertyNames());
+		Collections.sort(keys);
+
+		for(String key:keys) {
+			// always use own value if exists
+			Quadruple q = getQuadruple(key);
+
+			CSSProperty prop = q.curProp;
+			if(prop==null) prop = q.inhProp;
+
+			Term<?> value = q.curValue;
+			if(value==null) value = q.inhValue;
+
+			sb.append(key).append(OutputUtil.PROPERTY_OPENING);
+
+			if(value!=null) sb.append(value.toString());
+			else sb.append(prop.toString());
+
+			sb.append(OutputUtil.PROPERTY_CLOSING);
+
+		}
+		return sb.toString();
+	}
+
+    @Override
+    public Collection<String> getPropertyNames()
+    {
+        final List<String> keys = new ArrayList<String>();
+        for (Group group : groups.values())
+            keys.addAll(group.values.keySet());
+        return keys;
+    }
+
+    @Override
+    public Declaration getSourceDeclaration(String name)
+    {
+        return getSourceDeclaration(name, true);
+    }
+
+    @Override
+    public Declaration getSourceDeclaration(String name, boolean includeInherited)
+    {
+        Quadruple q = getQuadruple(name);
+        if (q == null)
+            return null;
+        else
+        {
+            if(includeInherited) {
+                if(q.curSource!=null) return q.curSource;
+                return q.inhSource;
+            }
+            else
+                return q.curSource;
+        }
+    }
+
+    //==========================================================================================
+
+    private Quadruple getQuadruple(String name) {
+        final Group group = groups.get(groupName(name));
+        return (group == null) ? null : group.values.get(name);
+    }
+
+    /**
+     * Obtains a group that may be modified by this node. The shared groups are copied.
+     */
+    private Group getOwnGroup(String gname) {
+        Group group = groups.get(gname);
+        if (group == null) {
+            group = new Group(this);
+            setGroup(gname, group);
+        }
+        else if (group.owner != this) {
+            group = group.copy(this);
+            setGroup(gname, group);
+        }
+        else
+            group.inherited = null;
+        inheritedGroups = null;
+        return group;
+    }
+
+    private void setGroup(String gname, Group group) {
+        if (groupsShared) {
+            groups = new HashMap<String, Group>(groups);
+            groupsShared = false;
+        }
+        groups.put(gname, group);
+    }
+
+    /**
+     * Obtains the groups that should be used by the child nodes that do not declare
+     * any value in the group. The result is cached and shared by all the child nodes.
+     */
+    private Map<String, Group> getInheritedGroups() {
+        if (inheritedGroups == null) {
+            Map<String, Group> ret = new HashMap<String, Group>(groups.size());
+            for (Entry<String, Group> entry : groups.entrySet()) {
+                final Group inh = entry.getValue().getInherited();
+                if (!inh.values.isEmpty())
+                    ret.put(entry.getKey(), inh);
+            }
+            inheritedGroups = ret;
+        }
+        return inheritedGroups;
+    }
+
+    /**
+     * Inherits a single value from the parent quadruple the same way as {@link SingleMapNodeData}.
+     */
+    private static void inheritValue(Map<String, Quadruple> map, String key, Quadruple qp) {
+        Quadruple q = map.get(key);
+
+        // create new quadruple if this do not contain one
+        // for this property
+        if(q==null) q = new Quadruple();
+
+        boolean forceInherit = (q.curProp != null && q.curProp.equalsInherit());
+        boolean changed = false;
+
+        //try the inherited value of the parent
+        if(qp.inhProp!=null && (qp.inhProp.inherited() || forceInherit)) {
+            q.inhProp = qp.inhProp;
+            q.inhValue = qp.inhValue;
+            q.inhSource = qp.inhSource;
+            changed = true;
+        }
+
+        //try the declared property of the parent
+        if(qp.curProp!=null && (qp.curProp.inherited() || forceInherit)) {
+            q.inhProp = qp.curProp;
+            q.inhValue = qp.curValue;
+            q.inhSource = qp.curSource;
+            changed = true;
+        }
+        // insert/replace only if contains inherited/original
+        // value
+        if(changed && !q.isEmpty())
+            map.put(key, q);
+    }
+
+    private static String groupName(String propertyName) {
+        final String ret = groupNames.get(propertyName);
+        return (ret == null) ? createGroupName(propertyName) : ret;
+    }
+
+    /**
+     * Creates the group name from the property name: the part before the first hyphen
+     * (e.g. 'font' for 'font-size') or the whole name.
+     */
+    private static String createGroupName(String propertyName) {
+        final int i = propertyName.indexOf('-', 1);
+        return (i == -1) ? propertyName : propertyName.substring(0, i);
+    }
+
+    //==========================================================================================
+
+    /**
+     * A group of properties. A group may be only modified by its owner node; the remaining
+     * nodes must copy the group first.
+     */
+    private static class Group {
+        /** The node that may modify the group or {@code null} for immutable groups */
+        private final GroupedNodeData owner;
+        private final Map<String, Quadruple> values;
+        /** Cached group to be inherited by the child nodes */
+        private Group inherited;
+
+        public Group(GroupedNodeData owner) {
+            this.owner = owner;
+            this.values = new HashMap<String, Quadruple>();
+        }
+
+        public Group copy(GroupedNodeData newOwner) {
+            final Group ret = new Group(newOwner);
+            for (Entry<String, Quadruple> entry : values.entrySet()) {
+                final Quadruple q = entry.getValue();
+                final Quadruple nq = new Quadruple();
+                nq.curProp = q.curProp;
+                nq.curValue = q.curValue;
+                nq.curSource = q.curSource;
+                nq.inhProp = q.inhProp;
+                nq.inhValue = q.inhValue;
+                nq.inhSource = q.inhSource;
+                ret.values.put(entry.getKey(), nq);
+            }
+            return ret;
+        }
+
+        /**
+         * Obtains an immutable group that contains the values inherited by a child node
+         * that does not declare anything in this group.
+         */
+        public Group getInherited() {
+            if (inherited == null) {
+                if (owner == null) {
+                    // an inherited group contains no declared values, inheriting it again gives the same result
+                    inherited = this;
+                }
+                else {
+                    final Group ret = new Group(null);
+                    for (Entry<String, Quadruple> entry : values.entrySet())
+                        inheritValue(ret.values, entry.getKey(), entry.getValue());
+                    ret.inherited = ret;
+                    inherited = ret;
+                }
+            }
+            return inherited;
+        }
+    }
+
+}
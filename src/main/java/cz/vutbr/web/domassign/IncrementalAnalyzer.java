@@ -0,0 +1,584 @@
+package cz.vutbr.web.domassign;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.traversal.NodeFilter;
+import org.w3c.dom.traversal.TreeWalker;
+
+import cz.vutbr.web.css.CombinedSelector;
+import cz.vutbr.web.css.Declaration;
+import cz.vutbr.web.css.MediaSpec;
+import cz.vutbr.web.css.RuleBlock;
+import cz.vutbr.web.css.RuleMedia;
+import cz.vutbr.web.css.RuleSet;
+import cz.vutbr.web.css.Selector.PseudoDeclaration;
+import cz.vutbr.web.css.StyleSheet;
+import cz.vutbr.web.csskit.ElementMatcherSafeCI;
+
+/**
+ * An analyzer that keeps the evaluated DOM tree together with the assigned declarations
+ * and the resulting style map. After the DOM tree is modified, the styles may be updated
+ * incrementally using {@link #restyle(Collection)} instead of evaluating the whole tree again.
+ * Only the elements whose matched rules may have changed according to the {@link InvalidationSet}
+ * are matched again and only the elements whose assigned declarations have actually changed
+ * (together with their descendants when the inheritance is used) are recomputed.
+ *
+ * Similarly, the rules may be added to or removed from the used style sheets at runtime using
+ * {@link #addRule(RuleBlock)} and {@link #removeRule(RuleBlock)}. Only the elements matched by
+ * the changed selectors are recomputed in that case.
+ *
+ * The changes of the inline styles (the {@code style} attribute) are not reflected by
+ * {@link #restyle(Collection)} since the inline declarations are part of the style sheet.
+ */
+public class IncrementalAnalyzer extends Analyzer
+{
+    private static final Logger log = LoggerFactory.getLogger(IncrementalAnalyzer.class);
+
+    /** The evaluated document */
+    protected Document doc;
+
+    /** The media used for the evaluation */
+    protected MediaSpec media;
+
+    /** Is the inheritance used? */
+    protected boolean inherit;
+
+    /** The declarations assigned to the individual elements */
+    protected DeclarationMap declarations;
+
+    /** The resulting styles */
+    protected StyleMap styles;
+
+    /** The invalidation sets for the current rules */
+    protected InvalidationSet invalidation;
+
+    /**
+     * Creates the analyzer for a single style sheet.
+     * @param sheet The stylesheet that will be used as the source of rules.
+     */
+    public IncrementalAnalyzer(StyleSheet sheet)
+    {
+        super(sheet);
+    }
+
+    /**
+     * Creates the analyzer for multiple style sheets.
+     * @param sheets A list of stylesheets that will be used as the source of rules.
+     */
+    public IncrementalAnalyzer(List<StyleSheet> sheets)
+    {
+        super(sheets);
+    }
+
+    /**
+     * Evaluates CSS properties of DOM tree and remembers the tree for the subsequent
+     * incremental updates.
+     *
+     * @param doc
+     *            Document tree
+     * @param media
+     *            Media
+     * @param inherit
+     *            Use inheritance
+     * @return Map where each element contains its CSS properties. The map is updated
+     *         by the subsequent calls of {@link #restyle(Collection)}.
+     */
+    @Override
+    public StyleMap evaluateDOM(Document doc, MediaSpec media, boolean inherit)
+    {
+        this.doc = doc;
+        this.media = media;
+        this.inherit = inherit;
+        if (getStyleCache() != null)
+            getStyleCache().clear();
+        declarations = assingDeclarationsToDOM(doc, media, inherit);
+        styles = evaluateDeclarations(doc, declarations, inherit);
+        invalidation = new InvalidationSet(rules);
+        return styles;
+    }
+
+    /**
+     * Obtains the style map that corresponds to the current state of the evaluated DOM.
+     * @return the style map or {@code null} when no DOM has been evaluated yet.
+     */
+    public StyleMap getStyleMap()
+    {
+        return styles;
+    }
+
+    /**
+     * Updates the style map after the evaluated DOM tree has been modified.
+     *
+     * @param mutations
+     *            The modifications made in the DOM tree since the last evaluation
+     * @return The set of elements whose style has been recomputed
+     */
+    public Set<Element> restyle(Collection<DOMMutation> mutations)
+    {
+        if (styles == null)
+            throw new IllegalStateException("No DOM has been evaluated yet");
+
+        Set<Element> invalid = new LinkedHashSet<Element>();
+        Set<Element> inserted = new HashSet<Element>();
+        for (DOMMutation m : mutations)
+            invalidate(m, invalid, inserted);
+        log.debug("{} mutations invalidated {} elements", mutations.size(), invalid.size());
+
+        return update(invalid, inserted);
+    }
+
+    /**
+     * Adds a new rule at the end of the last style sheet used by the analyzer and updates
+     * the style map accordingly. The resulting styles are the same as if the whole DOM has
+     * been evaluated again with the modified style sheet.
+     *
+     * @param rule
+     *            The rule to be added. Only the rule sets and the media rules affect the styles.
+     * @return The set of elements whose style has been recomputed
+     */
+    public Set<Element> addRule(RuleBlock<?> rule)
+    {
+        if (styles == null)
+            throw new IllegalStateException("No DOM has been evaluated yet");
+
+        prepareRulesUpdate(media);
+        sheets.get(sheets.size() - 1).add(rule);
+        final List<RuleSet> added = new ArrayList<RuleSet>();
+        if (rule instanceof RuleSet)
+            added.add((RuleSet) rule);
+        else if (rule instanceof RuleMedia && AnalyzerUtil.isMediaValid((RuleMedia) rule, media))
+            added.addAll((RuleMedia) rule);
+
+        final boolean wasEmpty = rules.isEmpty();
+        AnalyzerUtil.classifyAdditionalRule(rule, media, rules);
+        return rulesChanged(added, wasEmpty);
+    }
+
+    /**
+     * Removes a rule from the style sheets used by the analyzer and updates the style map
+     * accordingly. The resulting styles are the same as if the whole DOM has been evaluated
+     * again with the modified style sheet.
+     *
+     * @param rule
+     *            The rule to be removed. It may be a rule contained directly in a style sheet
+     *            or a rule set contained in a media rule.
+     * @return The set of elements whose style has been recomputed
+     */
+    public Set<Element> removeRule(RuleBlock<?> rule)
+    {
+        if (styles == null)
+            throw new IllegalStateException("No DOM has been evaluated yet");
+
+        prepareRulesUpdate(media);
+        if (!removeFromSheets(rule))
+        {
+            log.warn("Rule not found in the style sheets: {}", rule);
+            return Collections.emptySet();
+        }
+        final List<RuleSet> removed = new ArrayList<RuleSet>();
+        if (rule instanceof RuleSet)
+            removed.add((RuleSet) rule);
+        else if (rule instanceof RuleMedia)
+            removed.addAll((RuleMedia) rule);
+
+        final boolean wasEmpty = rules.isEmpty();
+        for (RuleSet rset : removed)
+            rules.remove(rset);
+        return rulesChanged(removed, wasEmpty);
+    }
+
+    //=========================================================================================
+
+    /**
+     * Updates the styles after some rule sets have been added to or removed from the classified rules.
+     * @param changedRules the added or removed rule sets
+     * @param wasEmpty {@code true} when there were no classified rules before the change
+     * @return the set of elements whose style has been recomputed
+     */
+    protected Set<Element> rulesChanged(List<RuleSet> changedRules, boolean wasEmpty)
+    {
+        invalidation = new InvalidationSet(rules);
+        if (wasEmpty != rules.isEmpty())
+        {
+            //the elements are assigned only when some rules are present; everything must be recomputed
+            return reevaluate();
+        }
+        else
+        {
+            final Set<Element> invalid = new LinkedHashSet<Element>();
+            final TreeWalker walker = Traversal.createWalker(doc, NodeFilter.SHOW_ELEMENT);
+            for (Node n = walker.getCurrentNode(); n != null; n = walker.nextNode())
+            {
+                final Element e = (Element) n;
+                if (matchesAny(changedRules, e, walker))
+                    invalid.add(e);
+                walker.setCurrentNode(e);
+            }
+            log.debug("{} rules changed, {} elements affected", changedRules.size(), invalid.size());
+            return update(invalid, Collections.<Element>emptySet());
+        }
+    }
+
+    /**
+     * Evaluates the whole DOM again and replaces the contents of the current style map.
+     * @return the set of all the elements
+     */
+    protected Set<Element> reevaluate()
+    {
+        declarations = assingDeclarationsToDOM(doc, media, inherit);
+        final StyleMap fresh = evaluateDeclarations(doc, declarations, inherit);
+        final Set<Element> all = new LinkedHashSet<Element>();
+        final TreeWalker walker = Traversal.createWalker(doc, NodeFilter.SHOW_ELEMENT);
+        for (Node n = walker.getCurrentNode(); n != null; n = walker.nextNode())
+        {
+            final Element e = (Element) n;
+            styles.remove(e);
+            styles.put(e, null, fresh.get(e, null));
+            for (PseudoDeclaration pseudo : fresh.pseudoSet(e))
+                styles.put(e, pseudo, fresh.get(e, pseudo));
+            all.add(e);
+        }
+        return all;
+    }
+
+    /**
+     * Checks whether any selector of the given rule sets matches the element.
+     * @param rulesets the rule sets to be checked
+     * @param e the element
+     * @param walker the tree walker positioned at the element
+     * @return {@code true} when some of the selectors matches the element
+     */
+    protected boolean matchesAny(List<RuleSet> rulesets, Element e, TreeWalker walker)
+    {
+        for (RuleSet rule : rulesets)
+        {
+            for (CombinedSelector s : rule.getSelectors())
+            {
+                if (matchSelector(s, e, walker))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes the rule from the style sheet that contains it.
+     * @param rule the rule to be removed
+     * @return {@code true} when the rule has been found and removed
+     */
+    protected boolean removeFromSheets(RuleBlock<?> rule)
+    {
+        for (StyleSheet sheet : sheets)
+        {
+            for (int i = 0; i < sheet.size(); i++)
+            {
+                final RuleBlock<?> cur = sheet.get(i);
+                if (cur == rule)
+                {
+                    sheet.remove(i);
+                    return true;
+                }
+                else if (cur instanceof RuleMedia)
+                {
+                    final RuleMedia rmedia = (RuleMedia) cur;
+                    for (int j = 0; j < rmedia.size(); j++)
+                    {
+                        if (rmedia.get(j) == rule)
+                        {
+                            rmedia.remove(j);
+                            return true;
+                        }
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds the elements invalidated by a mutation to the set of invalid elements.
+     * @param m the mutation
+     * @param invalid the set of invalid elements to be extended
+     * @param inserted the set of newly inserted elements to be extended
+     */
+    protected void invalidate(DOMMutation m, Set<Element> invalid, Set<Element> inserted)
+    {
+        final Element e = m.getTarget();
+        switch (m.getType())
+        {
+            case ATTRIBUTE:
+                String name = m.getAttributeName().toLowerCase();
+                int flags = invalidation.forAttribute(name);
+                if (ElementMatcherSafeCI.CLASS_ATTR.equals(name))
+                {
+                    final Set<String> oldClasses = splitClasses(m.getOldValue());
+                    final Set<String> newClasses = splitClasses(e.getAttribute(name));
+                    for (String c : oldClasses)
+                        if (!newClasses.contains(c))
+                            flags |= invalidation.forClass(c);
+                    for (String c : newClasses)
+                        if (!oldClasses.contains(c))
+                            flags |= invalidation.forClass(c);
+                }
+                else if (ElementMatcherSafeCI.ID_ATTR.equals(name))
+                {
+                    flags |= invalidation.forID(m.getOldValue());
+                    flags |= invalidation.forID(e.getAttribute(name));
+                }
+                invalidate(e, flags, invalid);
+                break;
+            case INSERTED:
+                addSubtree(e, invalid);
+                addSubtree(e, inserted);
+                invalidateChildren(e.getParentNode(), invalid);
+                break;
+            case REMOVED:
+                removeSubtree(e);
+                invalidateChildren(m.getParent(), invalid);
+                break;
+            case TEXT:
+                invalidate(e, invalidation.forContent(), invalid);
+                break;
+            case ELEMENT:
+                invalidate(e, InvalidationSet.SELF | InvalidationSet.DESCENDANTS | InvalidationSet.SIBLINGS, invalid);
+                break;
+        }
+    }
+
+    /**
+     * Invalidates an element and/or its related elements.
+     * @param e the element to be invalidated
+     * @param flags the invalidation flags that specify the invalidated elements
+     * @param invalid the set of invalid elements to be extended
+     */
+    protected void invalidate(Element e, int flags, Set<Element> invalid)
+    {
+        if ((flags & InvalidationSet.SELF) != 0)
+            invalid.add(e);
+        if ((flags & InvalidationSet.DESCENDANTS) != 0)
+        {
+            for (Node n = e.getFirstChild(); n != null; n = n.getNextSibling())
+                if (n.getNodeType() == Node.ELEMENT_NODE)
+                    addSubtree((Element) n, invalid);
+        }
+        if ((flags & InvalidationSet.SIBLINGS) != 0)
+        {
+            for (Node n = e.getNextSibling(); n != null; n = n.getNextSibling())
+                if (n.getNodeType() == Node.ELEMENT_NODE)
+                    addSubtree((Element) n, invalid);
+        }
+    }
+
+    /**
+     * Invalidates the child elements of an element whose set of children has changed.
+     * @param parent the parent node
+     * @param invalid the set of invalid elements to be extended
+     */
+    protected void invalidateChildren(Node parent, Set<Element> invalid)
+    {
+        if (parent != null && parent.getNodeType() == Node.ELEMENT_NODE)
+        {
+            invalidate((Element) parent, invalidation.forContent(), invalid);
+            final int flags = invalidation.forStructure();
+            if (flags != 0)
+            {
+                for (Node n = parent.getFirstChild(); n != null; n = n.getNextSibling())
+                {
+                    if (n.getNodeType() == Node.ELEMENT_NODE)
+                    {
+                        if ((flags & InvalidationSet.DESCENDANTS) != 0)
+                            addSubtree((Element) n, invalid);
+                        else
+                            invalid.add((Element) n);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Recomputes the declarations of the invalid elements and the styles of the elements
+     * whose declarations have changed.
+     * @param invalid the invalid elements
+     * @param inserted the newly inserted elements that must be always recomputed
+     * @return the set of elements whose style has been recomputed
+     */
+    protected Set<Element> update(Set<Element> invalid, Set<Element> inserted)
+    {
+        final TreeWalker walker = Traversal.createWalker(doc, NodeFilter.SHOW_ELEMENT);
+        final Element root = doc.getDocumentElement();
+
+        //recompute the declarations
+        final Set<Element> dirty = new LinkedHashSet<Element>();
+        for (Element e : invalid)
+        {
+            if (isInDocument(e))
+            {
+                //the document element is not assigned when the inheritance is not used (see the list traversal)
+                final boolean assign = rules != null && !rules.isEmpty() && (inherit || e != root);
+                if ((assign && reassignDeclarations(e, walker)) || inserted.contains(e))
+                    dirty.add(e);
+            }
+        }
+        log.debug("{} elements with changed declarations", dirty.size());
+
+        //recompute the styles
+        final Set<Element> changed = new LinkedHashSet<Element>();
+        for (Element e : dirty)
+        {
+            if (inherit)
+            {
+                if (!hasAncestorIn(e, dirty))
+                    evaluateSubtree(e, walker, changed);
+            }
+            else
+            {
+                walker.setCurrentNode(e);
+                styles.remove(e);
+                evaluateElement(styles, declarations, e, walker, inherit);
+                changed.add(e);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Matches the rules for an element again and updates the assigned declarations when
+     * they have changed.
+     * @param e the element
+     * @param walker the tree walker to be used
+     * @return {@code true} when the assigned declarations have changed
+     */
+    protected boolean reassignDeclarations(Element e, TreeWalker walker)
+    {
+        final DeclarationMap fresh = new DeclarationMap();
+        walker.setCurrentNode(e);
+        assignDeclarationsToElement(fresh, walker, e, rules);
+
+        boolean same = equalDeclarations(fresh.get(e, null), declarations.get(e, null))
+                && fresh.pseudoSet(e).equals(declarations.pseudoSet(e));
+        if (same)
+        {
+            for (PseudoDeclaration pseudo : fresh.pseudoSet(e))
+            {
+                if (!equalDeclarations(fresh.get(e, pseudo), declarations.get(e, pseudo)))
+                {
+                    same = false;
+                    break;
+                }
+            }
+        }
+
+        if (!same)
+        {
+            declarations.remove(e);
+            declarations.put(e, null, fresh.get(e, null));
+            for (PseudoDeclaration pseudo : fresh.pseudoSet(e))
+                declarations.put(e, pseudo, fresh.get(e, pseudo));
+        }
+        return !same;
+    }
+
+    /**
+     * Recomputes the styles of the whole subtree in the document order so that the parent
+     * style is always available for inheritance. The subtree is traversed without recursion.
+     * @param e the subtree root
+     * @param walker the tree walker to be used
+     * @param changed the set of changed elements to be extended
+     */
+    protected void evaluateSubtree(Element e, TreeWalker walker, Set<Element> changed)
+    {
+        walker.setCurrentNode(e);
+        new Traversal<Set<Element>>(walker, null) {
+            @Override
+            protected void processNode(Set<Element> result, Node current, Object source)
+            {
+                final Element el = (Element) current;
+                styles.remove(el);
+                evaluateElement(styles, declarations, el, walker, inherit);
+                result.add(el);
+            }
+        }.levelTraversal(changed);
+    }
+
+    //=========================================================================================
+
+    private void addSubtree(Element e, Set<Element> dest)
+    {
+        new Traversal<Set<Element>>(new GenericTreeWalker(e, NodeFilter.SHOW_ELEMENT), null) {
+            @Override
+            protected void processNode(Set<Element> result, Node current, Object source)
+            {
+                result.add((Element) current);
+            }
+        }.levelTraversal(dest);
+    }
+
+    private void removeSubtree(Element e)
+    {
+        new Traversal<Object>(new GenericTreeWalker(e, NodeFilter.SHOW_ELEMENT), null) {
+            @Override
+            protected void processNode(Object result, Node current, Object source)
+            {
+                final Element el = (Element) current;
+                declarations.remove(el);
+                styles.remove(el);
+                //the maps share the index, the element ordinal may be reused when both are cleared
+                if (declarations.getIndex() != null && declarations.getIndex() == styles.getIndex())
+                    declarations.getIndex().remove(el);
+            }
+        }.levelTraversal(null);
+    }
+
+    private boolean isInDocument(Element e)
+    {
+        final Element root = doc.getDocumentElement();
+        Node n = e;
+        while (n != null && n != root)
+            n = n.getParentNode();
+        return n == root;
+    }
+
+    private boolean hasAncestorIn(Element e, Set<Element> set)
+    {
+        for (Node n = e.getParentNode(); n != null; n = n.getParentNode())
+            if (set.contains(n))
+                return true;
+        return false;
+    }
+
+    private static boolean equalDeclarations(List<Declaration> l1, List<Declaration> l2)
+    {
+        if (l1 == null || l2 == null)
+            return l1 == l2;
+        else
+            return l1.equals(l2);
+    }
+
+    private static Set<String> splitClasses(String value)
+    {
+        Set<String> ret = new HashSet<String>();
+        if (value != null)
+        {
+            for (String cname : value.toLowerCase().split(ElementMatcherSafeCI.CLASS_DELIM))
+            {
+                cname = cname.trim();
+                if (cname.length() > 0)
+                    ret.add(cname);
+            }
+        }
+        return ret;
+    }
+
+}
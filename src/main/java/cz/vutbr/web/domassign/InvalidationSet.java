@@ -0,0 +1,188 @@
+package cz.vutbr.web.domassign;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import cz.vutbr.web.css.CombinedSelector;
+import cz.vutbr.web.css.Selector;
+import cz.vutbr.web.css.Selector.PseudoDeclaration;
+import cz.vutbr.web.css.Selector.SelectorPart;
+import cz.vutbr.web.domassign.Analyzer.Holder;
+import cz.vutbr.web.domassign.Analyzer.OrderedRule;
+
+/**
+ * Invalidation sets derived from the classified rules. For each class name, ID and attribute
+ * name used in any selector, the set records which elements may change their matched rules
+ * when the corresponding value of an element changes: the element itself, its descendants
+ * and/or its following siblings (including their descendants).
+ */
+public class InvalidationSet
+{
+    /** The changed element itself must be restyled */
+    public static final int SELF = 1;
+    /** The descendants of the changed element must be restyled */
+    public static final int DESCENDANTS = 2;
+    /** The following siblings of the changed element and their descendants must be restyled */
+    public static final int SIBLINGS = 4;
+
+    private Map<String, Integer> classes;
+    private Map<String, Integer> ids;
+    private Map<String, Integer> attributes;
+    /** Invalidation of the children when the set of children of an element changes */
+    private int structural;
+    /** Invalidation of an element when its content changes (the :empty pseudo class) */
+    private int empty;
+
+    /**
+     * Creates the invalidation sets for all the rules contained in a holder.
+     * @param holder the classified rules
+     */
+    public InvalidationSet(Holder holder)
+    {
+        classes = new HashMap<String, Integer>();
+        ids = new HashMap<String, Integer>();
+        attributes = new HashMap<String, Integer>();
+        structural = 0;
+        empty = 0;
+        if (holder != null)
+        {
+            for (OrderedRule rule : holder.getAllRules())
+                addRule(rule);
+        }
+    }
+
+    /**
+     * Obtains the invalidation flags for a class name added to or removed from an element.
+     * @param className the class name
+     * @return a combination of {@link #SELF}, {@link #DESCENDANTS} and {@link #SIBLINGS}
+     */
+    public int forClass(String className)
+    {
+        return get(classes, className);
+    }
+
+    /**
+     * Obtains the invalidation flags for an ID assigned to or removed from an element.
+     * @param id the element ID
+     * @return a combination of {@link #SELF}, {@link #DESCENDANTS} and {@link #SIBLINGS}
+     */
+    public int forID(String id)
+    {
+        return get(ids, id);
+    }
+
+    /**
+     * Obtains the invalidation flags for a change of an attribute value.
+     * @param name the attribute name
+     * @return a combination of {@link #SELF}, {@link #DESCENDANTS} and {@link #SIBLINGS}
+     */
+    public int forAttribute(String name)
+    {
+        return get(attributes, name);
+    }
+
+    /**
+     * Obtains the invalidation flags for the child elements of an element whose set
+     * of children has changed (due to sibling combinators and the structural pseudo classes).
+     * @return a combination of {@link #SELF}, {@link #DESCENDANTS} and {@link #SIBLINGS}
+     */
+    public int forStructure()
+    {
+        return structural;
+    }
+
+    /**
+     * Obtains the invalidation flags for an element whose content (child elements or text)
+     * has changed.
+     * @return a combination of {@link #SELF}, {@link #DESCENDANTS} and {@link #SIBLINGS}
+     */
+    public int forContent()
+    {
+        return empty;
+    }
+
+    //=========================================================================================
+
+    private int get(Map<String, Integer> map, String key)
+    {
+        if (key == null || key.length() == 0)
+            return 0;
+        final Integer ret = map.get(key.toLowerCase());
+        return (ret == null) ? 0 : ret;
+    }
+
+    private void add(Map<String, Integer> map, String key, int flags)
+    {
+        final String k = key.toLowerCase();
+        final Integer cur = map.get(k);
+        map.put(k, (cur == null) ? flags : (cur | flags));
+    }
+
+    private void addRule(OrderedRule rule)
+    {
+        for (CombinedSelector sel : rule.getRule().getSelectors())
+        {
+            for (int i = 0; i < sel.size(); i++)
+            {
+                //the elements affected by a change are given by the combinator that follows the simple selector
+                final int flags;
+                if (i == sel.size() - 1)
+                    flags = SELF;
+                else
+                {
+                    final Selector.Combinator c = sel.get(i + 1).getCombinator();
+                    if (c == Selector.Combinator.ADJACENT || c == Selector.Combinator.PRECEDING)
+                    {
+                        flags = SIBLINGS;
+                        structural |= SELF | DESCENDANTS;
+                    }
+                    else
+                        flags = DESCENDANTS;
+                }
+                addSelector(sel.get(i), flags);
+            }
+        }
+    }
+
+    private void addSelector(Selector s, int flags)
+    {
+        for (SelectorPart part : s)
+        {
+            if (part instanceof Selector.ElementClass)
+                add(classes, ((Selector.ElementClass) part).getClassName(), flags);
+            else if (part instanceof Selector.ElementID)
+                add(ids, ((Selector.ElementID) part).getID(), flags);
+            else if (part instanceof Selector.ElementAttribute)
+                add(attributes, ((Selector.ElementAttribute) part).getAttribute(), flags);
+            else if (part instanceof Selector.PseudoPage)
+            {
+                final PseudoDeclaration pd = ((Selector.PseudoPage) part).getDeclaration();
+                if (pd == PseudoDeclaration.EMPTY)
+                    empty |= flags;
+                else if (isStructural(pd))
+                    structural |= (flags == SELF) ? SELF : (SELF | DESCENDANTS);
+            }
+        }
+    }
+
+    private boolean isStructural(PseudoDeclaration pd)
+    {
+        switch (pd)
+        {
+            case FIRST_CHILD:
+            case LAST_CHILD:
+            case ONLY_CHILD:
+            case FIRST_OF_TYPE:
+            case LAST_OF_TYPE:
+            case ONLY_OF_TYPE:
+            case NTH_CHILD:
+            case NTH_LAST_CHILD:
+            case NTH_OF_TYPE:
+            case NTH_LAST_OF_TYPE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+}
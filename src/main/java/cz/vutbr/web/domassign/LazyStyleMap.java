@@ -0,0 +1,156 @@
+package cz.vutbr.web.domassign;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.traversal.NodeFilter;
+import org.w3c.dom.traversal.TreeWalker;
+
+import cz.vutbr.web.css.NodeData;
+import cz.vutbr.web.css.Selector.PseudoDeclaration;
+import cz.vutbr.web.domassign.Analyzer.Holder;
+
+/**
+ * A style map that computes the style of an element when it is accessed for the first time.
+ * When the inheritance is used, the styles of all the ancestors are computed first. The computed
+ * styles are stored in the map so that each element is computed at most once.
+ *
+ * The map is created by {@link Analyzer#evaluateDOMLazily(Document, cz.vutbr.web.css.MediaSpec, boolean)}.
+ * The resulting styles are the same as the styles obtained by
+ * {@link Analyzer#evaluateDOM(Document, cz.vutbr.web.css.MediaSpec, boolean)}. However,
+ * {@link #size()} and {@link #keySet()} only reflect the elements that have been already computed.
+ * The map is not thread-safe.
+ */
+public class LazyStyleMap extends StyleMap
+{
+    private Analyzer analyzer;
+    private Holder rules;
+    private Document doc;
+    private boolean inherit;
+    private TreeWalker walker;
+    private DeclarationMap declarations;
+
+    /**
+     * Creates a lazy style map.
+     * @param analyzer the analyzer used for computing the element styles
+     * @param rules the rules classified for the used media
+     * @param doc the document whose elements are contained in the map
+     * @param inherit use inheritance
+     */
+    protected LazyStyleMap(Analyzer analyzer, Holder rules, Document doc, boolean inherit)
+    {
+        super(16);
+        this.analyzer = analyzer;
+        this.rules = rules;
+        this.doc = doc;
+        this.inherit = inherit;
+        this.walker = Traversal.createWalker(doc, NodeFilter.SHOW_ELEMENT);
+        this.declarations = new DeclarationMap();
+    }
+
+    @Override
+    public NodeData get(Element el, PseudoDeclaration pseudo)
+    {
+        ensureComputed(el);
+        return super.get(el, pseudo);
+    }
+
+    @Override
+    public NodeData get(Element el)
+    {
+        ensureComputed(el);
+        return super.get(el);
+    }
+
+    @Override
+    public NodeData getOrCreate(Element el, PseudoDeclaration pseudo)
+    {
+        ensureComputed(el);
+        return super.getOrCreate(el, pseudo);
+    }
+
+    @Override
+    public Set<PseudoDeclaration> pseudoSet(Element el)
+    {
+        ensureComputed(el);
+        return super.pseudoSet(el);
+    }
+
+    @Override
+    public boolean hasPseudo(Element el, PseudoDeclaration pseudo)
+    {
+        ensureComputed(el);
+        return super.hasPseudo(el, pseudo);
+    }
+
+    /**
+     * Checks whether the style of the given element has been already computed.
+     * @param el the element
+     * @return {@code true} when the style is available without computation
+     */
+    public boolean isComputed(Element el)
+    {
+        return super.get(el) != null;
+    }
+
+    //=========================================================================================
+
+    /**
+     * Computes the style of the element and all its ancestors (when necessary) unless they
+     * have been already computed.
+     * @param el the element
+     */
+    protected void ensureComputed(Element el)
+    {
+        if (el != null && !isComputed(el) && isInDocument(el))
+        {
+            //find the ancestors that have not been computed yet
+            final List<Element> chain = new ArrayList<Element>();
+            chain.add(el);
+            if (inherit)
+            {
+                Node n = el.getParentNode();
+                while (n != null && n.getNodeType() == Node.ELEMENT_NODE && !isComputed((Element) n))
+                {
+                    chain.add((Element) n);
+                    n = n.getParentNode();
+                }
+            }
+            //compute them from the top
+            for (int i = chain.size() - 1; i >= 0; i--)
+                compute(chain.get(i));
+        }
+    }
+
+    /**
+     * Computes the style of a single element. The parent style must be already available
+     * when the inheritance is used.
+     * @param el the element
+     */
+    protected void compute(Element el)
+    {
+        //the document element is not assigned when the inheritance is not used (see the list traversal)
+        if (rules != null && !rules.isEmpty() && (inherit || el != doc.getDocumentElement()))
+        {
+            walker.setCurrentNode(el);
+            analyzer.assignDeclarationsToElement(declarations, walker, el, rules);
+        }
+        walker.setCurrentNode(el);
+        analyzer.evaluateElement(this, declarations, el, walker, inherit);
+        declarations.remove(el);
+    }
+
+    private boolean isInDocument(Element el)
+    {
+        final Element root = doc.getDocumentElement();
+        Node n = el;
+        while (n != null && n != root)
+            n = n.getParentNode();
+        return n == root;
+    }
+
+}
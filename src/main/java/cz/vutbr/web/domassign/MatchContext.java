@@ -0,0 +1,176 @@
+package cz.vutbr.web.domassign;
+
+import java.util.Arrays;
+import java.util.List;
+
+import cz.vutbr.web.domassign.Analyzer.OrderedRule;
+
+/**
+ * A reusable scratch space for collecting the candidate rules of a single element. The candidate
+ * rules are obtained from several holder buckets (classes, ID, element name, others) that are
+ * already sorted by the rule order. The buckets are merged and the duplicates (the rules
+ * present in several buckets) are removed so that no temporary collections have to be created
+ * and no sorting is necessary for each element. The arrays grow as needed and they are reused
+ * for the following elements.
+ *
+ * Each thread uses its own context obtained by {@link #acquire()}; the context must be
+ * returned by {@link #release()} after the candidates have been processed.
+ */
+final class MatchContext
+{
+    private static final ThreadLocal<MatchContext> contexts = new ThreadLocal<MatchContext>() {
+        @Override
+        protected MatchContext initialValue()
+        {
+            return new MatchContext();
+        }
+    };
+
+    /** The buckets to be merged */
+    private List<?>[] buckets;
+    /** Current positions in the buckets */
+    private int[] positions;
+    private int bucketCount;
+    /** The resulting sorted candidates */
+    private OrderedRule[] candidates;
+    private int count;
+    private boolean inUse;
+
+    private MatchContext()
+    {
+        buckets = new List<?>[8];
+        positions = new int[8];
+        candidates = new OrderedRule[16];
+    }
+
+    /**
+     * Obtains the context for the current thread. When the context of the current thread
+     * is already in use, a new temporary context is created.
+     * @return the context ready for collecting the candidates
+     */
+    public static MatchContext acquire()
+    {
+        MatchContext ret = contexts.get();
+        if (ret.inUse)
+            ret = new MatchContext();
+        ret.inUse = true;
+        return ret;
+    }
+
+    /**
+     * Clears the context and makes it available for the next use.
+     */
+    public void release()
+    {
+        Arrays.fill(buckets, 0, bucketCount, null);
+        bucketCount = 0;
+        Arrays.fill(candidates, 0, count, null);
+        count = 0;
+        inUse = false;
+    }
+
+    /**
+     * Adds a bucket of rules to be merged. The rules in the bucket must be sorted by their order.
+     * @param rules the rules to be added or {@code null}
+     */
+    public void addAll(List<OrderedRule> rules)
+    {
+        if (rules != null && !rules.isEmpty())
+        {
+            if (bucketCount >= buckets.length)
+            {
+                buckets = Arrays.copyOf(buckets, buckets.length * 2);
+                positions = Arrays.copyOf(positions, positions.length * 2);
+            }
+            buckets[bucketCount] = rules;
+            positions[bucketCount] = 0;
+            bucketCount++;
+        }
+    }
+
+    /**
+     * Merges the buckets added since the last merge to a single sorted list of candidates without
+     * duplicates. The merged candidates are appended after the candidates of the previous merge
+     * so that the groups of buckets (e.g. the layers of a layered holder) keep their order.
+     * @return the number of candidates available via {@link #getCandidates()}
+     */
+    public int merge()
+    {
+        int total = count;
+        for (int i = 0; i < bucketCount; i++)
+            total += buckets[i].size();
+        if (candidates.length < total)
+            candidates = Arrays.copyOf(candidates, Math.max(total, candidates.length * 2));
+
+        if (bucketCount == 1)
+        {
+            // a single bucket, nothing to merge
+            final List<?> bucket = buckets[0];
+            for (int i = 0; count < total; i++)
+                candidates[count++] = (OrderedRule) bucket.get(i);
+        }
+        else if (bucketCount > 1)
+        {
+            final int start = count;
+            while (true)
+            {
+                // find the bucket with the lowest order at the current position
+                int best = -1;
+                OrderedRule bestRule = null;
+                for (int i = 0; i < bucketCount; i++)
+                {
+                    if (positions[i] < buckets[i].size())
+                    {
+                        final OrderedRule rule = (OrderedRule) buckets[i].get(positions[i]);
+                        if (best == -1 || rule.getOrder() < bestRule.getOrder())
+                        {
+                            best = i;
+                            bestRule = rule;
+                        }
+                    }
+                }
+                if (best == -1)
+                    break;
+                positions[best]++;
+                if (!isDuplicate(bestRule, start))
+                    candidates[count++] = bestRule;
+            }
+        }
+        Arrays.fill(buckets, 0, bucketCount, null);
+        bucketCount = 0;
+        return count;
+    }
+
+    /**
+     * Obtains the sorted candidates. Only the first {@link #size()} items are valid.
+     * @return the candidate array
+     */
+    public OrderedRule[] getCandidates()
+    {
+        return candidates;
+    }
+
+    /**
+     * Obtains the number of the sorted candidates.
+     * @return the number of candidates
+     */
+    public int size()
+    {
+        return count;
+    }
+
+    /**
+     * Checks whether the rule has been already added by the current merge. Since the rules are added
+     * in their order, only the last added rules with the same order have to be checked.
+     */
+    private boolean isDuplicate(OrderedRule rule, int start)
+    {
+        for (int i = count - 1; i >= start && candidates[i].getOrder() == rule.getOrder(); i--)
+        {
+            if (candidates[i] == rule)
+                return true;
+        }
+        return false;
+    }
+
+}
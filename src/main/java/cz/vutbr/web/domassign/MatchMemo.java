@@ -0,0 +1,192 @@
+package cz.vutbr.web.domassign;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.w3c.dom.Element;
+
+/**
+ * Remembers the results of matching the shared simple selectors of a {@link SelectorCompiler}
+ * against the individual elements. The results are only valid while the DOM, the element matcher
+ * and the match condition remain unchanged, i.e. during a single DOM traversal. The elements
+ * of a {@link TreeSnapshot} are identified by their ordinals instead.
+ *
+ * The memo may be shared by several compilers (e.g. the compilers of the individual layers of a layered
+ * {@link Analyzer.Holder}). The simple selector indices of each compiler are then shifted so that
+ * they do not overlap; only the simple selectors compiled before the memo has been created are remembered
+ * for all but the last compiler.
+ */
+final class MatchMemo
+{
+    public static final int UNKNOWN = 0;
+    public static final int MATCHES = 1;
+    public static final int FAILS = 2;
+
+    private final SelectorCompiler[] compilers;
+    private final int[] offsets;
+    private final int[] limits;
+    private final Map<Element, Results> results;
+    private Results[] ordinalResults;
+
+    /**
+     * Creates an empty memo.
+     * @param compiler the compiler whose simple selectors are remembered
+     */
+    public MatchMemo(SelectorCompiler compiler)
+    {
+        this(Collections.singletonList(compiler));
+    }
+
+    /**
+     * Creates an empty memo shared by several compilers.
+     * @param compilers the distinct compilers whose simple selectors are remembered
+     */
+    public MatchMemo(List<SelectorCompiler> compilers)
+    {
+        this.compilers = compilers.toArray(new SelectorCompiler[compilers.size()]);
+        this.offsets = new int[this.compilers.length];
+        this.limits = new int[this.compilers.length];
+        int offset = 0;
+        for (int i = 0; i < this.compilers.length; i++)
+        {
+            offsets[i] = offset;
+            limits[i] = (i == this.compilers.length - 1) ? Integer.MAX_VALUE : this.compilers[i].size();
+            offset += this.compilers[i].size();
+        }
+        this.results = new IdentityHashMap<Element, Results>();
+    }
+
+    /**
+     * Obtains the memo index of a simple selector.
+     * @param compiler the compiler of the simple selector
+     * @param id the simple selector index obtained by {@link #indexOf(SelectorCompiler, int)}
+     * @return the index to be used for {@link #get(Element, int)} and {@link #put(Element, int, boolean)}
+     * or -1 when the results of the simple selector are not remembered by this memo
+     */
+    public int indexOf(SelectorCompiler compiler, int id)
+    {
+        for (int i = 0; i < compilers.length; i++)
+        {
+            if (compilers[i] == compiler)
+                return (id < limits[i]) ? offsets[i] + id : -1;
+        }
+        return -1;
+    }
+
+    /**
+     * Obtains a remembered result.
+     * @param e the element
+     * @param id the simple selector index obtained by {@link #indexOf(SelectorCompiler, int)}
+     * @return {@link #MATCHES}, {@link #FAILS} or {@link #UNKNOWN} when not remembered
+     */
+    public int get(Element e, int id)
+    {
+        final Results r = results.get(e);
+        return (r == null) ? UNKNOWN : r.get(id);
+    }
+
+    /**
+     * Remembers a result.
+     * @param e the element
+     * @param id the simple selector index obtained by {@link #indexOf(SelectorCompiler, int)}
+     * @param matches the match result
+     */
+    public void put(Element e, int id, boolean matches)
+    {
+        Results r = results.get(e);
+        if (r == null)
+        {
+            r = new Results();
+            results.put(e, r);
+        }
+        r.put(id, matches);
+    }
+
+    /**
+     * Obtains a remembered result for a snapshot element.
+     * @param ord the element ordinal in the snapshot
+     * @param id the simple selector index obtained by {@link #indexOf(SelectorCompiler, int)}
+     * @return {@link #MATCHES}, {@link #FAILS} or {@link #UNKNOWN} when not remembered
+     */
+    public int get(int ord, int id)
+    {
+        final Results r = (ordinalResults == null || ord >= ordinalResults.length) ? null : ordinalResults[ord];
+        return (r == null) ? UNKNOWN : r.get(id);
+    }
+
+    /**
+     * Remembers a result for a snapshot element.
+     * @param ord the element ordinal in the snapshot
+     * @param id the simple selector index obtained by {@link #indexOf(SelectorCompiler, int)}
+     * @param matches the match result
+     */
+    public void put(int ord, int id, boolean matches)
+    {
+        if (ordinalResults == null)
+            ordinalResults = new Results[Math.max(64, ord + 1)];
+        else if (ord >= ordinalResults.length)
+            ordinalResults = Arrays.copyOf(ordinalResults, Math.max(ordinalResults.length * 2, ord + 1));
+        Results r = ordinalResults[ord];
+        if (r == null)
+        {
+            r = new Results();
+            ordinalResults[ord] = r;
+        }
+        r.put(id, matches);
+    }
+
+    //=========================================================================================
+
+    /**
+     * The results of a single element in an open addressing table. Each entry encodes
+     * the selector index and the result; zero denotes an empty entry.
+     */
+    private static final class Results
+    {
+        private int[] table = new int[8];
+        private int count;
+
+        public int get(int id)
+        {
+            final int mask = table.length - 1;
+            for (int i = id & mask; table[i] != 0; i = (i + 1) & mask)
+            {
+                if ((table[i] >>> 1) == id + 1)
+                    return ((table[i] & 1) != 0) ? MATCHES : FAILS;
+            }
+            return UNKNOWN;
+        }
+
+        public void put(int id, boolean matches)
+        {
+            if ((count + 1) * 2 > table.length)
+                rehash();
+            insert(table, ((id + 1) << 1) | (matches ? 1 : 0));
+            count++;
+        }
+
+        private void rehash()
+        {
+            final int[] ntable = new int[table.length * 2];
+            for (int entry : table)
+            {
+                if (entry != 0)
+                    insert(ntable, entry);
+            }
+            table = ntable;
+        }
+
+        private static void insert(int[] table, int entry)
+        {
+            final int mask = table.length - 1;
+            int i = ((entry >>> 1) - 1) & mask;
+            while (table[i] != 0)
+                i = (i + 1) & mask;
+            table[i] = entry;
+        }
+    }
+
+}
@@ -0,0 +1,227 @@
+package cz.vutbr.web.domassign;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import cz.vutbr.web.css.MediaExpression;
+import cz.vutbr.web.css.MediaQuery;
+import cz.vutbr.web.css.MediaSpec;
+import cz.vutbr.web.css.Rule;
+import cz.vutbr.web.css.RuleMedia;
+import cz.vutbr.web.css.StyleSheet;
+import cz.vutbr.web.domassign.Analyzer.Holder;
+
+/**
+ * The analysis of the media rules used in a set of style sheets. The width and height thresholds
+ * used in the media queries (the breakpoints) divide the viewport sizes to intervals where
+ * the results of the media queries do not change. The intervals are numbered from 0: the even
+ * intervals are the open intervals between the breakpoints and the odd intervals are the breakpoints
+ * themselves.
+ *
+ * The rules classified for a media specification are cached and reused for all the media
+ * specifications that are matched by the same media rules, i.e. for all the viewport sizes
+ * in the same interval (or in other intervals with the same results) when the remaining
+ * media features are the same. The analysis is not updated when the style sheets change.
+ */
+public class MediaBreakpoints
+{
+    private final List<StyleSheet> sheets;
+    /** All the media rules contained in the style sheets */
+    private final List<RuleMedia> mediaRules;
+    private final float[] widths;
+    private final float[] heights;
+    /** Classified rules for the individual sets of matching media rules */
+    private final Map<BitSet, Holder> classified;
+
+    /**
+     * Analyzes the media rules of the given style sheets.
+     * @param sheets the analyzed style sheets
+     */
+    public MediaBreakpoints(List<StyleSheet> sheets)
+    {
+        this.sheets = sheets;
+        this.mediaRules = new ArrayList<RuleMedia>();
+        this.classified = new HashMap<BitSet, Holder>();
+
+        final LengthConverter conv = new LengthConverter();
+        final TreeSet<Float> w = new TreeSet<Float>();
+        final TreeSet<Float> h = new TreeSet<Float>();
+        for (StyleSheet sheet : sheets)
+        {
+            for (Rule<?> rule : sheet)
+            {
+                if (rule instanceof RuleMedia)
+                {
+                    final RuleMedia rm = (RuleMedia) rule;
+                    mediaRules.add(rm);
+                    if (rm.getMediaQueries() != null)
+                    {
+                        for (MediaQuery q : rm.getMediaQueries())
+                            for (MediaExpression e : q)
+                                addThreshold(e, conv, w, h);
+                    }
+                }
+            }
+        }
+        widths = toArray(w);
+        heights = toArray(h);
+    }
+
+    /**
+     * Obtains the width thresholds used in the media queries.
+     * @return the sorted array of distinct widths in pixels
+     */
+    public float[] getWidthBreakpoints()
+    {
+        return widths.clone();
+    }
+
+    /**
+     * Obtains the height thresholds used in the media queries.
+     * @return the sorted array of distinct heights in pixels
+     */
+    public float[] getHeightBreakpoints()
+    {
+        return heights.clone();
+    }
+
+    /**
+     * Obtains the number of the width intervals.
+     * @return the number of intervals, i.e. twice the number of the breakpoints plus one
+     */
+    public int getWidthIntervalCount()
+    {
+        return 2 * widths.length + 1;
+    }
+
+    /**
+     * Obtains the number of the height intervals.
+     * @return the number of intervals, i.e. twice the number of the breakpoints plus one
+     */
+    public int getHeightIntervalCount()
+    {
+        return 2 * heights.length + 1;
+    }
+
+    /**
+     * Finds the width interval that contains the given width.
+     * @param width the viewport width in pixels
+     * @return the interval number
+     */
+    public int getWidthInterval(float width)
+    {
+        return intervalOf(widths, width);
+    }
+
+    /**
+     * Finds the height interval that contains the given height.
+     * @param height the viewport height in pixels
+     * @return the interval number
+     */
+    public int getHeightInterval(float height)
+    {
+        return intervalOf(heights, height);
+    }
+
+    /**
+     * Obtains the rules of the style sheets classified for the given media. The classification
+     * is shared with all the media specifications that are matched by the same media rules.
+     * The returned rules must not be modified.
+     * @param media the media specification
+     * @return the classified rules
+     */
+    public Holder getClassifiedRules(MediaSpec media)
+    {
+        final BitSet key = getMatchingRules(media);
+        Holder ret = classified.get(key);
+        if (ret == null)
+        {
+            ret = new Holder();
+            AnalyzerUtil.classifyAllSheets(sheets, ret, media);
+            classified.put(key, ret);
+        }
+        return ret;
+    }
+
+    /**
+     * Discards all the cached classifications.
+     */
+    public void clear()
+    {
+        classified.clear();
+    }
+
+    //=========================================================================================
+
+    /**
+     * Evaluates all the media rules for the given media.
+     * @return the indices of the media rules that apply to the media
+     */
+    private BitSet getMatchingRules(MediaSpec media)
+    {
+        final BitSet ret = new BitSet(mediaRules.size());
+        for (int i = 0; i < mediaRules.size(); i++)
+        {
+            if (AnalyzerUtil.isMediaValid(mediaRules.get(i), media))
+                ret.set(i);
+        }
+        return ret;
+    }
+
+    private static void addThreshold(MediaExpression e, LengthConverter conv, TreeSet<Float> w, TreeSet<Float> h)
+    {
+        String fs = e.getFeature();
+        if (fs.startsWith("min-") || fs.startsWith("max-"))
+            fs = fs.substring(4);
+        final TreeSet<Float> dest;
+        if (fs.equals("width"))
+            dest = w;
+        else if (fs.equals("height"))
+            dest = h;
+        else
+            return;
+        final Float px = conv.toPx(e);
+        if (px != null)
+            dest.add(px);
+    }
+
+    private static float[] toArray(TreeSet<Float> values)
+    {
+        final float[] ret = new float[values.size()];
+        int i = 0;
+        for (Float f : values)
+            ret[i++] = f;
+        return ret;
+    }
+
+    private static int intervalOf(float[] points, float value)
+    {
+        final int pos = Arrays.binarySearch(points, value);
+        if (pos >= 0)
+            return 2 * pos + 1; //exactly at the breakpoint
+        else
+            return 2 * (-pos - 1); //between the breakpoints
+    }
+
+    /**
+     * Converts the expression lengths to pixels the same way as they are converted when matching the media.
+     */
+    private static class LengthConverter extends MediaSpec
+    {
+        public LengthConverter()
+        {
+            super("all");
+        }
+
+        public Float toPx(MediaExpression e)
+        {
+            return getExpressionLengthPx(e);
+        }
+    }
+
+}
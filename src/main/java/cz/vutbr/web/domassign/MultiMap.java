@@ -5,8 +5,12 @@
  */
 package cz.vutbr.web.domassign;
 
+import java.util.AbstractSet;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 /**
@@ -15,12 +19,23 @@ import java.util.Set;
  * behaves as a simple map called a main map. Other values of PseudoElement create so-called pseudo
  * maps. The map is optimized to provide the best performance for the main map.
  * 
+ * Alternatively, when the map is created for an {@link ElementIndex}, the data is stored in arrays
+ * indexed by the element ordinals and the pseudo-element data of each element is stored in a small
+ * array indexed by the pseudo-element ordinal (the pseudo-elements must be enum constants then).
+ * This avoids the hash maps and the per-element map instances.
+ * 
  * @author burgetr
  */
 public abstract class MultiMap<E, P, D>
 {
     private HashMap<E, D> mainMap; //main map for no pseudo-elements
     private HashMap<E, HashMap<P, D>> pseudoMaps; //maps for the individual pseudo-elements
+    
+    private ElementIndex<E> index; //element index for the dense storage or null
+    private P[] pseudoValues; //all the pseudo-element values (enum constants) in the dense storage
+    private Object[] mainData; //main data indexed by the element ordinals
+    private Object[][] pseudoData; //pseudo-element data indexed by the element and pseudo-element ordinals
+    private int mainCount; //number of the non-null main data in the dense storage
 
     /**
      * Creates an empty map
@@ -40,6 +55,32 @@ public abstract class MultiMap<E, P, D>
         pseudoMaps = new HashMap<E, HashMap<P, D>>();
     }
     
+    /**
+     * Creates an empty map that stores the data in arrays indexed by the element ordinals.
+     * @param index the index that assigns the ordinals to the elements; it may be shared
+     * with other maps
+     * @param pseudoClass the enum class of the pseudo-elements
+     */
+    public MultiMap(ElementIndex<E> index, Class<P> pseudoClass)
+    {
+        if (!pseudoClass.isEnum())
+            throw new IllegalArgumentException("Enum pseudo-elements are required: " + pseudoClass.getName());
+        this.index = index;
+        this.pseudoValues = pseudoClass.getEnumConstants();
+        final int capacity = Math.max(index.size(), 16);
+        mainData = new Object[capacity];
+        pseudoData = new Object[capacity][];
+    }
+    
+    /**
+     * Obtains the element index used for the dense storage.
+     * @return the index or {@code null} when the data is stored in hash maps
+     */
+    public ElementIndex<E> getIndex()
+    {
+        return index;
+    }
+    
     /**
      * Creates a new instance of the data value.
      * This is only used by {@link MultiMap#getOrCreate(Object, Object)}.
@@ -52,6 +93,8 @@ public abstract class MultiMap<E, P, D>
      */
     public int size()
     {
+        if (index != null)
+            return mainCount;
         return mainMap.size();
     }
     
@@ -63,6 +106,8 @@ public abstract class MultiMap<E, P, D>
      */
     public D get(E el, P pseudo)
     {
+        if (index != null)
+            return denseGet(index.indexOf(el), pseudo);
         D ret;
         if (pseudo == null)
             ret = mainMap.get(el);
@@ -84,6 +129,8 @@ public abstract class MultiMap<E, P, D>
      */
     public D get(E el)
     {
+        if (index != null)
+            return denseGet(index.indexOf(el), null);
         return mainMap.get(el);
     }
     
@@ -95,6 +142,17 @@ public abstract class MultiMap<E, P, D>
      */
     public D getOrCreate(E el, P pseudo)
     {
+        if (index != null)
+        {
+            final int ord = index.add(el);
+            D ret = denseGet(ord, pseudo);
+            if (ret == null)
+            {
+                ret = createDataInstance();
+                densePut(ord, pseudo, ret);
+            }
+            return ret;
+        }
         D ret;
         if (pseudo == null)
         {
@@ -133,6 +191,11 @@ public abstract class MultiMap<E, P, D>
      */
     public void put(E el, P pseudo, D data)
     {
+        if (index != null)
+        {
+            densePut(index.add(el), pseudo, data);
+            return;
+        }
         if (pseudo == null)
             mainMap.put(el, data);
         else
@@ -147,12 +210,37 @@ public abstract class MultiMap<E, P, D>
         }
     }
     
+    /**
+     * Removes all the data assigned to the given element including the data
+     * assigned to its pseudo-elements.
+     * @param el the element to be removed
+     */
+    public void remove(E el)
+    {
+        if (index != null)
+        {
+            final int ord = index.indexOf(el);
+            if (ord != -1 && ord < mainData.length)
+            {
+                if (mainData[ord] != null)
+                    mainCount--;
+                mainData[ord] = null;
+                pseudoData[ord] = null;
+            }
+            return;
+        }
+        mainMap.remove(el);
+        pseudoMaps.remove(el);
+    }
+    
     /**
      * Gets all the keys (elements) of the main map.
      * @return A set of elements contained in the map.
      */
     public Set<E> keySet()
     {
+        if (index != null)
+            return new DenseKeySet();
     	return mainMap.keySet();
     }
     
@@ -164,6 +252,14 @@ public abstract class MultiMap<E, P, D>
      */
     public Set<P> pseudoSet(E el)
     {
+        if (index != null)
+        {
+            final int ord = index.indexOf(el);
+            if (ord == -1 || ord >= pseudoData.length || pseudoData[ord] == null)
+                return Collections.emptySet();
+            else
+                return new DensePseudoSet(pseudoData[ord]);
+        }
         HashMap<P, D> map = pseudoMaps.get(el);
         if (map == null)
             return Collections.emptySet();
@@ -179,6 +275,8 @@ public abstract class MultiMap<E, P, D>
      */
     public boolean hasPseudo(E el, P pseudo)
     {
+        if (index != null)
+            return pseudo != null && denseGet(index.indexOf(el), pseudo) != null;
         HashMap<P, D> map = pseudoMaps.get(el);
         if (map == null)
             return false;
@@ -186,4 +284,169 @@ public abstract class MultiMap<E, P, D>
             return map.containsKey(pseudo);
     }
     
+    //====================================================================================
+    
+    @SuppressWarnings("unchecked")
+    private D denseGet(int ord, P pseudo)
+    {
+        if (ord == -1 || ord >= mainData.length)
+            return null;
+        if (pseudo == null)
+            return (D) mainData[ord];
+        else
+        {
+            final Object[] slots = pseudoData[ord];
+            return (slots == null) ? null : (D) slots[((Enum<?>) pseudo).ordinal()];
+        }
+    }
+    
+    private void densePut(int ord, P pseudo, D data)
+    {
+        if (ord >= mainData.length)
+        {
+            final int capacity = Math.max(mainData.length * 2, index.size());
+            mainData = Arrays.copyOf(mainData, capacity);
+            pseudoData = Arrays.copyOf(pseudoData, capacity);
+        }
+        if (pseudo == null)
+        {
+            if (mainData[ord] == null && data != null)
+                mainCount++;
+            else if (mainData[ord] != null && data == null)
+                mainCount--;
+            mainData[ord] = data;
+        }
+        else
+        {
+            Object[] slots = pseudoData[ord];
+            if (slots == null)
+            {
+                slots = new Object[pseudoValues.length];
+                pseudoData[ord] = slots;
+            }
+            slots[((Enum<?>) pseudo).ordinal()] = data;
+        }
+    }
+    
+    /**
+     * The elements with some main data in the dense storage.
+     */
+    private class DenseKeySet extends AbstractSet<E>
+    {
+        @Override
+        public int size()
+        {
+            return mainCount;
+        }
+        
+        @SuppressWarnings("unchecked")
+        @Override
+        public boolean contains(Object o)
+        {
+            return denseGet(index.indexOf((E) o), null) != null;
+        }
+        
+        @Override
+        public Iterator<E> iterator()
+        {
+            return new Iterator<E>() {
+                private int next = advance(0);
+                
+                private int advance(int from)
+                {
+                    int i = from;
+                    while (i < mainData.length && mainData[i] == null)
+                        i++;
+                    return i;
+                }
+                
+                public boolean hasNext()
+                {
+                    return next < mainData.length;
+                }
+                
+                public E next()
+                {
+                    if (!hasNext())
+                        throw new NoSuchElementException();
+                    final E ret = index.get(next);
+                    next = advance(next + 1);
+                    return ret;
+                }
+                
+                public void remove()
+                {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+    }
+    
+    /**
+     * The pseudo-elements of a single element in the dense storage.
+     */
+    private class DensePseudoSet extends AbstractSet<P>
+    {
+        private final Object[] slots;
+        
+        public DensePseudoSet(Object[] slots)
+        {
+            this.slots = slots;
+        }
+        
+        @Override
+        public int size()
+        {
+            int cnt = 0;
+            for (Object o : slots)
+                if (o != null) cnt++;
+            return cnt;
+        }
+        
+        @Override
+        public boolean contains(Object o)
+        {
+            if (o instanceof Enum<?> && pseudoValues.length > 0
+                    && ((Enum<?>) o).getDeclaringClass() == ((Enum<?>) pseudoValues[0]).getDeclaringClass())
+                return slots[((Enum<?>) o).ordinal()] != null;
+            else
+                return false;
+        }
+        
+        @Override
+        public Iterator<P> iterator()
+        {
+            return new Iterator<P>() {
+                private int next = advance(0);
+                
+                private int advance(int from)
+                {
+                    int i = from;
+                    while (i < slots.length && slots[i] == null)
+                        i++;
+                    return i;
+                }
+                
+                public boolean hasNext()
+                {
+                    return next < slots.length;
+                }
+                
+                public P next()
+                {
+                    if (!hasNext())
+                        throw new NoSuchElementException();
+                    final P ret = pseudoValues[next];
+                    next = advance(next + 1);
+                    return ret;
+                }
+                
+                public void remove()
+                {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+    }
+    
 }
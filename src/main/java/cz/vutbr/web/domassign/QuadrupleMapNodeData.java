@@ -40,6 +40,9 @@ public class QuadrupleMapNodeData implements NodeData {
 	private Map<String,Declaration> sourcesOwn;
     private Map<String,Declaration> sourcesInh;
 	
+	/** Frozen data may not be modified anymore */
+	private boolean frozen;
+
 	public QuadrupleMapNodeData() {
 		this.propertiesOwn = new HashMap<String, CSSProperty>(css.getTotalProperties(), 1.0f);
 		this.propertiesInh = new HashMap<String, CSSProperty>(css.getTotalProperties(), 1.0f);
@@ -131,6 +134,7 @@ public class QuadrupleMapNodeData implements NodeData {
     }
     
 	public NodeData push(Declaration d) {
+	    checkModifiable();
 		
 		Map<String,CSSProperty> properties = 
 			new HashMap<String,CSSProperty>(COMMON_DECLARATION_SIZE);
@@ -161,6 +165,7 @@ public class QuadrupleMapNodeData implements NodeData {
 	}
 	
 	public NodeData inheritFrom(NodeData parent) throws ClassCastException {
+	    checkModifiable();
 		
 		if(parent==null)
 			return this;
@@ -205,6 +210,7 @@ public class QuadrupleMapNodeData implements NodeData {
 	}
 	
 	public NodeData concretize() {
+	    checkModifiable();
 		
 		// inherited firstly, replace them with defaults
 		for(String key: propertiesInh.keySet()) {
@@ -238,6 +244,20 @@ public class QuadrupleMapNodeData implements NodeData {
 		return this;
 	}
 
+	public NodeData freeze() {
+	    frozen = true;
+	    return this;
+	}
+
+	public boolean isFrozen() {
+	    return frozen;
+	}
+
+	private void checkModifiable() {
+	    if (frozen)
+	        throw new UnsupportedOperationException("The node data is frozen");
+	}
+
 	@Override
 	public String toString() {
 		
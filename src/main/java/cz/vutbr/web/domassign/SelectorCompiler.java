@@ -0,0 +1,121 @@
+package cz.vutbr.web.domassign;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import cz.vutbr.web.css.CombinedSelector;
+import cz.vutbr.web.css.RuleSet;
+import cz.vutbr.web.css.Selector;
+import cz.vutbr.web.csskit.SymbolTable;
+import cz.vutbr.web.domassign.CompiledSelector.Compound;
+
+/**
+ * Compiles the selectors of a set of rules. The equal simple selectors used in different
+ * combined selectors (e.g. a common ancestor condition such as {@code #main} or {@code .content})
+ * are compiled only once and shared by all the compiled selectors. During a DOM traversal,
+ * the shared simple selectors are tested only once for each element.
+ * 
+ * The element names, IDs and class names used in the compiled selectors are collected in a
+ * {@link SymbolTable}; the element values are resolved against the table during the matching.
+ */
+public final class SelectorCompiler
+{
+    private final Map<List<Selector.SelectorPart>, Compound> compounds;
+    private final SymbolTable symbols;
+
+    public SelectorCompiler()
+    {
+        compounds = new HashMap<List<Selector.SelectorPart>, Compound>();
+        symbols = new SymbolTable();
+    }
+
+    /**
+     * Compiles a combined selector.
+     * @param selector the selector to be compiled
+     * @return the compiled selector
+     */
+    public CompiledSelector compile(CombinedSelector selector)
+    {
+        return CompiledSelector.compile(selector, this);
+    }
+
+    /**
+     * Compiles all the selectors of a rule set.
+     * @param rule the rule set
+     * @return the compiled selectors in the order of the rule set selectors
+     */
+    public CompiledSelector[] compile(RuleSet rule)
+    {
+        final CombinedSelector[] selectors = rule.getSelectors();
+        final CompiledSelector[] ret = new CompiledSelector[selectors.length];
+        for (int i = 0; i < ret.length; i++)
+            ret[i] = compile(selectors[i]);
+        return ret;
+    }
+
+    /**
+     * Obtains the number of distinct simple selectors compiled so far.
+     * @return the number of simple selectors
+     */
+    public int size()
+    {
+        return compounds.size();
+    }
+
+    /**
+     * Obtains the table of the element names, IDs and class names used in the compiled selectors.
+     * @return the symbol table
+     */
+    public SymbolTable getSymbols()
+    {
+        return symbols;
+    }
+
+    /**
+     * Obtains the shared compiled form of a simple selector.
+     */
+    Compound getCompound(Selector s)
+    {
+        final List<Selector.SelectorPart> key = createKey(s);
+        Compound ret = compounds.get(key);
+        if (ret == null)
+        {
+            ret = new Compound(CompiledSelector.compileTests(s), this, compounds.size());
+            compounds.put(key, ret);
+            addSymbols(s);
+        }
+        return ret;
+    }
+
+    /**
+     * Adds the names, IDs and classes used in a simple selector to the symbol table.
+     */
+    private void addSymbols(Selector s)
+    {
+        for (Selector.SelectorPart part : s)
+        {
+            if (part instanceof Selector.ElementName)
+            {
+                final String name = ((Selector.ElementName) part).getName();
+                if (!Selector.ElementName.WILDCARD.equals(name))
+                    symbols.add(name);
+            }
+            else if (part instanceof Selector.ElementClass)
+                symbols.add(((Selector.ElementClass) part).getClassName());
+            else if (part instanceof Selector.ElementID)
+                symbols.add(((Selector.ElementID) part).getID());
+        }
+    }
+
+    /**
+     * Creates the key of a simple selector: its parts without the combinator. The parts
+     * are compared using their {@code equals()} and {@code hashCode()} methods.
+     */
+    private static List<Selector.SelectorPart> createKey(Selector s)
+    {
+        return new ArrayList<Selector.SelectorPart>(s);
+    }
+
+}
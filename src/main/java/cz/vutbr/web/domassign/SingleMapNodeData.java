@@ -32,6 +32,9 @@ public class SingleMapNodeData implements NodeData {
 	
 	private Map<String, Quadruple> map;
 	
+	/** Frozen data may not be modified anymore */
+	private boolean frozen;
+
 	public SingleMapNodeData() {
 		this.map = new HashMap<String, Quadruple>(css.getTotalProperties(), 1.0f);
 	}
@@ -117,6 +120,7 @@ public class SingleMapNodeData implements NodeData {
 	}
 
 	public NodeData push(Declaration d) {
+	    checkModifiable();
 		
 		Map<String,CSSProperty> properties = 
 			new HashMap<String,CSSProperty>(COMMON_DECLARATION_SIZE);
@@ -146,6 +150,7 @@ public class SingleMapNodeData implements NodeData {
 	}
 	
 	public NodeData concretize() {
+	    checkModifiable();
 		
 		for(Map.Entry<String, Quadruple> entry : map.entrySet()) {
 		    final String key = entry.getKey();
@@ -169,6 +174,7 @@ public class SingleMapNodeData implements NodeData {
 	}
 	
 	public NodeData inheritFrom(NodeData parent) throws ClassCastException{
+	    checkModifiable();
 		
 		if(parent==null)
 			return this;
@@ -217,6 +223,20 @@ public class SingleMapNodeData implements NodeData {
 	}
 
 	
+	public NodeData freeze() {
+	    frozen = true;
+	    return this;
+	}
+
+	public boolean isFrozen() {
+	    return frozen;
+	}
+
+	private void checkModifiable() {
+	    if (frozen)
+	        throw new UnsupportedOperationException("The node data is frozen");
+	}
+
 	@Override
 	public String toString() {
 		
@@ -0,0 +1,458 @@
+package cz.vutbr.web.domassign;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.traversal.NodeFilter;
+import org.w3c.dom.traversal.TreeWalker;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+
+import cz.vutbr.web.css.CombinedSelector;
+import cz.vutbr.web.css.MediaSpec;
+import cz.vutbr.web.css.NodeData;
+import cz.vutbr.web.css.Selector;
+import cz.vutbr.web.css.Selector.PseudoDeclaration;
+import cz.vutbr.web.css.Selector.SelectorPart;
+import cz.vutbr.web.css.StyleSheet;
+
+/**
+ * An analyzer that assigns the styles to the elements of a document that is read from
+ * a stream of SAX or StAX events instead of a complete DOM tree. Only the currently
+ * open elements (the ancestors of the processed element) and the element shells of their
+ * preceding siblings (without their content) are kept in memory. The computed style of each
+ * element is passed to a {@link StyleListener} in document order as soon as the element
+ * start is read.
+ *
+ * The selectors that require the knowledge of the following content of the document
+ * (<code>:last-child</code>, <code>:only-child</code>, <code>:last-of-type</code>,
+ * <code>:only-of-type</code>, <code>:nth-last-child()</code>, <code>:nth-last-of-type()</code>
+ * and <code>:empty</code>) cannot be evaluated when the element start is read. These selectors
+ * are reported by {@link #getLookAheadSelectors(MediaSpec)} and they are processed according
+ * to the {@link LookAheadPolicy} used. By default, the processing fails when any of them is used.
+ */
+public class StreamingAnalyzer extends Analyzer
+{
+    private static final Logger log = LoggerFactory.getLogger(StreamingAnalyzer.class);
+
+    /**
+     * The way of processing the selectors that require a look-ahead.
+     */
+    public enum LookAheadPolicy
+    {
+        /** The selectors are ignored, i.e. they never match any element */
+        IGNORE,
+        /** The processing fails when any of the selectors is used */
+        FAIL
+    }
+
+    /**
+     * A receiver of the computed element styles.
+     */
+    public interface StyleListener
+    {
+        /**
+         * Called when the style of an element has been computed. The element is a shell
+         * that contains the element name and attributes; it is only valid during the call.
+         * @param element the element shell
+         * @param style the computed style of the element
+         * @param pseudoStyles the computed styles of the pseudo elements of the element (may be empty)
+         */
+        public void elementStyled(Element element, NodeData style, Map<PseudoDeclaration, NodeData> pseudoStyles);
+    }
+
+    private LookAheadPolicy lookAheadPolicy;
+
+    /** The look-ahead selectors that are currently ignored */
+    private Set<CombinedSelector> ignored;
+
+
+    /**
+     * Creates the analyzer for a single style sheet.
+     * @param sheet The stylesheet that will be used as the source of rules.
+     */
+    public StreamingAnalyzer(StyleSheet sheet)
+    {
+        super(sheet);
+        lookAheadPolicy = LookAheadPolicy.FAIL;
+        ignored = Collections.emptySet();
+    }
+
+    /**
+     * Creates the analyzer for multiple style sheets.
+     * @param sheets A list of stylesheets that will be used as the source of rules.
+     */
+    public StreamingAnalyzer(List<StyleSheet> sheets)
+    {
+        super(sheets);
+        lookAheadPolicy = LookAheadPolicy.FAIL;
+        ignored = Collections.emptySet();
+    }
+
+    /**
+     * Obtains the way of processing the selectors that require a look-ahead.
+     * @return the used policy
+     */
+    public LookAheadPolicy getLookAheadPolicy()
+    {
+        return lookAheadPolicy;
+    }
+
+    /**
+     * Configures the way of processing the selectors that require a look-ahead. The default
+     * is {@link LookAheadPolicy#FAIL} so that the unsupported selectors are never silently ignored.
+     * @param lookAheadPolicy the policy to be used
+     */
+    public void setLookAheadPolicy(LookAheadPolicy lookAheadPolicy)
+    {
+        this.lookAheadPolicy = lookAheadPolicy;
+    }
+
+    /**
+     * Finds the selectors that cannot be evaluated in the streaming mode for the given media.
+     * @param media the media specification
+     * @return the list of selectors that require a look-ahead (possibly empty)
+     */
+    public List<CombinedSelector> getLookAheadSelectors(MediaSpec media)
+    {
+        classifyAllSheets(media);
+        return findLookAheadSelectors(rules);
+    }
+
+    /**
+     * Creates a SAX content handler that computes the styles of the elements and passes
+     * them to the given listener. The rules are classified when this method is called;
+     * a single handler may be used for parsing a single document at a time.
+     * @param media the media specification
+     * @param inherit use inheritance
+     * @param listener the listener that receives the computed styles
+     * @return the content handler
+     */
+    public ContentHandler createContentHandler(MediaSpec media, boolean inherit, StyleListener listener)
+    {
+        return new StreamingHandler(media, inherit, listener);
+    }
+
+    /**
+     * Computes the styles of all the elements read from a StAX stream reader and passes
+     * them to the given listener. The reader is read until the end of the document.
+     * @param reader the stream reader
+     * @param media the media specification
+     * @param inherit use inheritance
+     * @param listener the listener that receives the computed styles
+     * @throws XMLStreamException when the input cannot be read or the used rules cannot be
+     * evaluated due to the {@link LookAheadPolicy#FAIL} policy
+     */
+    public void process(XMLStreamReader reader, MediaSpec media, boolean inherit, StyleListener listener)
+        throws XMLStreamException
+    {
+        final StreamingHandler handler = new StreamingHandler(media, inherit, listener);
+        try {
+            handler.startDocument();
+            while (reader.hasNext())
+            {
+                switch (reader.next())
+                {
+                    case XMLStreamConstants.START_ELEMENT:
+                        final AttributesImpl attrs = new AttributesImpl();
+                        for (int i = 0; i < reader.getAttributeCount(); i++)
+                        {
+                            attrs.addAttribute(nonNull(reader.getAttributeNamespace(i)),
+                                    reader.getAttributeLocalName(i), qualifiedName(reader.getAttributePrefix(i),
+                                    reader.getAttributeLocalName(i)), reader.getAttributeType(i), reader.getAttributeValue(i));
+                        }
+                        handler.startElement(nonNull(reader.getNamespaceURI()), reader.getLocalName(),
+                                qualifiedName(reader.getPrefix(), reader.getLocalName()), attrs);
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        handler.endElement(nonNull(reader.getNamespaceURI()), reader.getLocalName(),
+                                qualifiedName(reader.getPrefix(), reader.getLocalName()));
+                        break;
+                }
+            }
+            handler.endDocument();
+        } catch (SAXException e) {
+            throw new XMLStreamException(e.getMessage(), e);
+        }
+    }
+
+    //=========================================================================================
+
+    @Override
+    protected boolean matchSelector(CombinedSelector sel, Element e, TreeWalker w)
+    {
+        if (ignored.contains(sel))
+            return false;
+        else
+            return super.matchSelector(sel, e, w);
+    }
+
+    @Override
+    protected boolean matchSelector(CompiledSelector sel, Element e, TreeWalker w)
+    {
+        if (ignored.contains(sel.getSelector()))
+            return false;
+        else
+            return super.matchSelector(sel, e, w);
+    }
+
+    /**
+     * Finds the selectors that require a look-ahead in the classified rules.
+     */
+    protected List<CombinedSelector> findLookAheadSelectors(Holder holder)
+    {
+        final List<CombinedSelector> ret = new ArrayList<CombinedSelector>();
+        final Set<CombinedSelector> found = Collections.newSetFromMap(new IdentityHashMap<CombinedSelector, Boolean>());
+        if (holder != null)
+        {
+            for (OrderedRule rule : holder.getAllRules())
+            {
+                for (CombinedSelector sel : rule.getRule().getSelectors())
+                {
+                    if (!found.contains(sel) && requiresLookAhead(sel))
+                    {
+                        found.add(sel);
+                        ret.add(sel);
+                    }
+                }
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Checks whether the rules require the preceding siblings of the elements to be available.
+     */
+    protected boolean requiresSiblings(Holder holder)
+    {
+        if (holder != null)
+        {
+            for (OrderedRule rule : holder.getAllRules())
+            {
+                for (CombinedSelector sel : rule.getRule().getSelectors())
+                {
+                    for (Selector s : sel)
+                    {
+                        if (s.getCombinator() == Selector.Combinator.ADJACENT
+                                || s.getCombinator() == Selector.Combinator.PRECEDING)
+                            return true;
+                        for (SelectorPart part : s)
+                        {
+                            if (part instanceof Selector.PseudoPage && ((Selector.PseudoPage) part).getDeclaration() != null)
+                            {
+                                switch (((Selector.PseudoPage) part).getDeclaration())
+                                {
+                                    case FIRST_CHILD:
+                                    case FIRST_OF_TYPE:
+                                    case NTH_CHILD:
+                                    case NTH_OF_TYPE:
+                                        return true;
+                                    default:
+                                        break;
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean requiresLookAhead(CombinedSelector sel)
+    {
+        for (Selector s : sel)
+        {
+            for (SelectorPart part : s)
+            {
+                if (part instanceof Selector.PseudoPage && ((Selector.PseudoPage) part).getDeclaration() != null)
+                {
+                    switch (((Selector.PseudoPage) part).getDeclaration())
+                    {
+                        case LAST_CHILD:
+                        case ONLY_CHILD:
+                        case LAST_OF_TYPE:
+                        case ONLY_OF_TYPE:
+                        case NTH_LAST_CHILD:
+                        case NTH_LAST_OF_TYPE:
+                        case EMPTY:
+                            return true;
+                        default:
+                            break;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private static String nonNull(String s)
+    {
+        return (s == null) ? "" : s;
+    }
+
+    private static String qualifiedName(String prefix, String localName)
+    {
+        if (prefix == null || prefix.length() == 0)
+            return localName;
+        else
+            return prefix + ":" + localName;
+    }
+
+    //=========================================================================================
+
+    /**
+     * The content handler that maintains the skeleton DOM of the open elements and
+     * computes the styles.
+     */
+    protected class StreamingHandler extends DefaultHandler
+    {
+        private MediaSpec media;
+        private boolean inherit;
+        private StyleListener listener;
+
+        private Holder holder;
+        private Set<CombinedSelector> lookAhead;
+        private boolean keepSiblings;
+        private Document doc;
+        private TreeWalker walker;
+        private Node current;
+        private DeclarationMap declarations;
+        private StyleMap styles;
+
+        public StreamingHandler(MediaSpec media, boolean inherit, StyleListener listener)
+        {
+            this.media = media;
+            this.inherit = inherit;
+            this.listener = listener;
+            classifyAllSheets(media);
+            holder = rules;
+            lookAhead = Collections.newSetFromMap(new IdentityHashMap<CombinedSelector, Boolean>());
+            lookAhead.addAll(findLookAheadSelectors(holder));
+            keepSiblings = requiresSiblings(holder);
+        }
+
+        @Override
+        public void startDocument() throws SAXException
+        {
+            if (!lookAhead.isEmpty())
+            {
+                if (lookAheadPolicy == LookAheadPolicy.FAIL)
+                    throw new SAXException("Selectors not supported in the streaming mode: " + lookAhead);
+                else
+                    log.warn("Ignoring {} selectors not supported in the streaming mode for {}", lookAhead.size(), media);
+            }
+            try {
+                doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+            } catch (ParserConfigurationException e) {
+                throw new SAXException(e);
+            }
+            walker = null;
+            current = doc;
+            declarations = new DeclarationMap();
+            styles = new StyleMap(16);
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes)
+            throws SAXException
+        {
+            final Element el = createElement(uri, localName, qName);
+            for (int i = 0; i < attributes.getLength(); i++)
+            {
+                if (attributes.getURI(i) != null && attributes.getURI(i).length() > 0)
+                    el.setAttributeNS(attributes.getURI(i), attributes.getQName(i), attributes.getValue(i));
+                else
+                    el.setAttribute(attributes.getQName(i), attributes.getValue(i));
+            }
+            current.appendChild(el);
+            current = el;
+            if (walker == null)
+                walker = Traversal.createWalker(doc, NodeFilter.SHOW_ELEMENT);
+
+            //compute the style
+            final Set<CombinedSelector> saved = ignored;
+            ignored = lookAhead;
+            try {
+                //the document element is not assigned when the inheritance is not used (see the list traversal)
+                if (holder != null && !holder.isEmpty() && (inherit || el != doc.getDocumentElement()))
+                {
+                    walker.setCurrentNode(el);
+                    assignDeclarationsToElement(declarations, walker, el, holder);
+                }
+                walker.setCurrentNode(el);
+                evaluateElement(styles, declarations, el, walker, inherit);
+                declarations.remove(el);
+            } finally {
+                ignored = saved;
+            }
+
+            //pass the result
+            final Map<PseudoDeclaration, NodeData> pseudos;
+            final Set<PseudoDeclaration> pset = styles.pseudoSet(el);
+            if (pset.isEmpty())
+                pseudos = Collections.emptyMap();
+            else
+            {
+                pseudos = new HashMap<PseudoDeclaration, NodeData>(pset.size());
+                for (PseudoDeclaration pseudo : pset)
+                    pseudos.put(pseudo, styles.get(el, pseudo));
+            }
+            listener.elementStyled(el, styles.get(el), pseudos);
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException
+        {
+            if (current == null || current.getNodeType() != Node.ELEMENT_NODE)
+                throw new SAXException("Unexpected end of element " + qName);
+            final Element el = (Element) current;
+            //the content is not necessary anymore
+            while (el.getFirstChild() != null)
+                el.removeChild(el.getFirstChild());
+            styles.remove(el);
+            current = el.getParentNode();
+            //keep the element shell only when it may be used by the following siblings
+            if (!keepSiblings && current != doc)
+                current.removeChild(el);
+        }
+
+        @Override
+        public void endDocument() throws SAXException
+        {
+            doc = null;
+            walker = null;
+            current = null;
+            declarations = null;
+            styles = null;
+        }
+
+        private Element createElement(String uri, String localName, String qName)
+        {
+            if (uri != null && uri.length() > 0)
+                return doc.createElementNS(uri, qName);
+            else
+                return doc.createElement((qName != null && qName.length() > 0) ? qName : localName);
+        }
+    }
+
+}
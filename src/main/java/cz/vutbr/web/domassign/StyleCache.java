@@ -0,0 +1,182 @@
+package cz.vutbr.web.domassign;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import cz.vutbr.web.css.Declaration;
+import cz.vutbr.web.css.NodeData;
+
+/**
+ * A bounded cache of the computed styles. The computed style of an element only depends
+ * on the ordered list of the declarations assigned to the element and on the computed style
+ * of its parent. Therefore, the elements with the same assigned declarations and the same
+ * (identical) parent style may share a single {@link NodeData} instance. The cached styles
+ * should be frozen (see {@link NodeData#freeze()}) so that none of the elements may modify them.
+ * When the cache is full, the least recently used entries are dropped.
+ */
+public class StyleCache
+{
+    private final int maxSize;
+    private final Map<Key, NodeData> map;
+    private int hits;
+    private int misses;
+
+    /**
+     * Creates a new cache.
+     * @param maxSize the maximal number of the cached styles
+     */
+    public StyleCache(final int maxSize)
+    {
+        this.maxSize = maxSize;
+        this.map = new LinkedHashMap<Key, NodeData>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, NodeData> eldest)
+            {
+                return size() > StyleCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Obtains a cached style.
+     * @param declarations the ordered list of the declarations assigned to the element or {@code null}
+     * @param parent the computed style the element inherits from or {@code null}
+     * @return the cached style or {@code null} when no such style has been cached
+     */
+    public NodeData get(List<Declaration> declarations, NodeData parent)
+    {
+        final NodeData ret = map.get(new Key(declarations, parent));
+        if (ret == null)
+            misses++;
+        else
+            hits++;
+        return ret;
+    }
+
+    /**
+     * Stores a computed style to the cache.
+     * @param declarations the ordered list of the declarations assigned to the element or {@code null}
+     * @param parent the computed style the element inherits from or {@code null}
+     * @param style the computed style
+     */
+    public void put(List<Declaration> declarations, NodeData parent, NodeData style)
+    {
+        map.put(new Key(declarations, parent), style);
+    }
+
+    /**
+     * Removes all the cached styles.
+     */
+    public void clear()
+    {
+        map.clear();
+        hits = 0;
+        misses = 0;
+    }
+
+    /**
+     * Obtains the number of currently cached styles.
+     * @return the number of styles
+     */
+    public int size()
+    {
+        return map.size();
+    }
+
+    /**
+     * Obtains the maximal number of cached styles.
+     * @return the cache capacity
+     */
+    public int getMaxSize()
+    {
+        return maxSize;
+    }
+
+    /**
+     * Obtains the number of successful lookups since the last {@link #clear()}.
+     * @return the number of hits
+     */
+    public int getHits()
+    {
+        return hits;
+    }
+
+    /**
+     * Obtains the number of unsuccessful lookups since the last {@link #clear()}.
+     * @return the number of misses
+     */
+    public int getMisses()
+    {
+        return misses;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "StyleCache[" + map.size() + "/" + maxSize + ", hits=" + hits + ", misses=" + misses + "]";
+    }
+
+    //=========================================================================================
+
+    /**
+     * The cache key: the declaration list and the parent style. The declarations are compared
+     * by the identity of the original style sheet declarations so that a shared style always
+     * refers to the declarations it has been computed from. The parent style is compared by identity.
+     */
+    private static class Key
+    {
+        private final List<Declaration> declarations;
+        private final NodeData parent;
+        private final int hash;
+
+        public Key(List<Declaration> declarations, NodeData parent)
+        {
+            this.declarations = declarations;
+            this.parent = parent;
+            int h = 1;
+            if (declarations != null)
+            {
+                for (Declaration d : declarations)
+                    h = 31 * h + System.identityHashCode(original(d));
+            }
+            this.hash = 31 * h + System.identityHashCode(parent);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof Key))
+                return false;
+            final Key other = (Key) obj;
+            if (hash != other.hash || parent != other.parent)
+                return false;
+            if (declarations == null || other.declarations == null)
+                return declarations == other.declarations;
+            final int size = declarations.size();
+            if (size != other.declarations.size())
+                return false;
+            for (int i = 0; i < size; i++)
+            {
+                if (original(declarations.get(i)) != original(other.declarations.get(i)))
+                    return false;
+            }
+            return true;
+        }
+
+        private static Declaration original(Declaration d)
+        {
+            return (d instanceof AssignedDeclaration) ? ((AssignedDeclaration) d).getOriginal() : d;
+        }
+    }
+
+}
@@ -25,6 +25,15 @@ public class StyleMap extends MultiMap<Element, PseudoDeclaration, NodeData>
 		super(size);
 	}
 
+	/**
+	 * Creates an empty map that stores the styles in arrays indexed by the element ordinals.
+	 * @param index the element index, usually shared with the corresponding {@link DeclarationMap}
+	 */
+	public StyleMap(ElementIndex<Element> index)
+	{
+		super(index, PseudoDeclaration.class);
+	}
+
 	@Override
 	protected NodeData createDataInstance()
 	{
@@ -0,0 +1,325 @@
+package cz.vutbr.web.domassign;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+
+import cz.vutbr.web.css.AsyncNetworkProcessor;
+import cz.vutbr.web.css.CSSException;
+import cz.vutbr.web.css.CSSFactory;
+import cz.vutbr.web.css.NetworkProcessor;
+import cz.vutbr.web.css.RuleBlock;
+import cz.vutbr.web.css.StyleSheet;
+import cz.vutbr.web.css.StyleSource;
+import cz.vutbr.web.csskit.ExecutorNetworkProcessor;
+
+/**
+ * An asynchronous pipeline that loads the style sheets used by the documents and computes
+ * the document styles. When a document is submitted, the fetching of all its linked style sheets
+ * is started at once using an {@link AsyncNetworkProcessor}. Each linked style sheet is parsed
+ * by a separate task that is submitted when the style sheet is fetched, so that the fetching and parsing overlap with
+ * each other and with the processing of other documents. When all the style sheets of a document
+ * are parsed, their rules are combined in the document order (the same order as used by
+ * {@link CSSFactory#getUsedStyles(Document, String, URL, cz.vutbr.web.css.MediaSpec, NetworkProcessor)})
+ * and the styles are computed by a {@link StylingEngine}.
+ *
+ * The number of the documents being processed is limited; {@link #submit(Document, URL)} blocks
+ * while the limit is reached. The tasks never wait for each other so that the executor may have
+ * any number of threads. However, the parsing tasks wait for the imported style sheets; the network
+ * processor should therefore use its own threads.
+ */
+public class StylePipeline
+{
+    private static final Logger log = LoggerFactory.getLogger(StylePipeline.class);
+
+    private final StylingEngine engine;
+    private final AsyncNetworkProcessor network;
+    private final Executor executor;
+    private final Semaphore documents;
+    private final int maxDocuments;
+    private String encoding;
+
+    /**
+     * Creates the pipeline.
+     * @param engine the engine used for computing the styles; it also provides the media
+     * used for selecting the style sheets
+     * @param network the network processor used for fetching the linked and imported style sheets
+     * @param executor the executor used for parsing the style sheets and computing the styles
+     * @param maxDocuments the maximal number of documents processed concurrently
+     */
+    public StylePipeline(StylingEngine engine, AsyncNetworkProcessor network, Executor executor, int maxDocuments)
+    {
+        if (maxDocuments < 1)
+            throw new IllegalArgumentException("At least one document must be allowed");
+        this.engine = engine;
+        this.network = network;
+        this.executor = executor;
+        this.maxDocuments = maxDocuments;
+        this.documents = new Semaphore(maxDocuments);
+    }
+
+    /**
+     * Obtains the maximal number of documents processed concurrently.
+     * @return the number of documents
+     */
+    public int getMaxDocuments()
+    {
+        return maxDocuments;
+    }
+
+    /**
+     * Obtains the default encoding used for the linked style sheets.
+     * @return the encoding or {@code null} when not set
+     */
+    public String getEncoding()
+    {
+        return encoding;
+    }
+
+    /**
+     * Sets the default encoding used for the linked style sheets.
+     * @param encoding the encoding or {@code null} for the default
+     */
+    public void setEncoding(String encoding)
+    {
+        this.encoding = encoding;
+    }
+
+    /**
+     * Submits a document for processing. The style sources are collected in the calling thread;
+     * the document must not be modified until the styles are computed. When the maximal number of
+     * documents is being processed, the call blocks until some of the documents are finished.
+     * @param doc the document
+     * @param base the base URL of the document
+     * @return the future styles of the document
+     * @throws InterruptedException when the thread is interrupted while waiting for a free slot
+     */
+    public Future<StyleMap> submit(Document doc, URL base) throws InterruptedException
+    {
+        final List<StyleSource> sources = CSSFactory.getStyleSources(doc, base, engine.getMedia());
+        documents.acquire();
+        try {
+            final DocumentJob job = new DocumentJob(doc, sources);
+            job.start();
+            return job.result;
+        } catch (RuntimeException e) {
+            documents.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Processes several documents and waits for the results.
+     * @param docs the documents
+     * @param base the base URL of all the documents
+     * @return the list of the styles in the order of the documents
+     * @throws InterruptedException when the thread is interrupted while waiting for the results
+     */
+    public List<StyleMap> processAll(Iterable<Document> docs, URL base) throws InterruptedException
+    {
+        final List<Future<StyleMap>> results = new ArrayList<Future<StyleMap>>();
+        for (Document doc : docs)
+            results.add(submit(doc, base));
+
+        final List<StyleMap> ret = new ArrayList<StyleMap>(results.size());
+        for (Future<StyleMap> result : results)
+            ret.add(getResult(result));
+        return ret;
+    }
+
+    //=========================================================================================
+
+    private static StyleMap getResult(Future<StyleMap> result) throws InterruptedException
+    {
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            else if (cause instanceof Error)
+                throw (Error) cause;
+            else
+                throw new IllegalStateException("Styling failed", cause);
+        }
+    }
+
+    /**
+     * The processing of a single document.
+     */
+    private class DocumentJob
+    {
+        private final Document doc;
+        private final List<StyleSource> sources;
+        /** The parsed linked style sheets; {@code null} for the remaining sources and failed sheets */
+        private final StyleSheet[] parsed;
+        /** The number of unfinished parsing tasks plus one until all the tasks are started */
+        private final AtomicInteger pending;
+        /** An unexpected failure of a parsing task */
+        private volatile RuntimeException failure;
+        public final FutureTask<StyleMap> result;
+
+        public DocumentJob(Document doc, List<StyleSource> sources)
+        {
+            this.doc = doc;
+            this.sources = sources;
+            this.parsed = new StyleSheet[sources.size()];
+            this.pending = new AtomicInteger(1);
+            this.result = new FutureTask<StyleMap>(new Callable<StyleMap>() {
+                public StyleMap call()
+                {
+                    return assign();
+                }
+            }) {
+                @Override
+                protected void done()
+                {
+                    documents.release();
+                }
+            };
+        }
+
+        public void start()
+        {
+            for (int i = 0; i < sources.size(); i++)
+            {
+                final StyleSource src = sources.get(i);
+                if (src.isLinked())
+                {
+                    final int index = i;
+                    pending.incrementAndGet();
+                    //the parsing is scheduled when the fetch is finished so that it never waits for it
+                    network.fetchAsync(src.getURL(), new AsyncNetworkProcessor.Callback() {
+                        public void fetched(final Future<InputStream> fetched)
+                        {
+                            try {
+                                executor.execute(new Runnable() {
+                                    public void run()
+                                    {
+                                        try {
+                                            parsed[index] = parse(src, fetched);
+                                        } catch (RuntimeException e) {
+                                            failure = e;
+                                        } finally {
+                                            taskFinished();
+                                        }
+                                    }
+                                });
+                            } catch (RejectedExecutionException e) {
+                                failure = e;
+                                taskFinished();
+                            }
+                        }
+                    });
+                }
+            }
+            taskFinished();
+        }
+
+        private void taskFinished()
+        {
+            if (pending.decrementAndGet() == 0)
+            {
+                try {
+                    executor.execute(result);
+                } catch (RejectedExecutionException e) {
+                    //fail the result in the current thread
+                    failure = e;
+                    result.run();
+                }
+            }
+        }
+
+        private StyleSheet parse(StyleSource src, Future<InputStream> fetched)
+        {
+            try {
+                return src.parse(new PrefetchedNetwork(src.getURL(), fetched), encoding);
+            } catch (CSSException e) {
+                log.error("THROWN:", e);
+            } catch (IOException e) {
+                log.error("THROWN:", e);
+            }
+            return null;
+        }
+
+        /**
+         * Combines the style sheets in the document order and computes the styles.
+         */
+        private StyleMap assign()
+        {
+            if (failure != null)
+                throw failure;
+            StyleSheet style = (StyleSheet) CSSFactory.getRuleFactory().createStyleSheet().unlock();
+            for (int i = 0; i < sources.size(); i++)
+            {
+                final StyleSource src = sources.get(i);
+                if (src.isLinked())
+                {
+                    if (parsed[i] != null)
+                    {
+                        for (RuleBlock<?> rule : parsed[i])
+                            style.add(rule);
+                    }
+                }
+                else
+                {
+                    try {
+                        style = src.appendTo(style, new PrefetchedNetwork(null, null), encoding);
+                    } catch (CSSException e) {
+                        log.error("THROWN:", e);
+                    } catch (IOException e) {
+                        log.error("THROWN:", e);
+                    }
+                }
+            }
+            final List<StyleSheet> sheets = new ArrayList<StyleSheet>(1);
+            sheets.add(style);
+            return engine.style(doc, sheets);
+        }
+    }
+
+    /**
+     * A network processor that returns an already started fetch for the first request of the given
+     * URL and starts new fetches for the remaining requests (e.g. the imports or a repeated request
+     * when the encoding changes).
+     */
+    private class PrefetchedNetwork implements NetworkProcessor
+    {
+        private final URL url;
+        private Future<InputStream> fetched;
+
+        public PrefetchedNetwork(URL url, Future<InputStream> fetched)
+        {
+            this.url = url;
+            this.fetched = fetched;
+        }
+
+        public InputStream fetch(URL request) throws IOException
+        {
+            Future<InputStream> f;
+            if (request == url && fetched != null)
+            {
+                f = fetched;
+                fetched = null;
+            }
+            else
+                f = network.fetchAsync(request);
+            return ExecutorNetworkProcessor.getStream(f);
+        }
+    }
+
+}
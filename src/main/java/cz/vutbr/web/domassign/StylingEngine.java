@@ -0,0 +1,213 @@
+package cz.vutbr.web.domassign;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.w3c.dom.Document;
+
+import cz.vutbr.web.css.CSSFactory;
+import cz.vutbr.web.css.ElementMatcher;
+import cz.vutbr.web.css.MatchCondition;
+import cz.vutbr.web.css.MediaSpec;
+import cz.vutbr.web.css.StyleSheet;
+import cz.vutbr.web.domassign.Analyzer.Holder;
+
+/**
+ * A reusable engine for styling many documents with the same style sheets and media.
+ * The rules are classified and their selectors are compiled once when the engine is created;
+ * the classified rules are frozen and shared by all the styled documents. Each thread uses its own
+ * {@link Analyzer} that keeps the scratch state of the traversal, so that a single engine may be used
+ * by multiple threads concurrently. The analyzers only refer to the engine rules while a document
+ * is being styled, so that an engine that is no longer used may be garbage collected together with
+ * its rules even when its threads keep running (e.g. in a pool).
+ *
+ * The document-specific style sheets (e.g. the embedded styles) may be passed with each document;
+ * only these style sheets are classified for the document and their rules follow the rules of the engine.
+ * The style sheets must not be modified while the engine is in use; the engine style sheets may be
+ * frozen using {@link StyleSheet#freeze()} in order to guarantee that.
+ */
+public class StylingEngine
+{
+    private final Holder rules;
+    private final MediaSpec media;
+    private final boolean inherit;
+    private final MatchCondition matchCond;
+    private final ElementMatcher matcher;
+    private final boolean snapshotMatching;
+
+    private final ThreadLocal<EngineAnalyzer> analyzers = new ThreadLocal<EngineAnalyzer>() {
+        @Override
+        protected EngineAnalyzer initialValue()
+        {
+            return new EngineAnalyzer(media, inherit, matchCond, matcher, snapshotMatching);
+        }
+    };
+
+    /**
+     * Creates the engine with the inheritance enabled and the default match condition and element matcher.
+     * @param sheets the style sheets used for all the documents
+     * @param media the media the documents are styled for
+     */
+    public StylingEngine(List<StyleSheet> sheets, MediaSpec media)
+    {
+        this(sheets, media, true, CSSFactory.getDefaultMatchCondition(), CSSFactory.getElementMatcher(), false);
+    }
+
+    /**
+     * Creates the engine.
+     * @param sheets the style sheets used for all the documents
+     * @param media the media the documents are styled for
+     * @param inherit use inheritance
+     * @param matchCond the match condition used for matching the elements; it must be thread-safe
+     * @param matcher the element matcher; it must be thread-safe
+     * @param snapshotMatching match the selectors against a snapshot of each document
+     * (see {@link Analyzer#setSnapshotMatching(boolean)})
+     */
+    public StylingEngine(List<StyleSheet> sheets, MediaSpec media, boolean inherit,
+            MatchCondition matchCond, ElementMatcher matcher, boolean snapshotMatching)
+    {
+        this.media = media;
+        this.inherit = inherit;
+        this.matchCond = matchCond;
+        this.matcher = matcher;
+        this.snapshotMatching = snapshotMatching;
+        final Holder classified = AnalyzerUtil.getClassifiedRules(sheets, media);
+        classified.freeze();
+        this.rules = classified;
+    }
+
+    /**
+     * Obtains the media the documents are styled for.
+     * @return the media specification
+     */
+    public MediaSpec getMedia()
+    {
+        return media;
+    }
+
+    /**
+     * Obtains the classified rules of the engine style sheets. The rules are frozen.
+     * @return the classified rules
+     */
+    public Holder getRules()
+    {
+        return rules;
+    }
+
+    /**
+     * Computes the styles of all the elements of a document.
+     * @param doc the document
+     * @return the map where each element contains its CSS properties
+     */
+    public StyleMap style(Document doc)
+    {
+        return style(doc, Collections.<StyleSheet>emptyList());
+    }
+
+    /**
+     * Computes the styles of all the elements of a document that uses some additional style sheets.
+     * @param doc the document
+     * @param documentSheets the style sheets of the document whose rules follow the rules of the engine
+     * @return the map where each element contains its CSS properties
+     */
+    public StyleMap style(Document doc, List<StyleSheet> documentSheets)
+    {
+        return analyzers.get().style(doc, rules, documentSheets);
+    }
+
+    /**
+     * Computes the styles of several documents using an executor. The call blocks until all
+     * the documents are styled. When the executor rejects any of the documents, the documents
+     * that have been already submitted are cancelled.
+     * @param docs the documents to be styled
+     * @param executor the executor used for styling the individual documents
+     * @return the list of maps in the order of the documents
+     * @throws InterruptedException when the thread is interrupted while waiting for the results
+     * @throws RejectedExecutionException when the executor does not accept a document
+     */
+    public List<StyleMap> styleAll(Iterable<Document> docs, Executor executor) throws InterruptedException
+    {
+        final List<FutureTask<StyleMap>> tasks = new ArrayList<FutureTask<StyleMap>>();
+        for (final Document doc : docs)
+        {
+            final FutureTask<StyleMap> task = new FutureTask<StyleMap>(new Callable<StyleMap>() {
+                public StyleMap call()
+                {
+                    return style(doc);
+                }
+            });
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                for (FutureTask<StyleMap> submitted : tasks)
+                    submitted.cancel(false);
+                throw e;
+            }
+            tasks.add(task);
+        }
+
+        final List<StyleMap> ret = new ArrayList<StyleMap>(tasks.size());
+        for (FutureTask<StyleMap> task : tasks)
+        {
+            try {
+                ret.add(task.get());
+            } catch (ExecutionException e) {
+                final Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException)
+                    throw (RuntimeException) cause;
+                else if (cause instanceof Error)
+                    throw (Error) cause;
+                else
+                    throw new IllegalStateException("Styling failed", cause);
+            }
+        }
+        return ret;
+    }
+
+    //=========================================================================================
+
+    /**
+     * The analyzer of a single thread. It uses the engine rules as the base layer and it only
+     * classifies the document style sheets. It is kept by the thread so it must not refer
+     * to the engine or its rules between the documents.
+     */
+    private static class EngineAnalyzer extends Analyzer
+    {
+        private final List<StyleSheet> noSheets;
+        private final MediaSpec media;
+        private final boolean inherit;
+
+        public EngineAnalyzer(MediaSpec media, boolean inherit,
+                MatchCondition matchCond, ElementMatcher matcher, boolean snapshotMatching)
+        {
+            super(new ArrayList<StyleSheet>(0));
+            noSheets = sheets;
+            this.media = media;
+            this.inherit = inherit;
+            registerMatchCondition(matchCond);
+            registerElementMatcher(matcher);
+            setSnapshotMatching(snapshotMatching);
+        }
+
+        public StyleMap style(Document doc, Holder engineRules, List<StyleSheet> documentSheets)
+        {
+            setBaseLayers(Collections.singletonList(engineRules));
+            sheets = documentSheets;
+            try {
+                return evaluateDOM(doc, media, inherit);
+            } finally {
+                //do not keep the engine and document rules until the next document
+                setBaseLayers(null);
+                sheets = noSheets;
+                rules = null;
+            }
+        }
+    }
+
+}
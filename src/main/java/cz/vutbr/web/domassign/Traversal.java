@@ -23,13 +23,24 @@ public abstract class Traversal<T>
     }
 
     public Traversal(Document doc, Object source, int whatToShow) {
+        this.walker = createWalker(doc, whatToShow);
+        this.source = source;
+    }
+    
+    /**
+     * Creates a tree walker rooted at the document element of the given document.
+     * The walker provided by the DOM implementation is used when available.
+     * @param doc the document
+     * @param whatToShow the node types to be shown by the walker
+     * @return the created tree walker
+     */
+    public static TreeWalker createWalker(Document doc, int whatToShow) {
         if (doc instanceof DocumentTraversal) {
             DocumentTraversal dt = (DocumentTraversal) doc;
-            this.walker = dt.createTreeWalker(doc.getDocumentElement(), whatToShow, null, false);
+            return dt.createTreeWalker(doc.getDocumentElement(), whatToShow, null, false);
         } else {
-            this.walker = new GenericTreeWalker(doc.getDocumentElement(), whatToShow);
+            return new GenericTreeWalker(doc.getDocumentElement(), whatToShow);
         }
-        this.source = source;
     }
 
     public void listTraversal(T result) {
@@ -46,20 +57,38 @@ public abstract class Traversal<T>
         }
     }
 
+    /**
+     * Processes the subtree of the current walker node in the document order. Each node
+     * is processed before its children so that the parent results are always available.
+     * The tree is traversed without recursion using the walker position so that the depth
+     * of the document is not limited by the stack size.
+     * 
+     * @param result the object passed to each processed node
+     */
     public void levelTraversal(T result) {
 
-        // this method can change position in walker
-        final Node checkpoint = walker.getCurrentNode();
-        processNode(result, checkpoint, source);
-        walker.setCurrentNode(checkpoint);
+        final Node root = walker.getCurrentNode();
+        Node current = root;
+        while (current != null) {
+            // this method can change position in walker
+            processNode(result, current, source);
+            walker.setCurrentNode(current);
 
-        // traverse children:
-        for (Node n = walker.firstChild(); n != null; n = walker.nextSibling()) {
-            levelTraversal(result);
+            // descend to the children or find the next sibling of the nearest ancestor
+            Node next = walker.firstChild();
+            while (next == null && current != null && current != root) {
+                walker.setCurrentNode(current);
+                next = walker.nextSibling();
+                if (next == null) {
+                    walker.setCurrentNode(current);
+                    current = walker.parentNode();
+                }
+            }
+            current = next;
         }
 
-        // return position to the current (level up):
-        walker.setCurrentNode(checkpoint);
+        // return position to the subtree root
+        walker.setCurrentNode(root);
     }
 
     protected abstract void processNode(T result, Node current, Object source);
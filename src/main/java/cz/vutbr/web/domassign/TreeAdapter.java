@@ -0,0 +1,313 @@
+package cz.vutbr.web.domassign;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import cz.vutbr.web.css.MatchCondition;
+import cz.vutbr.web.css.Selector;
+import cz.vutbr.web.css.Selector.PseudoDeclaration;
+import cz.vutbr.web.csskit.ElementFacts;
+import cz.vutbr.web.csskit.ElementMatcherCached;
+import cz.vutbr.web.csskit.SymbolTable;
+import cz.vutbr.web.csskit.SelectorImpl;
+
+/**
+ * Provides the access to a document tree of an arbitrary implementation. The styles may be
+ * computed for the element nodes of any tree using a {@link TreeAnalyzer} and the corresponding
+ * adapter. Only the element nodes are accessed; the navigation methods skip any other nodes.
+ * The {@link DOMTreeAdapter} is the implementation for the W3C DOM.
+ *
+ * The selector parts are evaluated by the adapter using the accessor methods; an adapter
+ * may override {@link #matchesPart} when the tree provides a better way of matching.
+ *
+ * @param <N> the type of the element nodes
+ */
+public abstract class TreeAdapter<N>
+{
+
+    /**
+     * Obtains the parent element.
+     * @param node the element node
+     * @return the parent element or {@code null} for the root element
+     */
+    public abstract N getParent(N node);
+
+    /**
+     * Obtains the previous element sibling.
+     * @param node the element node
+     * @return the sibling or {@code null} when the node is the first child element
+     */
+    public abstract N getPreviousSibling(N node);
+
+    /**
+     * Obtains the next element sibling.
+     * @param node the element node
+     * @return the sibling or {@code null} when the node is the last child element
+     */
+    public abstract N getNextSibling(N node);
+
+    /**
+     * Obtains the first child element.
+     * @param node the element node
+     * @return the child or {@code null} when the node has no child elements
+     */
+    public abstract N getFirstChild(N node);
+
+    /**
+     * Checks whether the element has no children for the {@code :empty} pseudo class.
+     * @param node the element node
+     * @return {@code true} when the element contains neither child elements nor text
+     */
+    public abstract boolean isEmpty(N node);
+
+    /**
+     * Obtains the element name.
+     * @param node the element node
+     * @return the element name
+     */
+    public abstract String getName(N node);
+
+    /**
+     * Obtains the element ID.
+     * @param node the element node
+     * @return the element ID or an empty string when not specified
+     */
+    public abstract String getId(N node);
+
+    /**
+     * Obtains the class names assigned to the element.
+     * @param node the element node
+     * @return the class names (possibly empty)
+     */
+    public abstract Collection<String> getClassNames(N node);
+
+    /**
+     * Obtains the value of an element attribute.
+     * @param node the element node
+     * @param name the attribute name
+     * @return the attribute value or {@code null} when the attribute is not present
+     */
+    public abstract String getAttribute(N node, String name);
+
+    /**
+     * Obtains the names of all the attributes of the element.
+     * @param node the element node
+     * @return the attribute names (possibly empty)
+     */
+    public abstract Collection<String> getAttributeNames(N node);
+
+    /**
+     * Checks whether the element names are case sensitive.
+     * @return {@code true} for case sensitive names
+     */
+    public abstract boolean isCaseSensitiveNames();
+
+    /**
+     * Checks whether the IDs, class names and attribute values are case sensitive.
+     * @return {@code true} for case sensitive values
+     */
+    public abstract boolean isCaseSensitiveValues();
+
+    /**
+     * Checks whether the element is in the state described by a dynamic pseudo class
+     * (e.g. {@code :hover} or {@code :link}). No element matches these pseudo classes by default.
+     * @param node the element node
+     * @param pseudo the pseudo class
+     * @return {@code true} when the pseudo class matches the element
+     */
+    public boolean matchesPseudoClass(N node, Selector.PseudoPage pseudo)
+    {
+        return false;
+    }
+
+    /**
+     * Creates the facts about the element used for the fast matching of names, IDs and classes.
+     * The values are resolved against the symbol tables of the matched selectors according to
+     * the case sensitivity of the adapter.
+     * @param node the element node
+     * @param symbols the symbol tables of the matched selectors or {@code null} when not available
+     * @return the element facts or {@code null} when the facts should not be used
+     */
+    public ElementFacts createFacts(N node, SymbolTable[] symbols)
+    {
+        final Collection<String> names = getClassNames(node);
+        String classes = null;
+        if (names.size() == 1)
+            classes = names.iterator().next();
+        else if (!names.isEmpty())
+        {
+            final StringBuilder sb = new StringBuilder();
+            for (String cname : names)
+                sb.append(cname).append(' ');
+            classes = sb.toString();
+        }
+        return new ElementFacts(getName(node), getId(node), classes,
+                isCaseSensitiveNames(), isCaseSensitiveValues(), symbols);
+    }
+
+    /**
+     * Checks whether a selector part matches an element of a snapshot of the tree.
+     * @param snapshot the snapshot of the tree
+     * @param ord the element ordinal in the snapshot
+     * @param part the selector part
+     * @param cond the match condition used by the W3C DOM adapter
+     * @return {@code true} when the part matches the element
+     */
+    public boolean matchesPart(TreeSnapshot<N> snapshot, int ord, Selector.SelectorPart part, MatchCondition cond)
+    {
+        final N node = snapshot.getNode(ord);
+        if (part instanceof Selector.ElementName)
+        {
+            final String name = ((Selector.ElementName) part).getName();
+            return Selector.ElementName.WILDCARD.equals(name) || equal(getName(node), name, isCaseSensitiveNames());
+        }
+        else if (part instanceof Selector.ElementClass)
+        {
+            final String className = ((Selector.ElementClass) part).getClassName();
+            for (String cname : getClassNames(node))
+            {
+                if (equal(cname, className, isCaseSensitiveValues()))
+                    return true;
+            }
+            return false;
+        }
+        else if (part instanceof Selector.ElementID)
+            return equal(getId(node), ((Selector.ElementID) part).getID(), isCaseSensitiveValues());
+        else if (part instanceof Selector.ElementAttribute)
+        {
+            final Selector.ElementAttribute attr = (Selector.ElementAttribute) part;
+            return matchesAttribute(getAttribute(node, attr.getAttribute()), attr.getValue(), attr.getOperator());
+        }
+        else if (part instanceof Selector.PseudoPage)
+            return matchesPseudoPage(snapshot, ord, (Selector.PseudoPage) part);
+        else
+            return false; //the remaining parts require the W3C DOM
+    }
+
+    //=========================================================================================
+
+    private boolean matchesAttribute(String attributeValue, String value, Selector.Operator o)
+    {
+        if (attributeValue == null || o == null)
+            return false;
+        if (!isCaseSensitiveValues())
+        {
+            attributeValue = ElementMatcherCached.fold(attributeValue);
+            value = ElementMatcherCached.fold(value);
+        }
+        switch (o)
+        {
+            case EQUALS:
+                return attributeValue.equals(value);
+            case INCLUDES:
+                if (value.length() == 0)
+                    return false;
+                for (String token : attributeValue.split("\\s+"))
+                {
+                    if (token.equals(value))
+                        return true;
+                }
+                return false;
+            case DASHMATCH:
+                return attributeValue.equals(value) || attributeValue.startsWith(value + "-");
+            case CONTAINS:
+                return value.length() != 0 && attributeValue.contains(value);
+            case STARTSWITH:
+                return value.length() != 0 && attributeValue.startsWith(value);
+            case ENDSWITH:
+                return value.length() != 0 && attributeValue.endsWith(value);
+            default:
+                return true;
+        }
+    }
+
+    private boolean matchesPseudoPage(TreeSnapshot<N> snapshot, int ord, Selector.PseudoPage pseudo)
+    {
+        final PseudoDeclaration decl = pseudo.getDeclaration();
+        if (decl == null) //unknown pseudo classes never match
+            return false;
+        final boolean child = snapshot.getParent(ord) != TreeSnapshot.NONE;
+        switch (decl)
+        {
+            case FIRST_CHILD:
+                return child && snapshot.getPreviousSibling(ord) == TreeSnapshot.NONE;
+            case LAST_CHILD:
+                return child && snapshot.getNextSibling(ord) == TreeSnapshot.NONE;
+            case ONLY_CHILD:
+                return child && snapshot.getPreviousSibling(ord) == TreeSnapshot.NONE
+                        && snapshot.getNextSibling(ord) == TreeSnapshot.NONE;
+            case FIRST_OF_TYPE:
+                return child && countSiblings(snapshot, ord, false, true) == 0;
+            case LAST_OF_TYPE:
+                return child && countSiblings(snapshot, ord, true, true) == 0;
+            case ONLY_OF_TYPE:
+                return child && countSiblings(snapshot, ord, false, true) == 0
+                        && countSiblings(snapshot, ord, true, true) == 0;
+            case NTH_CHILD:
+                return positionMatches(pseudo, countSiblings(snapshot, ord, false, false) + 1);
+            case NTH_LAST_CHILD:
+                return positionMatches(pseudo, countSiblings(snapshot, ord, true, false) + 1);
+            case NTH_OF_TYPE:
+                return positionMatches(pseudo, countSiblings(snapshot, ord, false, true) + 1);
+            case NTH_LAST_OF_TYPE:
+                return positionMatches(pseudo, countSiblings(snapshot, ord, true, true) + 1);
+            case ROOT:
+                return !child;
+            case EMPTY:
+                return isEmpty(snapshot.getNode(ord));
+            default:
+                return decl.isPseudoElement() || matchesPseudoClass(snapshot.getNode(ord), pseudo);
+        }
+    }
+
+    private boolean positionMatches(Selector.PseudoPage pseudo, int pos)
+    {
+        return (pseudo instanceof SelectorImpl.PseudoPageImpl) && ((SelectorImpl.PseudoPageImpl) pseudo).matchesPosition(pos);
+    }
+
+    /**
+     * Counts the preceding or following element siblings, optionally only the ones with the same name.
+     */
+    private int countSiblings(TreeSnapshot<N> snapshot, int ord, boolean following, boolean sameType)
+    {
+        final String name = sameType ? getName(snapshot.getNode(ord)) : null;
+        int cnt = 0;
+        int n = following ? snapshot.getNextSibling(ord) : snapshot.getPreviousSibling(ord);
+        while (n != TreeSnapshot.NONE)
+        {
+            if (!sameType || equal(getName(snapshot.getNode(n)), name, isCaseSensitiveNames()))
+                cnt++;
+            n = following ? snapshot.getNextSibling(n) : snapshot.getPreviousSibling(n);
+        }
+        return cnt;
+    }
+
+    private static boolean equal(String value, String expected, boolean caseSensitive)
+    {
+        if (value == null)
+            return false;
+        else
+            return caseSensitive ? value.equals(expected) : value.equalsIgnoreCase(expected);
+    }
+
+    /**
+     * Collects the class names of a whitespace separated list.
+     * @param value the class attribute value or {@code null}
+     * @return the list of class names
+     */
+    protected static List<String> splitClassNames(String value)
+    {
+        final List<String> ret = new ArrayList<String>();
+        if (value != null)
+        {
+            for (String cname : value.trim().split("\\s+"))
+            {
+                if (cname.length() > 0)
+                    ret.add(cname);
+            }
+        }
+        return ret;
+    }
+
+}
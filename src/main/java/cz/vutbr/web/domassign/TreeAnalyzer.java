@@ -0,0 +1,171 @@
+package cz.vutbr.web.domassign;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import cz.vutbr.web.css.CombinedSelector;
+import cz.vutbr.web.css.Declaration;
+import cz.vutbr.web.css.MediaSpec;
+import cz.vutbr.web.css.NodeData;
+import cz.vutbr.web.css.RuleSet;
+import cz.vutbr.web.css.Selector.PseudoDeclaration;
+import cz.vutbr.web.css.StyleSheet;
+
+/**
+ * An analyzer that computes the styles of the elements of an arbitrary document tree. The tree
+ * is accessed using a {@link TreeAdapter}; a {@link TreeSnapshot} of the tree is created and
+ * the selectors are matched against the snapshot. The cascade is the same as in {@link Analyzer#evaluateDOM}.
+ *
+ * @param <N> the type of the element nodes
+ */
+public class TreeAnalyzer<N> extends Analyzer
+{
+    private static final Logger log = LoggerFactory.getLogger(TreeAnalyzer.class);
+
+    private final TreeAdapter<N> adapter;
+
+    /**
+     * Creates the analyzer for a single style sheet.
+     * @param sheet The stylesheet that will be used as the source of rules.
+     * @param adapter The adapter used for accessing the analyzed trees.
+     */
+    public TreeAnalyzer(StyleSheet sheet, TreeAdapter<N> adapter)
+    {
+        super(sheet);
+        this.adapter = adapter;
+    }
+
+    /**
+     * Creates the analyzer for multiple style sheets.
+     * @param sheets A list of stylesheets that will be used as the source of rules.
+     * @param adapter The adapter used for accessing the analyzed trees.
+     */
+    public TreeAnalyzer(List<StyleSheet> sheets, TreeAdapter<N> adapter)
+    {
+        super(sheets);
+        this.adapter = adapter;
+    }
+
+    /**
+     * Obtains the adapter used for accessing the trees.
+     * @return the tree adapter
+     */
+    public TreeAdapter<N> getAdapter()
+    {
+        return adapter;
+    }
+
+    /**
+     * Evaluates the CSS properties of all the elements of a tree.
+     * @param root The root element of the tree
+     * @param media Used media name (e.g. "screen" or "all")
+     * @param inherit Use inheritance
+     * @return Map where each element contains its CSS properties
+     */
+    public TreeStyleMap<N> evaluateTree(N root, String media, boolean inherit)
+    {
+        return evaluateTree(root, new MediaSpec(media), inherit);
+    }
+
+    /**
+     * Evaluates the CSS properties of all the elements of a tree.
+     * @param root The root element of the tree
+     * @param media Media
+     * @param inherit Use inheritance
+     * @return Map where each element contains its CSS properties
+     */
+    public TreeStyleMap<N> evaluateTree(N root, MediaSpec media, boolean inherit)
+    {
+        if (getStyleCache() != null)
+            getStyleCache().clear();
+        classifyAllSheets(media);
+
+        final boolean evaluate = rules != null && !rules.isEmpty();
+        final TreeSnapshot<N> snapshot = TreeSnapshot.create(root, adapter, evaluate ? rules.getSymbols() : null);
+        final TreeStyleMap<N> result = new TreeStyleMap<N>(snapshot.getIndex());
+        final MatchMemo memo = evaluate ? new MatchMemo(rules.getCompilers()) : null;
+        final Map<PseudoDeclaration, List<Declaration>> pseudos =
+                new EnumMap<PseudoDeclaration, List<Declaration>>(PseudoDeclaration.class);
+
+        // the snapshot is in the document order, the parents are always processed first
+        for (int ord = 0; ord < snapshot.size(); ord++)
+        {
+            final N node = snapshot.getNode(ord);
+            List<Declaration> decls = null;
+            pseudos.clear();
+            if (evaluate)
+                decls = assignDeclarations(snapshot, ord, memo, pseudos);
+
+            NodeData parent = null;
+            if (decls != null && inherit && snapshot.getParent(ord) != TreeSnapshot.NONE)
+                parent = result.get(snapshot.getNode(snapshot.getParent(ord)), null);
+            final NodeData main = computeStyle(decls, parent);
+            result.put(node, null, main);
+
+            // always inherit from the main element style
+            for (Map.Entry<PseudoDeclaration, List<Declaration>> entry : pseudos.entrySet())
+                result.put(node, entry.getKey(), computeStyle(entry.getValue(), main));
+        }
+        return result;
+    }
+
+    /**
+     * Finds the declarations assigned to a single element of the snapshot.
+     * @return the sorted declarations of the element itself
+     */
+    private List<Declaration> assignDeclarations(TreeSnapshot<N> snapshot, int ord, MatchMemo memo,
+            Map<PseudoDeclaration, List<Declaration>> pseudos)
+    {
+        final List<Declaration> eldecl = new ArrayList<Declaration>();
+        final MatchContext ctx = MatchContext.acquire();
+        try {
+            AnalyzerUtil.collectCandidates(ctx, snapshot, ord, rules, getMatchCondition());
+            final int count = ctx.merge();
+            final OrderedRule[] clist = ctx.getCandidates();
+
+            for (int i = 0; i < count; i++)
+            {
+                final RuleSet rule = clist[i].getRule();
+                final StyleSheet sheet = rule.getStyleSheet();
+                final StyleSheet.Origin origin = (sheet == null) ? StyleSheet.Origin.AGENT : sheet.getOrigin();
+
+                for (CompiledSelector cs : clist[i].getCompiledSelectors())
+                {
+                    final CombinedSelector s = cs.getSelector();
+                    if (!cs.matches(snapshot, ord, getMatchCondition(), memo))
+                        continue;
+                    log.trace("CombinedSelector \"{}\" matched", s);
+
+                    final PseudoDeclaration pseudo = cs.getPseudoElement();
+                    final CombinedSelector.Specificity spec = cs.getSpecificity();
+                    List<Declaration> dest = eldecl;
+                    if (pseudo != null)
+                    {
+                        dest = pseudos.get(pseudo);
+                        if (dest == null)
+                        {
+                            dest = new ArrayList<Declaration>();
+                            pseudos.put(pseudo, dest);
+                        }
+                    }
+                    for (Declaration d : rule)
+                        dest.add(new AssignedDeclaration(d, spec, origin));
+                }
+            }
+        } finally {
+            ctx.release();
+        }
+
+        Collections.sort(eldecl);
+        for (List<Declaration> list : pseudos.values())
+            Collections.sort(list);
+        return eldecl;
+    }
+
+}
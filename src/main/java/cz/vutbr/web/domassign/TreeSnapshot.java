@@ -0,0 +1,319 @@
+package cz.vutbr.web.domassign;
+
+import java.util.Arrays;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import cz.vutbr.web.css.ElementMatcher;
+import cz.vutbr.web.css.MatchCondition;
+import cz.vutbr.web.css.Selector;
+import cz.vutbr.web.csskit.ElementFacts;
+import cz.vutbr.web.csskit.SymbolTable;
+
+/**
+ * A flattened copy of the element tree of a document used for selector matching. The elements
+ * are numbered in the document order and the tree structure is kept in parallel arrays indexed
+ * by the element ordinals: the parent, the previous and next element siblings, the first element
+ * child and the depth. The {@link ElementFacts} of each element are obtained from the
+ * {@link TreeAdapter} when the snapshot is created. The compiled selectors may be then evaluated
+ * on the arrays; the remaining selector parts are matched by the adapter.
+ *
+ * The snapshot of a W3C DOM only contains the elements whose ancestors are all elements; the elements
+ * placed in other nodes (e.g. entity references) are not included and they must be matched using
+ * the DOM. The snapshot is not updated when the tree changes.
+ *
+ * @param <N> the type of the element nodes
+ */
+public final class TreeSnapshot<N>
+{
+    /** The ordinal used when there is no such element */
+    public static final int NONE = -1;
+
+    private final TreeAdapter<N> adapter;
+    private final SymbolTable[] symbols;
+    private final boolean caseSensitiveNames;
+    private final boolean caseSensitiveValues;
+    private final ElementIndex<N> index;
+    private int size;
+    private int[] parent;
+    private int[] previousSibling;
+    private int[] nextSibling;
+    private int[] firstChild;
+    private int[] depth;
+    private ElementFacts[] facts;
+
+    private TreeSnapshot(TreeAdapter<N> adapter, SymbolTable[] symbols, int capacity)
+    {
+        this.adapter = adapter;
+        this.symbols = symbols;
+        this.caseSensitiveNames = adapter.isCaseSensitiveNames();
+        this.caseSensitiveValues = adapter.isCaseSensitiveValues();
+        this.index = new ElementIndex<N>(capacity);
+        this.parent = new int[capacity];
+        this.previousSibling = new int[capacity];
+        this.nextSibling = new int[capacity];
+        this.firstChild = new int[capacity];
+        this.depth = new int[capacity];
+        this.facts = new ElementFacts[capacity];
+    }
+
+    /**
+     * Creates the snapshot of a tree.
+     * @param root the root element of the tree
+     * @param adapter the adapter used for accessing the tree
+     * @return the created snapshot
+     */
+    public static <N> TreeSnapshot<N> create(N root, TreeAdapter<N> adapter)
+    {
+        return create(root, adapter, null);
+    }
+
+    /**
+     * Creates the snapshot of a tree whose element facts are resolved against the given symbol tables.
+     * @param root the root element of the tree
+     * @param adapter the adapter used for accessing the tree
+     * @param symbols the symbol tables of the selectors that will be matched or {@code null} when not available
+     * @return the created snapshot
+     */
+    public static <N> TreeSnapshot<N> create(N root, TreeAdapter<N> adapter, SymbolTable[] symbols)
+    {
+        final TreeSnapshot<N> ret = new TreeSnapshot<N>(adapter, symbols, 256);
+        if (root != null)
+            ret.build(root);
+        return ret;
+    }
+
+    /**
+     * Creates the snapshot of a W3C DOM document.
+     * @param doc the document
+     * @param matcher the element matcher used for matching the snapshot. For the standard
+     * matchers, the element facts are kept in a caching matcher.
+     * @return the created snapshot
+     */
+    public static TreeSnapshot<Element> create(Document doc, ElementMatcher matcher)
+    {
+        return create(doc.getDocumentElement(), new DOMTreeAdapter(matcher));
+    }
+
+    /**
+     * Obtains the adapter used for accessing the tree.
+     * @return the tree adapter
+     */
+    public TreeAdapter<N> getAdapter()
+    {
+        return adapter;
+    }
+
+    /**
+     * Obtains the number of elements in the snapshot.
+     * @return the number of elements
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Obtains the index that maps the elements to their ordinals. The index may be shared
+     * with the maps storing the results for the elements; it may contain more elements than
+     * the snapshot in that case.
+     * @return the element index
+     */
+    public ElementIndex<N> getIndex()
+    {
+        return index;
+    }
+
+    /**
+     * Obtains the ordinal of an element.
+     * @param node the element node
+     * @return the element ordinal or {@link #NONE} when the element is not in the snapshot
+     */
+    public int indexOf(N node)
+    {
+        final int ord = index.indexOf(node);
+        return (ord < size) ? ord : NONE;
+    }
+
+    /**
+     * Obtains the element with the given ordinal.
+     * @param ord the element ordinal
+     * @return the element node
+     */
+    public N getNode(int ord)
+    {
+        return index.get(ord);
+    }
+
+    /**
+     * Obtains the parent element.
+     * @param ord the element ordinal
+     * @return the parent element ordinal or {@link #NONE} for the root element
+     */
+    public int getParent(int ord)
+    {
+        return parent[ord];
+    }
+
+    /**
+     * Obtains the previous element sibling.
+     * @param ord the element ordinal
+     * @return the sibling ordinal or {@link #NONE} for the first child
+     */
+    public int getPreviousSibling(int ord)
+    {
+        return previousSibling[ord];
+    }
+
+    /**
+     * Obtains the next element sibling.
+     * @param ord the element ordinal
+     * @return the sibling ordinal or {@link #NONE} for the last child
+     */
+    public int getNextSibling(int ord)
+    {
+        return nextSibling[ord];
+    }
+
+    /**
+     * Obtains the first child element.
+     * @param ord the element ordinal
+     * @return the child ordinal or {@link #NONE} when there are no child elements
+     */
+    public int getFirstChild(int ord)
+    {
+        return firstChild[ord];
+    }
+
+    /**
+     * Obtains the element depth in the tree.
+     * @param ord the element ordinal
+     * @return the depth, 0 for the root element
+     */
+    public int getDepth(int ord)
+    {
+        return depth[ord];
+    }
+
+    /**
+     * Obtains the facts about the element.
+     * @param ord the element ordinal
+     * @return the element facts or {@code null} when the adapter does not provide them
+     */
+    public ElementFacts getFacts(int ord)
+    {
+        return facts[ord];
+    }
+
+    /**
+     * Checks whether a selector part matches an element using the adapter.
+     * @param ord the element ordinal
+     * @param part the selector part
+     * @param cond the match condition
+     * @return {@code true} when the part matches the element
+     */
+    public boolean matchesPart(int ord, Selector.SelectorPart part, MatchCondition cond)
+    {
+        return adapter.matchesPart(this, ord, part, cond);
+    }
+
+    /**
+     * Checks whether the element has the given name using the interned symbols.
+     * @param facts the element facts
+     * @param symbol the interned name
+     * @param foldedSymbol the interned lower-case name
+     */
+    boolean matchesNameSymbol(ElementFacts facts, String symbol, String foldedSymbol)
+    {
+        return facts.hasName(caseSensitiveNames ? symbol : foldedSymbol);
+    }
+
+    /**
+     * Checks whether the element has the given ID using the interned symbols.
+     * @param facts the element facts
+     * @param symbol the interned ID
+     * @param foldedSymbol the interned lower-case ID
+     */
+    boolean matchesIDSymbol(ElementFacts facts, String symbol, String foldedSymbol)
+    {
+        return facts.hasId(caseSensitiveValues ? symbol : foldedSymbol);
+    }
+
+    /**
+     * Checks whether the element has the given class using the interned symbols.
+     * @param facts the element facts
+     * @param symbol the interned class name
+     * @param foldedSymbol the interned lower-case class name
+     */
+    boolean matchesClassSymbol(ElementFacts facts, String symbol, String foldedSymbol)
+    {
+        return facts.hasClass(caseSensitiveValues ? symbol : foldedSymbol);
+    }
+
+    //=========================================================================================
+
+    /**
+     * Numbers the elements in the document order. The tree is traversed without recursion;
+     * the already assigned parent ordinals are used for returning up the tree.
+     */
+    private void build(N root)
+    {
+        int current = NONE; //the parent of the processed elements
+        int last = NONE; //the last child of the current parent found so far
+        N node = root;
+        while (node != null)
+        {
+            final int ord = append(node, current, last);
+            N next = adapter.getFirstChild(node);
+            if (next != null)
+            {
+                current = ord;
+                last = NONE;
+            }
+            else
+            {
+                last = ord;
+                next = (ord == 0) ? null : adapter.getNextSibling(node);
+                while (next == null && current != NONE)
+                {
+                    last = current;
+                    current = parent[current];
+                    next = (last == 0) ? null : adapter.getNextSibling(index.get(last));
+                }
+            }
+            node = next;
+        }
+    }
+
+    private int append(N node, int parentOrd, int previousOrd)
+    {
+        final int ord = index.add(node);
+        if (ord >= parent.length)
+            grow();
+        parent[ord] = parentOrd;
+        previousSibling[ord] = previousOrd;
+        nextSibling[ord] = NONE;
+        firstChild[ord] = NONE;
+        depth[ord] = (parentOrd == NONE) ? 0 : depth[parentOrd] + 1;
+        if (previousOrd != NONE)
+            nextSibling[previousOrd] = ord;
+        else if (parentOrd != NONE)
+            firstChild[parentOrd] = ord;
+        facts[ord] = adapter.createFacts(node, symbols);
+        size = ord + 1;
+        return ord;
+    }
+
+    private void grow()
+    {
+        final int capacity = parent.length * 2;
+        parent = Arrays.copyOf(parent, capacity);
+        previousSibling = Arrays.copyOf(previousSibling, capacity);
+        nextSibling = Arrays.copyOf(nextSibling, capacity);
+        firstChild = Arrays.copyOf(firstChild, capacity);
+        depth = Arrays.copyOf(depth, capacity);
+        facts = Arrays.copyOf(facts, capacity);
+    }
+
+}
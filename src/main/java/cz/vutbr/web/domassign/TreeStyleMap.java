@@ -0,0 +1,32 @@
+package cz.vutbr.web.domassign;
+
+import cz.vutbr.web.css.CSSFactory;
+import cz.vutbr.web.css.NodeData;
+import cz.vutbr.web.css.Selector.PseudoDeclaration;
+
+/**
+ * A map that assigns a style to the elements of a tree accessed using a {@link TreeAdapter}
+ * and gathers the information about the pseudo elements. This is the counterpart of
+ * the {@link StyleMap} for the trees other than the W3C DOM.
+ *
+ * @param <N> the type of the element nodes
+ */
+public class TreeStyleMap<N> extends MultiMap<N, PseudoDeclaration, NodeData>
+{
+
+    /**
+     * Creates an empty map that stores the styles in arrays indexed by the element ordinals.
+     * @param index the element index, usually the one of the corresponding {@link TreeSnapshot}
+     */
+    public TreeStyleMap(ElementIndex<N> index)
+    {
+        super(index, PseudoDeclaration.class);
+    }
+
+    @Override
+    protected NodeData createDataInstance()
+    {
+        return CSSFactory.createNodeData();
+    }
+
+}
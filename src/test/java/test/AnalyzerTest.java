@@ -4,6 +4,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.Date;
 
 import org.junit.Assert;
@@ -23,6 +24,7 @@ import org.xml.sax.SAXException;
 import cz.vutbr.web.css.CSSException;
 import cz.vutbr.web.css.CSSFactory;
 import cz.vutbr.web.css.CSSProperty;
+import cz.vutbr.web.css.MediaSpec;
 import cz.vutbr.web.css.NodeData;
 import cz.vutbr.web.css.StyleSheet;
 import cz.vutbr.web.css.SupportedCSS;
@@ -34,6 +36,9 @@ import cz.vutbr.web.css.CSSProperty.BorderStyle;
 import cz.vutbr.web.css.CSSProperty.FontFamily;
 import cz.vutbr.web.css.CSSProperty.Margin;
 import cz.vutbr.web.domassign.Analyzer;
+import cz.vutbr.web.domassign.Analyzer.Holder;
+import cz.vutbr.web.domassign.Analyzer.OrderedRule;
+import cz.vutbr.web.domassign.AnalyzerUtil;
 import cz.vutbr.web.domassign.StyleMap;
 import cz.vutbr.web.domassign.Traversal;
 
@@ -247,6 +252,44 @@ public class AnalyzerTest {
 
 	}
 
+	@Test
+	public void candidatesInOrder() throws IOException, CSSException {
+	    
+	    StyleSheet ss = CSSFactory.parseString("p { color: red; } .x { color: blue; } * { margin: 0; } "
+	            + "p.x { color: green; } #i { color: gray; } div { color: black; } .x p { color: lime; }", null);
+	    Holder holder = AnalyzerUtil.getClassifiedRules(Collections.singletonList(ss), new MediaSpec("all"));
+	    
+	    Element e = doc.createElement("p");
+	    e.setAttribute("class", "x y");
+	    e.setAttribute("id", "i");
+	    OrderedRule[] rules = AnalyzerUtil.getApplicableRules(e, holder, null);
+	    
+	    // p, .x, *, p.x (as a class only), #i, .x p
+	    assertEquals("Number of candidates", 6, rules.length);
+	    for (int i = 1; i < rules.length; i++)
+	        Assert.assertTrue("Candidates are sorted", rules[i - 1].getOrder() < rules[i].getOrder());
+	}
+
+	@Test
+	public void attributeAndPseudoCandidates() throws IOException, CSSException {
+	    
+	    StyleSheet ss = CSSFactory.parseString("[title] { color: red; } :first-child { color: blue; } "
+	            + ":hover { color: green; } * { margin: 0; } [lang]:last-child { color: gray; }", null);
+	    Holder holder = AnalyzerUtil.getClassifiedRules(Collections.singletonList(ss), new MediaSpec("all"));
+	    
+	    Element parent = doc.createElement("div");
+	    Element first = doc.createElement("span");
+	    first.setAttribute("title", "t");
+	    Element second = doc.createElement("span");
+	    parent.appendChild(first);
+	    parent.appendChild(second);
+	    
+	    // [title], :first-child, :hover (no match condition), *
+	    assertEquals("Candidates of the first child", 4, AnalyzerUtil.getApplicableRules(first, holder, null).length);
+	    // :hover, *
+	    assertEquals("Candidates of the second child", 2, AnalyzerUtil.getApplicableRules(second, holder, null).length);
+	}
+
 	static class Pair<T, V> {
 		private T first;
 		private V second;
@@ -0,0 +1,214 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.w3c.dom.traversal.DocumentTraversal;
+import org.w3c.dom.traversal.NodeFilter;
+import org.w3c.dom.traversal.TreeWalker;
+import org.xml.sax.SAXException;
+
+import cz.vutbr.web.css.CSSException;
+import cz.vutbr.web.css.CSSFactory;
+import cz.vutbr.web.css.CombinedSelector;
+import cz.vutbr.web.css.ElementMatcher;
+import cz.vutbr.web.css.MatchCondition;
+import cz.vutbr.web.css.MediaSpec;
+import cz.vutbr.web.css.Rule;
+import cz.vutbr.web.css.RuleFactory;
+import cz.vutbr.web.css.RuleMedia;
+import cz.vutbr.web.css.RuleSet;
+import cz.vutbr.web.css.Selector;
+import cz.vutbr.web.css.Selector.PseudoDeclaration;
+import cz.vutbr.web.css.StyleSheet;
+import cz.vutbr.web.csskit.ElementMatcherCached;
+import cz.vutbr.web.csskit.ElementMatcherSafeCI;
+import cz.vutbr.web.csskit.ElementMatcherSafeStd;
+import cz.vutbr.web.csskit.MatchConditionOnElements;
+import cz.vutbr.web.domassign.Analyzer;
+import cz.vutbr.web.domassign.Analyzer.Holder;
+import cz.vutbr.web.domassign.AnalyzerUtil;
+import cz.vutbr.web.domassign.CompiledSelector;
+import cz.vutbr.web.domassign.SelectorCompiler;
+import cz.vutbr.web.domassign.StyleMap;
+
+/**
+ * Checks that the compiled selectors give the same results as the interpreted matching.
+ */
+public class CompiledSelectorTest
+{
+    private static final Logger log = LoggerFactory.getLogger(CompiledSelectorTest.class);
+
+    private static final String[] DOCUMENTS = { "/simple/pseudo.html", "/simple/selectors.html",
+        "/simple/selectors2.html", "/simple/selectors3.html", "/advanced/domassign.html" };
+
+    private static final String CSS = "* {} p {} P.Red {} #Id {} div p {} div > p {} h1 + p {} h1 ~ p {} "
+            + "ul li:first-child {} li:last-child {} li:only-child {} :root {} p:empty {} "
+            + "li:nth-child(2n+1) {} li:nth-of-type(2) {} a:link {} a:hover {} a:visited {} "
+            + "[title] {} a[href^=\"http\"] {} div :not-supported {} p::before {} body div * + * > p {}";
+
+    @BeforeClass
+    public static void init()
+    {
+        log.info("\n\n\n == CompiledSelectorTest test at {} == \n\n\n", new Date());
+    }
+
+    @Test
+    public void sameAsInterpreted() throws SAXException, IOException, CSSException
+    {
+        int matched = 0;
+        for (String name : DOCUMENTS)
+        {
+            DOMSource ds = new DOMSource(getClass().getResourceAsStream(name));
+            Document doc = ds.parse();
+            List<CombinedSelector> selectors = new ArrayList<CombinedSelector>();
+            addSelectors(CSSFactory.getUsedStyles(doc, null, getClass().getResource(name), "screen"), selectors);
+            addSelectors(CSSFactory.parseString(CSS, null), selectors);
+
+            MatchConditionOnElements cond = new MatchConditionOnElements("a", PseudoDeclaration.LINK);
+            NodeList links = doc.getElementsByTagName("a");
+            if (links.getLength() > 0)
+                cond.addMatch((Element) links.item(0), PseudoDeclaration.HOVER);
+
+            ElementMatcher[] matchers = { new ElementMatcherSafeStd(), new ElementMatcherSafeCI(),
+                    ElementMatcherCached.create(new ElementMatcherSafeStd()),
+                    ElementMatcherCached.create(new ElementMatcherSafeCI()) };
+            MatchCondition[] conds = { CSSFactory.getDefaultMatchCondition(), cond };
+
+            NodeList all = doc.getElementsByTagName("*");
+            TreeWalker walker = ((DocumentTraversal) doc).createTreeWalker(doc, NodeFilter.SHOW_ELEMENT, null, false);
+            for (CombinedSelector sel : selectors)
+            {
+                CompiledSelector compiled = CompiledSelector.compile(sel);
+                for (ElementMatcher matcher : matchers)
+                {
+                    for (MatchCondition mc : conds)
+                    {
+                        InterpretingAnalyzer analyzer = new InterpretingAnalyzer(matcher, mc);
+                        for (int i = 0; i < all.getLength(); i++)
+                        {
+                            Element e = (Element) all.item(i);
+                            walker.setCurrentNode(e);
+                            boolean expected = analyzer.interpret(sel, e, walker);
+                            assertEquals(name + ": " + sel + " on " + e.getNodeName() + "#" + e.getAttribute("id"),
+                                    expected, compiled.matches(e, matcher, mc));
+                            if (expected)
+                                matched++;
+                        }
+                    }
+                }
+            }
+        }
+        assertTrue("Some selectors matched", matched > 0);
+    }
+
+    @Test
+    public void sharedSimpleSelectors() throws SAXException, IOException, CSSException
+    {
+        StringBuilder html = new StringBuilder("<html><body><div id=\"main\"><div class=\"content\"><ul>");
+        for (int i = 1; i <= 10; i++)
+            html.append("<li class=\"n").append(i).append("\"><p>Item <span>").append(i).append("</span></p></li>");
+        html.append("</ul></div><p class=\"n1\">Outside</p></div></body></html>");
+        StringBuilder css = new StringBuilder();
+        for (int i = 1; i <= 10; i++)
+        {
+            css.append("#main .content li.n").append(i).append(" p { color: red; } ");
+            css.append("#main .content li:nth-child(").append(i).append(") span { font-weight: bold; } ");
+            css.append(".content p.n").append(i).append(" { color: green; } ");
+        }
+        StyleSheet sheet = CSSFactory.parseString(css.toString(), null);
+        DOMSource ds = new DOMSource(new ByteArrayInputStream(html.toString().getBytes("UTF-8")));
+        Document doc = ds.parse();
+
+        Holder holder = AnalyzerUtil.getClassifiedRules(Collections.singletonList(sheet), new MediaSpec("screen"));
+        // #main, .content, p, span, 10 * li.nX, 10 * li:nth-child(X), 10 * p.nX
+        assertEquals("Distinct simple selectors", 34, holder.getCompiler().size());
+
+        StyleMap styles = new Analyzer(sheet).evaluateDOM(doc, "screen", true);
+        StyleMap expected = new Analyzer(sheet) {
+            @Override
+            protected boolean matchSelector(CompiledSelector sel, Element e, TreeWalker w)
+            {
+                return matchSelector(sel.getSelector(), e, w);
+            }
+        }.evaluateDOM(doc, "screen", true);
+        NodeList all = doc.getElementsByTagName("*");
+        for (int i = 0; i < all.getLength(); i++)
+        {
+            Element e = (Element) all.item(i);
+            assertEquals("Style of " + e.getNodeName() + " " + i, expected.get(e).toString(), styles.get(e).toString());
+        }
+    }
+
+    @Test
+    public void sharedElementSelectors() throws SAXException, IOException
+    {
+        DOMSource ds = new DOMSource(new ByteArrayInputStream(
+                "<html><body><p id=\"a\">A</p><p id=\"b\">B</p></body></html>".getBytes("UTF-8")));
+        Document doc = ds.parse();
+        NodeList ps = doc.getElementsByTagName("p");
+        SelectorCompiler compiler = new SelectorCompiler();
+        //equal element selectors are shared even though they are different instances
+        compiler.compile(createElementSelector((Element) ps.item(0)));
+        compiler.compile(createElementSelector((Element) ps.item(0)));
+        compiler.compile(createElementSelector((Element) ps.item(1)));
+        assertEquals("Distinct simple selectors", 2, compiler.size());
+    }
+
+    private CombinedSelector createElementSelector(Element e)
+    {
+        RuleFactory rf = CSSFactory.getRuleFactory();
+        Selector sel = (Selector) rf.createSelector().unlock();
+        sel.add(rf.createElementDOM(e, true));
+        CombinedSelector ret = (CombinedSelector) rf.createCombinedSelector().unlock();
+        ret.add(sel);
+        return ret;
+    }
+
+    private void addSelectors(List<? extends Rule<?>> rules, List<CombinedSelector> dest)
+    {
+        for (Rule<?> rule : rules)
+        {
+            if (rule instanceof RuleSet)
+            {
+                for (CombinedSelector sel : ((RuleSet) rule).getSelectors())
+                    dest.add(sel);
+            }
+            else if (rule instanceof RuleMedia)
+                addSelectors((RuleMedia) rule, dest);
+        }
+    }
+
+    /**
+     * Provides access to the interpreted selector matching of the analyzer.
+     */
+    private static class InterpretingAnalyzer extends Analyzer
+    {
+        public InterpretingAnalyzer(ElementMatcher matcher, MatchCondition cond)
+        {
+            super(new ArrayList<StyleSheet>());
+            registerElementMatcher(matcher);
+            registerMatchCondition(cond);
+        }
+
+        public boolean interpret(CombinedSelector sel, Element e, TreeWalker walker)
+        {
+            return matchSelector(sel, e, walker);
+        }
+    }
+
+}
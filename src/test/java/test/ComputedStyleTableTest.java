@@ -0,0 +1,137 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.util.Date;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import cz.vutbr.web.css.CSSFactory;
+import cz.vutbr.web.css.CSSProperty;
+import cz.vutbr.web.css.MediaSpec;
+import cz.vutbr.web.css.NodeData;
+import cz.vutbr.web.css.Term;
+import cz.vutbr.web.css.TermColor;
+import cz.vutbr.web.css.TermNumeric;
+import cz.vutbr.web.css.TermPercent;
+import cz.vutbr.web.domassign.ComputedStyleTable;
+import cz.vutbr.web.domassign.StyleMap;
+
+/**
+ * Checks that the columnar style export contains the same values as the style map.
+ */
+public class ComputedStyleTableTest
+{
+    private static final Logger log = LoggerFactory.getLogger(ComputedStyleTableTest.class);
+
+    @BeforeClass
+    public static void init()
+    {
+        log.info("\n\n\n == ComputedStyleTableTest test at {} == \n\n\n", new Date());
+    }
+
+    @Test
+    public void sameAsStyleMap() throws SAXException, IOException
+    {
+        for (String name : new String[] { "/advanced/domassign.html", "/simple/selectors.html" })
+        {
+            DOMSource ds = new DOMSource(getClass().getResourceAsStream(name));
+            Document doc = ds.parse();
+            StyleMap styles = CSSFactory.assignDOM(doc, null, getClass().getResource(name), new MediaSpec("screen"), true);
+            ComputedStyleTable table = new ComputedStyleTable(styles, doc);
+
+            NodeList all = doc.getElementsByTagName("*");
+            assertEquals(name, all.getLength(), table.getRowCount());
+            for (int row = 0; row < table.getRowCount(); row++)
+            {
+                Element e = table.getElement(row);
+                assertSame(name, all.item(row), e);
+                NodeData nd = styles.get(e);
+                for (int id = 0; id < table.getPropertyCount(); id++)
+                {
+                    String prop = table.getPropertyName(id);
+                    String msg = name + ": " + e.getNodeName() + " " + prop;
+                    CSSProperty expected = nd.getProperty(prop, true);
+                    assertEquals(msg, expected, table.getProperty(id, row));
+                    if (expected != null && expected instanceof Enum<?>)
+                        assertEquals(msg, ((Enum<?>) expected).ordinal(), table.getKeywords(id)[row]);
+                    checkValue(msg, nd.getValue(prop, true), table, id, row);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void primitiveColumns() throws SAXException, IOException
+    {
+        DOMSource ds = new DOMSource(getClass().getResourceAsStream("/advanced/domassign.html"));
+        Document doc = ds.parse();
+        StyleMap styles = CSSFactory.assignDOM(doc, null, getClass().getResource("/advanced/domassign.html"), new MediaSpec("screen"), true);
+        ComputedStyleTable table = new ComputedStyleTable(styles, doc);
+
+        int row = rowOf(table, "border");
+        int width = table.getPropertyId("border-top-width");
+        assertEquals(ComputedStyleTable.KIND_NUMERIC, table.getKinds(width)[row]);
+        assertEquals(10.0f, table.getNumbers(width)[row], 0.0f);
+        assertSame(TermNumeric.Unit.px, ComputedStyleTable.getUnit(table.getUnits(width)[row]));
+
+        int color = table.getPropertyId("border-top-color");
+        assertEquals(ComputedStyleTable.KIND_COLOR, table.getKinds(color)[row]);
+        assertEquals(Color.RED.getRGB(), table.getColors(color)[row]);
+
+        int margin = table.getPropertyId("margin-left");
+        assertEquals(-15.0f, table.getNumbers(margin)[rowOf(table, "subzero")], 0.0f);
+    }
+
+    private static void checkValue(String msg, Term<?> value, ComputedStyleTable table, int id, int row)
+    {
+        byte kind = (table.getKinds(id) == null) ? ComputedStyleTable.KIND_NONE : table.getKinds(id)[row];
+        if (value == null)
+            assertEquals(msg, ComputedStyleTable.KIND_NONE, kind);
+        else if (value instanceof TermPercent && value.getValue() != null)
+        {
+            assertEquals(msg, ComputedStyleTable.KIND_PERCENT, kind);
+            assertEquals(msg, ((TermPercent) value).getValue(), table.getNumbers(id)[row], 0.0f);
+        }
+        else if (value instanceof TermNumeric<?> && value.getValue() != null)
+        {
+            assertEquals(msg, ComputedStyleTable.KIND_NUMERIC, kind);
+            TermNumeric<?> num = (TermNumeric<?>) value;
+            assertEquals(msg, num.getValue().floatValue(), table.getNumbers(id)[row], 0.0f);
+            if (num.getUnit() != null)
+                assertSame(msg, num.getUnit(), ComputedStyleTable.getUnit(table.getUnits(id)[row]));
+        }
+        else if (value instanceof TermColor && value.getValue() != null)
+        {
+            assertEquals(msg, ComputedStyleTable.KIND_COLOR, kind);
+            assertEquals(msg, ((TermColor) value).getValue().getRGB(), table.getColors(id)[row]);
+        }
+        else
+        {
+            assertEquals(msg, ComputedStyleTable.KIND_OTHER, kind);
+            assertSame(msg, value, table.getTerm(id, row));
+        }
+        if (kind != ComputedStyleTable.KIND_OTHER)
+            assertNull(msg, table.getTerm(id, row));
+    }
+
+    private static int rowOf(ComputedStyleTable table, String id)
+    {
+        for (int row = 0; row < table.getRowCount(); row++)
+            if (id.equals(table.getElement(row).getAttribute("id")))
+                return row;
+        throw new IllegalArgumentException("No row");
+    }
+
+}
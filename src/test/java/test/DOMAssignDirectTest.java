@@ -1,6 +1,7 @@
 package test;
 
 import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsSame.sameInstance;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
@@ -20,6 +21,7 @@ import org.xml.sax.SAXException;
 import cz.vutbr.web.css.CSSException;
 import cz.vutbr.web.css.CSSFactory;
 import cz.vutbr.web.css.CSSProperty;
+import cz.vutbr.web.css.MediaSpec;
 import cz.vutbr.web.css.NodeData;
 import cz.vutbr.web.css.StyleSheet;
 import cz.vutbr.web.css.TermColor;
@@ -313,6 +315,36 @@ public class DOMAssignDirectTest {
         assertThat("Background color", nodeData.getValue(TermColor.class, "background-color"), is(tf.createColor(0,128,0)));
     }
 
+    @Test
+    public void classificationReused() throws SAXException, IOException, CSSException {
+
+        final String css = "p { color: green; } @media (max-width: 600px) { p { color: red; } }";
+        final String html = "<html><body><p id='p1'>Lorem Ipsum</p></body></html> ";
+
+        final InputStream is = new ByteArrayInputStream(html.getBytes());
+        final DOMSource ds = new DOMSource(is);
+        final Document doc = ds.parse();
+        final ElementMap elements = new ElementMap(doc);
+        final StyleSheet style = CSSFactory.parseString(css, null);
+
+        final DirectAnalyzer da = new DirectAnalyzer(style);
+        assertNull("Caching disabled by default", da.getClassificationCache());
+        da.setClassificationCaching(true);
+        final MediaSpec narrow = new MediaSpec("screen");
+        narrow.setDimensions(500, 800);
+        final MediaSpec wide = new MediaSpec("screen");
+        wide.setDimensions(1000, 800);
+        for (int i = 0; i < 3; i++) {
+            assertThat("Narrow color", da.getElementStyle(elements.getElementById("p1"), null, narrow)
+                    .getValue(TermColor.class, "color"), is(tf.createColor(255, 0, 0)));
+            assertThat("Wide color", da.getElementStyle(elements.getElementById("p1"), null, wide)
+                    .getValue(TermColor.class, "color"), is(tf.createColor(0, 128, 0)));
+        }
+        assertNotNull("Classifications cached", da.getClassificationCache());
+        assertThat("Classified once for each width interval", da.getClassificationCache().getClassifiedRules(narrow),
+                is(sameInstance(da.getClassificationCache().getClassifiedRules(narrow))));
+    }
+
     // Test for issue #11 on GitHub. Respect the specified order of rule-blocks even if the selectors don't match in the same order.
     @Test
     public void respectSpecifiedOrder() throws SAXException, IOException, CSSException {
@@ -0,0 +1,149 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.HashSet;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import cz.vutbr.web.css.CSSFactory;
+import cz.vutbr.web.css.NodeData;
+import cz.vutbr.web.css.Selector.PseudoDeclaration;
+import cz.vutbr.web.domassign.ElementIndex;
+import cz.vutbr.web.domassign.StyleMap;
+
+/**
+ * Checks that the style map with the element-indexed storage behaves as the hash map based one.
+ */
+public class DenseStyleMapTest
+{
+    private static final Logger log = LoggerFactory.getLogger(DenseStyleMapTest.class);
+
+    private static final String SRC = "/profiling/slate.html";
+
+    private static NodeList elements;
+
+    @BeforeClass
+    public static void init() throws SAXException, IOException
+    {
+        log.info("\n\n\n == DenseStyleMapTest test at {} == \n\n\n", new Date());
+        DOMSource ds = new DOMSource(DenseStyleMapTest.class.getResourceAsStream(SRC));
+        Document doc = ds.parse();
+        elements = doc.getElementsByTagName("*");
+    }
+
+    @Test
+    public void sameAsHashed()
+    {
+        StyleMap hashed = new StyleMap(16);
+        ElementIndex<Element> index = new ElementIndex<Element>(4);
+        StyleMap dense = new StyleMap(index);
+        final int n = elements.getLength();
+
+        for (int i = 0; i < n; i++)
+        {
+            Element e = (Element) elements.item(i);
+            if (i % 3 != 0)
+            {
+                NodeData data = CSSFactory.createNodeData();
+                hashed.put(e, null, data);
+                dense.put(e, null, data);
+            }
+            if (i % 5 == 0)
+            {
+                NodeData data = hashed.getOrCreate(e, PseudoDeclaration.BEFORE);
+                dense.put(e, PseudoDeclaration.BEFORE, data);
+                assertSame(data, dense.getOrCreate(e, PseudoDeclaration.BEFORE));
+            }
+            if (i % 7 == 0)
+                dense.put(e, PseudoDeclaration.AFTER, hashed.getOrCreate(e, PseudoDeclaration.AFTER));
+        }
+        for (int i = 0; i < n; i += 11)
+        {
+            Element e = (Element) elements.item(i);
+            hashed.remove(e);
+            dense.remove(e);
+        }
+
+        assertEquals("Size", hashed.size(), dense.size());
+        assertEquals("Keys", hashed.keySet(), new HashSet<Element>(dense.keySet()));
+        for (int i = 0; i < n; i++)
+        {
+            Element e = (Element) elements.item(i);
+            assertSame("Main data " + i, hashed.get(e), dense.get(e));
+            assertEquals("Pseudo elements " + i, hashed.pseudoSet(e), dense.pseudoSet(e));
+            for (PseudoDeclaration pseudo : PseudoDeclaration.values())
+            {
+                assertSame("Pseudo data " + i, hashed.get(e, pseudo), dense.get(e, pseudo));
+                assertEquals("Has pseudo " + i, hashed.hasPseudo(e, pseudo), dense.hasPseudo(e, pseudo));
+            }
+        }
+        assertTrue("Elements indexed", index.size() > n / 2);
+    }
+
+    @Test
+    public void unknownElements()
+    {
+        StyleMap dense = new StyleMap(new ElementIndex<Element>());
+        Element e = (Element) elements.item(0);
+        assertNull(dense.get(e));
+        assertNull(dense.get(e, PseudoDeclaration.BEFORE));
+        assertFalse(dense.hasPseudo(e, PseudoDeclaration.BEFORE));
+        assertTrue(dense.pseudoSet(e).isEmpty());
+        assertEquals(0, dense.size());
+        dense.remove(e);
+        assertTrue(dense.keySet().isEmpty());
+    }
+
+    @Test
+    public void removedElements()
+    {
+        ElementIndex<Element> index = new ElementIndex<Element>();
+        StyleMap dense = new StyleMap(index);
+        final int n = elements.getLength();
+        for (int i = 0; i < n; i++)
+            dense.put((Element) elements.item(i), null, CSSFactory.createNodeData());
+
+        //repeated removals and insertions reuse the ordinals
+        for (int round = 0; round < 10; round++)
+        {
+            for (int i = round % 2; i < n; i += 2)
+            {
+                Element e = (Element) elements.item(i);
+                dense.remove(e);
+                assertTrue("Removed " + i, index.remove(e) != -1);
+                assertEquals("Not indexed " + i, -1, index.indexOf(e));
+            }
+            assertEquals("Remaining elements", n / 2 + ((round % 2 == 0) ? 0 : n % 2), index.count());
+            for (int i = round % 2; i < n; i += 2)
+            {
+                Element e = (Element) elements.item(i);
+                assertNull("No data of a reused ordinal " + i, dense.get(e));
+                dense.put(e, null, CSSFactory.createNodeData());
+            }
+            assertEquals("Ordinals reused", n, index.size());
+            assertEquals("All elements", n, index.count());
+        }
+        for (int i = 0; i < n; i++)
+        {
+            Element e = (Element) elements.item(i);
+            assertSame("Element " + i, e, index.get(index.indexOf(e)));
+            assertTrue("Data " + i, dense.get(e) != null);
+        }
+        assertEquals("Size", n, dense.size());
+    }
+
+}
@@ -2,8 +2,15 @@ package test;
 
 import static org.junit.Assert.assertEquals;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
 
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -19,12 +26,14 @@ import cz.vutbr.web.css.ElementMatcher;
 import cz.vutbr.web.css.NodeData;
 import cz.vutbr.web.css.TermColor;
 import cz.vutbr.web.css.TermFactory;
+import cz.vutbr.web.csskit.ElementMatcherCached;
 import cz.vutbr.web.csskit.ElementMatcherSafeCI;
 import cz.vutbr.web.csskit.ElementMatcherSafeCS;
 import cz.vutbr.web.csskit.ElementMatcherSafeStd;
 import cz.vutbr.web.csskit.ElementMatcherSimpleCI;
 import cz.vutbr.web.csskit.ElementMatcherSimpleCS;
 import cz.vutbr.web.csskit.ElementMatcherSimpleStd;
+import cz.vutbr.web.csskit.SymbolTable;
 import cz.vutbr.web.domassign.StyleMap;
 
 public class ElementMatcherTest {
@@ -69,6 +78,113 @@ public class ElementMatcherTest {
         checkMatchersOnFile(file, exXHTML, exHTMLStd, exHTMLQuirks, "HTMLquirks");
     }
     
+    @Test
+    public void cachedMatchers() throws SAXException, IOException {
+        String[] files = { "/case/test_xhtml.xht", "/case/test_html_std.html", "/case/test_html_quirks.html" };
+        ElementMatcher[] matchers = { new ElementMatcherSafeCS(), new ElementMatcherSimpleCS(),
+                new ElementMatcherSafeStd(), new ElementMatcherSimpleStd(),
+                new ElementMatcherSafeCI(), new ElementMatcherSimpleCI() };
+        for (String file : files)
+        {
+            DOMSource ds = new DOMSource(getClass().getResourceAsStream(file));
+            Document doc = ds.parse();
+            NodeList all = doc.getElementsByTagName("*");
+            //collect the names, IDs and classes used in the document in different cases
+            Set<String> probes = new HashSet<String>();
+            for (int i = 0; i < all.getLength(); i++)
+            {
+                Element e = (Element) all.item(i);
+                List<String> values = new ArrayList<String>();
+                values.add(e.getNodeName());
+                values.add(e.getAttribute("id"));
+                values.addAll(Arrays.asList(e.getAttribute("class").split(" ")));
+                for (String value : values)
+                {
+                    probes.add(value);
+                    probes.add(value.toLowerCase());
+                    probes.add(value.toUpperCase());
+                }
+            }
+            probes.remove("");
+            //a symbol table that only contains some of the values
+            SymbolTable symbols = new SymbolTable();
+            int cnt = 0;
+            for (String probe : probes)
+            {
+                if (cnt++ % 2 == 0)
+                    symbols.add(probe);
+            }
+            
+            List<ElementMatcherCached> cachedMatchers = new ArrayList<ElementMatcherCached>();
+            for (ElementMatcher matcher : matchers)
+            {
+                cachedMatchers.add(ElementMatcherCached.create(matcher));
+                cachedMatchers.add(ElementMatcherCached.create(matcher, new SymbolTable[] { symbols }));
+            }
+            for (int m = 0; m < cachedMatchers.size(); m++)
+            {
+                ElementMatcher matcher = matchers[m / 2];
+                ElementMatcherCached cached = cachedMatchers.get(m);
+                String msg = file + " " + matcher.getClass().getSimpleName() + (m % 2 == 0 ? "" : " symbols");
+                for (int i = 0; i < all.getLength(); i++)
+                {
+                    Element e = (Element) all.item(i);
+                    for (String probe : probes)
+                    {
+                        assertEquals(msg + " name " + probe, matcher.matchesName(e, probe), cached.matchesName(e, probe));
+                        assertEquals(msg + " ID " + probe, matcher.matchesID(e, probe), cached.matchesID(e, probe));
+                        assertEquals(msg + " class " + probe, matcher.matchesClass(e, probe), cached.matchesClass(e, probe));
+                        String symbol = probe.intern();
+                        String folded = ElementMatcherCached.fold(probe).intern();
+                        assertEquals(msg + " name symbol " + probe, matcher.matchesName(e, probe), cached.matchesNameSymbol(e, symbol, folded));
+                        assertEquals(msg + " ID symbol " + probe, matcher.matchesID(e, probe), cached.matchesIDSymbol(e, symbol, folded));
+                        assertEquals(msg + " class symbol " + probe, matcher.matchesClass(e, probe), cached.matchesClassSymbol(e, symbol, folded));
+                    }
+                }
+                assertEquals(msg + " facts", all.getLength(), cached.size());
+            }
+        }
+    }
+    
+    @Test
+    public void classSeparatorsAndLocale() throws SAXException, IOException {
+        String html = "<html><body><div id='d' class='Title\tmenu&#10;BOX'>x</div></body></html>";
+        ElementMatcher[] matchers = { new ElementMatcherSafeCS(), new ElementMatcherSimpleCS(),
+                new ElementMatcherSafeStd(), new ElementMatcherSimpleStd(),
+                new ElementMatcherSafeCI(), new ElementMatcherSimpleCI() };
+        String[] probes = { "Title", "title", "TITLE", "menu", "MENU", "box", "BOX" };
+        SymbolTable symbols = new SymbolTable();
+        symbols.add("title");
+        symbols.add("menu");
+        
+        Locale locale = Locale.getDefault();
+        Locale.setDefault(new Locale("tr", "TR"));
+        try {
+            DOMSource ds = new DOMSource(new ByteArrayInputStream(html.getBytes("UTF-8")));
+            Document doc = ds.parse();
+            Element div = (Element) doc.getElementsByTagName("div").item(0);
+            for (ElementMatcher matcher : matchers)
+            {
+                String msg = matcher.getClass().getSimpleName();
+                boolean ci = (matcher instanceof ElementMatcherSafeCI || matcher instanceof ElementMatcherSimpleCI);
+                assertEquals(msg + " classes", ci ? Arrays.asList("title", "menu", "box") : Arrays.asList("Title", "menu", "BOX"),
+                        new ArrayList<String>(matcher.elementClasses(div)));
+                assertEquals(msg + " folded class", ci, matcher.matchesClass(div, "TITLE"));
+                ElementMatcherCached[] cachedMatchers = { ElementMatcherCached.create(matcher),
+                        ElementMatcherCached.create(matcher, new SymbolTable[] { symbols }) };
+                for (ElementMatcherCached cached : cachedMatchers)
+                {
+                    assertEquals(msg + " cached classes", new ArrayList<String>(matcher.elementClasses(div)),
+                            new ArrayList<String>(cached.elementClasses(div)));
+                    for (String probe : probes)
+                        assertEquals(msg + " class " + probe, matcher.matchesClass(div, probe), cached.matchesClass(div, probe));
+                }
+            }
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+    
     private void checkMatchersOnFile(String file, TermColor[] exXHTML, TermColor[] exHTMLStd, TermColor[] exHTMLQuirks, String msg) throws SAXException, IOException
     {
         checkDocument(file, new ElementMatcherSafeCS(), exXHTML, "XHTML matcher safe/" + msg);
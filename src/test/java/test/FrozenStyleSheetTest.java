@@ -0,0 +1,225 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.xml.sax.SAXException;
+
+import cz.vutbr.web.css.CSSException;
+import cz.vutbr.web.css.CSSFactory;
+import cz.vutbr.web.css.CombinedSelector;
+import cz.vutbr.web.css.Declaration;
+import cz.vutbr.web.css.MediaSpec;
+import cz.vutbr.web.css.RuleMedia;
+import cz.vutbr.web.css.RuleSet;
+import cz.vutbr.web.css.Selector;
+import cz.vutbr.web.css.StyleSheet;
+import cz.vutbr.web.css.Term;
+import cz.vutbr.web.css.TermFunction;
+import cz.vutbr.web.css.TermLength;
+import cz.vutbr.web.css.TermList;
+import cz.vutbr.web.domassign.Analyzer;
+import cz.vutbr.web.domassign.StyleMap;
+import cz.vutbr.web.domassign.StylingEngine;
+
+/**
+ * Checks that the frozen style sheets cannot be modified and that they produce the same styles
+ * as the mutable ones.
+ */
+public class FrozenStyleSheetTest
+{
+    private static final Logger log = LoggerFactory.getLogger(FrozenStyleSheetTest.class);
+
+    private static final MediaSpec MEDIA = new MediaSpec("screen");
+
+    private static final String SHEET = "p { padding: -1em 2px; margin: -3px; color: rgb(10, 20, 30); }\n"
+            + "div, span.x > em { clip: rect(1px, 2px, 3px, 4px); font-family: \"Times New Roman\", serif; }\n"
+            + "@media screen and (min-width: 100px) { a { color: red !important; } }\n"
+            + "@page :first { margin: 1cm; }";
+
+    @BeforeClass
+    public static void init()
+    {
+        log.info("\n\n\n == FrozenStyleSheetTest test at {} == \n\n\n", new Date());
+    }
+
+    @Test
+    public void immutable() throws IOException, CSSException
+    {
+        StyleSheet sheet = CSSFactory.parseString(SHEET, null);
+        String before = sheet.toString();
+        assertFalse(sheet.isFrozen());
+        assertTrue(sheet == sheet.freeze());
+        assertTrue(sheet.isFrozen());
+        assertEquals(before, sheet.toString());
+
+        RuleSet rule = (RuleSet) sheet.get(0);
+        Declaration decl = rule.get(0);
+        assertTrue(rule.isFrozen());
+        assertTrue(decl.isFrozen());
+        assertTrue(rule.getSelectors()[0].isFrozen());
+        assertTrue(rule.getSelectors()[0].get(0).isFrozen());
+        CombinedSelector first = rule.getSelectors()[0];
+        rule.getSelectors()[0] = null;
+        assertTrue(first == rule.getSelectors()[0]);
+        RuleMedia media = (RuleMedia) sheet.get(2);
+        assertTrue(media.getMediaQueries().get(0).isFrozen());
+        assertTrue(media.get(0).isFrozen());
+        TermFunction rect = (TermFunction) ((RuleSet) sheet.get(1)).get(0).get(0);
+        assertTrue(rect.isFrozen());
+
+        current = sheet;
+        expectFrozen(new Runnable() { public void run() { sheet().add(sheet().get(0)); } });
+        expectFrozen(new Runnable() { public void run() { sheet().remove(0); } });
+        expectFrozen(new Runnable() { public void run() { sheet().clear(); } });
+        expectFrozen(new Runnable() { public void run() { sheet().unlock(); } });
+        expectFrozen(new Runnable() { public void run() { sheet().setOrigin(StyleSheet.Origin.AGENT); } });
+        expectFrozen(new Runnable() { public void run() { rule().remove(0); } });
+        expectFrozen(new Runnable() { public void run() { rule().setSelectors(new ArrayList<CombinedSelector>()); } });
+        expectFrozen(new Runnable() { public void run() { decl().add(decl().get(0)); } });
+        expectFrozen(new Runnable() { public void run() { decl().setProperty("margin"); } });
+        expectFrozen(new Runnable() { public void run() { decl().setImportant(true); } });
+        expectFrozen(new Runnable() { public void run() { decl().iterator().remove(); } });
+        expectFrozen(new Runnable() { public void run() { function().remove(0); } });
+        expectFrozen(new Runnable() { public void run() { function().setFunctionName("inset"); } });
+        expectFrozen(new Runnable() { public void run() { mediaRule().getMediaQueries().clear(); } });
+        expectFrozen(new Runnable() { public void run() { ((Selector.ElementName) selector(0, 0).get(0).get(0)).setName("div"); } });
+        expectFrozen(new Runnable() { public void run() { ((Selector.ElementClass) selector(1, 1).get(0).get(1)).setClassName("y"); } });
+        expectFrozen(new Runnable() { public void run() { decl().get(0).setOperator(Term.Operator.COMMA); } });
+        expectFrozen(new Runnable() { public void run() { ((TermLength) decl().get(0)).setValue(1.0f); } });
+        expectFrozen(new Runnable() { public void run() { ((TermLength) decl().get(0)).setUnit(TermLength.Unit.px); } });
+        expectFrozen(new Runnable() { public void run() { function().get(0).setOperator(null); } });
+        expectFrozen(new Runnable() { public void run() { ((RuleSet) mediaRule().get(0)).get(0).get(0).setOperator(Term.Operator.SPACE); } });
+        assertEquals(before, sheet.toString());
+        //the named colors are not shared with the other style sheets
+        assertTrue(((RuleSet) media.get(0)).get(0).get(0).isFrozen());
+        assertFalse(CSSFactory.getTermFactory().createColor(CSSFactory.getTermFactory().createIdent("red")).isFrozen());
+
+        //a copy of a frozen term list may be modified
+        TermList copy = (TermList) rect.shallowClone();
+        assertFalse(copy.isFrozen());
+        copy.remove(0);
+        Term<?> term = decl.get(0).shallowClone();
+        assertFalse(term.isFrozen());
+        term.setOperator(Term.Operator.COMMA);
+        assertEquals(before, sheet.toString());
+    }
+
+    @Test
+    public void sameStyles() throws SAXException, IOException, CSSException
+    {
+        for (String name : new String[] { "/simple/pseudo.html", "/simple/selectors.html", "/advanced/domassign.html" })
+        {
+            Document doc = parse(name);
+            StyleSheet mutable = CSSFactory.getUsedStyles(doc, null, getClass().getResource(name), MEDIA);
+            StyleSheet frozen = CSSFactory.getUsedStyles(doc, null, getClass().getResource(name), MEDIA);
+            frozen.freeze();
+            String before = frozen.toString();
+            assertEquals(name, StylesUtil.describe(doc, new Analyzer(mutable).evaluateDOM(doc, MEDIA, true)),
+                    StylesUtil.describe(doc, new Analyzer(frozen).evaluateDOM(doc, MEDIA, true)));
+            assertEquals(name, before, frozen.toString());
+        }
+
+        //the negative values are truncated without modifying the frozen terms
+        Document doc = parse("/simple/pseudo.html");
+        StyleSheet mutable = CSSFactory.parseString(SHEET, null);
+        StyleSheet frozen = CSSFactory.parseString(SHEET, null);
+        frozen.freeze();
+        String before = frozen.toString();
+        assertEquals(StylesUtil.describe(doc, new Analyzer(mutable).evaluateDOM(doc, MEDIA, true)),
+                StylesUtil.describe(doc, new Analyzer(frozen).evaluateDOM(doc, MEDIA, true)));
+        assertEquals(before, frozen.toString());
+    }
+
+    @Test
+    public void sharedByThreads() throws SAXException, IOException, InterruptedException
+    {
+        final String name = "/advanced/domassign.html";
+        Document doc = parse(name);
+        StyleSheet sheet = CSSFactory.getUsedStyles(doc, null, getClass().getResource(name), MEDIA);
+        sheet.freeze();
+
+        List<Document> docs = new ArrayList<Document>();
+        List<List<String>> expected = new ArrayList<List<String>>();
+        for (int i = 0; i < 12; i++)
+            docs.add(parse(name));
+        for (Document d : docs)
+            expected.add(StylesUtil.describe(d, new Analyzer(sheet).evaluateDOM(d, MEDIA, true)));
+
+        StylingEngine engine = new StylingEngine(Collections.singletonList(sheet), MEDIA);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<StyleMap> styles = engine.styleAll(docs, executor);
+            for (int i = 0; i < docs.size(); i++)
+                assertEquals("Document " + i, expected.get(i), StylesUtil.describe(docs.get(i), styles.get(i)));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    //=========================================================================================
+
+    private StyleSheet current;
+
+    private StyleSheet sheet()
+    {
+        return current;
+    }
+
+    private RuleSet rule()
+    {
+        return (RuleSet) current.get(0);
+    }
+
+    private CombinedSelector selector(int rule, int index)
+    {
+        return ((RuleSet) current.get(rule)).getSelectors()[index];
+    }
+
+    private Declaration decl()
+    {
+        return rule().get(0);
+    }
+
+    private TermFunction function()
+    {
+        return (TermFunction) ((RuleSet) current.get(1)).get(0).get(0);
+    }
+
+    private RuleMedia mediaRule()
+    {
+        return (RuleMedia) current.get(2);
+    }
+
+    private static void expectFrozen(Runnable action)
+    {
+        try {
+            action.run();
+            fail("Frozen style sheet modified");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    private Document parse(String name) throws SAXException, IOException
+    {
+        DOMSource ds = new DOMSource(getClass().getResourceAsStream(name));
+        return ds.parse();
+    }
+
+}
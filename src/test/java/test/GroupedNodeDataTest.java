@@ -0,0 +1,117 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.Date;
+
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import cz.vutbr.web.css.CSSException;
+import cz.vutbr.web.css.CSSFactory;
+import cz.vutbr.web.css.Declaration;
+import cz.vutbr.web.css.NodeData;
+import cz.vutbr.web.css.RuleSet;
+import cz.vutbr.web.css.Selector.PseudoDeclaration;
+import cz.vutbr.web.css.StyleSheet;
+import cz.vutbr.web.domassign.Analyzer;
+import cz.vutbr.web.domassign.GroupedNodeData;
+import cz.vutbr.web.domassign.SingleMapNodeData;
+import cz.vutbr.web.domassign.StyleMap;
+
+public class GroupedNodeDataTest
+{
+    private static final Logger log = LoggerFactory.getLogger(GroupedNodeDataTest.class);
+
+    @BeforeClass
+    public static void init()
+    {
+        log.info("\n\n\n == GroupedNodeDataTest test at {} == \n\n\n", new Date());
+    }
+
+    @After
+    public void restore()
+    {
+        CSSFactory.registerNodeDataInstance(SingleMapNodeData.class);
+    }
+
+    @Test
+    public void sameAsSingleMap() throws SAXException, IOException
+    {
+        compare("/advanced/inherit.html");
+        compare("/advanced/style.html");
+        compare("/advanced/domassign.html");
+        compare("/simple/selectors.html");
+    }
+
+    @Test
+    public void copyOnWrite() throws IOException, CSSException
+    {
+        StyleSheet sheet = CSSFactory.parseString("p { color: red; font-size: 10px; margin-top: 1em; }"
+                + "p { color: blue; font-size: inherit; }", null);
+        RuleSet first = (RuleSet) sheet.get(0);
+        RuleSet second = (RuleSet) sheet.get(1);
+
+        NodeData parent = new GroupedNodeData();
+        for (Declaration d : first)
+            parent.push(d);
+        parent.concretize();
+
+        NodeData child1 = new GroupedNodeData().inheritFrom(parent).concretize();
+        NodeData child2 = new GroupedNodeData();
+        for (Declaration d : second)
+            child2.push(d);
+        child2.inheritFrom(parent).concretize();
+        assertEquals("Inherited color", "#ff0000", child1.getAsString("color", true));
+        assertEquals("Own color", "#0000ff", child2.getAsString("color", true));
+        assertEquals("Forced inheritance", "10px", child2.getAsString("font-size", true));
+        assertEquals("Not inherited", null, child1.getAsString("margin-top", true));
+
+        //modifying the parent or a child does not influence the others
+        parent.push(second.get(0));
+        child1.push(second.get(0));
+        assertEquals("Parent modified", "#0000ff", parent.getAsString("color", true));
+        assertEquals("Child modified", "#0000ff", child1.getAsString("color", true));
+        NodeData child3 = new GroupedNodeData().inheritFrom(child2).concretize();
+        assertEquals("Sibling not modified", "#0000ff", child2.getAsString("color", true));
+        assertEquals("Grandchild", "#0000ff", child3.getAsString("color", true));
+        assertEquals("Not inherited", null, child3.getAsString("font-size", true));
+    }
+
+    //=========================================================================================
+
+    private void compare(String resource) throws SAXException, IOException
+    {
+        DOMSource ds = new DOMSource(getClass().getResourceAsStream(resource));
+        Document doc = ds.parse();
+        StyleSheet style = CSSFactory.getUsedStyles(doc, null, getClass().getResource(resource), "screen");
+
+        CSSFactory.registerNodeDataInstance(SingleMapNodeData.class);
+        StyleMap expected = new Analyzer(style).evaluateDOM(doc, "screen", true);
+        CSSFactory.registerNodeDataInstance(GroupedNodeData.class);
+        StyleMap styles = new Analyzer(style).evaluateDOM(doc, "screen", true);
+
+        NodeList all = doc.getElementsByTagName("*");
+        for (int i = 0; i < all.getLength(); i++)
+        {
+            Element e = (Element) all.item(i);
+            String name = resource + ": " + e.getNodeName() + "#" + e.getAttribute("id");
+            assertEquals("Style of " + name, expected.get(e).toString(), styles.get(e).toString());
+            assertEquals("Properties of " + name, expected.get(e).getPropertyNames().size(),
+                    styles.get(e).getPropertyNames().size());
+            assertEquals("Pseudo elements of " + name, expected.pseudoSet(e), styles.pseudoSet(e));
+            for (PseudoDeclaration pseudo : expected.pseudoSet(e))
+                assertEquals("Pseudo style of " + name,
+                        expected.get(e, pseudo).toString(), styles.get(e, pseudo).toString());
+        }
+    }
+
+}
@@ -0,0 +1,220 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Set;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import cz.vutbr.web.css.CSSException;
+import cz.vutbr.web.css.CSSFactory;
+import cz.vutbr.web.css.NodeData;
+import cz.vutbr.web.css.RuleBlock;
+import cz.vutbr.web.css.Selector.PseudoDeclaration;
+import cz.vutbr.web.css.StyleSheet;
+import cz.vutbr.web.domassign.Analyzer;
+import cz.vutbr.web.domassign.DOMMutation;
+import cz.vutbr.web.domassign.IncrementalAnalyzer;
+import cz.vutbr.web.domassign.StyleMap;
+
+public class IncrementalAnalyzerTest
+{
+    private static final Logger log = LoggerFactory.getLogger(IncrementalAnalyzerTest.class);
+
+    private static final String HTML = "<html><body>"
+            + "<div id=\"main\" class=\"box\"><p id=\"p1\">One</p><p id=\"p2\">Two</p><span id=\"s1\">x</span></div>"
+            + "<div id=\"other\"><p id=\"p3\">Three</p></div>"
+            + "</body></html>";
+
+    private static final String CSS = "p { color: black; }"
+            + ".box { font-size: 10px; }"
+            + ".active p { color: red; }"
+            + ".active > span { color: green; }"
+            + "#p1.hl + p { background-color: yellow; }"
+            + "p:first-child { font-weight: bold; }"
+            + "p:empty { border-top-style: solid; }"
+            + "[title] { text-indent: 5px; }"
+            + "div:after { content: 'x'; }";
+
+    private static StyleSheet sheet;
+
+    @BeforeClass
+    public static void init() throws IOException, CSSException
+    {
+        log.info("\n\n\n == IncrementalAnalyzerTest test at {} == \n\n\n", new Date());
+        sheet = CSSFactory.parseString(CSS, null);
+    }
+
+    @Test
+    public void classChangeAffectsDescendants() throws SAXException, IOException
+    {
+        Document doc = parse();
+        ElementMap elements = new ElementMap(doc);
+        IncrementalAnalyzer analyzer = new IncrementalAnalyzer(sheet);
+        StyleMap styles = analyzer.evaluateDOM(doc, "screen", true);
+
+        Element main = elements.getElementById("main");
+        String old = main.getAttribute("class");
+        main.setAttribute("class", "box active");
+        Set<Element> changed = analyzer.restyle(Collections.singletonList(DOMMutation.attributeChanged(main, "class", old)));
+
+        assertTrue("p1 restyled", changed.contains(elements.getElementById("p1")));
+        assertTrue("s1 restyled", changed.contains(elements.getElementById("s1")));
+        assertFalse("p3 not restyled", changed.contains(elements.getElementById("p3")));
+        assertEquals("p1 is red", "#ff0000", styles.get(elements.getElementById("p1")).getAsString("color", true));
+        assertSameStyles(doc, styles);
+    }
+
+    @Test
+    public void classChangeAffectsSiblings() throws SAXException, IOException
+    {
+        Document doc = parse();
+        ElementMap elements = new ElementMap(doc);
+        IncrementalAnalyzer analyzer = new IncrementalAnalyzer(sheet);
+        StyleMap styles = analyzer.evaluateDOM(doc, "screen", true);
+
+        Element p1 = elements.getElementById("p1");
+        p1.setAttribute("class", "hl");
+        Set<Element> changed = analyzer.restyle(Collections.singletonList(DOMMutation.attributeChanged(p1, "class", null)));
+
+        assertTrue("p2 restyled", changed.contains(elements.getElementById("p2")));
+        assertNotNull("p2 has a background", styles.get(elements.getElementById("p2")).getValue("background-color", true));
+        assertSameStyles(doc, styles);
+    }
+
+    @Test
+    public void unrelatedAttributeChange() throws SAXException, IOException
+    {
+        Document doc = parse();
+        ElementMap elements = new ElementMap(doc);
+        IncrementalAnalyzer analyzer = new IncrementalAnalyzer(sheet);
+        StyleMap styles = analyzer.evaluateDOM(doc, "screen", true);
+
+        Element p3 = elements.getElementById("p3");
+        p3.setAttribute("lang", "en");
+        Set<Element> changed = analyzer.restyle(Collections.singletonList(DOMMutation.attributeChanged(p3, "lang", null)));
+        assertTrue("nothing restyled", changed.isEmpty());
+
+        p3.setAttribute("title", "Three");
+        changed = analyzer.restyle(Collections.singletonList(DOMMutation.attributeChanged(p3, "title", null)));
+        assertEquals("p3 restyled", Collections.singleton(p3), changed);
+        assertSameStyles(doc, styles);
+    }
+
+    @Test
+    public void insertAndRemove() throws SAXException, IOException
+    {
+        Document doc = parse();
+        ElementMap elements = new ElementMap(doc);
+        IncrementalAnalyzer analyzer = new IncrementalAnalyzer(sheet);
+        StyleMap styles = analyzer.evaluateDOM(doc, "screen", true);
+        final int indexed = styles.getIndex().count();
+
+        //insert a new first child
+        Element other = elements.getElementById("other");
+        Element p3 = elements.getElementById("p3");
+        Element np = doc.createElement("p");
+        np.setAttribute("id", "p0");
+        other.insertBefore(np, p3);
+        Set<Element> changed = analyzer.restyle(Collections.singletonList(DOMMutation.elementInserted(np)));
+        assertTrue("new element styled", changed.contains(np));
+        assertNotNull("new element has a style", styles.get(np));
+        assertSameStyles(doc, styles);
+
+        //remove it again
+        other.removeChild(np);
+        analyzer.restyle(Arrays.asList(DOMMutation.elementRemoved(other, np)));
+        assertNull("removed element has no style", styles.get(np));
+        assertEquals("removed element not indexed", -1, styles.getIndex().indexOf(np));
+        assertEquals("indexed elements", indexed, styles.getIndex().count());
+        assertSameStyles(doc, styles);
+    }
+
+    @Test
+    public void addAndRemoveRules() throws SAXException, IOException, CSSException
+    {
+        Document doc = parse();
+        ElementMap elements = new ElementMap(doc);
+        StyleSheet own = CSSFactory.parseString(CSS, null);
+        IncrementalAnalyzer analyzer = new IncrementalAnalyzer(own);
+        StyleMap styles = analyzer.evaluateDOM(doc, "screen", true);
+
+        //a new rule set
+        RuleBlock<?> added = CSSFactory.parseString("#other p { color: blue; }", null).get(0);
+        Set<Element> changed = analyzer.addRule(added);
+        assertEquals("p3 restyled", Collections.singleton(elements.getElementById("p3")), changed);
+        assertEquals("p3 is blue", "#0000ff", styles.get(elements.getElementById("p3")).getAsString("color", true));
+        assertSameStyles(doc, styles, own);
+
+        //a new media rule that overrides the previous rules
+        RuleBlock<?> media = CSSFactory.parseString("@media screen { #other > p { color: lime; } div { color: gray; } }", null).get(0);
+        changed = analyzer.addRule(media);
+        assertTrue("p3 restyled", changed.contains(elements.getElementById("p3")));
+        assertEquals("p3 is lime", "#00ff00", styles.get(elements.getElementById("p3")).getAsString("color", true));
+        assertSameStyles(doc, styles, own);
+
+        //remove the rules again
+        analyzer.removeRule(media);
+        assertEquals("p3 is blue", "#0000ff", styles.get(elements.getElementById("p3")).getAsString("color", true));
+        assertSameStyles(doc, styles, own);
+        analyzer.removeRule(own.get(0));
+        assertSameStyles(doc, styles, own);
+        analyzer.removeRule(added);
+        assertEquals("p3 is not colored", null, styles.get(elements.getElementById("p3")).getValue("color", true));
+        assertSameStyles(doc, styles, own);
+    }
+
+    //=========================================================================================
+
+    private Document parse() throws SAXException, IOException
+    {
+        DOMSource ds = new DOMSource(new ByteArrayInputStream(HTML.getBytes("UTF-8")));
+        return ds.parse();
+    }
+
+    /**
+     * Compares the incrementally updated styles with a complete evaluation of the DOM.
+     */
+    private void assertSameStyles(Document doc, StyleMap styles)
+    {
+        assertSameStyles(doc, styles, sheet);
+    }
+
+    private void assertSameStyles(Document doc, StyleMap styles, StyleSheet sheet)
+    {
+        StyleMap full = new Analyzer(sheet).evaluateDOM(doc, "screen", true);
+        NodeList all = doc.getElementsByTagName("*");
+        for (int i = 0; i < all.getLength(); i++)
+        {
+            Element e = (Element) all.item(i);
+            assertEquals("Style of " + e.getNodeName() + "#" + e.getAttribute("id"),
+                    asString(full.get(e)), asString(styles.get(e)));
+            assertEquals("Pseudo elements of " + e.getNodeName(), full.pseudoSet(e), styles.pseudoSet(e));
+            for (PseudoDeclaration pseudo : full.pseudoSet(e))
+                assertEquals("Pseudo style of " + e.getNodeName(),
+                        asString(full.get(e, pseudo)), asString(styles.get(e, pseudo)));
+        }
+    }
+
+    private String asString(NodeData data)
+    {
+        return (data == null) ? null : data.toString();
+    }
+
+}
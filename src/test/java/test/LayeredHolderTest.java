@@ -0,0 +1,138 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.xml.sax.SAXException;
+
+import cz.vutbr.web.css.CSSException;
+import cz.vutbr.web.css.CSSFactory;
+import cz.vutbr.web.css.MediaSpec;
+import cz.vutbr.web.css.RuleBlock;
+import cz.vutbr.web.css.RuleSet;
+import cz.vutbr.web.css.StyleSheet;
+import cz.vutbr.web.domassign.Analyzer;
+import cz.vutbr.web.domassign.Analyzer.Holder;
+import cz.vutbr.web.domassign.AnalyzerUtil;
+import cz.vutbr.web.domassign.IncrementalAnalyzer;
+import cz.vutbr.web.domassign.StyleMap;
+
+/**
+ * Checks that the styles computed using the rules composed of pre-classified layers are the same
+ * as the styles computed for all the style sheets classified together.
+ */
+public class LayeredHolderTest
+{
+    private static final Logger log = LoggerFactory.getLogger(LayeredHolderTest.class);
+
+    private static final String[] DOCUMENTS = { "/simple/pseudo.html", "/simple/selectors.html",
+        "/advanced/domassign.html" };
+
+    private static final String AGENT = "html, body, div, p { display: block; } p { margin: 1em 0; color: black; } "
+            + "a:link { color: blue; } h1 { font-size: 2em; } li:first-child { font-weight: bold; }";
+
+    private static final String SITE = "p { color: gray; } div p { color: maroon; } .red, #main { color: red; } "
+            + "@media screen { h1 { font-size: 3em; } } p::before { content: \"> \"; }";
+
+    private static final MediaSpec MEDIA = new MediaSpec("screen");
+
+    @BeforeClass
+    public static void init()
+    {
+        log.info("\n\n\n == LayeredHolderTest test at {} == \n\n\n", new Date());
+    }
+
+    @Test
+    public void sameAsFlat() throws SAXException, IOException, CSSException
+    {
+        compareDocuments(false);
+    }
+
+    @Test
+    public void sameAsFlatSnapshot() throws SAXException, IOException, CSSException
+    {
+        compareDocuments(true);
+    }
+
+    @Test
+    public void layersNotCopied() throws IOException, CSSException
+    {
+        Holder agent = AnalyzerUtil.getClassifiedLayer(CSSFactory.parseString(AGENT, null), MEDIA);
+        Holder site = AnalyzerUtil.getClassifiedLayer(CSSFactory.parseString(SITE, null), MEDIA);
+        Holder own = new Holder();
+        Holder layered = Holder.layered(Arrays.asList(agent, site, own));
+        assertTrue(layered.isLayered());
+        assertSame(agent, layered.getLayers().get(0));
+        assertSame(own, layered.getLayers().get(2));
+        assertEquals(agent.getAllRules().size() + site.getAllRules().size(), layered.getAllRules().size());
+
+        // the nested layers are flattened
+        Holder nested = Holder.layered(Arrays.asList(Holder.layered(Arrays.asList(agent, site)), own));
+        assertEquals(3, nested.getLayers().size());
+
+        try {
+            agent.remove((RuleSet) CSSFactory.parseString(AGENT, null).get(0));
+            fail("Frozen layer modified");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void incrementalUpdate() throws SAXException, IOException, CSSException
+    {
+        DOMSource ds = new DOMSource(getClass().getResourceAsStream("/advanced/domassign.html"));
+        Document doc = ds.parse();
+        StyleSheet agent = CSSFactory.parseString(AGENT, null);
+        StyleSheet site = CSSFactory.parseString(SITE, null);
+        StyleSheet own = CSSFactory.getUsedStyles(doc, null, getClass().getResource("/advanced/domassign.html"), MEDIA);
+
+        IncrementalAnalyzer analyzer = new IncrementalAnalyzer(own);
+        analyzer.setBaseLayers(Arrays.asList(AnalyzerUtil.getClassifiedLayer(agent, MEDIA),
+                AnalyzerUtil.getClassifiedLayer(site, MEDIA)));
+        analyzer.evaluateDOM(doc, MEDIA, true);
+        RuleBlock<?> added = CSSFactory.parseString("p { color: navy; }", null).get(0);
+        analyzer.addRule(added);
+        StylesUtil.assertSameStyles("added", doc, new Analyzer(Arrays.asList(agent, site, own)).evaluateDOM(doc, MEDIA, true), analyzer.getStyleMap());
+        analyzer.removeRule(added);
+        StylesUtil.assertSameStyles("removed", doc, new Analyzer(Arrays.asList(agent, site, own)).evaluateDOM(doc, MEDIA, true), analyzer.getStyleMap());
+    }
+
+    private void compareDocuments(boolean snapshot) throws SAXException, IOException, CSSException
+    {
+        final StyleSheet agent = CSSFactory.parseString(AGENT, null);
+        final StyleSheet site = CSSFactory.parseString(SITE, null);
+        final List<Holder> layers = Arrays.asList(AnalyzerUtil.getClassifiedLayer(agent, MEDIA),
+                AnalyzerUtil.getClassifiedLayer(site, MEDIA));
+        for (String name : DOCUMENTS)
+        {
+            DOMSource ds = new DOMSource(getClass().getResourceAsStream(name));
+            Document doc = ds.parse();
+            StyleSheet own = CSSFactory.getUsedStyles(doc, null, getClass().getResource(name), MEDIA);
+
+            List<StyleSheet> all = new ArrayList<StyleSheet>(Arrays.asList(agent, site, own));
+            StyleMap expected = new Analyzer(all).evaluateDOM(doc, MEDIA, true);
+
+            Analyzer analyzer = new Analyzer(own);
+            analyzer.setSnapshotMatching(snapshot);
+            analyzer.setBaseLayers(layers);
+            StylesUtil.assertSameStyles(name, doc, expected, analyzer.evaluateDOM(doc, MEDIA, true));
+            // the layers may be reused
+            StylesUtil.assertSameStyles(name + " again", doc, expected, analyzer.evaluateDOM(doc, MEDIA, true));
+        }
+    }
+
+}
@@ -0,0 +1,116 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Date;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import cz.vutbr.web.css.CSSException;
+import cz.vutbr.web.css.CSSFactory;
+import cz.vutbr.web.css.NodeData;
+import cz.vutbr.web.css.Selector.PseudoDeclaration;
+import cz.vutbr.web.css.StyleSheet;
+import cz.vutbr.web.domassign.Analyzer;
+import cz.vutbr.web.domassign.LazyStyleMap;
+import cz.vutbr.web.domassign.StyleMap;
+
+public class LazyStyleMapTest
+{
+    private static final Logger log = LoggerFactory.getLogger(LazyStyleMapTest.class);
+
+    private static final String HTML = "<html><body>"
+            + "<div id=\"main\" class=\"box\"><p id=\"p1\">One <em id=\"e1\">em</em></p><p id=\"p2\">Two</p></div>"
+            + "<div id=\"other\"><p id=\"p3\">Three</p></div>"
+            + "</body></html>";
+
+    private static final String CSS = "body { color: gray; font-size: 20px; }"
+            + ".box { color: blue; }"
+            + "p { font-size: 50%; }"
+            + ".box p + p { color: red; }"
+            + "p:first-child { font-weight: bold; }"
+            + "em { text-indent: 2em; }"
+            + "div:before { content: 'x'; }";
+
+    private static StyleSheet sheet;
+
+    @BeforeClass
+    public static void init() throws IOException, CSSException
+    {
+        log.info("\n\n\n == LazyStyleMapTest test at {} == \n\n\n", new Date());
+        sheet = CSSFactory.parseString(CSS, null);
+    }
+
+    @Test
+    public void sameAsEager() throws SAXException, IOException
+    {
+        Document doc = parse();
+        assertSameStyles(doc, new Analyzer(sheet).evaluateDOM(doc, "screen", true),
+                new Analyzer(sheet).evaluateDOMLazily(doc, "screen", true));
+        assertSameStyles(doc, new Analyzer(sheet).evaluateDOM(doc, "screen", false),
+                new Analyzer(sheet).evaluateDOMLazily(doc, "screen", false));
+    }
+
+    @Test
+    public void computesOnlyRequired() throws SAXException, IOException
+    {
+        Document doc = parse();
+        ElementMap elements = new ElementMap(doc);
+        StyleMap styles = new Analyzer(sheet).evaluateDOMLazily(doc, "screen", true);
+        assertTrue("Lazy map created", styles instanceof LazyStyleMap);
+        LazyStyleMap lazy = (LazyStyleMap) styles;
+        assertEquals("Nothing computed", 0, lazy.size());
+
+        Element em = elements.getElementById("e1");
+        NodeData data = lazy.get(em);
+        assertEquals("Inherited color", "#0000ff", data.getAsString("color", true));
+        //html, body, div, p, em
+        assertEquals("Only the ancestors computed", 5, lazy.size());
+        assertTrue(lazy.isComputed(elements.getElementById("main")));
+        assertFalse(lazy.isComputed(elements.getElementById("p2")));
+        assertFalse(lazy.isComputed(elements.getElementById("other")));
+        assertTrue("Memoized", data == lazy.get(em));
+    }
+
+    //=========================================================================================
+
+    private Document parse() throws SAXException, IOException
+    {
+        DOMSource ds = new DOMSource(new ByteArrayInputStream(HTML.getBytes("UTF-8")));
+        return ds.parse();
+    }
+
+    private void assertSameStyles(Document doc, StyleMap expected, StyleMap styles)
+    {
+        NodeList all = doc.getElementsByTagName("*");
+        //access the elements in the reverse document order
+        for (int i = all.getLength() - 1; i >= 0; i--)
+        {
+            Element e = (Element) all.item(i);
+            assertEquals("Style of " + e.getNodeName() + "#" + e.getAttribute("id"),
+                    asString(expected.get(e)), asString(styles.get(e)));
+            assertEquals("Pseudo elements of " + e.getNodeName(), expected.pseudoSet(e), styles.pseudoSet(e));
+            for (PseudoDeclaration pseudo : expected.pseudoSet(e))
+                assertEquals("Pseudo style of " + e.getNodeName(),
+                        asString(expected.get(e, pseudo)), asString(styles.get(e, pseudo)));
+        }
+        assertEquals("Number of elements", expected.size(), styles.size());
+    }
+
+    private String asString(NodeData data)
+    {
+        return (data == null) ? null : data.toString();
+    }
+
+}
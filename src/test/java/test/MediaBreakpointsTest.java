@@ -0,0 +1,121 @@
+package test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Date;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.xml.sax.SAXException;
+
+import cz.vutbr.web.css.CSSException;
+import cz.vutbr.web.css.CSSFactory;
+import cz.vutbr.web.css.MediaSpec;
+import cz.vutbr.web.css.RuleBlock;
+import cz.vutbr.web.css.StyleSheet;
+import cz.vutbr.web.domassign.Analyzer;
+import cz.vutbr.web.domassign.IncrementalAnalyzer;
+import cz.vutbr.web.domassign.MediaBreakpoints;
+import cz.vutbr.web.domassign.StyleMap;
+
+/**
+ * Checks the media breakpoint analysis and the reuse of the classified rules.
+ */
+public class MediaBreakpointsTest
+{
+    private static final Logger log = LoggerFactory.getLogger(MediaBreakpointsTest.class);
+
+    private static final String CSS = "p { color: red; } "
+            + "@media screen and (min-width: 600px) { p { color: green; } } "
+            + "@media screen and (max-width: 40em) { div { color: blue; } } "
+            + "@media (min-height: 500px), print { h1 { color: gray; } } "
+            + "@media (min-device-width: 1000px) { span { color: lime; } }";
+
+    @BeforeClass
+    public static void init()
+    {
+        log.info("\n\n\n == MediaBreakpointsTest test at {} == \n\n\n", new Date());
+    }
+
+    @Test
+    public void breakpoints() throws IOException, CSSException
+    {
+        StyleSheet sheet = CSSFactory.parseString(CSS, null);
+        MediaBreakpoints bp = new MediaBreakpoints(Collections.singletonList(sheet));
+        assertArrayEquals(new float[] { 600, 640 }, bp.getWidthBreakpoints(), 0.0f);
+        assertArrayEquals(new float[] { 500 }, bp.getHeightBreakpoints(), 0.0f);
+        assertEquals(5, bp.getWidthIntervalCount());
+        assertEquals(0, bp.getWidthInterval(599));
+        assertEquals(1, bp.getWidthInterval(600));
+        assertEquals(2, bp.getWidthInterval(620));
+        assertEquals(3, bp.getWidthInterval(640));
+        assertEquals(4, bp.getWidthInterval(1920));
+        assertEquals(2, bp.getHeightInterval(800));
+    }
+
+    @Test
+    public void sharedClassification() throws IOException, CSSException
+    {
+        StyleSheet sheet = CSSFactory.parseString(CSS, null);
+        MediaBreakpoints bp = new MediaBreakpoints(Collections.singletonList(sheet));
+        assertSame(bp.getClassifiedRules(screen(360)), bp.getClassifiedRules(screen(500)));
+        assertSame(bp.getClassifiedRules(screen(700)), bp.getClassifiedRules(screen(1920)));
+        assertNotSame(bp.getClassifiedRules(screen(500)), bp.getClassifiedRules(screen(620)));
+        assertNotSame(bp.getClassifiedRules(screen(620)), bp.getClassifiedRules(screen(700)));
+        assertNotSame(bp.getClassifiedRules(screen(700)), bp.getClassifiedRules(new MediaSpec("print")));
+    }
+
+    @Test
+    public void widthSweep() throws SAXException, IOException, CSSException
+    {
+        DOMSource ds = new DOMSource(getClass().getResourceAsStream("/advanced/domassign.html"));
+        Document doc = ds.parse();
+        StyleSheet sheet = CSSFactory.parseString(CSS, null);
+
+        Analyzer cached = new Analyzer(sheet);
+        cached.setClassificationCaching(true);
+        for (int width = 300; width <= 1000; width += 20)
+        {
+            StyleMap expected = new Analyzer(sheet).evaluateDOM(doc, screen(width), true);
+            StylesUtil.assertSameStyles("width " + width, doc, expected, cached.evaluateDOM(doc, screen(width), true));
+        }
+    }
+
+    @Test
+    public void incrementalUpdate() throws SAXException, IOException, CSSException
+    {
+        DOMSource ds = new DOMSource(getClass().getResourceAsStream("/advanced/domassign.html"));
+        Document doc = ds.parse();
+        StyleSheet sheet = CSSFactory.parseString(CSS, null);
+
+        IncrementalAnalyzer analyzer = new IncrementalAnalyzer(sheet);
+        analyzer.setClassificationCaching(true);
+        analyzer.evaluateDOM(doc, screen(700), true);
+        RuleBlock<?> added = CSSFactory.parseString("@media (max-width: 800px) { p { color: navy; } }", null).get(0);
+        analyzer.addRule(added);
+        StylesUtil.assertSameStyles("added", doc, new Analyzer(sheet).evaluateDOM(doc, screen(700), true), analyzer.getStyleMap());
+
+        // the cached classifications are not affected by the update
+        assertEquals(3, analyzer.getClassificationCache().getWidthBreakpoints().length);
+        StylesUtil.assertSameStyles("other width", doc, new Analyzer(sheet).evaluateDOM(doc, screen(900), true), analyzer.evaluateDOM(doc, screen(900), true));
+        analyzer.removeRule(added);
+        StylesUtil.assertSameStyles("removed", doc, new Analyzer(sheet).evaluateDOM(doc, screen(900), true), analyzer.getStyleMap());
+        StylesUtil.assertSameStyles("original", doc, new Analyzer(sheet).evaluateDOM(doc, screen(700), true), analyzer.evaluateDOM(doc, screen(700), true));
+    }
+
+    private static MediaSpec screen(float width)
+    {
+        MediaSpec spec = new MediaSpec("screen");
+        spec.setDimensions(width, 800);
+        return spec;
+    }
+
+}
@@ -0,0 +1,136 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import cz.vutbr.web.css.CSSException;
+import cz.vutbr.web.css.CSSFactory;
+import cz.vutbr.web.css.CSSProperty;
+import cz.vutbr.web.css.MediaSpec;
+import cz.vutbr.web.css.StyleSheet;
+import cz.vutbr.web.domassign.Analyzer;
+import cz.vutbr.web.domassign.StyleMap;
+
+/**
+ * Checks that the styles evaluated for several media at once are the same as the styles
+ * evaluated for the individual media.
+ */
+public class MultiMediaTest
+{
+    private static final Logger log = LoggerFactory.getLogger(MultiMediaTest.class);
+
+    private static final String[] DOCUMENTS = { "/simple/pseudo.html", "/simple/selectors.html",
+        "/advanced/domassign.html", "/media/media1.html" };
+
+    private static final String MEDIA_STYLE = "html { margin: 0; } p { margin: 1em; } "
+            + "@media screen and (max-width: 600px) { p { color: green; } div::before { content: \"narrow\"; } body { font-size: 12px; } } "
+            + "@media screen and (min-width: 601px) and (max-width: 1000px) { h1 { color: blue; } } "
+            + "@media screen and (min-width: 1024px) { body { font-size: 20px; } div { border: 1px solid red; } } "
+            + "@media print { body { color: black; font-size: 10pt; } p::after { content: \"print\"; } }";
+
+    @BeforeClass
+    public static void init()
+    {
+        log.info("\n\n\n == MultiMediaTest test at {} == \n\n\n", new Date());
+    }
+
+    @Test
+    public void sameAsSingleMedia() throws SAXException, IOException, CSSException
+    {
+        compareDocuments(false, true);
+    }
+
+    @Test
+    public void sameAsSingleMediaSnapshot() throws SAXException, IOException, CSSException
+    {
+        compareDocuments(true, true);
+    }
+
+    @Test
+    public void sameAsSingleMediaNoInheritance() throws SAXException, IOException, CSSException
+    {
+        compareDocuments(false, false);
+        compareDocuments(true, false);
+    }
+
+    @Test
+    public void sharedStyles() throws SAXException, IOException, CSSException
+    {
+        DOMSource ds = new DOMSource(getClass().getResourceAsStream("/advanced/domassign.html"));
+        Document doc = ds.parse();
+        List<StyleMap> styles = new Analyzer(getSheets(doc, "/advanced/domassign.html")).evaluateDOM(doc, createMedia(), true);
+        assertEquals(5, styles.size());
+
+        // 1280px and 1920px use the same rules
+        NodeList all = doc.getElementsByTagName("*");
+        for (int i = 0; i < all.getLength(); i++)
+        {
+            Element e = (Element) all.item(i);
+            assertSame(e.getNodeName(), styles.get(2).get(e), styles.get(3).get(e));
+        }
+
+        Element body = (Element) doc.getElementsByTagName("body").item(0);
+        assertEquals(CSSProperty.FontSize.length, styles.get(0).get(body).getProperty("font-size"));
+        assertEquals("12px", styles.get(0).get(body).getValue("font-size", true).toString());
+        assertEquals("20px", styles.get(2).get(body).getValue("font-size", true).toString());
+        assertEquals("10pt", styles.get(4).get(body).getValue("font-size", true).toString());
+    }
+
+    private void compareDocuments(boolean snapshot, boolean inherit) throws SAXException, IOException, CSSException
+    {
+        final List<MediaSpec> media = createMedia();
+        for (String name : DOCUMENTS)
+        {
+            DOMSource ds = new DOMSource(getClass().getResourceAsStream(name));
+            Document doc = ds.parse();
+            final List<StyleSheet> sheets = getSheets(doc, name);
+
+            Analyzer analyzer = new Analyzer(sheets);
+            analyzer.setSnapshotMatching(snapshot);
+            List<StyleMap> styles = analyzer.evaluateDOM(doc, media, inherit);
+
+            for (int m = 0; m < media.size(); m++)
+            {
+                StyleMap expected = new Analyzer(sheets).evaluateDOM(doc, media.get(m), inherit);
+                assertEquals(name + ": all elements styled", expected.size(), styles.get(m).size());
+                StylesUtil.assertSameStyles(name + " " + media.get(m), doc, expected, styles.get(m));
+            }
+        }
+    }
+
+    private List<StyleSheet> getSheets(Document doc, String name) throws IOException, CSSException
+    {
+        List<StyleSheet> sheets = new ArrayList<StyleSheet>();
+        sheets.add(CSSFactory.getUsedStyles(doc, null, getClass().getResource(name), "screen"));
+        sheets.add(CSSFactory.parseString(MEDIA_STYLE, null));
+        return sheets;
+    }
+
+    private List<MediaSpec> createMedia()
+    {
+        List<MediaSpec> media = new ArrayList<MediaSpec>();
+        for (int width : new int[] { 360, 768, 1280, 1920 })
+        {
+            MediaSpec spec = new MediaSpec("screen");
+            spec.setDimensions(width, 800);
+            media.add(spec);
+        }
+        media.add(new MediaSpec("print"));
+        return media;
+    }
+
+}
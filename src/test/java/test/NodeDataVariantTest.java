@@ -288,6 +288,14 @@ public class NodeDataVariantTest {
 		public NodeData concretize() {
 			return this;
 		}
+
+		public NodeData freeze() {
+			return this;
+		}
+
+		public boolean isFrozen() {
+			return false;
+		}
         
         @Override
         public Collection<String> getPropertyNames() {
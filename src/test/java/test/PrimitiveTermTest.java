@@ -0,0 +1,132 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Date;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import cz.vutbr.web.css.CSSException;
+import cz.vutbr.web.css.CSSFactory;
+import cz.vutbr.web.css.Declaration;
+import cz.vutbr.web.css.RuleSet;
+import cz.vutbr.web.css.StyleSheet;
+import cz.vutbr.web.css.TermFactory;
+import cz.vutbr.web.css.TermFloatValue;
+import cz.vutbr.web.css.TermInteger;
+import cz.vutbr.web.css.TermLength;
+import cz.vutbr.web.css.TermNumeric.Unit;
+import cz.vutbr.web.css.TermPercent;
+import cz.vutbr.web.css.TermTime;
+import cz.vutbr.web.csskit.TermFactoryImpl;
+
+/**
+ * Checks the primitive accessors of the numeric terms and their compatibility with the boxed values.
+ */
+public class PrimitiveTermTest
+{
+    private static final Logger log = LoggerFactory.getLogger(PrimitiveTermTest.class);
+
+    private static final TermFactory tf = CSSFactory.getTermFactory();
+
+    @BeforeClass
+    public static void init()
+    {
+        log.info("\n\n\n == PrimitiveTermTest test at {} == \n\n\n", new Date());
+    }
+
+    @Test
+    public void parsedValues() throws IOException, CSSException
+    {
+        StyleSheet sheet = CSSFactory.parseString("p { margin: -1.5em 20% 0 3px; z-index: 7; transition-duration: 0.25s; }", null);
+        RuleSet rule = (RuleSet) sheet.get(0);
+        Declaration margin = rule.get(0);
+        assertEquals(-1.5f, ((TermFloatValue) margin.get(0)).floatValue(), 0.0f);
+        assertEquals(Unit.em, ((TermLength) margin.get(0)).getUnit());
+        assertTrue(margin.get(1) instanceof TermPercent);
+        assertEquals(20.0f, ((TermPercent) margin.get(1)).floatValue(), 0.0f);
+        assertEquals(3.0f, ((TermFloatValue) margin.get(3)).floatValue(), 0.0f);
+        assertEquals(7, ((TermInteger) rule.get(1).get(0)).getIntValue());
+        assertEquals(0.25f, ((TermTime) rule.get(2).get(0)).floatValue(), 0.0f);
+    }
+
+    @Test
+    public void noBoxing() throws IOException
+    {
+        // a boxed float is always obtained using Float.valueOf(float); the descriptor of the method
+        // is only present in the class file when the factory calls it
+        InputStream is = TermFactoryImpl.class.getResourceAsStream("TermFactoryImpl.class");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            byte[] buf = new byte[4096];
+            for (int len; (len = is.read(buf)) != -1;)
+                bytes.write(buf, 0, len);
+        } finally {
+            is.close();
+        }
+        String content = new String(bytes.toByteArray(), "ISO-8859-1");
+        assertTrue("Class file read", content.contains("createDimension"));
+        assertFalse("The parsed values are not boxed", content.contains("(F)Ljava/lang/Float;"));
+
+        // the parsed lengths keep the primitive values
+        TermLength length = (TermLength) tf.createDimension("12.5px", 1);
+        assertEquals(12.5f, length.floatValue(), 0.0f);
+        assertEquals(Unit.px, length.getUnit());
+    }
+
+    @Test
+    public void boxedCompatibility()
+    {
+        TermLength primitive = tf.createLength(12.5f, Unit.px);
+        TermLength boxed = tf.createLength(Float.valueOf(12.5f), Unit.px);
+        assertEquals(Float.valueOf(12.5f), primitive.getValue());
+        assertEquals(boxed, primitive);
+        assertEquals(boxed.hashCode(), primitive.hashCode());
+        assertEquals("12.5px", primitive.toString());
+        assertTrue(!tf.createLength(12.0f, Unit.px).equals(primitive));
+
+        // no negative zeroes
+        assertEquals(tf.createLength(0.0f, Unit.px), tf.createLength(-0.0f, Unit.px));
+        assertEquals("0px", tf.createLength(-0.0f, Unit.px).toString());
+
+        TermPercent percent = tf.createPercent(50.0f);
+        assertEquals("50.0%", percent.toString());
+        assertEquals(Float.valueOf(50.0f), percent.getValue());
+
+        TermInteger integer = tf.createInteger(42);
+        assertEquals(42.0f, integer.floatValue(), 0.0f);
+        assertEquals("42", integer.toString());
+
+        TermLength empty = tf.createLength((Float) null);
+        assertNull(empty.getValue());
+        assertEquals(0.0f, empty.floatValue(), 0.0f);
+    }
+
+    @Test
+    public void negativeTime()
+    {
+        try {
+            tf.createTime(-1.0f);
+            fail("Negative time accepted");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            tf.createTime(1.0f).setValue(-2.0f);
+            fail("Negative time accepted");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+}
@@ -0,0 +1,95 @@
+package test;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import cz.vutbr.web.css.CSSFactory;
+import cz.vutbr.web.css.Declaration;
+import cz.vutbr.web.css.MediaSpec;
+import cz.vutbr.web.css.Selector.PseudoDeclaration;
+import cz.vutbr.web.css.StyleSheet;
+import cz.vutbr.web.domassign.Analyzer;
+import cz.vutbr.web.domassign.DeclarationMap;
+
+/**
+ * Reports the memory allocated when the declarations are assigned to all the elements of a document.
+ * The rules are classified once, only the assignment is measured in the steady state. This is a profiling
+ * entry point, not a unit test: the figures depend on the JVM and are only printed for comparison.
+ */
+public class ProfilerEntryPointAllocation
+{
+    private static final MediaSpec MEDIA = new MediaSpec("screen");
+    private static final int WARMUP = 50;
+    private static final int ROUNDS = 20;
+
+    public static void main(String[] args) throws Exception {
+
+        final String src = "/profiling/slate.html";
+        //final String src = "/profiling/lidovky2.html";
+
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)
+                || !((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()
+                || !((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemoryEnabled())
+        {
+            System.out.println("The thread allocation counters are not available in this JVM");
+            return;
+        }
+        com.sun.management.ThreadMXBean tbean = (com.sun.management.ThreadMXBean) bean;
+        final long tid = Thread.currentThread().getId();
+
+        DOMSource ds = new DOMSource(ProfilerEntryPointAllocation.class.getResourceAsStream(src));
+        Document doc = ds.parse();
+        StyleSheet sheet = CSSFactory.getUsedStyles(doc, null, ProfilerEntryPointAllocation.class.getResource(src), MEDIA);
+        AssigningAnalyzer analyzer = new AssigningAnalyzer(sheet);
+        analyzer.setClassificationCaching(true);
+
+        //count the elements and the resulting declarations
+        DeclarationMap result = analyzer.assign(doc);
+        NodeList all = doc.getElementsByTagName("*");
+        int elements = all.getLength();
+        int declarations = 0;
+        for (int i = 0; i < elements; i++)
+        {
+            Element e = (Element) all.item(i);
+            List<Declaration> main = result.get(e, null);
+            if (main != null)
+                declarations += main.size();
+            for (PseudoDeclaration pseudo : result.pseudoSet(e))
+                declarations += result.get(e, pseudo).size();
+        }
+
+        for (int i = 0; i < WARMUP; i++)
+            analyzer.assign(doc);
+
+        final long start = tbean.getThreadAllocatedBytes(tid);
+        for (int i = 0; i < ROUNDS; i++)
+            analyzer.assign(doc);
+        final long allocated = (tbean.getThreadAllocatedBytes(tid) - start) / ROUNDS;
+
+        System.out.println("Assigned " + declarations + " declarations to " + elements + " elements");
+        System.out.println("Allocated per assignment: " + allocated + " bytes");
+        System.out.println("Allocated per element: " + (allocated / elements) + " bytes");
+    }
+
+    /**
+     * Exposes the assignment of the declarations to the DOM elements.
+     */
+    private static class AssigningAnalyzer extends Analyzer
+    {
+        public AssigningAnalyzer(StyleSheet sheet)
+        {
+            super(sheet);
+        }
+
+        public DeclarationMap assign(Document doc)
+        {
+            return assingDeclarationsToDOM(doc, MEDIA, true);
+        }
+    }
+
+}
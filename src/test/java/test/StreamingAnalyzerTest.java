@@ -0,0 +1,155 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import cz.vutbr.web.css.CSSException;
+import cz.vutbr.web.css.CSSFactory;
+import cz.vutbr.web.css.MediaSpec;
+import cz.vutbr.web.css.NodeData;
+import cz.vutbr.web.css.Selector.PseudoDeclaration;
+import cz.vutbr.web.css.StyleSheet;
+import cz.vutbr.web.domassign.Analyzer;
+import cz.vutbr.web.domassign.StreamingAnalyzer;
+import cz.vutbr.web.domassign.StyleMap;
+
+public class StreamingAnalyzerTest
+{
+    private static final Logger log = LoggerFactory.getLogger(StreamingAnalyzerTest.class);
+
+    private static final String XML = "<doc><section id=\"s1\" class=\"box\">"
+            + "<item id=\"i1\">One <em id=\"e1\">x</em></item><item id=\"i2\" type=\"b\">Two</item><item id=\"i3\">Three</item>"
+            + "</section><section id=\"s2\"><item id=\"i4\">Four</item></section></doc>";
+
+    private static final String CSS = "doc { color: gray; font-size: 20px; }"
+            + ".box { color: blue; }"
+            + "item { font-size: 50%; }"
+            + "item + item { color: red; }"
+            + "item ~ [type] { font-weight: bold; }"
+            + "item:first-child { text-indent: 1em; }"
+            + "item:nth-child(2n+1) { background-color: yellow; }"
+            + ".box > item em { color: green; }"
+            + "section:before { content: 'x'; }";
+
+    private static final String LOOKAHEAD_CSS = "item:last-child { color: red; } item:empty { color: green; } item { color: blue; }";
+
+    private static StyleSheet sheet;
+    private static MediaSpec media;
+
+    @BeforeClass
+    public static void init() throws IOException, CSSException
+    {
+        log.info("\n\n\n == StreamingAnalyzerTest test at {} == \n\n\n", new Date());
+        sheet = CSSFactory.parseString(CSS, null);
+        media = new MediaSpec("screen");
+    }
+
+    @Test
+    public void saxSameAsDOM() throws Exception
+    {
+        Recorder rec = new Recorder();
+        XMLReader reader = SAXParserFactory.newInstance().newSAXParser().getXMLReader();
+        reader.setContentHandler(new StreamingAnalyzer(sheet).createContentHandler(media, true, rec));
+        reader.parse(new InputSource(new StringReader(XML)));
+        assertSameStyles(new Analyzer(sheet), rec, true);
+    }
+
+    @Test
+    public void staxSameAsDOM() throws Exception
+    {
+        Recorder rec = new Recorder();
+        new StreamingAnalyzer(sheet).process(XMLInputFactory.newInstance().createXMLStreamReader(new StringReader(XML)),
+                media, false, rec);
+        assertSameStyles(new Analyzer(sheet), rec, false);
+    }
+
+    @Test
+    public void lookAheadSelectors() throws Exception
+    {
+        StyleSheet la = CSSFactory.parseString(LOOKAHEAD_CSS, null);
+        StreamingAnalyzer analyzer = new StreamingAnalyzer(la);
+        assertEquals("Look-ahead selectors", 2, analyzer.getLookAheadSelectors(media).size());
+
+        //fail by default
+        assertEquals(StreamingAnalyzer.LookAheadPolicy.FAIL, analyzer.getLookAheadPolicy());
+        try {
+            analyzer.process(XMLInputFactory.newInstance().createXMLStreamReader(new StringReader(XML)), media, true, new Recorder());
+            fail("The look-ahead selectors should not be accepted");
+        } catch (XMLStreamException e) {
+            assertTrue(e.getMessage().contains("last-child"));
+        }
+
+        //ignored
+        analyzer.setLookAheadPolicy(StreamingAnalyzer.LookAheadPolicy.IGNORE);
+        Recorder rec = new Recorder();
+        analyzer.process(XMLInputFactory.newInstance().createXMLStreamReader(new StringReader(XML)), media, true, rec);
+        assertEquals("All elements styled", 8, rec.elements.size());
+        for (int i = 0; i < rec.elements.size(); i++)
+        {
+            if (rec.elements.get(i).startsWith("item#"))
+                assertEquals("Look-ahead rules ignored", "#0000ff", rec.styles.get(i).getAsString("color", true));
+        }
+    }
+
+    //=========================================================================================
+
+    private void assertSameStyles(Analyzer analyzer, Recorder rec, boolean inherit)
+        throws SAXException, IOException, Exception
+    {
+        Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(new InputSource(new StringReader(XML)));
+        StyleMap expected = analyzer.evaluateDOM(doc, media, inherit);
+        NodeList all = doc.getElementsByTagName("*");
+        assertEquals("Number of elements", all.getLength(), rec.elements.size());
+        for (int i = 0; i < all.getLength(); i++)
+        {
+            Element e = (Element) all.item(i);
+            String name = e.getNodeName() + "#" + e.getAttribute("id");
+            assertEquals("Document order", name, rec.elements.get(i));
+            assertEquals("Style of " + name, expected.get(e).toString(), rec.styles.get(i).toString());
+            assertEquals("Pseudo elements of " + name, expected.pseudoSet(e), rec.pseudoStyles.get(i).keySet());
+            for (PseudoDeclaration pseudo : expected.pseudoSet(e))
+                assertEquals("Pseudo style of " + name,
+                        expected.get(e, pseudo).toString(), rec.pseudoStyles.get(i).get(pseudo).toString());
+        }
+    }
+
+    private static class Recorder implements StreamingAnalyzer.StyleListener
+    {
+        public List<String> elements = new ArrayList<String>();
+        public List<NodeData> styles = new ArrayList<NodeData>();
+        public List<Map<PseudoDeclaration, NodeData>> pseudoStyles = new ArrayList<Map<PseudoDeclaration, NodeData>>();
+
+        public void elementStyled(Element element, NodeData style, Map<PseudoDeclaration, NodeData> pseudo)
+        {
+            elements.add(element.getNodeName() + (element.hasAttribute("id") ? "#" + element.getAttribute("id") : "#"));
+            styles.add(style);
+            pseudoStyles.add(pseudo);
+        }
+    }
+
+}
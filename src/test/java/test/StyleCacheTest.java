@@ -0,0 +1,189 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Date;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import cz.vutbr.web.css.CSSException;
+import cz.vutbr.web.css.CSSFactory;
+import cz.vutbr.web.css.MediaSpec;
+import cz.vutbr.web.css.NodeData;
+import cz.vutbr.web.css.RuleSet;
+import cz.vutbr.web.css.Selector.PseudoDeclaration;
+import cz.vutbr.web.css.StyleSheet;
+import cz.vutbr.web.domassign.Analyzer;
+import cz.vutbr.web.domassign.AssignedDeclaration;
+import cz.vutbr.web.domassign.IncrementalAnalyzer;
+import cz.vutbr.web.domassign.StyleMap;
+
+public class StyleCacheTest
+{
+    private static final Logger log = LoggerFactory.getLogger(StyleCacheTest.class);
+
+    private static final String HTML = "<html><body>"
+            + "<ul id=\"l1\"><li id=\"a1\">One</li><li id=\"a2\">Two</li><li id=\"a3\" class=\"x\">Three</li></ul>"
+            + "<ul id=\"l2\" class=\"big\"><li id=\"b1\">One</li><li id=\"b2\">Two</li></ul>"
+            + "</body></html>";
+
+    private static final String CSS = "body { color: gray; font-size: 20px; }"
+            + "ul { margin: 1em; }"
+            + ".big { color: blue; font-size: 150%; }"
+            + "li { font-size: 80%; }"
+            + "li.x { color: red; }"
+            + "li:before { content: '-'; }";
+
+    private static StyleSheet sheet;
+
+    @BeforeClass
+    public static void init() throws IOException, CSSException
+    {
+        log.info("\n\n\n == StyleCacheTest test at {} == \n\n\n", new Date());
+        sheet = CSSFactory.parseString(CSS, null);
+    }
+
+    @Test
+    public void sharedStyles() throws SAXException, IOException
+    {
+        Document doc = parse();
+        ElementMap elements = new ElementMap(doc);
+        StyleMap expected = new Analyzer(sheet).evaluateDOM(doc, "screen", true);
+        Analyzer analyzer = new Analyzer(sheet);
+        analyzer.setStyleCacheSize(100);
+        StyleMap styles = analyzer.evaluateDOM(doc, "screen", true);
+        assertSameStyles(doc, expected, styles);
+
+        //same declarations and parent
+        assertSame(styles.get(elements.getElementById("a1")), styles.get(elements.getElementById("a2")));
+        assertSame(styles.get(elements.getElementById("b1")), styles.get(elements.getElementById("b2")));
+        assertSame(styles.get(elements.getElementById("a1"), PseudoDeclaration.BEFORE),
+                styles.get(elements.getElementById("a2"), PseudoDeclaration.BEFORE));
+        //different declarations
+        assertNotSame(styles.get(elements.getElementById("a1")), styles.get(elements.getElementById("a3")));
+        //different parents
+        assertNotSame(styles.get(elements.getElementById("a1")), styles.get(elements.getElementById("b1")));
+        assertTrue("Cache used", analyzer.getStyleCache().getHits() > 0);
+    }
+
+    @Test
+    public void frozenStyles() throws SAXException, IOException
+    {
+        Document doc = parse();
+        ElementMap elements = new ElementMap(doc);
+        Analyzer analyzer = new Analyzer(sheet);
+        analyzer.setStyleCacheSize(100);
+        StyleMap styles = analyzer.evaluateDOM(doc, "screen", true);
+        final NodeData shared = styles.get(elements.getElementById("a1"));
+        final NodeData parent = styles.get(elements.getElementById("l1"));
+        assertTrue("Shared style frozen", shared.isFrozen());
+        final String before = shared.toString();
+        try {
+            shared.push(((RuleSet) sheet.get(0)).get(0));
+            fail("A shared style may not be modified");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        try {
+            shared.inheritFrom(parent);
+            fail("A shared style may not be modified");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        try {
+            shared.concretize();
+            fail("A shared style may not be modified");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        assertEquals(before, styles.get(elements.getElementById("a2")).toString());
+        //a frozen style may be still inherited from
+        assertFalse(CSSFactory.createNodeData().inheritFrom(parent).concretize().isFrozen());
+        assertFalse("Not shared without the cache",
+                new Analyzer(sheet).evaluateDOM(doc, "screen", true).get(elements.getElementById("a1")).isFrozen());
+    }
+
+    @Test
+    public void boundedCache() throws SAXException, IOException
+    {
+        Document doc = parse();
+        StyleMap expected = new Analyzer(sheet).evaluateDOM(doc, "screen", true);
+        Analyzer analyzer = new Analyzer(sheet);
+        analyzer.setStyleCacheSize(2);
+        StyleMap styles = analyzer.evaluateDOM(doc, "screen", true);
+        assertSameStyles(doc, expected, styles);
+        assertEquals("Cache size limited", 2, analyzer.getStyleCache().size());
+    }
+
+    @Test
+    public void sourceDeclarations() throws SAXException, IOException, CSSException
+    {
+        StyleSheet same = CSSFactory.parseString("li.x { color: green; } li.y { color: green; }", null);
+        Document doc = new DOMSource(new ByteArrayInputStream(
+                "<html><body><ul><li id=\"x\" class=\"x\">X</li><li id=\"y\" class=\"y\">Y</li></ul></body></html>"
+                .getBytes("UTF-8"))).parse();
+        ElementMap elements = new ElementMap(doc);
+        Analyzer analyzer = new Analyzer(same);
+        analyzer.setStyleCacheSize(100);
+        StyleMap styles = analyzer.evaluateDOM(doc, "screen", true);
+
+        //equal declarations of different rules are not shared
+        NodeData x = styles.get(elements.getElementById("x"));
+        NodeData y = styles.get(elements.getElementById("y"));
+        assertNotSame(x, y);
+        assertSame(((RuleSet) same.get(0)).get(0), ((AssignedDeclaration) x.getSourceDeclaration("color")).getOriginal());
+        assertSame(((RuleSet) same.get(1)).get(0), ((AssignedDeclaration) y.getSourceDeclaration("color")).getOriginal());
+    }
+
+    @Test
+    public void incrementalClearsCache() throws SAXException, IOException
+    {
+        IncrementalAnalyzer reference = new IncrementalAnalyzer(sheet);
+        reference.setStyleCacheSize(100);
+        reference.evaluateDOM(parse(), new MediaSpec("screen"), true);
+
+        IncrementalAnalyzer analyzer = new IncrementalAnalyzer(sheet);
+        analyzer.setStyleCacheSize(100);
+        analyzer.evaluateDOM(parse(), new MediaSpec("screen"), true);
+        analyzer.evaluateDOM(parse(), new MediaSpec("screen"), true);
+        assertEquals("No entries of the previous evaluation", reference.getStyleCache().size(), analyzer.getStyleCache().size());
+    }
+
+    //=========================================================================================
+
+    private Document parse() throws SAXException, IOException
+    {
+        DOMSource ds = new DOMSource(new ByteArrayInputStream(HTML.getBytes("UTF-8")));
+        return ds.parse();
+    }
+
+    private void assertSameStyles(Document doc, StyleMap expected, StyleMap styles)
+    {
+        NodeList all = doc.getElementsByTagName("*");
+        for (int i = 0; i < all.getLength(); i++)
+        {
+            Element e = (Element) all.item(i);
+            String name = e.getNodeName() + "#" + e.getAttribute("id");
+            assertEquals("Style of " + name, expected.get(e).toString(), styles.get(e).toString());
+            assertEquals("Pseudo elements of " + name, expected.pseudoSet(e), styles.pseudoSet(e));
+            for (PseudoDeclaration pseudo : expected.pseudoSet(e))
+                assertEquals("Pseudo style of " + name,
+                        expected.get(e, pseudo).toString(), styles.get(e, pseudo).toString());
+        }
+    }
+
+}
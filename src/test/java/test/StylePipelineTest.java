@@ -0,0 +1,258 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.xml.sax.SAXException;
+
+import cz.vutbr.web.css.CSSFactory;
+import cz.vutbr.web.css.MediaSpec;
+import cz.vutbr.web.css.NetworkProcessor;
+import cz.vutbr.web.css.StyleSheet;
+import cz.vutbr.web.csskit.ExecutorNetworkProcessor;
+import cz.vutbr.web.domassign.StyleMap;
+import cz.vutbr.web.domassign.StylePipeline;
+import cz.vutbr.web.domassign.StylingEngine;
+
+/**
+ * Checks that the asynchronous style pipeline computes the same styles as the synchronous
+ * style assignment.
+ */
+public class StylePipelineTest
+{
+    private static final Logger log = LoggerFactory.getLogger(StylePipelineTest.class);
+
+    private static final MediaSpec MEDIA = new MediaSpec("screen");
+
+    private static final String HTML = "<html><head>"
+            + "<link rel=\"stylesheet\" href=\"a.css\" />"
+            + "<style>p { color: olive; } h1 { font-size: 3em; }</style>"
+            + "<link rel=\"stylesheet\" href=\"b.css\" />"
+            + "<link rel=\"stylesheet\" media=\"print\" href=\"print.css\" />"
+            + "<link rel=\"stylesheet\" href=\"missing.css\" />"
+            + "<link rel=\"stylesheet\" href=\"c.css\" />"
+            + "</head><body>"
+            + "<h1>Title</h1><p>First</p><p class=\"note\" style=\"margin-left: 5px\">Second</p>"
+            + "<div id=\"main\"><p>Third</p><span>Fourth</span></div>"
+            + "</body></html>";
+
+    @BeforeClass
+    public static void init()
+    {
+        log.info("\n\n\n == StylePipelineTest test at {} == \n\n\n", new Date());
+    }
+
+    @Test
+    public void documentOrder() throws Exception
+    {
+        final MemoryNetwork memory = createNetwork();
+        final URL base = new URL("http://example.org/doc.html");
+
+        ExecutorService fetchers = Executors.newFixedThreadPool(4);
+        ExecutorService workers = Executors.newFixedThreadPool(3);
+        try {
+            ExecutorNetworkProcessor network = new ExecutorNetworkProcessor(memory, fetchers, 2);
+            StylePipeline pipeline = new StylePipeline(new StylingEngine(Collections.<StyleSheet>emptyList(), MEDIA),
+                    network, workers, 3);
+
+            List<Document> docs = new ArrayList<Document>();
+            List<List<String>> expected = new ArrayList<List<String>>();
+            for (int i = 0; i < 10; i++)
+            {
+                Document doc = parse();
+                docs.add(doc);
+                expected.add(StylesUtil.describe(doc, CSSFactory.assignDOM(doc, null, memory, base, MEDIA, true, null)));
+            }
+
+            // the rules of b.css and of the imported style sheet are used
+            assertTrue(expected.get(0).toString().contains("color: #000080"));
+            assertTrue(expected.get(0).toString().contains("font-weight: bold"));
+
+            List<StyleMap> styles = pipeline.processAll(docs, base);
+            assertEquals(docs.size(), styles.size());
+            for (int i = 0; i < docs.size(); i++)
+                assertEquals("Document " + i, expected.get(i), StylesUtil.describe(docs.get(i), styles.get(i)));
+            assertTrue("Too many concurrent fetches: " + memory.maxRunning.get(), memory.maxRunning.get() <= 2);
+        } finally {
+            fetchers.shutdown();
+            workers.shutdown();
+        }
+    }
+
+    @Test
+    public void singleThread() throws Exception
+    {
+        final MemoryNetwork memory = createNetwork();
+        final URL base = new URL("http://example.org/doc.html");
+
+        ExecutorService fetchers = Executors.newSingleThreadExecutor();
+        ExecutorService workers = Executors.newSingleThreadExecutor();
+        try {
+            StylePipeline pipeline = new StylePipeline(new StylingEngine(Collections.<StyleSheet>emptyList(), MEDIA),
+                    new ExecutorNetworkProcessor(memory, fetchers, 1), workers, 1);
+            Document doc = parse();
+            List<String> expected = StylesUtil.describe(doc, CSSFactory.assignDOM(doc, null, memory, base, MEDIA, true, null));
+            assertEquals(expected, StylesUtil.describe(doc, pipeline.submit(doc, base).get()));
+        } finally {
+            fetchers.shutdown();
+            workers.shutdown();
+        }
+    }
+
+    @Test
+    public void parseAfterFetch() throws Exception
+    {
+        final MemoryNetwork memory = createNetwork();
+        final URL base = new URL("http://example.org/doc.html");
+        Document doc = parse();
+        List<String> expected = StylesUtil.describe(doc, CSSFactory.assignDOM(doc, null, memory, base, MEDIA, true, null));
+
+        ExecutorService fetchers = Executors.newFixedThreadPool(4);
+        final ExecutorService pool = Executors.newFixedThreadPool(2);
+        final AtomicInteger executed = new AtomicInteger();
+        Executor workers = new Executor() {
+            public void execute(Runnable command)
+            {
+                executed.incrementAndGet();
+                pool.execute(command);
+            }
+        };
+        try {
+            StylePipeline pipeline = new StylePipeline(new StylingEngine(Collections.<StyleSheet>emptyList(), MEDIA),
+                    new ExecutorNetworkProcessor(memory, fetchers, 4), workers, 1);
+            memory.gate = new CountDownLatch(1);
+            Future<StyleMap> result = pipeline.submit(doc, base);
+            // no parsing task is waiting for the fetches
+            assertEquals("Tasks started", 0, executed.get());
+            memory.gate.countDown();
+            assertEquals(expected, StylesUtil.describe(doc, result.get()));
+            assertTrue("Tasks started", executed.get() > 0);
+        } finally {
+            fetchers.shutdown();
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void rejectedFetch() throws Exception
+    {
+        final MemoryNetwork memory = createNetwork();
+        final ExecutorService pool = Executors.newSingleThreadExecutor();
+        final AtomicBoolean reject = new AtomicBoolean(true);
+        Executor fetchers = new Executor() {
+            public void execute(Runnable command)
+            {
+                if (reject.get())
+                    throw new RejectedExecutionException("Rejected");
+                pool.execute(command);
+            }
+        };
+        try {
+            ExecutorNetworkProcessor network = new ExecutorNetworkProcessor(memory, fetchers, 1);
+            Future<InputStream> rejected = network.fetchAsync(new URL("http://example.org/b.css"));
+            try {
+                rejected.get(5, TimeUnit.SECONDS);
+                fail("Rejected fetch finished");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof RejectedExecutionException);
+            }
+            // the slot of the rejected fetch is available
+            reject.set(false);
+            assertNotNull(network.fetchAsync(new URL("http://example.org/b.css")).get(5, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static MemoryNetwork createNetwork()
+    {
+        final MemoryNetwork memory = new MemoryNetwork();
+        // the later style sheets are available sooner
+        memory.put("http://example.org/a.css", "@import \"imported.css\"; p { color: red; } .note { color: blue; }", 40);
+        memory.put("http://example.org/imported.css", "span { color: green; } p { font-weight: bold; }", 10);
+        memory.put("http://example.org/b.css", "p { color: maroon; } #main p { color: navy; }", 20);
+        memory.put("http://example.org/print.css", "p { color: black; }", 0);
+        memory.put("http://example.org/c.css", "span { color: purple; } .note { margin-left: 2em; }", 0);
+        return memory;
+    }
+
+    private Document parse() throws SAXException, IOException
+    {
+        DOMSource ds = new DOMSource(new ByteArrayInputStream(HTML.getBytes("UTF-8")));
+        return ds.parse();
+    }
+
+    /**
+     * A network processor that serves the style sheets from memory with the given delays.
+     */
+    private static class MemoryNetwork implements NetworkProcessor
+    {
+        private final Map<String, String> contents = new HashMap<String, String>();
+        private final Map<String, Integer> delays = new HashMap<String, Integer>();
+        private final AtomicInteger running = new AtomicInteger();
+        public final AtomicInteger maxRunning = new AtomicInteger();
+        /** When set, the fetches wait until the latch is released */
+        public volatile CountDownLatch gate;
+
+        public void put(String url, String css, int delay)
+        {
+            contents.put(url, css);
+            delays.put(url, delay);
+        }
+
+        public InputStream fetch(URL url) throws IOException
+        {
+            final int cnt = running.incrementAndGet();
+            try {
+                if (gate != null)
+                    gate.await();
+                synchronized (maxRunning)
+                {
+                    if (cnt > maxRunning.get())
+                        maxRunning.set(cnt);
+                }
+                final String css = contents.get(url.toString());
+                if (css == null)
+                    throw new FileNotFoundException(url.toString());
+                final int delay = delays.get(url.toString());
+                if (delay > 0)
+                    Thread.sleep(delay);
+                return new ByteArrayInputStream(css.getBytes("UTF-8"));
+            } catch (InterruptedException e) {
+                throw new IOException("Interrupted");
+            } finally {
+                running.decrementAndGet();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,63 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import cz.vutbr.web.css.Selector.PseudoDeclaration;
+import cz.vutbr.web.domassign.StyleMap;
+
+/**
+ * Compares the styles computed for the elements of a document.
+ */
+public class StylesUtil
+{
+
+    /**
+     * Lists the styles and the pseudo elements of all the elements in the document order.
+     * @param doc the styled document
+     * @param styles the computed styles
+     * @return one line for each element
+     */
+    public static List<String> describe(Document doc, StyleMap styles)
+    {
+        List<String> ret = new ArrayList<String>();
+        NodeList all = doc.getElementsByTagName("*");
+        for (int i = 0; i < all.getLength(); i++)
+        {
+            Element e = (Element) all.item(i);
+            ret.add(e.getNodeName() + ": " + styles.get(e) + " " + styles.pseudoSet(e));
+        }
+        return ret;
+    }
+
+    /**
+     * Checks that all the elements of a document have the expected styles including the styles
+     * of their pseudo elements.
+     * @param msg the message prefix used for the failures
+     * @param doc the styled document
+     * @param expected the reference styles, usually computed by {@code Analyzer.evaluateDOM()}
+     * @param styles the checked styles
+     */
+    public static void assertSameStyles(String msg, Document doc, StyleMap expected, StyleMap styles)
+    {
+        NodeList all = doc.getElementsByTagName("*");
+        for (int i = 0; i < all.getLength(); i++)
+        {
+            Element e = (Element) all.item(i);
+            final String name = msg + ": " + e.getNodeName() + "#" + e.getAttribute("id");
+            assertNotNull(name, styles.get(e));
+            assertEquals(name, expected.get(e).toString(), styles.get(e).toString());
+            assertEquals(name + " pseudo elements", expected.pseudoSet(e), styles.pseudoSet(e));
+            for (PseudoDeclaration pseudo : expected.pseudoSet(e))
+                assertEquals(name + "::" + pseudo, expected.get(e, pseudo).toString(), styles.get(e, pseudo).toString());
+        }
+    }
+
+}
@@ -0,0 +1,154 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.xml.sax.SAXException;
+
+import cz.vutbr.web.css.CSSException;
+import cz.vutbr.web.css.CSSFactory;
+import cz.vutbr.web.css.MediaSpec;
+import cz.vutbr.web.css.StyleSheet;
+import cz.vutbr.web.domassign.Analyzer;
+import cz.vutbr.web.domassign.Analyzer.Holder;
+import cz.vutbr.web.domassign.StyleMap;
+import cz.vutbr.web.domassign.StylingEngine;
+
+/**
+ * Checks that a styling engine shared by multiple threads computes the same styles as an analyzer.
+ */
+public class StylingEngineTest
+{
+    private static final Logger log = LoggerFactory.getLogger(StylingEngineTest.class);
+
+    private static final String DOCUMENT = "/advanced/domassign.html";
+
+    private static final MediaSpec MEDIA = new MediaSpec("screen");
+
+    @BeforeClass
+    public static void init()
+    {
+        log.info("\n\n\n == StylingEngineTest test at {} == \n\n\n", new Date());
+    }
+
+    @Test
+    public void concurrentDocuments() throws SAXException, IOException, InterruptedException
+    {
+        Document doc = parse();
+        List<StyleSheet> sheets = Collections.singletonList(CSSFactory.getUsedStyles(doc, null, getClass().getResource(DOCUMENT), MEDIA));
+
+        StylingEngine engine = new StylingEngine(sheets, MEDIA);
+        List<Document> docs = new ArrayList<Document>();
+        List<List<String>> expected = new ArrayList<List<String>>();
+        docs.add(doc);
+        for (int i = 1; i < 16; i++)
+            docs.add(parse());
+        //the inline styles only apply to the first document
+        for (Document d : docs)
+            expected.add(StylesUtil.describe(d, new Analyzer(sheets).evaluateDOM(d, MEDIA, true)));
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (int round = 0; round < 2; round++)
+            {
+                List<StyleMap> styles = engine.styleAll(docs, executor);
+                assertEquals(docs.size(), styles.size());
+                for (int i = 0; i < docs.size(); i++)
+                    assertEquals("Document " + i, expected.get(i), StylesUtil.describe(docs.get(i), styles.get(i)));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void documentSheets() throws SAXException, IOException, CSSException
+    {
+        Document doc = parse();
+        StyleSheet common = CSSFactory.getUsedStyles(doc, null, getClass().getResource(DOCUMENT), MEDIA);
+        StyleSheet own = CSSFactory.parseString("p { color: navy; } #main { margin: 2em; } div::before { content: \"x\"; }", null);
+        List<StyleSheet> all = new ArrayList<StyleSheet>();
+        all.add(common);
+        all.add(own);
+
+        StylingEngine engine = new StylingEngine(Collections.singletonList(common), MEDIA);
+        assertEquals(StylesUtil.describe(doc, new Analyzer(all).evaluateDOM(doc, MEDIA, true)),
+                StylesUtil.describe(doc, engine.style(doc, Collections.singletonList(own))));
+        assertEquals(StylesUtil.describe(doc, new Analyzer(common).evaluateDOM(doc, MEDIA, true)),
+                StylesUtil.describe(doc, engine.style(doc)));
+    }
+
+    @Test
+    public void engineReleased() throws SAXException, IOException, InterruptedException
+    {
+        Document doc = parse();
+        List<StyleSheet> sheets = Collections.singletonList(CSSFactory.getUsedStyles(doc, null, getClass().getResource(DOCUMENT), MEDIA));
+        StylingEngine engine = new StylingEngine(sheets, MEDIA);
+        engine.style(doc);
+        //the current thread keeps running but it does not keep the engine or its rules
+        WeakReference<StylingEngine> ref = new WeakReference<StylingEngine>(engine);
+        WeakReference<Holder> rulesRef = new WeakReference<Holder>(engine.getRules());
+        engine = null;
+        for (int i = 0; i < 20 && (ref.get() != null || rulesRef.get() != null); i++)
+        {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull("Engine collected", ref.get());
+        assertNull("Engine rules collected", rulesRef.get());
+    }
+
+    @Test
+    public void rejectedDocuments() throws SAXException, IOException, InterruptedException
+    {
+        Document doc = parse();
+        List<StyleSheet> sheets = Collections.singletonList(CSSFactory.getUsedStyles(doc, null, getClass().getResource(DOCUMENT), MEDIA));
+        StylingEngine engine = new StylingEngine(sheets, MEDIA);
+        //accepts two documents without running them and rejects the rest
+        final List<Runnable> accepted = new ArrayList<Runnable>();
+        Executor executor = new Executor() {
+            public void execute(Runnable command)
+            {
+                if (accepted.size() == 2)
+                    throw new RejectedExecutionException("Full");
+                accepted.add(command);
+            }
+        };
+        try {
+            engine.styleAll(Arrays.asList(doc, doc, doc), executor);
+            fail("The rejection should be reported");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+        assertEquals(2, accepted.size());
+        for (Runnable task : accepted)
+            assertTrue("Submitted task cancelled", ((Future<?>) task).isCancelled());
+    }
+
+    private Document parse() throws SAXException, IOException
+    {
+        DOMSource ds = new DOMSource(getClass().getResourceAsStream(DOCUMENT));
+        return ds.parse();
+    }
+
+}
@@ -0,0 +1,177 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.traversal.NodeFilter;
+import org.xml.sax.SAXException;
+
+import cz.vutbr.web.css.CSSException;
+import cz.vutbr.web.css.CSSFactory;
+import cz.vutbr.web.css.CSSProperty;
+import cz.vutbr.web.css.MediaSpec;
+import cz.vutbr.web.css.NodeData;
+import cz.vutbr.web.css.StyleSheet;
+import cz.vutbr.web.css.TermColor;
+import cz.vutbr.web.domassign.Analyzer;
+import cz.vutbr.web.domassign.DOMMutation;
+import cz.vutbr.web.domassign.IncrementalAnalyzer;
+import cz.vutbr.web.domassign.StyleMap;
+import cz.vutbr.web.domassign.Traversal;
+
+/**
+ * Checks the DOM traversal order and the processing of very deep documents.
+ */
+public class TraversalTest
+{
+    private static final Logger log = LoggerFactory.getLogger(TraversalTest.class);
+
+    private static final int DEPTH = 20000;
+
+    @BeforeClass
+    public static void init()
+    {
+        log.info("\n\n\n == TraversalTest test at {} == \n\n\n", new Date());
+    }
+
+    @Test
+    public void documentOrder() throws SAXException, IOException
+    {
+        DOMSource ds = new DOMSource(getClass().getResourceAsStream("/advanced/domassign.html"));
+        Document doc = ds.parse();
+
+        List<Node> level = new ArrayList<Node>();
+        new Collector(doc).levelTraversal(level);
+        List<Node> list = new ArrayList<Node>();
+        list.add(doc.getDocumentElement()); //the list traversal starts after the root
+        new Collector(doc).listTraversal(list);
+
+        assertEquals("Same nodes", list.size(), level.size());
+        for (int i = 0; i < list.size(); i++)
+            assertEquals("Node " + i, list.get(i), level.get(i));
+        assertEquals("All elements", doc.getElementsByTagName("*").getLength(), level.size());
+    }
+
+    @Test
+    public void deepDocument() throws ParserConfigurationException, CSSException, IOException
+    {
+        DeepDocument deep = new DeepDocument();
+        StyleSheet sheet = CSSFactory.parseString("body { color: red; } div div { font-weight: bold; } "
+                + "div.c1 > div.c2 { text-align: center; }", null);
+        StyleMap styles = new Analyzer(sheet).evaluateDOM(deep.doc, "screen", true);
+
+        NodeData data = styles.get(deep.last);
+        assertNotNull("Deepest element styled", data);
+        assertEquals("Inherited", CSSProperty.Color.color, data.getProperty("color"));
+        assertEquals("Descendant", CSSProperty.FontWeight.BOLD, data.getProperty("font-weight"));
+        assertEquals("Child", CSSProperty.TextAlign.CENTER, styles.get(deep.child).getProperty("text-align"));
+    }
+
+    @Test
+    public void deepRestyle() throws ParserConfigurationException, CSSException, IOException
+    {
+        DeepDocument deep = new DeepDocument();
+        StyleSheet sheet = CSSFactory.parseString("body { color: red; } .blue { color: blue; }", null);
+        IncrementalAnalyzer analyzer = new IncrementalAnalyzer(sheet);
+        StyleMap styles = analyzer.evaluateDOM(deep.doc, new MediaSpec("screen"), true);
+        final TermColor red = CSSFactory.getTermFactory().createColor(255, 0, 0);
+        final TermColor blue = CSSFactory.getTermFactory().createColor(0, 0, 255);
+        assertEquals("Inherited", red, styles.get(deep.last).getValue(TermColor.class, "color"));
+
+        //the inherited value changes in the whole subtree
+        final String old = deep.top.getAttribute("class");
+        deep.top.setAttribute("class", "blue");
+        Set<Element> changed = analyzer.restyle(Collections.singletonList(DOMMutation.attributeChanged(deep.top, "class", old)));
+        assertEquals("All restyled", DEPTH, changed.size());
+        assertEquals("Changed", blue, styles.get(deep.last).getValue(TermColor.class, "color"));
+
+        //remove the subtree and insert it again
+        Element body = (Element) deep.top.getParentNode();
+        body.removeChild(deep.top);
+        analyzer.restyle(Collections.singletonList(DOMMutation.elementRemoved(body, deep.top)));
+        assertNull("Removed", styles.get(deep.last));
+        body.appendChild(deep.top);
+        changed = analyzer.restyle(Collections.singletonList(DOMMutation.elementInserted(deep.top)));
+        assertEquals("All inserted", DEPTH, changed.size());
+        assertEquals("Inserted", blue, styles.get(deep.last).getValue(TermColor.class, "color"));
+    }
+
+    /**
+     * Collects the visited elements.
+     */
+    private static class Collector extends Traversal<List<Node>>
+    {
+        public Collector(Document doc)
+        {
+            super(doc, null, NodeFilter.SHOW_ELEMENT);
+        }
+
+        @Override
+        protected void processNode(List<Node> result, Node current, Object source)
+        {
+            result.add(current);
+        }
+    }
+
+    /**
+     * A document with {@link #DEPTH} nested elements.
+     */
+    private static class DeepDocument
+    {
+        public final Document doc;
+        public final Element top;
+        public final Element child;
+        public final Element last;
+
+        public DeepDocument() throws ParserConfigurationException
+        {
+            doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+            // built from the bottom, appending to a deep element checks all its ancestors
+            Element deepest = null;
+            Element second = null;
+            Element div = null;
+            for (int i = DEPTH - 1; i >= 0; i--)
+            {
+                Element parent = doc.createElement("div");
+                parent.setAttribute("class", "c" + (i % 3));
+                if (div != null)
+                {
+                    parent.appendChild(doc.createTextNode(" "));
+                    parent.appendChild(div);
+                }
+                else
+                    deepest = parent;
+                if (i == 2)
+                    second = parent;
+                div = parent;
+            }
+            Element html = doc.createElement("html");
+            Element body = doc.createElement("body");
+            body.appendChild(div);
+            html.appendChild(body);
+            doc.appendChild(html);
+            top = div;
+            child = second;
+            last = deepest;
+        }
+    }
+
+}
@@ -0,0 +1,307 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import cz.vutbr.web.css.CSSException;
+import cz.vutbr.web.css.CSSFactory;
+import cz.vutbr.web.css.MatchCondition;
+import cz.vutbr.web.css.NodeData;
+import cz.vutbr.web.css.Selector;
+import cz.vutbr.web.css.Selector.PseudoDeclaration;
+import cz.vutbr.web.css.StyleSheet;
+import cz.vutbr.web.css.TermColor;
+import cz.vutbr.web.domassign.Analyzer;
+import cz.vutbr.web.domassign.DOMTreeAdapter;
+import cz.vutbr.web.domassign.StyleMap;
+import cz.vutbr.web.domassign.TreeAdapter;
+import cz.vutbr.web.domassign.TreeAnalyzer;
+import cz.vutbr.web.domassign.TreeSnapshot;
+import cz.vutbr.web.domassign.TreeStyleMap;
+
+/**
+ * Checks that the styles computed using a tree adapter are the same as the styles computed for the DOM.
+ */
+public class TreeAnalyzerTest
+{
+    private static final Logger log = LoggerFactory.getLogger(TreeAnalyzerTest.class);
+
+    private static final String[] DOCUMENTS = { "/simple/pseudo.html", "/simple/selectors.html",
+        "/simple/selectors2.html", "/simple/selectors3.html", "/advanced/domassign.html" };
+
+    @BeforeClass
+    public static void init()
+    {
+        log.info("\n\n\n == TreeAnalyzerTest test at {} == \n\n\n", new Date());
+    }
+
+    @Test
+    public void inMemoryTree() throws SAXException, IOException, CSSException
+    {
+        for (String name : DOCUMENTS)
+        {
+            DOMSource ds = new DOMSource(getClass().getResourceAsStream(name));
+            Document doc = ds.parse();
+            StyleSheet sheet = CSSFactory.getUsedStyles(doc, null, getClass().getResource(name), "screen");
+            StyleMap expected = new Analyzer(sheet).evaluateDOM(doc, "screen", true);
+
+            Map<Element, TestNode> nodes = new LinkedHashMap<Element, TestNode>();
+            TestNode root = TestNode.create(doc.getDocumentElement(), null, nodes);
+            TreeStyleMap<TestNode> styles = new TreeAnalyzer<TestNode>(sheet, new TestAdapter()).evaluateTree(root, "screen", true);
+
+            assertEquals(name + ": all elements styled", nodes.size(), styles.size());
+            for (Map.Entry<Element, TestNode> entry : nodes.entrySet())
+                compare(name, expected, entry.getKey(), styles, entry.getValue());
+        }
+    }
+
+    @Test
+    public void domAdapter() throws SAXException, IOException, CSSException
+    {
+        for (String name : DOCUMENTS)
+        {
+            DOMSource ds = new DOMSource(getClass().getResourceAsStream(name));
+            Document doc = ds.parse();
+            StyleSheet sheet = CSSFactory.getUsedStyles(doc, null, getClass().getResource(name), "screen");
+            StyleMap expected = new Analyzer(sheet).evaluateDOM(doc, "screen", true);
+
+            TreeAnalyzer<Element> analyzer = new TreeAnalyzer<Element>(sheet, new DOMTreeAdapter(CSSFactory.getElementMatcher()));
+            TreeStyleMap<Element> styles = analyzer.evaluateTree(doc.getDocumentElement(), "screen", true);
+
+            NodeList all = doc.getElementsByTagName("*");
+            for (int i = 0; i < all.getLength(); i++)
+            {
+                Element e = (Element) all.item(i);
+                compare(name, expected, e, styles, e);
+            }
+        }
+    }
+
+    private static <N> void compare(String name, StyleMap expected, Element e, TreeStyleMap<N> styles, N node)
+    {
+        final String msg = name + ": " + e.getNodeName() + "#" + e.getAttribute("id");
+        NodeData data = styles.get(node);
+        assertNotNull(msg, data);
+        assertEquals(msg, expected.get(e).toString(), data.toString());
+        assertEquals(msg + " pseudo elements", expected.pseudoSet(e), styles.pseudoSet(node));
+        for (PseudoDeclaration pseudo : expected.pseudoSet(e))
+            assertEquals(msg + "::" + pseudo, expected.get(e, pseudo).toString(), styles.get(node, pseudo).toString());
+    }
+
+    @Test
+    public void structure()
+    {
+        TestNode root = new TestNode("html", null);
+        TestNode body = root.add(new TestNode("body", null));
+        TestNode p1 = body.add(new TestNode("p", null));
+        TestNode p2 = body.add(new TestNode("p", null));
+        TestNode span = p2.add(new TestNode("span", null));
+        TestNode div = body.add(new TestNode("div", null));
+
+        TreeSnapshot<TestNode> snapshot = TreeSnapshot.create(root, new TestAdapter());
+        assertEquals(6, snapshot.size());
+        assertEquals(TreeSnapshot.NONE, snapshot.getParent(0));
+        assertEquals(snapshot.indexOf(body), snapshot.getParent(snapshot.indexOf(div)));
+        assertEquals(snapshot.indexOf(p1), snapshot.getFirstChild(snapshot.indexOf(body)));
+        assertEquals(snapshot.indexOf(p1), snapshot.getPreviousSibling(snapshot.indexOf(p2)));
+        assertEquals(snapshot.indexOf(div), snapshot.getNextSibling(snapshot.indexOf(p2)));
+        assertEquals(3, snapshot.getDepth(snapshot.indexOf(span)));
+        assertTrue("Document order", snapshot.indexOf(span) < snapshot.indexOf(div));
+    }
+
+    @Test
+    public void caseSensitiveTypes() throws IOException, CSSException
+    {
+        TestNode root = new TestNode("svg", null);
+        TestNode g1 = root.add(new TestNode("linearGradient", null));
+        root.add(new TestNode("lineargradient", null));
+        TestNode g2 = root.add(new TestNode("linearGradient", null));
+        StyleSheet sheet = CSSFactory.parseString("linearGradient:nth-of-type(2) { color: red; }", null);
+
+        TreeStyleMap<TestNode> styles = new TreeAnalyzer<TestNode>(sheet, new TestAdapter(true)).evaluateTree(root, "screen", true);
+        assertNull("First of type", styles.get(g1).getValue(TermColor.class, "color"));
+        assertNotNull("Second of type", styles.get(g2).getValue(TermColor.class, "color"));
+    }
+
+    //=========================================================================================
+
+    /**
+     * A minimal in-memory document tree.
+     */
+    private static class TestNode
+    {
+        public final String name;
+        public final Element source;
+        public final Map<String, String> attributes = new LinkedHashMap<String, String>();
+        public final List<TestNode> children = new ArrayList<TestNode>();
+        public TestNode parent;
+        public boolean text;
+
+        public TestNode(String name, Element source)
+        {
+            this.name = name;
+            this.source = source;
+        }
+
+        public TestNode add(TestNode child)
+        {
+            child.parent = this;
+            children.add(child);
+            return child;
+        }
+
+        public static TestNode create(Element e, TestNode parent, Map<Element, TestNode> nodes)
+        {
+            TestNode ret = new TestNode(e.getNodeName(), e);
+            NamedNodeMap attrs = e.getAttributes();
+            for (int i = 0; i < attrs.getLength(); i++)
+                ret.attributes.put(attrs.item(i).getNodeName(), attrs.item(i).getNodeValue());
+            if (parent != null)
+                parent.add(ret);
+            nodes.put(e, ret);
+            for (Node n = e.getFirstChild(); n != null; n = n.getNextSibling())
+            {
+                if (n.getNodeType() == Node.ELEMENT_NODE)
+                    create((Element) n, ret, nodes);
+                else if (n.getNodeType() == Node.TEXT_NODE || n.getNodeType() == Node.CDATA_SECTION_NODE)
+                    ret.text = true;
+            }
+            return ret;
+        }
+    }
+
+    /**
+     * The adapter of the in-memory tree with HTML conventions.
+     */
+    private static class TestAdapter extends TreeAdapter<TestNode>
+    {
+        private final boolean caseSensitiveNames;
+
+        public TestAdapter()
+        {
+            this(false);
+        }
+
+        public TestAdapter(boolean caseSensitiveNames)
+        {
+            this.caseSensitiveNames = caseSensitiveNames;
+        }
+
+        @Override
+        public TestNode getParent(TestNode node)
+        {
+            return node.parent;
+        }
+
+        @Override
+        public TestNode getPreviousSibling(TestNode node)
+        {
+            if (node.parent == null)
+                return null;
+            int i = node.parent.children.indexOf(node);
+            return (i > 0) ? node.parent.children.get(i - 1) : null;
+        }
+
+        @Override
+        public TestNode getNextSibling(TestNode node)
+        {
+            if (node.parent == null)
+                return null;
+            int i = node.parent.children.indexOf(node);
+            return (i + 1 < node.parent.children.size()) ? node.parent.children.get(i + 1) : null;
+        }
+
+        @Override
+        public TestNode getFirstChild(TestNode node)
+        {
+            return node.children.isEmpty() ? null : node.children.get(0);
+        }
+
+        @Override
+        public boolean isEmpty(TestNode node)
+        {
+            return node.children.isEmpty() && !node.text;
+        }
+
+        @Override
+        public String getName(TestNode node)
+        {
+            return node.name;
+        }
+
+        @Override
+        public String getId(TestNode node)
+        {
+            String id = node.attributes.get("id");
+            return (id == null) ? "" : id;
+        }
+
+        @Override
+        public Collection<String> getClassNames(TestNode node)
+        {
+            return splitClassNames(node.attributes.get("class"));
+        }
+
+        @Override
+        public String getAttribute(TestNode node, String name)
+        {
+            return node.attributes.get(name);
+        }
+
+        @Override
+        public Collection<String> getAttributeNames(TestNode node)
+        {
+            return node.attributes.keySet();
+        }
+
+        @Override
+        public boolean isCaseSensitiveNames()
+        {
+            return caseSensitiveNames;
+        }
+
+        @Override
+        public boolean isCaseSensitiveValues()
+        {
+            return true;
+        }
+
+        @Override
+        public boolean matchesPseudoClass(TestNode node, Selector.PseudoPage pseudo)
+        {
+            return pseudo.getDeclaration() == PseudoDeclaration.LINK && node.name.equalsIgnoreCase("a");
+        }
+
+        @Override
+        public boolean matchesPart(TreeSnapshot<TestNode> snapshot, int ord, Selector.SelectorPart part, MatchCondition cond)
+        {
+            // the inline styles are bound to the source elements
+            if (part instanceof Selector.ElementDOM)
+                return ((Selector.ElementDOM) part).getElement() == snapshot.getNode(ord).source;
+            else
+                return super.matchesPart(snapshot, ord, part, cond);
+        }
+    }
+
+}
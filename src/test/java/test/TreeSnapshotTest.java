@@ -0,0 +1,176 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import cz.vutbr.web.css.CSSException;
+import cz.vutbr.web.css.CSSFactory;
+import cz.vutbr.web.css.CombinedSelector;
+import cz.vutbr.web.css.ElementMatcher;
+import cz.vutbr.web.css.MediaSpec;
+import cz.vutbr.web.css.Rule;
+import cz.vutbr.web.css.RuleMedia;
+import cz.vutbr.web.css.RuleSet;
+import cz.vutbr.web.css.StyleSheet;
+import cz.vutbr.web.csskit.ElementMatcherSafeCI;
+import cz.vutbr.web.csskit.ElementMatcherSafeStd;
+import cz.vutbr.web.domassign.Analyzer;
+import cz.vutbr.web.domassign.CompiledSelector;
+import cz.vutbr.web.domassign.DirectAnalyzer;
+import cz.vutbr.web.domassign.StyleMap;
+import cz.vutbr.web.domassign.TreeSnapshot;
+
+/**
+ * Checks the flattened tree snapshot of a DOM and the selector matching against it.
+ */
+public class TreeSnapshotTest
+{
+    private static final Logger log = LoggerFactory.getLogger(TreeSnapshotTest.class);
+
+    private static final String[] DOCUMENTS = { "/simple/pseudo.html", "/simple/selectors.html",
+        "/simple/selectors3.html", "/advanced/domassign.html" };
+
+    private static final String CSS = "p {} P.Red {} #Id {} div p {} div > p {} h1 + p {} h1 ~ p {} "
+            + "ul li:first-child {} li:last-child {} li:only-child {} :root {} li:nth-child(2n+1) {} "
+            + "[title] {} a:hover {} div :not-supported {} body div * + * > p {}";
+
+    @BeforeClass
+    public static void init()
+    {
+        log.info("\n\n\n == TreeSnapshotTest test at {} == \n\n\n", new Date());
+    }
+
+    @Test
+    public void structure() throws SAXException, IOException
+    {
+        DOMSource ds = new DOMSource(getClass().getResourceAsStream("/advanced/domassign.html"));
+        Document doc = ds.parse();
+        TreeSnapshot<Element> snapshot = TreeSnapshot.create(doc, new ElementMatcherSafeStd());
+
+        NodeList all = doc.getElementsByTagName("*");
+        assertEquals("All elements", all.getLength(), snapshot.size());
+        for (int i = 0; i < all.getLength(); i++)
+        {
+            Element e = (Element) all.item(i);
+            assertEquals("Document order", i, snapshot.indexOf(e));
+            assertSame(e, snapshot.getNode(i));
+            assertEquals("Parent", ordinal(snapshot, e.getParentNode()), snapshot.getParent(i));
+            assertEquals("Previous", ordinal(snapshot, sibling(e.getPreviousSibling(), false)), snapshot.getPreviousSibling(i));
+            assertEquals("Next", ordinal(snapshot, sibling(e.getNextSibling(), true)), snapshot.getNextSibling(i));
+            assertEquals("First child", ordinal(snapshot, sibling(e.getFirstChild(), true)), snapshot.getFirstChild(i));
+            int depth = 0;
+            for (Node n = e.getParentNode(); n.getNodeType() == Node.ELEMENT_NODE; n = n.getParentNode())
+                depth++;
+            assertEquals("Depth", depth, snapshot.getDepth(i));
+            assertEquals("Name", e.getNodeName().toLowerCase(), snapshot.getFacts(i).getName());
+        }
+    }
+
+    @Test
+    public void sameAsDOM() throws SAXException, IOException, CSSException
+    {
+        int matched = 0;
+        for (String name : DOCUMENTS)
+        {
+            DOMSource ds = new DOMSource(getClass().getResourceAsStream(name));
+            Document doc = ds.parse();
+            List<CombinedSelector> selectors = new ArrayList<CombinedSelector>();
+            addSelectors(CSSFactory.getUsedStyles(doc, null, getClass().getResource(name), "screen"), selectors);
+            addSelectors(CSSFactory.parseString(CSS, null), selectors);
+
+            NodeList all = doc.getElementsByTagName("*");
+            ElementMatcher[] matchers = { new ElementMatcherSafeStd(), new ElementMatcherSafeCI() };
+            for (ElementMatcher matcher : matchers)
+            {
+                TreeSnapshot<Element> snapshot = TreeSnapshot.create(doc, matcher);
+                for (CombinedSelector sel : selectors)
+                {
+                    CompiledSelector compiled = CompiledSelector.compile(sel);
+                    for (int i = 0; i < all.getLength(); i++)
+                    {
+                        Element e = (Element) all.item(i);
+                        boolean expected = compiled.matches(e, matcher, CSSFactory.getDefaultMatchCondition());
+                        assertEquals(name + ": " + sel + " on " + e.getNodeName() + "#" + e.getAttribute("id"),
+                                expected, compiled.matches(snapshot, snapshot.indexOf(e), CSSFactory.getDefaultMatchCondition()));
+                        if (expected)
+                            matched++;
+                    }
+                }
+            }
+        }
+        assertTrue("Some selectors matched", matched > 0);
+    }
+
+    @Test
+    public void analyzers() throws SAXException, IOException, CSSException
+    {
+        DOMSource ds = new DOMSource(getClass().getResourceAsStream("/simple/selectors3.html"));
+        Document doc = ds.parse();
+        StyleSheet sheet = CSSFactory.getUsedStyles(doc, null, getClass().getResource("/simple/selectors3.html"), "screen");
+
+        StyleMap expected = new Analyzer(sheet).evaluateDOM(doc, "screen", true);
+        Analyzer analyzer = new Analyzer(sheet);
+        analyzer.setSnapshotMatching(true);
+        StyleMap styles = analyzer.evaluateDOM(doc, "screen", true);
+
+        DirectAnalyzer da = new DirectAnalyzer(sheet);
+        TreeSnapshot<Element> snapshot = da.createSnapshot(doc);
+        MediaSpec media = new MediaSpec("screen");
+
+        NodeList all = doc.getElementsByTagName("*");
+        for (int i = 0; i < all.getLength(); i++)
+        {
+            Element e = (Element) all.item(i);
+            assertEquals("Style of " + e.getNodeName() + " " + i, expected.get(e).toString(), styles.get(e).toString());
+            assertEquals("Direct style of " + e.getNodeName() + " " + i,
+                    da.getElementStyle(e, null, media).toString(),
+                    da.getElementStyle(snapshot, e, null, media).toString());
+        }
+    }
+
+    private static int ordinal(TreeSnapshot<Element> snapshot, Node n)
+    {
+        if (n == null || n.getNodeType() != Node.ELEMENT_NODE)
+            return TreeSnapshot.NONE;
+        else
+            return snapshot.indexOf((Element) n);
+    }
+
+    private static Node sibling(Node n, boolean forward)
+    {
+        while (n != null && n.getNodeType() != Node.ELEMENT_NODE)
+            n = forward ? n.getNextSibling() : n.getPreviousSibling();
+        return n;
+    }
+
+    private void addSelectors(List<? extends Rule<?>> rules, List<CombinedSelector> dest)
+    {
+        for (Rule<?> rule : rules)
+        {
+            if (rule instanceof RuleSet)
+            {
+                for (CombinedSelector sel : ((RuleSet) rule).getSelectors())
+                    dest.add(sel);
+            }
+            else if (rule instanceof RuleMedia)
+                addSelectors((RuleMedia) rule, dest);
+        }
+    }
+
+}